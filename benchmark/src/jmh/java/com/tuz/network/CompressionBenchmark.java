@@ -0,0 +1,104 @@
+package com.tuz.network;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost and ratio of encoding small json request bodies with gzip at several levels and with a
+ * preset dictionary. The encoded bytes per operation are reported as a secondary result, so
+ * that the ratio is the payload size divided by them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+
+    /**
+     * The codec, as the encoding and the level.
+     */
+    @Param({"gzip-1", "gzip-6", "gzip-9", "dictionary-6"})
+    public String mCodecName;
+
+    /**
+     * The number of posts in the payload.
+     */
+    @Param({"1", "10"})
+    public int mPosts;
+
+    private ContentCodec mCodec;
+
+    private byte[] mPayload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mPayload = Payloads.jsonArray(mPosts);
+        String[] parts = mCodecName.split("-");
+        int level = Integer.parseInt(parts[1]);
+        // The dictionary holds a typical payload, as a server would have trained it.
+        mCodec = parts[0].equals("gzip") ? ContentCodecs.gzip(level)
+                : new DictionaryCodec(Payloads.jsonArray(10), level);
+    }
+
+    /**
+     * Counter of the encoded bytes.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Encoded {
+
+        /**
+         * The number of bytes encoded.
+         */
+        private long mBytes;
+
+        /**
+         * The number of operations.
+         */
+        private long mOperations;
+
+        /**
+         * Get the average encoded size.
+         *
+         * @return the bytes per operation.
+         */
+        public long encodedBytes() {
+            return mOperations > 0 ? mBytes / mOperations : 0;
+        }
+
+        /**
+         * Count an operation.
+         *
+         * @param bytes the number of bytes encoded.
+         */
+        void add(long bytes) {
+            mBytes += bytes;
+            mOperations++;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            mBytes = 0;
+            mOperations = 0;
+        }
+    }
+
+    @Benchmark
+    public void encode(Encoded encoded) throws Exception {
+        CountingOutputStream count = new CountingOutputStream(new Payloads.NullOutputStream());
+        try (OutputStream os = mCodec.encode(count)) {
+            os.write(mPayload);
+        }
+        encoded.add(count.getCount());
+    }
+}
@@ -0,0 +1,104 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of executing requests end to end against an in-process loopback server, so that the
+ * measurements cover the request pipeline rather than the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecuteBenchmark {
+
+    /**
+     * The number of posts in the response.
+     */
+    @Param({"1", "100"})
+    public int mPosts;
+
+    private HttpServer mServer;
+
+    private ExecutorService mExecutor;
+
+    private String mPostsUrl;
+
+    private String mEchoUrl;
+
+    private byte[] mBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        byte[] posts = Payloads.jsonObject(mPosts);
+        mBody = Payloads.jsonObject(1);
+        mExecutor = Executors.newFixedThreadPool(4);
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/posts", exchange -> {
+            exchange.getResponseHeaders().set(Http.CONTENT_TYPE, Http.MIME_JSON);
+            exchange.sendResponseHeaders(Http.STATUS_OK, posts.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(posts);
+            }
+        });
+        mServer.createContext("/echo", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Utils.write(exchange.getRequestBody(), body);
+            exchange.sendResponseHeaders(Http.STATUS_OK, body.size());
+            try (OutputStream os = exchange.getResponseBody()) {
+                body.writeTo(os);
+            }
+        });
+        mServer.start();
+        String base = "http://127.0.0.1:" + mServer.getAddress().getPort();
+        mPostsUrl = base + "/posts";
+        mEchoUrl = base + "/echo";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public String getString() throws Exception {
+        return new RequestBuilder<>(mPostsUrl, Method.GET, Parsers.newStringParser())
+                .build()
+                .execute();
+    }
+
+    @Benchmark
+    public JSONObject getJson() throws Exception {
+        return new RequestBuilder<>(mPostsUrl, Method.GET, Parsers.newJsonParser())
+                .build()
+                .execute();
+    }
+
+    @Benchmark
+    public String postJson() throws Exception {
+        RequestBuilder<String> builder = new RequestBuilder<>(mEchoUrl, Method.POST,
+                Parsers.newStringParser());
+        builder.setBody(mBody, Http.MIME_JSON, false, false);
+        return builder.build().execute();
+    }
+}
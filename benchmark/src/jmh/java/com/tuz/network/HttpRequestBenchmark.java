@@ -0,0 +1,43 @@
+package com.tuz.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of setting up a connection with its headers, which does not connect.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HttpRequestBenchmark {
+
+    /**
+     * The number of custom headers.
+     */
+    @Param({"0", "8", "32"})
+    public int mHeaders;
+
+    private HttpRequest mRequest;
+
+    @Setup
+    public void setUp() {
+        mRequest = new HttpRequest("http://127.0.0.1:8080/posts/1", Method.GET);
+        for (int i = 0; i < mHeaders; i++) {
+            mRequest.addHeader("X-Header-" + i, "value " + i);
+        }
+    }
+
+    @Benchmark
+    public HttpURLConnection setupConnection() throws Exception {
+        return mRequest.setupConnection();
+    }
+}
@@ -0,0 +1,93 @@
+package com.tuz.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of encoding multipart forms of text fields and a file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MultipartFormBenchmark {
+
+    /**
+     * The number of fields.
+     */
+    @Param({"1", "10", "100"})
+    public int mFields;
+
+    /**
+     * The length of the values.
+     */
+    @Param({"16", "65536"})
+    public int mValueLength;
+
+    /**
+     * The size of the file in bytes, or 0 for a form without a file.
+     */
+    @Param({"0", "1048576"})
+    public int mFileSize;
+
+    private File mFile;
+
+    private MultipartForm mForm;
+
+    private final ProgressUpdater mUpdater = (total, current) -> {
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        char[] value = new char[mValueLength];
+        Arrays.fill(value, 'v');
+        mForm = new MultipartForm();
+        for (int i = 0; i < mFields; i++) {
+            mForm.addTextField("field" + i, new String(value));
+        }
+
+        if (mFileSize > 0) {
+            byte[] data = new byte[mFileSize];
+            new Random(42).nextBytes(data);
+            mFile = File.createTempFile("multipart", ".jpg");
+            try (OutputStream os = new FileOutputStream(mFile)) {
+                os.write(data);
+            }
+            mForm.addFile("photo", mFile, true);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (mFile != null) {
+            mFile.delete();
+        }
+    }
+
+    @Benchmark
+    public long size() {
+        return mForm.size();
+    }
+
+    @Benchmark
+    public int writeTo() throws Exception {
+        DataOutputStream os = new DataOutputStream(new Payloads.NullOutputStream());
+        mForm.writeTo(os, mUpdater);
+        return os.size();
+    }
+}
@@ -0,0 +1,59 @@
+package com.tuz.network;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the response parsers by payload size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParsersBenchmark {
+
+    /**
+     * The number of posts in the payload.
+     */
+    @Param({"1", "100", "10000"})
+    public int mPosts;
+
+    private byte[] mArray;
+
+    private byte[] mObject;
+
+    private final ResponseParser<String> mStringParser = Parsers.newStringParser();
+
+    private final ResponseParser<JSONObject> mJsonParser = Parsers.newJsonParser();
+
+    @Setup
+    public void setUp() {
+        mArray = Payloads.jsonArray(mPosts);
+        mObject = Payloads.jsonObject(mPosts);
+    }
+
+    @Benchmark
+    public String string() throws Exception {
+        return mStringParser.parseResponse(Payloads.response(mArray));
+    }
+
+    @Benchmark
+    public JSONObject json() throws Exception {
+        return mJsonParser.parseResponse(Payloads.response(mObject));
+    }
+
+    @Benchmark
+    public Integer jsonArrayStream(Blackhole blackhole) throws Exception {
+        return Parsers.newJsonArrayParser((index, element) -> blackhole.consume(element))
+                .parseResponse(Payloads.response(mArray));
+    }
+}
@@ -0,0 +1,73 @@
+package com.tuz.network;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * Payloads and sinks shared by the benchmarks.
+ */
+final class Payloads {
+
+    /**
+     * Constructor.
+     */
+    private Payloads() {
+    }
+
+    /**
+     * Create a json array of posts.
+     *
+     * @param count the number of posts.
+     * @return the utf-8 bytes of the array.
+     */
+    static byte[] jsonArray(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.US, "{\"userId\":%d,\"id\":%d,\"title\":\"post %d"
+                    + " title\",\"body\":\"the body of post %d with some text in it\"}",
+                    i % 10, i, i, i));
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create a json object holding an array of posts.
+     *
+     * @param count the number of posts.
+     * @return the utf-8 bytes of the object.
+     */
+    static byte[] jsonObject(int count) {
+        return ("{\"posts\":" + new String(jsonArray(count), StandardCharsets.UTF_8) + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create a response served from bytes in memory.
+     *
+     * @param body the body.
+     * @return the response.
+     */
+    static Response response(byte[] body) {
+        return new Response(new CacheEntry("benchmark", Http.STATUS_OK, Http.MIME_JSON,
+                Collections.<Header>emptySet(), body, System.currentTimeMillis()));
+    }
+
+    /**
+     * Output stream discarding everything written to it.
+     */
+    static final class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
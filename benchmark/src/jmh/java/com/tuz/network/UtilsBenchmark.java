@@ -0,0 +1,55 @@
+package com.tuz.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of copying streams, which every body read and download goes through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UtilsBenchmark {
+
+    /**
+     * The number of bytes copied.
+     */
+    @Param({"1024", "65536", "4194304"})
+    public int mSize;
+
+    private byte[] mData;
+
+    private final OutputStream mSink = new Payloads.NullOutputStream();
+
+    @Setup
+    public void setUp() {
+        mData = new byte[mSize];
+        new Random(42).nextBytes(mData);
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        Utils.write(new ByteArrayInputStream(mData), mSink);
+    }
+
+    @Benchmark
+    public void writeWithLength() throws Exception {
+        Utils.write(new ByteArrayInputStream(mData), mSink, mSize);
+    }
+
+    @Benchmark
+    public byte[] toByteArray() throws Exception {
+        return Utils.toByteArray(new ByteArrayInputStream(mData));
+    }
+}
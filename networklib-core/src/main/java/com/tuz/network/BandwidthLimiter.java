@@ -0,0 +1,167 @@
+package com.tuz.network;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the bandwidth of request bodies and response bodies.
+ * <p>
+ * Every byte sent or received through the limiter takes a token, and tokens are added at the
+ * rate of the limiter up to a small burst. A transfer that takes more tokens than there are
+ * reserves them and waits until they have been added, so the transfers sharing a limiter share
+ * its rate. Interactive requests may borrow up to one second of tokens ahead of the rate
+ * without waiting, which background transfers then pay back, so that a limited background sync
+ * never holds up the requests a user is waiting for. The rate can be changed at any time.
+ *
+ * @see Setup#setBandwidthLimiter(BandwidthLimiter)
+ * @see Setup#setBandwidthLimiter(String, BandwidthLimiter)
+ * @see RequestBuilder#setBandwidthLimiter(BandwidthLimiter)
+ * @see RequestBuilder#setInteractive(boolean)
+ */
+public final class BandwidthLimiter {
+
+    /**
+     * The largest number of bytes taken from the limiters at a time.
+     */
+    static final int CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * The time the burst of a full bucket lasts at the rate, in nanoseconds.
+     */
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The time interactive requests may borrow ahead of the rate, in nanoseconds.
+     */
+    private static final long BORROW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The rate in bytes per second.
+     */
+    private long mRate;
+
+    /**
+     * The number of tokens, which is negative while reserved tokens are being added.
+     */
+    private double mTokens;
+
+    /**
+     * The time tokens were last added, in nanoseconds.
+     */
+    private long mRefillTime;
+
+    /**
+     * Constructor.
+     *
+     * @param bytesPerSecond the rate in bytes per second.
+     * @throws IllegalArgumentException if the rate is not positive.
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        checkRate(bytesPerSecond);
+        mRate = bytesPerSecond;
+        mTokens = getCapacity();
+        mRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Set the rate, which applies to the transfers in progress from their next chunk.
+     *
+     * @param bytesPerSecond the rate in bytes per second.
+     * @throws IllegalArgumentException if the rate is not positive.
+     */
+    public synchronized void setRate(long bytesPerSecond) {
+        checkRate(bytesPerSecond);
+        refill(System.nanoTime());
+        mRate = bytesPerSecond;
+        mTokens = Math.min(mTokens, getCapacity());
+    }
+
+    /**
+     * Get the rate.
+     *
+     * @return the rate in bytes per second.
+     */
+    public synchronized long getRate() {
+        return mRate;
+    }
+
+    /**
+     * Take tokens for bytes transferred, waiting until the limiters allow the transfer.
+     *
+     * @param limiters    the limiters.
+     * @param bytes       the number of bytes.
+     * @param interactive true if the tokens may be borrowed.
+     * @throws InterruptedIOException if the thread is interrupted while waiting.
+     */
+    static void acquire(BandwidthLimiter[] limiters, int bytes, boolean interactive)
+            throws InterruptedIOException {
+        long now = System.nanoTime();
+        long wait = 0;
+
+        // Reserve from every limiter first, so that their waits overlap.
+        for (BandwidthLimiter limiter : limiters) {
+            wait = Math.max(wait, limiter.reserve(bytes, interactive, now));
+        }
+
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while limiting bandwidth");
+            }
+        }
+    }
+
+    /**
+     * Reserve tokens.
+     *
+     * @param bytes       the number of tokens.
+     * @param interactive true if the tokens may be borrowed.
+     * @param now         the current time in nanoseconds.
+     * @return the time until the tokens have been added, in nanoseconds.
+     */
+    synchronized long reserve(long bytes, boolean interactive, long now) {
+        refill(now);
+        mTokens -= bytes;
+
+        double floor = interactive ? -mRate * (BORROW_NANOS / 1e9) : 0;
+        if (mTokens >= floor) {
+            return 0;
+        }
+        return (long) ((floor - mTokens) * 1e9 / mRate);
+    }
+
+    /**
+     * Add the tokens for the time since they were last added.
+     *
+     * @param now the current time in nanoseconds.
+     */
+    private void refill(long now) {
+        if (now > mRefillTime) {
+            mTokens = Math.min(getCapacity(), mTokens + (now - mRefillTime) * mRate / 1e9);
+            mRefillTime = now;
+        }
+    }
+
+    /**
+     * Get the max number of tokens.
+     *
+     * @return the burst size in bytes.
+     */
+    private double getCapacity() {
+        return mRate * (BURST_NANOS / 1e9);
+    }
+
+    /**
+     * Check that a rate is positive.
+     *
+     * @param bytesPerSecond the rate.
+     * @throws IllegalArgumentException if it is not.
+     */
+    private static void checkRate(long bytesPerSecond) {
+        if (bytesPerSecond < 1) {
+            throw new IllegalArgumentException("Rate must be positive.");
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package com.tuz.network;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue merging small json {@code POST} requests to one endpoint into batches.
+ * <p>
+ * Items added to the queue are collected into a json array which is sent as the body of a
+ * single request, so that many small requests such as events or acks share the connection and
+ * header overhead. A batch is sent when it holds the max number of items, when no item has
+ * been added for the duration of the window, or when its oldest item has waited for the max
+ * latency, whichever comes first.
+ * <p>
+ * The server is expected to respond with a json array holding one result per item, in the
+ * order of the items. Each item listener receives its own result, or a failure if the
+ * {@link ErrorMapper} maps the result to an error. If the whole batch fails, or the response
+ * does not hold one result per item, every item of the batch fails with the same error.
+ * Listeners are called on the callback executor of the dispatcher.
+ */
+public final class BatchingRequestQueue {
+
+    /**
+     * Listener for the result of an item.
+     */
+    public interface ItemListener {
+
+        /**
+         * Callback when the item was delivered.
+         *
+         * @param item   the item.
+         * @param result the result of the item from the response.
+         */
+        void onItemDone(Object item, Object result);
+
+        /**
+         * Callback when the item failed, either alone or with its whole batch.
+         *
+         * @param item  the item.
+         * @param error the error, caused by an {@link ItemException} if only the item failed.
+         */
+        void onItemFailed(Object item, NetworkException error);
+    }
+
+    /**
+     * Mapper telling if the result of an item is an error.
+     */
+    public interface ErrorMapper {
+
+        /**
+         * Get the error of a result.
+         *
+         * @param result the result of the item from the response.
+         * @return the error message, or null if the item succeeded.
+         */
+        String getError(Object result);
+    }
+
+    /**
+     * Exception for an item that failed while the rest of its batch was delivered.
+     */
+    public static final class ItemException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The result of the item.
+         */
+        private final transient Object mResult;
+
+        /**
+         * Constructor.
+         *
+         * @param message the error message.
+         * @param result  the result of the item.
+         */
+        ItemException(String message, Object result) {
+            super(message);
+            mResult = result;
+        }
+
+        /**
+         * Get the result of the item.
+         *
+         * @return the result from the response.
+         */
+        public Object getResult() {
+            return mResult;
+        }
+    }
+
+    /**
+     * The default max number of items in a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+    /**
+     * The default window in milliseconds.
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 200;
+
+    /**
+     * The default max latency in milliseconds.
+     */
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 1000;
+
+    /**
+     * The default error mapper, mapping json objects with an {@code error} member to errors.
+     */
+    public static final ErrorMapper DEFAULT_ERROR_MAPPER = result -> {
+        if (result instanceof JSONObject && ((JSONObject) result).has("error")) {
+            return ((JSONObject) result).optString("error");
+        }
+        return null;
+    };
+
+    /**
+     * The executor running the batch timers.
+     */
+    private static ScheduledExecutorService sTimer;
+
+    /**
+     * The url of the endpoint.
+     */
+    private final String mUrl;
+
+    /**
+     * The host of the endpoint.
+     */
+    private final String mHost;
+
+    /**
+     * The max number of items in a batch.
+     */
+    private final int mMaxBatchSize;
+
+    /**
+     * The window in nanoseconds.
+     */
+    private final long mWindow;
+
+    /**
+     * The max latency in nanoseconds.
+     */
+    private final long mMaxLatency;
+
+    /**
+     * The headers of the batch requests.
+     */
+    private final List<Header> mHeaders = new ArrayList<>();
+
+    /**
+     * The items of the pending batch.
+     */
+    private final List<Item> mItems = new ArrayList<>();
+
+    /**
+     * Flag for if the batch body is compressed.
+     */
+    private boolean mCompress;
+
+    /**
+     * The error mapper.
+     */
+    private ErrorMapper mErrorMapper = DEFAULT_ERROR_MAPPER;
+
+    /**
+     * The retry policy of the batch requests, or null.
+     */
+    private RetryPolicy mRetryPolicy;
+
+    /**
+     * The dispatcher, or null to use the default dispatcher.
+     */
+    private Dispatcher mDispatcher;
+
+    /**
+     * The time the first item of the pending batch was added in nanoseconds.
+     */
+    private long mFirstAdded;
+
+    /**
+     * The time the pending batch is due in nanoseconds.
+     */
+    private long mDeadline;
+
+    /**
+     * The scheduled timer, or null if none is scheduled.
+     */
+    private ScheduledFuture<?> mScheduled;
+
+    /**
+     * Constructor using the default window.
+     *
+     * @param url the url of the endpoint.
+     */
+    public BatchingRequestQueue(String url) {
+        this(url, DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param url              the url of the endpoint.
+     * @param maxBatchSize     the max number of items in a batch.
+     * @param windowMillis     the time without new items after which a batch is sent.
+     * @param maxLatencyMillis the max time an item waits before its batch is sent.
+     * @throws IllegalArgumentException if the batch size is less than one or a time is
+     *                                  negative.
+     */
+    public BatchingRequestQueue(String url, int maxBatchSize, long windowMillis,
+                                long maxLatencyMillis) {
+        if (maxBatchSize < 1 || windowMillis < 0 || maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("Invalid batch size or time.");
+        }
+        mUrl = url;
+        mMaxBatchSize = maxBatchSize;
+        mWindow = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        mMaxLatency = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+
+        String host;
+        try {
+            host = new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            host = "";
+        }
+        mHost = host;
+    }
+
+    /**
+     * Add a header to the batch requests.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return the queue instance.
+     */
+    public synchronized BatchingRequestQueue addHeader(String key, Object value) {
+        mHeaders.add(new Header(key, String.valueOf(value)));
+        return this;
+    }
+
+    /**
+     * Set if the batch body is compressed using gzip.
+     *
+     * @param compress true if the body should be compressed, default is false.
+     * @return the queue instance.
+     */
+    public synchronized BatchingRequestQueue setCompress(boolean compress) {
+        mCompress = compress;
+        return this;
+    }
+
+    /**
+     * Set the mapper telling if the result of an item is an error.
+     *
+     * @param mapper the mapper, default is {@link #DEFAULT_ERROR_MAPPER}.
+     * @return the queue instance.
+     */
+    public synchronized BatchingRequestQueue setErrorMapper(ErrorMapper mapper) {
+        mErrorMapper = mapper != null ? mapper : DEFAULT_ERROR_MAPPER;
+        return this;
+    }
+
+    /**
+     * Set the retry policy of the batch requests.
+     *
+     * @param policy the policy, or null to not retry, default is null.
+     * @return the queue instance.
+     */
+    public synchronized BatchingRequestQueue setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Set the dispatcher executing the batch requests.
+     *
+     * @param dispatcher the dispatcher, default is the dispatcher of {@link Setup}.
+     * @return the queue instance.
+     */
+    public synchronized BatchingRequestQueue setDispatcher(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Add an item to the pending batch.
+     *
+     * @param item     the item, which is a {@link JSONObject}, {@link JSONArray},
+     *                 {@link String}, {@link Number} or {@link Boolean}.
+     * @param listener the listener of the item, or null.
+     * @return a canceller removing the item if its batch has not been sent, in which case the
+     * listener is not called.
+     * @throws NullPointerException if the item is null.
+     */
+    public Canceller add(Object item, ItemListener listener) {
+        if (item == null) {
+            throw new NullPointerException("Item cannot be null.");
+        }
+        final Item entry = new Item(item, listener);
+        List<Item> batch = null;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (mItems.isEmpty()) {
+                mFirstAdded = now;
+            }
+            mItems.add(entry);
+
+            if (mItems.size() >= mMaxBatchSize) {
+                batch = takeBatch();
+            } else {
+                mDeadline = Math.min(now + mWindow, mFirstAdded + mMaxLatency);
+                if (mScheduled == null) {
+                    schedule(mDeadline - now);
+                }
+            }
+        }
+
+        if (batch != null) {
+            send(batch);
+        }
+        return () -> remove(entry);
+    }
+
+    /**
+     * Send the pending batch now.
+     */
+    public void flush() {
+        List<Item> batch;
+        synchronized (this) {
+            batch = takeBatch();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Get the number of items in the pending batch.
+     *
+     * @return the number of items.
+     */
+    public synchronized int getPendingCount() {
+        return mItems.size();
+    }
+
+    /**
+     * Remove an item from the pending batch.
+     *
+     * @param item the item.
+     */
+    private synchronized void remove(Item item) {
+        if (mItems.remove(item) && mItems.isEmpty() && mScheduled != null) {
+            mScheduled.cancel(false);
+            mScheduled = null;
+        }
+    }
+
+    /**
+     * Callback from the timer, sending the pending batch if it is due.
+     */
+    private void onTimer() {
+        List<Item> batch = null;
+
+        synchronized (this) {
+            mScheduled = null;
+            if (mItems.isEmpty()) {
+                return;
+            }
+            long remaining = mDeadline - System.nanoTime();
+            if (remaining > 0) {
+                // Items were added since the timer was scheduled.
+                schedule(remaining);
+            } else {
+                batch = takeBatch();
+            }
+        }
+
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Schedule the timer.
+     *
+     * @param delay the delay in nanoseconds.
+     */
+    private void schedule(long delay) {
+        mScheduled = getTimer().schedule(this::onTimer, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Take the items of the pending batch, which starts a new batch.
+     *
+     * @return the items.
+     */
+    private List<Item> takeBatch() {
+        List<Item> batch = new ArrayList<>(mItems);
+        mItems.clear();
+        if (mScheduled != null) {
+            mScheduled.cancel(false);
+            mScheduled = null;
+        }
+        return batch;
+    }
+
+    /**
+     * Send a batch on the dispatcher.
+     *
+     * @param items the items of the batch.
+     */
+    private void send(List<Item> items) {
+        JSONArray body = new JSONArray();
+        for (Item item : items) {
+            body.put(item.mItem);
+        }
+
+        RequestBuilder<JSONArray> builder = new RequestBuilder<>(mUrl, Method.POST,
+                Parsers.newJsonReaderParser(reader -> {
+                    Object value = Parsers.readValue(reader);
+                    if (!(value instanceof JSONArray)) {
+                        throw new JSONException("Expected a json array of results");
+                    }
+                    return (JSONArray) value;
+                }));
+        Dispatcher dispatcher;
+        ErrorMapper mapper;
+
+        synchronized (this) {
+            builder.setBody(body, mCompress, false);
+            for (Header header : mHeaders) {
+                builder.addHeader(header);
+            }
+            builder.setRetryPolicy(mRetryPolicy);
+            dispatcher = mDispatcher != null ? mDispatcher : Setup.getDispatcher();
+            mapper = mErrorMapper;
+        }
+
+        Batch batch = new Batch(dispatcher, mHost, builder.build(), items, mapper);
+        try {
+            dispatcher.enqueue(batch);
+        } catch (RejectedExecutionException e) {
+            batch.deliver(null, new NetworkException(e));
+        }
+    }
+
+    /**
+     * Get the timer executor, creating it on first use.
+     *
+     * @return the executor.
+     */
+    private static synchronized ScheduledExecutorService getTimer() {
+        if (sTimer == null) {
+            sTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BatchingRequestQueue");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sTimer;
+    }
+
+    /**
+     * An item and its listener.
+     */
+    private static final class Item {
+
+        /**
+         * The item.
+         */
+        private final Object mItem;
+
+        /**
+         * The listener, or null.
+         */
+        private final ItemListener mListener;
+
+        /**
+         * Constructor.
+         *
+         * @param item     the item.
+         * @param listener the listener, or null.
+         */
+        Item(Object item, ItemListener listener) {
+            mItem = item;
+            mListener = listener;
+        }
+    }
+
+    /**
+     * Task sending a batch and splitting the result to the items.
+     */
+    private static final class Batch extends DispatcherTask {
+
+        /**
+         * The batch request.
+         */
+        private final Request<JSONArray> mRequest;
+
+        /**
+         * The items of the batch.
+         */
+        private final List<Item> mItems;
+
+        /**
+         * The error mapper.
+         */
+        private final ErrorMapper mErrorMapper;
+
+        /**
+         * Constructor.
+         *
+         * @param dispatcher the dispatcher.
+         * @param host       the host of the queue.
+         * @param request    the batch request.
+         * @param items      the items.
+         * @param mapper     the error mapper.
+         */
+        Batch(Dispatcher dispatcher, String host, Request<JSONArray> request, List<Item> items,
+              ErrorMapper mapper) {
+            super(dispatcher, host, null);
+            mRequest = request;
+            mItems = items;
+            mErrorMapper = mapper;
+        }
+
+        @Override
+        void execute() {
+            JSONArray results = null;
+            NetworkException error = null;
+
+            try {
+                results = mRequest.execute();
+            } catch (NetworkException e) {
+                error = e;
+            }
+            deliver(results, error);
+        }
+
+        @Override
+        void onDropped() {
+            deliver(null, null);
+        }
+
+        /**
+         * Deliver the results to the item listeners on the callback executor.
+         *
+         * @param results the results, or null if the batch failed.
+         * @param error   the error of the batch, or null.
+         */
+        void deliver(final JSONArray results, final NetworkException error) {
+            getDispatcher().getCallbackExecutor().execute(() -> onDone(results, error));
+        }
+
+        /**
+         * Split the results to the item listeners.
+         *
+         * @param results the results, or null if the batch failed.
+         * @param error   the error of the batch, or null.
+         */
+        private void onDone(JSONArray results, NetworkException error) {
+            if (error == null && results == null) {
+                error = new NetworkException(new IOException("Batch was not delivered"));
+            } else if (error == null && results.length() != mItems.size()) {
+                error = new NetworkException(new IOException("Batch response has "
+                        + results.length() + " results for " + mItems.size() + " items"));
+            }
+
+            for (int i = 0; i < mItems.size(); i++) {
+                Item item = mItems.get(i);
+                if (item.mListener == null) {
+                    continue;
+                }
+
+                if (error != null) {
+                    item.mListener.onItemFailed(item.mItem, error);
+                    continue;
+                }
+                Object result = results.opt(i);
+                String message = mErrorMapper.getError(result);
+                if (message != null) {
+                    item.mListener.onItemFailed(item.mItem,
+                            new NetworkException(new ItemException(message, result)));
+                } else {
+                    item.mListener.onItemDone(item.mItem, result);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.tuz.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe pool of byte buffers for the copy loops of the library.
+ * <p>
+ * Buffers come in power of two size classes between {@link #MIN_CHUNK_SIZE} and
+ * {@link #MAX_CHUNK_SIZE}. Every thread caches one buffer per size class, and released
+ * buffers beyond that are kept on a shared free list bounded by a total number of bytes.
+ * At steady state acquiring a buffer does not allocate, which can be verified through the
+ * allocation and reuse counters.
+ */
+public final class BufferPool {
+
+    /**
+     * The smallest buffer size.
+     */
+    public static final int MIN_CHUNK_SIZE = 4 * 1024;
+
+    /**
+     * The largest buffer size.
+     */
+    public static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The buffer size used when the content length is unknown.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * The default max number of bytes on the shared free list.
+     */
+    public static final long DEFAULT_MAX_POOLED_BYTES = 1024 * 1024;
+
+    /**
+     * The log2 of the smallest buffer size.
+     */
+    private static final int MIN_SHIFT = 12;
+
+    /**
+     * The number of size classes.
+     */
+    private static final int SIZE_CLASSES = 5;
+
+    /**
+     * The default pool.
+     */
+    private static final BufferPool sDefault = new BufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    /**
+     * The max number of bytes on the shared free list.
+     */
+    private final long mMaxPooledBytes;
+
+    /**
+     * The shared free lists, one per size class.
+     */
+    private final List<Queue<byte[]>> mFreeLists;
+
+    /**
+     * The per thread cache holding one buffer per size class.
+     */
+    private final ThreadLocal<byte[][]> mThreadCache;
+
+    /**
+     * The number of bytes on the shared free lists.
+     */
+    private final AtomicLong mPooledBytes;
+
+    /**
+     * The number of allocated buffers.
+     */
+    private final AtomicLong mAllocationCount;
+
+    /**
+     * The number of reused buffers.
+     */
+    private final AtomicLong mReuseCount;
+
+    /**
+     * The number of released buffers dropped because the pool was full.
+     */
+    private final AtomicLong mDiscardCount;
+
+    /**
+     * Constructor.
+     *
+     * @param maxPooledBytes the max number of bytes on the shared free list.
+     */
+    public BufferPool(long maxPooledBytes) {
+        mMaxPooledBytes = maxPooledBytes;
+        mFreeLists = new ArrayList<>(SIZE_CLASSES);
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            mFreeLists.add(new ConcurrentLinkedQueue<>());
+        }
+        mThreadCache = new ThreadLocal<byte[][]>() {
+            @Override
+            protected byte[][] initialValue() {
+                return new byte[SIZE_CLASSES][];
+            }
+        };
+        mPooledBytes = new AtomicLong();
+        mAllocationCount = new AtomicLong();
+        mReuseCount = new AtomicLong();
+        mDiscardCount = new AtomicLong();
+    }
+
+    /**
+     * Get the default pool used by the library.
+     *
+     * @return the default pool.
+     */
+    public static BufferPool getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Get a suitable chunk size for copying content of the given length.
+     *
+     * @param contentLength the content length, or a negative value if unknown.
+     * @return the chunk size.
+     */
+    public static int chunkSize(long contentLength) {
+        if (contentLength < 0) {
+            return DEFAULT_CHUNK_SIZE;
+        }
+        return MIN_CHUNK_SIZE << sizeClass(contentLength);
+    }
+
+    /**
+     * Acquire a buffer of at least the given size, or of {@link #MAX_CHUNK_SIZE} if the size
+     * is larger than that. The buffer should be released when no longer used.
+     *
+     * @param size the requested size.
+     * @return the buffer.
+     */
+    public byte[] acquire(int size) {
+        int sizeClass = sizeClass(size);
+        byte[][] cache = mThreadCache.get();
+        byte[] buffer = cache[sizeClass];
+
+        if (buffer != null) {
+            cache[sizeClass] = null;
+        } else {
+            buffer = mFreeLists.get(sizeClass).poll();
+            if (buffer != null) {
+                mPooledBytes.addAndGet(-buffer.length);
+            }
+        }
+
+        if (buffer != null) {
+            mReuseCount.incrementAndGet();
+        } else {
+            mAllocationCount.incrementAndGet();
+            buffer = new byte[MIN_CHUNK_SIZE << sizeClass];
+        }
+        return buffer;
+    }
+
+    /**
+     * Release a buffer acquired from the pool.
+     *
+     * @param buffer the buffer.
+     */
+    public void release(byte[] buffer) {
+        int sizeClass = sizeClass(buffer.length);
+        if (buffer.length != MIN_CHUNK_SIZE << sizeClass) {
+            // Not from the pool.
+            return;
+        }
+        byte[][] cache = mThreadCache.get();
+
+        if (cache[sizeClass] == null) {
+            cache[sizeClass] = buffer;
+        } else if (mPooledBytes.addAndGet(buffer.length) <= mMaxPooledBytes) {
+            mFreeLists.get(sizeClass).offer(buffer);
+        } else {
+            mPooledBytes.addAndGet(-buffer.length);
+            mDiscardCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of buffers allocated by the pool.
+     *
+     * @return the allocation count.
+     */
+    public long getAllocationCount() {
+        return mAllocationCount.get();
+    }
+
+    /**
+     * Get the number of acquired buffers that were reused instead of allocated.
+     *
+     * @return the reuse count.
+     */
+    public long getReuseCount() {
+        return mReuseCount.get();
+    }
+
+    /**
+     * Get the number of released buffers that were dropped because the pool was full.
+     *
+     * @return the discard count.
+     */
+    public long getDiscardCount() {
+        return mDiscardCount.get();
+    }
+
+    /**
+     * Get the number of bytes on the shared free list.
+     *
+     * @return the pooled bytes.
+     */
+    public long getPooledBytes() {
+        return mPooledBytes.get();
+    }
+
+    /**
+     * Get the size class for a size.
+     *
+     * @param size the size.
+     * @return the index of the smallest size class holding the size.
+     */
+    private static int sizeClass(long size) {
+        if (size <= MIN_CHUNK_SIZE) {
+            return 0;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(size - 1);
+        return Math.min(shift - MIN_SHIFT, SIZE_CLASSES - 1);
+    }
+}
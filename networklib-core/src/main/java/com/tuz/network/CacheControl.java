@@ -0,0 +1,163 @@
+package com.tuz.network;
+
+import java.util.Locale;
+
+/**
+ * The directives of a {@code Cache-Control} header.
+ */
+final class CacheControl {
+
+    /**
+     * Value of a missing delta seconds directive.
+     */
+    static final long UNSET = -1;
+
+    /**
+     * Flag for if the response must not be stored.
+     */
+    private boolean mNoStore;
+
+    /**
+     * Flag for if the response must be revalidated before it is used.
+     */
+    private boolean mNoCache;
+
+    /**
+     * Flag for if a stale response must be revalidated before it is used.
+     */
+    private boolean mMustRevalidate;
+
+    /**
+     * The max age in seconds.
+     */
+    private long mMaxAge = UNSET;
+
+    /**
+     * The time in seconds a stale response may be used while it is revalidated.
+     */
+    private long mStaleWhileRevalidate = UNSET;
+
+    /**
+     * The time in seconds a stale response may be used if revalidation fails.
+     */
+    private long mStaleIfError = UNSET;
+
+    /**
+     * Parse a header value.
+     *
+     * @param value the value, or null.
+     * @return the directives.
+     */
+    static CacheControl parse(String value) {
+        CacheControl control = new CacheControl();
+        if (value == null) {
+            return control;
+        }
+
+        for (String directive : value.split(",")) {
+            int separator = directive.indexOf('=');
+            String name = (separator < 0 ? directive : directive.substring(0, separator))
+                    .trim().toLowerCase(Locale.US);
+            String argument = separator < 0 ? null : directive.substring(separator + 1).trim();
+
+            switch (name) {
+                case "no-store":
+                    control.mNoStore = true;
+                    break;
+                case "no-cache":
+                    control.mNoCache = true;
+                    break;
+                case "must-revalidate":
+                    control.mMustRevalidate = true;
+                    break;
+                case "max-age":
+                    control.mMaxAge = parseSeconds(argument);
+                    break;
+                case "stale-while-revalidate":
+                    control.mStaleWhileRevalidate = parseSeconds(argument);
+                    break;
+                case "stale-if-error":
+                    control.mStaleIfError = parseSeconds(argument);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return control;
+    }
+
+    /**
+     * Check if the response must not be stored.
+     *
+     * @return true if no-store is set.
+     */
+    boolean isNoStore() {
+        return mNoStore;
+    }
+
+    /**
+     * Check if the response must be revalidated before it is used.
+     *
+     * @return true if no-cache is set.
+     */
+    boolean isNoCache() {
+        return mNoCache;
+    }
+
+    /**
+     * Check if a stale response must be revalidated before it is used.
+     *
+     * @return true if must-revalidate is set.
+     */
+    boolean isMustRevalidate() {
+        return mMustRevalidate;
+    }
+
+    /**
+     * Get the max age.
+     *
+     * @return the max age in seconds, or {@link #UNSET}.
+     */
+    long getMaxAge() {
+        return mMaxAge;
+    }
+
+    /**
+     * Get the time a stale response may be used while it is revalidated.
+     *
+     * @return the time in seconds, or {@link #UNSET}.
+     */
+    long getStaleWhileRevalidate() {
+        return mStaleWhileRevalidate;
+    }
+
+    /**
+     * Get the time a stale response may be used if revalidation fails.
+     *
+     * @return the time in seconds, or {@link #UNSET}.
+     */
+    long getStaleIfError() {
+        return mStaleIfError;
+    }
+
+    /**
+     * Parse the argument of a delta seconds directive.
+     *
+     * @param argument the argument, possibly quoted.
+     * @return the seconds, or {@link #UNSET} if the argument is missing or malformed.
+     */
+    private static long parseSeconds(String argument) {
+        if (argument == null) {
+            return UNSET;
+        }
+        if (argument.length() > 1 && argument.startsWith("\"") && argument.endsWith("\"")) {
+            argument = argument.substring(1, argument.length() - 1);
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(argument));
+        } catch (NumberFormatException e) {
+            return UNSET;
+        }
+    }
+}
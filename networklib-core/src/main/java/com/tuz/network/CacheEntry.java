@@ -0,0 +1,390 @@
+package com.tuz.network;
+
+import java.net.URLConnection;
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A response stored in the {@link MemoryCache}, along with the output most recently parsed
+ * from it.
+ */
+final class CacheEntry {
+
+    /**
+     * The key of the entry.
+     */
+    private final String mKey;
+
+    /**
+     * The http status.
+     */
+    private final int mStatus;
+
+    /**
+     * The mime type.
+     */
+    private final String mMime;
+
+    /**
+     * The response headers.
+     */
+    private final Set<Header> mHeaders;
+
+    /**
+     * The response body.
+     */
+    private final byte[] mBody;
+
+    /**
+     * The time the response was received in milliseconds.
+     */
+    private final long mReceivedAt;
+
+    /**
+     * The freshness lifetime in milliseconds.
+     */
+    private final long mLifetime;
+
+    /**
+     * The cache control directives of the response.
+     */
+    private final CacheControl mCacheControl;
+
+    /**
+     * The parser of the memoized output, or null.
+     */
+    private ResponseParser<?> mParser;
+
+    /**
+     * The memoized output parsed from the body, or null.
+     */
+    private Object mOutput;
+
+    /**
+     * Constructor.
+     *
+     * @param key        the key of the entry.
+     * @param status     the http status.
+     * @param mime       the mime type.
+     * @param headers    the response headers.
+     * @param body       the response body.
+     * @param receivedAt the time the response was received in milliseconds.
+     */
+    CacheEntry(String key, int status, String mime, Set<Header> headers, byte[] body,
+               long receivedAt) {
+        mKey = key;
+        mStatus = status;
+        mMime = mime;
+        mHeaders = headers;
+        mBody = body;
+        mReceivedAt = receivedAt;
+        mCacheControl = CacheControl.parse(getHeader(headers, Http.CACHE_CONTROL));
+        mLifetime = getLifetime(headers, mCacheControl, receivedAt);
+    }
+
+    /**
+     * Check if a response may be stored.
+     *
+     * @param response   the response.
+     * @param now        the current time in milliseconds.
+     * @param revalidate true if responses that can be revalidated are stored even if they are
+     *                   never fresh.
+     * @param stale      true if responses are stored to be served stale even if they are
+     *                   never fresh.
+     * @return true if the response is successful, allowed to be stored and either fresh for
+     * some time, possible to revalidate or stored to be served stale.
+     */
+    static boolean isStorable(Response response, long now, boolean revalidate, boolean stale) {
+        Set<Header> headers = response.getHeaders();
+        CacheControl control = CacheControl.parse(getHeader(headers, Http.CACHE_CONTROL));
+        String vary = getHeader(headers, Http.VARY);
+
+        if (response.getStatus() != Http.STATUS_OK || control.isNoStore()
+                || (vary != null && !vary.trim().equalsIgnoreCase(Http.ACCEPT_ENCODING))) {
+            return false;
+        }
+        return stale || getLifetime(headers, control, now) > 0
+                || (revalidate && (getHeader(headers, Http.ETAG) != null
+                || getHeader(headers, Http.LAST_MODIFIED) != null));
+    }
+
+    /**
+     * Create the entry refreshed by a not modified response, with the headers of the not
+     * modified response replacing the stored headers. The memoized output is kept since the
+     * body is the same.
+     *
+     * @param headers    the headers of the not modified response.
+     * @param receivedAt the time the response was received in milliseconds.
+     * @return the refreshed entry.
+     */
+    CacheEntry refresh(Set<Header> headers, long receivedAt) {
+        Set<Header> merged = new HashSet<>();
+
+        for (Header header : mHeaders) {
+            if (header.getKey() == null || getHeader(headers, header.getKey()) == null
+                    || isContentHeader(header.getKey())) {
+                merged.add(header);
+            }
+        }
+        for (Header header : headers) {
+            if (header.getKey() != null && !isContentHeader(header.getKey())) {
+                merged.add(header);
+            }
+        }
+
+        CacheEntry entry = new CacheEntry(mKey, mStatus, mMime, merged, mBody, receivedAt);
+        synchronized (this) {
+            entry.setOutput(mParser, mOutput);
+        }
+        return entry;
+    }
+
+    /**
+     * Add the conditional headers revalidating the entry to a connection.
+     *
+     * @param connection the connection.
+     * @return true if the entry has a validator, otherwise no headers were added.
+     */
+    boolean addConditionalHeaders(URLConnection connection) {
+        String etag = getHeader(mHeaders, Http.ETAG);
+        String lastModified = getHeader(mHeaders, Http.LAST_MODIFIED);
+
+        if (etag != null) {
+            connection.setRequestProperty(Http.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty(Http.IF_MODIFIED_SINCE, lastModified);
+        }
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Get the memoized output.
+     *
+     * @param parser the parser, compared by identity.
+     * @return the output, or null if no output of the parser is memoized.
+     */
+    synchronized Object getOutput(ResponseParser<?> parser) {
+        return parser == mParser ? mOutput : null;
+    }
+
+    /**
+     * Memoize the output parsed from the body.
+     *
+     * @param parser the parser, or null.
+     * @param output the output, or null.
+     */
+    synchronized void setOutput(ResponseParser<?> parser, Object output) {
+        mParser = parser;
+        mOutput = output;
+    }
+
+    /**
+     * Get the key of the entry.
+     *
+     * @return the key.
+     */
+    String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Get the http status.
+     *
+     * @return the status.
+     */
+    int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * Get the mime type.
+     *
+     * @return the mime type.
+     */
+    String getMime() {
+        return mMime;
+    }
+
+    /**
+     * Get the response headers.
+     *
+     * @return the headers.
+     */
+    Set<Header> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * Get the response body.
+     *
+     * @return the body.
+     */
+    byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * Get the cache control directives of the response.
+     *
+     * @return the directives.
+     */
+    CacheControl getCacheControl() {
+        return mCacheControl;
+    }
+
+    /**
+     * Get the age of the entry.
+     *
+     * @param now the current time in milliseconds.
+     * @return the age in milliseconds.
+     */
+    long getAge(long now) {
+        return Math.max(0, now - mReceivedAt);
+    }
+
+    /**
+     * Check if the entry may be used without revalidation.
+     *
+     * @param now the current time in milliseconds.
+     * @return true if the entry is fresh.
+     */
+    boolean isFresh(long now) {
+        return !mCacheControl.isNoCache() && getAge(now) < mLifetime;
+    }
+
+    /**
+     * Get how long the entry has been stale.
+     *
+     * @param now the current time in milliseconds.
+     * @return the time in milliseconds since the entry became stale, or a negative value if it
+     * is still fresh.
+     */
+    long getStaleness(long now) {
+        return getAge(now) - mLifetime;
+    }
+
+    /**
+     * Check if the entry may be served stale under a cache policy.
+     *
+     * @param policy the cache policy.
+     * @param now    the current time in milliseconds.
+     * @param error  true if the network failed, false if the entry would be served while it
+     *               is refreshed.
+     * @return true if the entry may be served.
+     */
+    boolean isServableStale(CachePolicy policy, long now, boolean error) {
+        switch (policy) {
+            case OFFLINE_FIRST:
+                return true;
+            case STALE_WHILE_REVALIDATE:
+                long window = error ? mCacheControl.getStaleIfError()
+                        : mCacheControl.getStaleWhileRevalidate();
+                return !mCacheControl.isMustRevalidate() && window != CacheControl.UNSET
+                        && getStaleness(now) <= TimeUnit.SECONDS.toMillis(window);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the number of bytes the entry occupies in the cache, which is estimated from the
+     * body and headers.
+     *
+     * @return the size in bytes.
+     */
+    long size() {
+        long size = mBody.length;
+        for (Header header : mHeaders) {
+            size += length(header.getKey()) + length(header.getValue());
+        }
+        return size;
+    }
+
+    /**
+     * Get the first value of a header.
+     *
+     * @param headers the headers.
+     * @param key     the header key, matched ignoring case.
+     * @return the value, or null if there is no such header.
+     */
+    static String getHeader(Set<Header> headers, String key) {
+        for (Header header : headers) {
+            if (key.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the freshness lifetime of a response, from the max age directive or else the expires
+     * header, less the age of the response when it was received.
+     *
+     * @param headers    the response headers.
+     * @param control    the cache control directives.
+     * @param receivedAt the time the response was received in milliseconds.
+     * @return the lifetime in milliseconds, or 0 if the response is not fresh.
+     */
+    private static long getLifetime(Set<Header> headers, CacheControl control,
+                                    long receivedAt) {
+        long lifetime = 0;
+
+        if (control.getMaxAge() != CacheControl.UNSET) {
+            lifetime = TimeUnit.SECONDS.toMillis(control.getMaxAge());
+        } else {
+            String expires = getHeader(headers, Http.EXPIRES);
+            if (expires != null) {
+                try {
+                    String date = getHeader(headers, Http.DATE);
+                    long served = date != null ? Http.parseDate(date) : receivedAt;
+                    lifetime = Http.parseDate(expires) - served;
+                } catch (ParseException e) {
+                    // An invalid expires header means already expired.
+                    lifetime = 0;
+                }
+            }
+        }
+
+        String age = getHeader(headers, Http.AGE);
+        if (age != null) {
+            try {
+                lifetime -= TimeUnit.SECONDS.toMillis(Long.parseLong(age.trim()));
+            } catch (NumberFormatException e) {
+                // Ignore a malformed age.
+            }
+        }
+        return Math.max(0, lifetime);
+    }
+
+    /**
+     * Check if a header describes the body, and is therefore not replaced by the headers of a
+     * not modified response.
+     *
+     * @param key the header key.
+     * @return true for content headers.
+     */
+    private static boolean isContentHeader(String key) {
+        return key.equalsIgnoreCase(Http.CONTENT_LENGTH) || key.equalsIgnoreCase(Http.CONTENT_TYPE)
+                || key.equalsIgnoreCase(Http.CONTENT_ENCODING)
+                || key.equalsIgnoreCase("Transfer-Encoding");
+    }
+
+    /**
+     * Get the length of a string, which is null safe.
+     *
+     * @param value the string, or null.
+     * @return the length.
+     */
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s %d (%d bytes)", mKey, mStatus, mBody.length);
+    }
+}
@@ -0,0 +1,65 @@
+package com.tuz.network;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched flushing of the disk cache in the background.
+ * <p>
+ * Flushing the response cache of the platform writes its journal to disk, which is too
+ * slow to do on the request path after every cached response. Instead a flush is scheduled
+ * after a delay, and every request completing in the meantime shares it.
+ */
+final class CacheFlusher {
+
+    /**
+     * The delay before a requested flush in milliseconds.
+     */
+    static final long FLUSH_DELAY_MILLIS = 2000;
+
+    /**
+     * The executor running the flushes.
+     */
+    private static ScheduledExecutorService sExecutor;
+
+    /**
+     * Flag for if a flush is scheduled.
+     */
+    private static boolean sScheduled;
+
+    /**
+     * Constructor.
+     */
+    private CacheFlusher() {
+    }
+
+    /**
+     * Request a flush of the disk cache, which is done in the background after a delay unless
+     * one is already scheduled.
+     */
+    static synchronized void requestFlush() {
+        if (sScheduled || !Setup.getPlatform().isCacheInstalled()) {
+            return;
+        }
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "CacheFlusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        sScheduled = true;
+        sExecutor.schedule(CacheFlusher::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flush the disk cache now.
+     */
+    static void flush() {
+        synchronized (CacheFlusher.class) {
+            sScheduled = false;
+        }
+        Setup.getPlatform().flushCache();
+    }
+}
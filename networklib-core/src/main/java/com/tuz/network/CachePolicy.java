@@ -0,0 +1,29 @@
+package com.tuz.network;
+
+/**
+ * Policy for serving stale responses from the memory cache.
+ *
+ * @see RequestBuilder#setCachePolicy(CachePolicy)
+ * @see Setup#setMemoryCache(MemoryCache)
+ */
+public enum CachePolicy {
+
+    /**
+     * Stale responses are never served, which is the default.
+     */
+    NETWORK,
+
+    /**
+     * A stale response is served immediately while it is refreshed in the background, within
+     * the {@code stale-while-revalidate} time of the response. If the network fails, a stale
+     * response is served instead within its {@code stale-if-error} time. Responses with
+     * {@code must-revalidate} are never served stale.
+     */
+    STALE_WHILE_REVALIDATE,
+
+    /**
+     * Any cached response is served immediately however stale it is, and refreshed in the
+     * background if it is stale. If the network fails, a cached response is served instead.
+     */
+    OFFLINE_FIRST
+}
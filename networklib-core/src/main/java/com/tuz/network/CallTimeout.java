@@ -0,0 +1,116 @@
+package com.tuz.network;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of a whole call, covering connecting, writing the body, reading and parsing the
+ * response and any retries.
+ * <p>
+ * A single shared watchdog thread runs the timeout action when the deadline passes, which is
+ * expected to abort the blocking network operation, typically by disconnecting the
+ * connection.
+ *
+ * @see RequestBuilder#setCallTimeout(long, TimeUnit)
+ */
+final class CallTimeout implements Runnable {
+
+    /**
+     * The watchdog executor.
+     */
+    private static ScheduledExecutorService sWatchdog;
+
+    /**
+     * The action run when the deadline passes.
+     */
+    private final Runnable mAction;
+
+    /**
+     * The deadline in nanoseconds, or 0 if there is no deadline.
+     */
+    private final long mDeadline;
+
+    /**
+     * The scheduled timeout, or null if there is no deadline.
+     */
+    private final ScheduledFuture<?> mFuture;
+
+    /**
+     * Flag for if the deadline has passed.
+     */
+    private volatile boolean mExpired;
+
+    /**
+     * Constructor, starting the timeout.
+     *
+     * @param timeout the timeout in milliseconds, or 0 for no deadline.
+     * @param action  the action run when the deadline passes.
+     */
+    CallTimeout(long timeout, Runnable action) {
+        mAction = action;
+        if (timeout > 0) {
+            mDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            mFuture = getWatchdog().schedule(this, timeout, TimeUnit.MILLISECONDS);
+        } else {
+            mDeadline = 0;
+            mFuture = null;
+        }
+    }
+
+    /**
+     * Check if the deadline has passed.
+     *
+     * @return true if the call has timed out.
+     */
+    boolean isExpired() {
+        return mExpired;
+    }
+
+    /**
+     * Get the time remaining until the deadline.
+     *
+     * @return the time in milliseconds, or {@link Long#MAX_VALUE} if there is no deadline.
+     */
+    long getRemaining() {
+        if (mFuture == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(mDeadline - System.nanoTime()));
+    }
+
+    /**
+     * Cancel the timeout when the call is done.
+     */
+    void cancel() {
+        if (mFuture != null) {
+            mFuture.cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        mExpired = true;
+        mAction.run();
+    }
+
+    /**
+     * Get the watchdog executor, creating it on first use.
+     *
+     * @return the executor.
+     */
+    private static synchronized ScheduledExecutorService getWatchdog() {
+        if (sWatchdog == null) {
+            ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1,
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "CallTimeout");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            watchdog.setRemoveOnCancelPolicy(true);
+            sWatchdog = watchdog;
+        }
+        return sWatchdog;
+    }
+}
@@ -0,0 +1,286 @@
+package com.tuz.network;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool for keeping connections alive between requests.
+ * <p>
+ * The sockets themselves are pooled by the platform {@link java.net.HttpURLConnection}
+ * implementation. When a pool is installed a closed response is drained and released instead
+ * of disconnected, which lets the platform reuse the connection for the next request to the
+ * same host. The pool keeps track of the released connections per host so that no more than
+ * the max number of idle connections are kept.
+ * <p>
+ * The platform does not report whether a request reused a socket, so the hit and miss counts
+ * are estimates from this bookkeeping. The platform may still close an idle connection
+ * earlier, for example when the server sends a shorter keep alive timeout.
+ *
+ * @see Setup#setConnectionPool(ConnectionPool)
+ */
+public final class ConnectionPool {
+
+    /**
+     * The default max number of idle connections per host.
+     */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * The default keep alive duration in milliseconds.
+     */
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The max number of bytes to drain from a response before giving up on reusing the
+     * connection.
+     */
+    static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    /**
+     * The system property enabling keep alive in the platform.
+     */
+    private static final String KEEP_ALIVE = "http.keepAlive";
+
+    /**
+     * The system property with the max number of idle connections per host of the platform.
+     */
+    private static final String MAX_CONNECTIONS = "http.maxConnections";
+
+    /**
+     * The system property with the keep alive duration of the platform, in milliseconds.
+     */
+    private static final String KEEP_ALIVE_DURATION = "http.keepAliveDuration";
+
+    /**
+     * The max number of idle connections per host.
+     */
+    private final int mMaxIdleConnections;
+
+    /**
+     * The keep alive duration in milliseconds.
+     */
+    private final long mKeepAliveMillis;
+
+    /**
+     * The release times of the idle connections per host, most recently released last.
+     */
+    private final Map<String, ArrayDeque<Long>> mIdleConnections;
+
+    /**
+     * The estimated number of requests that found an idle connection.
+     */
+    private final AtomicLong mHitCount;
+
+    /**
+     * The estimated number of requests that needed a new connection.
+     */
+    private final AtomicLong mMissCount;
+
+    /**
+     * The number of connections that were closed instead of kept idle.
+     */
+    private final AtomicLong mEvictionCount;
+
+    /**
+     * Constructor using the default settings.
+     */
+    public ConnectionPool() {
+        this(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxIdleConnections the max number of idle connections per host.
+     * @param keepAlive          the time an idle connection is kept alive.
+     * @param unit               the unit of the keep alive time.
+     * @throws IllegalArgumentException if any of the values are negative.
+     */
+    public ConnectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+        if (maxIdleConnections < 0 || keepAlive < 0) {
+            throw new IllegalArgumentException("Values cannot be negative.");
+        }
+        mMaxIdleConnections = maxIdleConnections;
+        mKeepAliveMillis = unit.toMillis(keepAlive);
+        mIdleConnections = new HashMap<>();
+        mHitCount = new AtomicLong();
+        mMissCount = new AtomicLong();
+        mEvictionCount = new AtomicLong();
+    }
+
+    /**
+     * Get the max number of idle connections per host.
+     *
+     * @return the max number of idle connections.
+     */
+    public int getMaxIdleConnections() {
+        return mMaxIdleConnections;
+    }
+
+    /**
+     * Get the keep alive duration, after which an idle connection is no longer counted as
+     * available.
+     *
+     * @return the keep alive duration in milliseconds.
+     */
+    public long getKeepAliveMillis() {
+        return mKeepAliveMillis;
+    }
+
+    /**
+     * Get the estimated number of requests that found an idle connection to reuse.
+     *
+     * @return the estimated hit count.
+     */
+    public long getEstimatedHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * Get the estimated number of requests that needed a new connection.
+     *
+     * @return the estimated miss count.
+     */
+    public long getEstimatedMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Get the number of connections that were closed because they expired or because the
+     * host already had the max number of idle connections.
+     *
+     * @return the eviction count.
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    /**
+     * Get the number of idle connections for all hosts.
+     *
+     * @return the idle count.
+     */
+    public synchronized int getIdleCount() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+
+        for (ArrayDeque<Long> idle : mIdleConnections.values()) {
+            evictExpired(idle, now);
+            count += idle.size();
+        }
+        return count;
+    }
+
+    /**
+     * Apply the settings of the pool to the platform connection pool through the process wide
+     * system properties. The platform reads these settings when its pool is created, so this
+     * must be done before the first request.
+     * <p>
+     * Only the Android platform reads the keep alive duration. The JDK keeps idle connections
+     * for the timeout sent by the server, or five seconds.
+     *
+     * @return the previous values of the properties, null for the ones that were not set.
+     * @see #restorePlatform(Map)
+     */
+    Map<String, String> applyToPlatform() {
+        Map<String, String> previous = new HashMap<>();
+        previous.put(KEEP_ALIVE, setProperty(KEEP_ALIVE, String.valueOf(mMaxIdleConnections > 0)));
+        previous.put(MAX_CONNECTIONS, setProperty(MAX_CONNECTIONS,
+                String.valueOf(mMaxIdleConnections)));
+        previous.put(KEEP_ALIVE_DURATION, setProperty(KEEP_ALIVE_DURATION,
+                String.valueOf(mKeepAliveMillis)));
+        return previous;
+    }
+
+    /**
+     * Restore the platform properties replaced by {@link #applyToPlatform()}.
+     *
+     * @param previous the previous values of the properties.
+     */
+    static void restorePlatform(Map<String, String> previous) {
+        for (Map.Entry<String, String> property : previous.entrySet()) {
+            setProperty(property.getKey(), property.getValue());
+        }
+    }
+
+    /**
+     * Set or clear a system property.
+     *
+     * @param key   the key of the property.
+     * @param value the value, or null to clear the property.
+     * @return the previous value, or null if it was not set.
+     */
+    private static String setProperty(String key, String value) {
+        return value != null ? System.setProperty(key, value) : System.clearProperty(key);
+    }
+
+    /**
+     * Record a request to a host, taking one of its idle connections if there is any.
+     *
+     * @param host the host.
+     * @return true if an idle connection was counted as reused, otherwise false.
+     */
+    synchronized boolean acquire(String host) {
+        ArrayDeque<Long> idle = mIdleConnections.get(host);
+        boolean hit = false;
+
+        if (idle != null) {
+            evictExpired(idle, System.currentTimeMillis());
+            hit = idle.pollLast() != null;
+            if (idle.isEmpty()) {
+                mIdleConnections.remove(host);
+            }
+        }
+
+        if (hit) {
+            mHitCount.incrementAndGet();
+        } else {
+            mMissCount.incrementAndGet();
+        }
+        return hit;
+    }
+
+    /**
+     * Release a drained connection to a host.
+     *
+     * @param host the host.
+     * @return true if the connection should be kept alive, false if it should be closed.
+     */
+    synchronized boolean release(String host) {
+        ArrayDeque<Long> idle = mIdleConnections.get(host);
+
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            mIdleConnections.put(host, idle);
+        }
+        evictExpired(idle, System.currentTimeMillis());
+
+        boolean keep = idle.size() < mMaxIdleConnections;
+        if (keep) {
+            idle.addLast(System.currentTimeMillis());
+        } else {
+            mEvictionCount.incrementAndGet();
+        }
+
+        if (idle.isEmpty()) {
+            mIdleConnections.remove(host);
+        }
+        return keep;
+    }
+
+    /**
+     * Remove the connections that have been idle longer than the keep alive duration.
+     *
+     * @param idle the release times of the idle connections.
+     * @param now  the current time.
+     */
+    private void evictExpired(ArrayDeque<Long> idle, long now) {
+        while (!idle.isEmpty() && now - idle.peekFirst() > mKeepAliveMillis) {
+            idle.pollFirst();
+            mEvictionCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.tuz.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Codec of a http content coding, such as {@code gzip}.
+ * <p>
+ * Codecs registered with {@link ContentCodecs} are advertised in the {@code Accept-Encoding}
+ * header of requests and used to decode responses while they are read, and a codec can be used
+ * to encode request bodies.
+ *
+ * @see ContentCodecs#register(ContentCodec)
+ * @see RequestBuilder#setBodyEncoding(ContentCodec)
+ */
+public interface ContentCodec {
+
+    /**
+     * Get the name of the content coding.
+     *
+     * @return the name used in the {@code Content-Encoding} header, for example {@code br}.
+     */
+    String getEncoding();
+
+    /**
+     * Wrap a stream of encoded content in a stream decoding it as it is read.
+     *
+     * @param is the encoded stream.
+     * @return the decoded stream.
+     * @throws IOException if the content is malformed.
+     */
+    InputStream decode(InputStream is) throws IOException;
+
+    /**
+     * Wrap a stream in a stream encoding the content written to it. Closing the returned stream
+     * finishes the encoding and closes the wrapped stream.
+     *
+     * @param os the stream receiving the encoded content.
+     * @return the encoding stream.
+     * @throws IOException if writing fails.
+     */
+    OutputStream encode(OutputStream os) throws IOException;
+}
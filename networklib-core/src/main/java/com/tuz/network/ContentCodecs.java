@@ -0,0 +1,412 @@
+package com.tuz.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Registry of the content codecs used for compressed requests and responses.
+ * <p>
+ * The {@code gzip} and {@code deflate} codecs are registered by default. Other codecs, such as
+ * brotli backed by a native library, can be registered and are then advertised in the
+ * {@code Accept-Encoding} header in registration order. The registry also keeps the total
+ * number of bytes sent and received before and after coding, to tell what compression saves.
+ */
+public final class ContentCodecs {
+
+    /**
+     * The gzip codec.
+     */
+    public static final ContentCodec GZIP = new GzipCodec(Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * The deflate codec, which decodes both zlib wrapped and raw deflate content since servers
+     * send either.
+     */
+    public static final ContentCodec DEFLATE = new DeflateCodec(Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * The registered codecs by encoding.
+     */
+    private static final Map<String, ContentCodec> sCodecs = new LinkedHashMap<>();
+
+    /**
+     * The number of encoded bytes received.
+     */
+    private static final LongAdder sEncodedReceived = new LongAdder();
+
+    /**
+     * The number of decoded bytes received.
+     */
+    private static final LongAdder sDecodedReceived = new LongAdder();
+
+    /**
+     * The number of unencoded body bytes sent.
+     */
+    private static final LongAdder sRawSent = new LongAdder();
+
+    /**
+     * The number of encoded body bytes sent.
+     */
+    private static final LongAdder sEncodedSent = new LongAdder();
+
+    /**
+     * The accept encoding header value, or null if it must be built again.
+     */
+    private static String sAcceptEncoding;
+
+    /**
+     * The ids of the preset dictionaries accepted by each host.
+     */
+    private static final Map<String, Set<String>> sAcceptedDictionaries =
+            new ConcurrentHashMap<>();
+
+    static {
+        register(GZIP);
+        register(DEFLATE);
+    }
+
+    /**
+     * Constructor.
+     */
+    private ContentCodecs() {
+    }
+
+    /**
+     * Create a gzip codec with a compression level. A higher level compresses small and
+     * repetitive bodies better at a higher cost in CPU.
+     *
+     * @param level the level, from {@link Deflater#BEST_SPEED} to
+     *              {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @return the codec.
+     * @throws IllegalArgumentException if the level is invalid.
+     */
+    public static ContentCodec gzip(int level) {
+        return new GzipCodec(checkLevel(level));
+    }
+
+    /**
+     * Create a deflate codec with a compression level.
+     *
+     * @param level the level, from {@link Deflater#BEST_SPEED} to
+     *              {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @return the codec.
+     * @throws IllegalArgumentException if the level is invalid.
+     * @see DictionaryCodec
+     */
+    public static ContentCodec deflate(int level) {
+        return new DeflateCodec(checkLevel(level));
+    }
+
+    /**
+     * Register a codec, replacing any codec of the same encoding.
+     *
+     * @param codec the codec.
+     */
+    public static synchronized void register(ContentCodec codec) {
+        sCodecs.put(codec.getEncoding().toLowerCase(Locale.US), codec);
+        sAcceptEncoding = null;
+    }
+
+    /**
+     * Unregister the codec of an encoding, which is then no longer advertised.
+     *
+     * @param encoding the encoding.
+     */
+    public static synchronized void unregister(String encoding) {
+        sCodecs.remove(encoding.toLowerCase(Locale.US));
+        sAcceptEncoding = null;
+    }
+
+    /**
+     * Get the codec of an encoding.
+     *
+     * @param encoding the encoding, matched ignoring case.
+     * @return the codec, or null if none is registered.
+     */
+    public static synchronized ContentCodec get(String encoding) {
+        return encoding != null ? sCodecs.get(encoding.trim().toLowerCase(Locale.US)) : null;
+    }
+
+    /**
+     * Get the value of the {@code Accept-Encoding} header advertising the registered codecs.
+     *
+     * @return the header value, or null if no codec is registered.
+     */
+    public static synchronized String getAcceptEncoding() {
+        if (sAcceptEncoding == null && !sCodecs.isEmpty()) {
+            StringBuilder builder = new StringBuilder();
+            for (String encoding : sCodecs.keySet()) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(encoding);
+            }
+            sAcceptEncoding = builder.toString();
+        }
+        return sAcceptEncoding;
+    }
+
+    /**
+     * Get the total number of encoded response bytes received.
+     *
+     * @return the number of bytes.
+     */
+    public static long getEncodedBytesReceived() {
+        return sEncodedReceived.sum();
+    }
+
+    /**
+     * Get the total number of response bytes received after decoding.
+     *
+     * @return the number of bytes.
+     */
+    public static long getDecodedBytesReceived() {
+        return sDecodedReceived.sum();
+    }
+
+    /**
+     * Get the total number of encoded request body bytes before encoding.
+     *
+     * @return the number of bytes.
+     */
+    public static long getRawBytesSent() {
+        return sRawSent.sum();
+    }
+
+    /**
+     * Get the total number of encoded request body bytes sent.
+     *
+     * @return the number of bytes.
+     */
+    public static long getEncodedBytesSent() {
+        return sEncodedSent.sum();
+    }
+
+    /**
+     * Check a compression level.
+     *
+     * @param level the level.
+     * @return the level.
+     * @throws IllegalArgumentException if the level is invalid.
+     */
+    static int checkLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+        return level;
+    }
+
+    /**
+     * Create a stream deflating to a stream, which releases the native memory of the deflater
+     * when closed.
+     *
+     * @param os       the stream receiving the deflated content.
+     * @param deflater the deflater.
+     * @return the deflating stream.
+     */
+    static OutputStream newDeflaterStream(OutputStream os, final Deflater deflater) {
+        return new DeflaterOutputStream(os, deflater, BufferPool.MIN_CHUNK_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a stream inflating a stream, which releases the native memory of the inflater
+     * when closed.
+     *
+     * @param is       the stream of deflated content.
+     * @param inflater the inflater.
+     * @return the inflating stream.
+     */
+    static InputStream newInflaterStream(InputStream is, final Inflater inflater) {
+        return new InflaterInputStream(is, inflater, BufferPool.MIN_CHUNK_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Record the preset dictionaries a host accepts, as advertised in a response.
+     *
+     * @param host  the host.
+     * @param value the value of the {@code Accept-Dictionary} header, or null if there is none.
+     */
+    static void acceptDictionaries(String host, String value) {
+        if (value == null) {
+            return;
+        }
+        Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        for (String id : value.split(",")) {
+            id = id.trim();
+            if (!id.isEmpty()) {
+                ids.add(id);
+            }
+        }
+        sAcceptedDictionaries.put(host, ids);
+    }
+
+    /**
+     * Forget that a host accepts a preset dictionary, after it rejected a body encoded with it.
+     *
+     * @param host the host.
+     * @param id   the id of the dictionary.
+     */
+    static void revokeDictionary(String host, String id) {
+        Set<String> ids = sAcceptedDictionaries.get(host);
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+
+    /**
+     * Check if a host accepts a preset dictionary.
+     *
+     * @param host the host.
+     * @param id   the id of the dictionary.
+     * @return true if the host has advertised the dictionary.
+     */
+    static boolean isDictionaryAccepted(String host, String id) {
+        Set<String> ids = sAcceptedDictionaries.get(host);
+        return ids != null && ids.contains(id);
+    }
+
+    /**
+     * Add to the received byte totals.
+     *
+     * @param encoded the number of encoded bytes.
+     * @param decoded the number of decoded bytes.
+     */
+    static void addReceived(long encoded, long decoded) {
+        sEncodedReceived.add(encoded);
+        sDecodedReceived.add(decoded);
+    }
+
+    /**
+     * Add to the sent byte totals.
+     *
+     * @param raw     the number of bytes before encoding.
+     * @param encoded the number of encoded bytes.
+     */
+    static void addSent(long raw, long encoded) {
+        sRawSent.add(raw);
+        sEncodedSent.add(encoded);
+    }
+
+    /**
+     * The gzip codec.
+     */
+    private static final class GzipCodec implements ContentCodec {
+
+        /**
+         * The compression level.
+         */
+        private final int mLevel;
+
+        /**
+         * Constructor.
+         *
+         * @param level the compression level.
+         */
+        GzipCodec(int level) {
+            mLevel = level;
+        }
+
+        @Override
+        public String getEncoding() {
+            return Http.ENCODING_GZIP;
+        }
+
+        @Override
+        public InputStream decode(InputStream is) throws IOException {
+            return new GZIPInputStream(is, BufferPool.MIN_CHUNK_SIZE);
+        }
+
+        @Override
+        public OutputStream encode(OutputStream os) throws IOException {
+            return new GZIPOutputStream(os, BufferPool.MIN_CHUNK_SIZE) {
+                {
+                    def.setLevel(mLevel);
+                }
+            };
+        }
+    }
+
+    /**
+     * The deflate codec.
+     */
+    private static final class DeflateCodec implements ContentCodec {
+
+        /**
+         * The compression level.
+         */
+        private final int mLevel;
+
+        /**
+         * Constructor.
+         *
+         * @param level the compression level.
+         */
+        DeflateCodec(int level) {
+            mLevel = level;
+        }
+
+        @Override
+        public String getEncoding() {
+            return Http.ENCODING_DEFLATE;
+        }
+
+        @Override
+        public InputStream decode(InputStream is) throws IOException {
+            PushbackInputStream pushback = new PushbackInputStream(is, 2);
+            byte[] header = new byte[2];
+            int read = 0;
+            int count;
+
+            while (read < header.length
+                    && (count = pushback.read(header, read, header.length - read)) != -1) {
+                read += count;
+            }
+            pushback.unread(header, 0, read);
+
+            // A zlib header has deflate as method and a checksum divisible by 31.
+            int cmf = header[0] & 0xff;
+            boolean zlib = read == 2 && (cmf & 0x0f) == 8
+                    && ((cmf << 8) | (header[1] & 0xff)) % 31 == 0;
+            return newInflaterStream(pushback, new Inflater(!zlib));
+        }
+
+        @Override
+        public OutputStream encode(OutputStream os) throws IOException {
+            return newDeflaterStream(os, new Deflater(mLevel));
+        }
+    }
+}
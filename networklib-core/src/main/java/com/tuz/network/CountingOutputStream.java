@@ -0,0 +1,46 @@
+package com.tuz.network;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream counting the bytes written through it.
+ */
+final class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * The number of bytes written.
+     */
+    private long mCount;
+
+    /**
+     * Constructor.
+     *
+     * @param out the stream.
+     */
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Get the number of bytes written.
+     *
+     * @return the count.
+     */
+    long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        out.write(value);
+        mCount++;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+        mCount += length;
+    }
+}
@@ -0,0 +1,237 @@
+package com.tuz.network;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Deflate codec with a preset dictionary, for small and repetitive bodies such as json
+ * uploads.
+ * <p>
+ * Plain deflate starts every body with an empty history and compresses short bodies poorly.
+ * With a preset dictionary holding the field names and values common to the bodies, repeated
+ * content is replaced by references into the dictionary from the first byte. The dictionary is
+ * shared with the server out of band and identified by an id. A server advertises the ids of
+ * the dictionaries it holds with the {@code Accept-Dictionary} header in any response, and the
+ * body is then encoded with the dictionary and its id is sent in the {@code Content-Dictionary}
+ * header. Until the host has advertised the dictionary, or after it has rejected a body with
+ * status 415, bodies are encoded with plain deflate of the same level.
+ * <p>
+ * The encoding is a zlib stream, which also carries the Adler-32 checksum of the dictionary.
+ * The default id is that checksum in hex.
+ *
+ * @see RequestBuilder#setBodyEncoding(ContentCodec)
+ */
+public final class DictionaryCodec implements ContentCodec {
+
+    /**
+     * The id of the dictionary.
+     */
+    private final String mId;
+
+    /**
+     * The dictionary.
+     */
+    private final byte[] mDictionary;
+
+    /**
+     * The Adler-32 checksum of the dictionary.
+     */
+    private final long mChecksum;
+
+    /**
+     * The compression level.
+     */
+    private final int mLevel;
+
+    /**
+     * The codec used for hosts that do not accept the dictionary.
+     */
+    private final ContentCodec mFallback;
+
+    /**
+     * Constructor using the checksum of the dictionary as id.
+     *
+     * @param dictionary the dictionary, with the most common content last.
+     * @param level      the compression level.
+     * @throws IllegalArgumentException if the dictionary is empty or the level is invalid.
+     */
+    public DictionaryCodec(byte[] dictionary, int level) {
+        this(null, dictionary, level);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param id         the id of the dictionary, or null to use its checksum.
+     * @param dictionary the dictionary, with the most common content last.
+     * @param level      the compression level.
+     * @throws IllegalArgumentException if the dictionary is empty or the level is invalid.
+     */
+    public DictionaryCodec(String id, byte[] dictionary, int level) {
+        if (dictionary == null || dictionary.length == 0) {
+            throw new IllegalArgumentException("Dictionary cannot be empty.");
+        }
+        mDictionary = dictionary.clone();
+        mLevel = ContentCodecs.checkLevel(level);
+        mFallback = ContentCodecs.deflate(level);
+        Adler32 adler = new Adler32();
+        adler.update(mDictionary, 0, mDictionary.length);
+        mChecksum = adler.getValue();
+        mId = id != null ? id : String.format("%08x", mChecksum);
+    }
+
+    /**
+     * Get the id of the dictionary.
+     *
+     * @return the id.
+     */
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * Get the codec used for hosts that do not accept the dictionary.
+     *
+     * @return the plain deflate codec.
+     */
+    ContentCodec getFallback() {
+        return mFallback;
+    }
+
+    @Override
+    public String getEncoding() {
+        return Http.ENCODING_DEFLATE;
+    }
+
+    /**
+     * Wrap a stream of zlib content in a stream inflating it, with the dictionary if the content
+     * requires it. Raw deflate content is not supported.
+     *
+     * @param is the encoded stream.
+     * @return the decoded stream.
+     */
+    @Override
+    public InputStream decode(InputStream is) {
+        return new DictionaryInflaterStream(is);
+    }
+
+    @Override
+    public OutputStream encode(OutputStream os) {
+        Deflater deflater = new Deflater(mLevel);
+        deflater.setDictionary(mDictionary);
+        return ContentCodecs.newDeflaterStream(os, deflater);
+    }
+
+    /**
+     * Stream inflating zlib content, which sets the dictionary when the content requires one.
+     */
+    private final class DictionaryInflaterStream extends FilterInputStream {
+
+        /**
+         * The inflater.
+         */
+        private final Inflater mInflater = new Inflater();
+
+        /**
+         * The buffer of encoded content.
+         */
+        private final byte[] mBuffer = new byte[BufferPool.MIN_CHUNK_SIZE];
+
+        /**
+         * Buffer for single byte reads.
+         */
+        private final byte[] mSingle = new byte[1];
+
+        /**
+         * Flag for if the stream is closed.
+         */
+        private boolean mClosed;
+
+        /**
+         * Constructor.
+         *
+         * @param in the encoded stream.
+         */
+        DictionaryInflaterStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(mSingle, 0, 1) == -1 ? -1 : mSingle[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (mClosed) {
+                throw new IOException("Stream closed");
+            } else if (len == 0) {
+                return 0;
+            }
+
+            try {
+                while (true) {
+                    int count = mInflater.inflate(b, off, len);
+                    if (count > 0) {
+                        return count;
+                    } else if (mInflater.finished()) {
+                        return -1;
+                    } else if (mInflater.needsDictionary()) {
+                        if (mInflater.getAdler() != mChecksum) {
+                            throw new ZipException("Unknown dictionary");
+                        }
+                        mInflater.setDictionary(mDictionary);
+                    } else if (mInflater.needsInput()) {
+                        int read = in.read(mBuffer, 0, mBuffer.length);
+                        if (read == -1) {
+                            throw new EOFException("Unexpected end of zlib stream");
+                        }
+                        mInflater.setInput(mBuffer, 0, read);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, BufferPool.MIN_CHUNK_SIZE)];
+            long skipped = 0;
+            int read;
+
+            while (skipped < n
+                    && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mClosed || mInflater.finished() ? 0 : 1;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!mClosed) {
+                mClosed = true;
+                mInflater.end();
+                in.close();
+            }
+        }
+    }
+}
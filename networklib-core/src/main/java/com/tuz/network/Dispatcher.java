@@ -0,0 +1,340 @@
+package com.tuz.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatcher for executing requests asynchronously on a bounded pool of worker threads.
+ * <p>
+ * Enqueued requests wait in a bounded queue and are promoted to a worker thread, in order,
+ * when both the total number of running requests and the number of running requests to the
+ * same host are below their limits. When the queue is full the {@link BackpressurePolicy}
+ * decides what happens with the new request.
+ *
+ * @see Setup#setDispatcher(Dispatcher)
+ * @see Request#executeAsync(RequestListener)
+ */
+public final class Dispatcher {
+
+    /**
+     * Policy for what to do when a request is enqueued to a full queue.
+     */
+    public enum BackpressurePolicy {
+
+        /**
+         * Reject the new request by throwing a {@link RejectedExecutionException}.
+         */
+        REJECT,
+
+        /**
+         * Block the calling thread until there is room in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Drop the oldest queued request to make room for the new request. The dropped
+         * request is finished as if it was cancelled.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * The default max number of concurrently running requests.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 8;
+
+    /**
+     * The default max number of concurrently running requests to a single host.
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+
+    /**
+     * The default max number of queued requests.
+     */
+    public static final int DEFAULT_MAX_QUEUED_REQUESTS = 1024;
+
+    /**
+     * The time an idle worker thread is kept alive.
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * The max number of concurrently running requests.
+     */
+    private final int mMaxRequests;
+
+    /**
+     * The max number of concurrently running requests to a single host.
+     */
+    private final int mMaxRequestsPerHost;
+
+    /**
+     * The max number of queued requests.
+     */
+    private final int mMaxQueuedRequests;
+
+    /**
+     * The backpressure policy.
+     */
+    private final BackpressurePolicy mPolicy;
+
+    /**
+     * The executor on which listener callbacks are delivered.
+     */
+    private final Executor mCallbackExecutor;
+
+    /**
+     * The worker threads.
+     */
+    private final ExecutorService mExecutorService;
+
+    /**
+     * The queued tasks in the order they were enqueued.
+     */
+    private final ArrayDeque<DispatcherTask> mQueuedTasks;
+
+    /**
+     * The running tasks.
+     */
+    private final Set<DispatcherTask> mRunningTasks;
+
+    /**
+     * The number of running tasks per host.
+     */
+    private final Map<String, Integer> mRunningTasksPerHost;
+
+    /**
+     * Constructor using the default limits.
+     *
+     * @param callbackExecutor the executor on which listener callbacks are delivered.
+     */
+    public Dispatcher(Executor callbackExecutor) {
+        this(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST, DEFAULT_MAX_QUEUED_REQUESTS,
+                BackpressurePolicy.REJECT, callbackExecutor);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxRequests        the max number of concurrently running requests, which is also
+     *                           the number of worker threads.
+     * @param maxRequestsPerHost the max number of concurrently running requests to one host.
+     * @param maxQueuedRequests  the max number of requests waiting for a worker thread.
+     * @param policy             the policy used when the queue is full.
+     * @param callbackExecutor   the executor on which listener callbacks are delivered.
+     * @throws IllegalArgumentException if any of the limits is less than one.
+     */
+    public Dispatcher(int maxRequests, int maxRequestsPerHost, int maxQueuedRequests,
+                      BackpressurePolicy policy, Executor callbackExecutor) {
+        if (maxRequests < 1 || maxRequestsPerHost < 1 || maxQueuedRequests < 1) {
+            throw new IllegalArgumentException("Limits must be at least one.");
+        }
+        if (policy == null || callbackExecutor == null) {
+            throw new NullPointerException("Neither policy nor callback executor can be null.");
+        }
+        mMaxRequests = maxRequests;
+        mMaxRequestsPerHost = maxRequestsPerHost;
+        mMaxQueuedRequests = maxQueuedRequests;
+        mPolicy = policy;
+        mCallbackExecutor = callbackExecutor;
+        mQueuedTasks = new ArrayDeque<>();
+        mRunningTasks = new HashSet<>();
+        mRunningTasksPerHost = new HashMap<>();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxRequests, maxRequests,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        mExecutorService = executor;
+    }
+
+    /**
+     * Get the max number of concurrently running requests.
+     *
+     * @return the max number of requests.
+     */
+    public int getMaxRequests() {
+        return mMaxRequests;
+    }
+
+    /**
+     * Get the max number of concurrently running requests to a single host.
+     *
+     * @return the max number of requests per host.
+     */
+    public int getMaxRequestsPerHost() {
+        return mMaxRequestsPerHost;
+    }
+
+    /**
+     * Get the number of requests waiting for a worker thread.
+     *
+     * @return the number of queued requests.
+     */
+    public synchronized int getQueuedCount() {
+        return mQueuedTasks.size();
+    }
+
+    /**
+     * Get the number of running requests.
+     *
+     * @return the number of running requests.
+     */
+    public synchronized int getRunningCount() {
+        return mRunningTasks.size();
+    }
+
+    /**
+     * Shut down the worker threads. Running requests are allowed to finish but requests
+     * enqueued after this call are rejected.
+     */
+    public void shutdown() {
+        mExecutorService.shutdown();
+    }
+
+    /**
+     * Get the executor on which listener callbacks are delivered.
+     *
+     * @return the callback executor.
+     */
+    Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    /**
+     * Enqueue a task for execution.
+     *
+     * @param task the task.
+     * @throws RejectedExecutionException if the task could not be enqueued.
+     */
+    void enqueue(DispatcherTask task) {
+        if (mExecutorService.isShutdown()) {
+            throw new RejectedExecutionException("Dispatcher is shut down.");
+        }
+        DispatcherTask dropped = null;
+
+        synchronized (this) {
+            while (mQueuedTasks.size() >= mMaxQueuedRequests) {
+                if (mPolicy == BackpressurePolicy.REJECT) {
+                    throw new RejectedExecutionException("Request queue is full.");
+                } else if (mPolicy == BackpressurePolicy.DROP_OLDEST) {
+                    dropped = mQueuedTasks.pollFirst();
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting.", e);
+                    }
+                }
+            }
+            mQueuedTasks.addLast(task);
+        }
+
+        if (dropped != null) {
+            dropped.drop();
+        }
+        task.onPreExecute();
+        promote();
+    }
+
+    /**
+     * Remove a queued task.
+     *
+     * @param task the task.
+     * @return true if the task was removed, false if it was not queued.
+     */
+    synchronized boolean remove(DispatcherTask task) {
+        boolean removed = mQueuedTasks.remove(task);
+        if (removed) {
+            notifyAll();
+        }
+        return removed;
+    }
+
+    /**
+     * Callback from a task when it has finished running.
+     *
+     * @param task the task.
+     */
+    void finished(DispatcherTask task) {
+        synchronized (this) {
+            if (mRunningTasks.remove(task)) {
+                String host = task.getHost();
+                int running = mRunningTasksPerHost.get(host) - 1;
+                if (running == 0) {
+                    mRunningTasksPerHost.remove(host);
+                } else {
+                    mRunningTasksPerHost.put(host, running);
+                }
+            }
+        }
+        promote();
+    }
+
+    /**
+     * Move queued tasks to the worker threads as long as the limits allow it.
+     */
+    private void promote() {
+        List<DispatcherTask> executable = new ArrayList<>();
+
+        synchronized (this) {
+            for (Iterator<DispatcherTask> it = mQueuedTasks.iterator(); it.hasNext()
+                    && mRunningTasks.size() < mMaxRequests; ) {
+                DispatcherTask task = it.next();
+                Integer running = mRunningTasksPerHost.get(task.getHost());
+
+                if (running == null || running < mMaxRequestsPerHost) {
+                    it.remove();
+                    mRunningTasks.add(task);
+                    mRunningTasksPerHost.put(task.getHost(), running == null ? 1 : running + 1);
+                    executable.add(task);
+                }
+            }
+            if (!executable.isEmpty()) {
+                notifyAll();
+            }
+        }
+
+        for (DispatcherTask task : executable) {
+            try {
+                mExecutorService.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.drop();
+                finished(task);
+            }
+        }
+    }
+
+    /**
+     * Thread factory for the worker threads.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        /**
+         * The number of created threads.
+         */
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Dispatcher-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
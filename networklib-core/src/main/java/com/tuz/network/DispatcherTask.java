@@ -0,0 +1,138 @@
+package com.tuz.network;
+
+/**
+ * Task run on the worker threads of a {@link Dispatcher}.
+ * <p>
+ * A task is run at most once. Cancelling a queued task removes it from the queue and drops
+ * it, while cancelling a running task aborts its work and interrupts its thread.
+ */
+abstract class DispatcherTask implements Runnable, Canceller {
+
+    /**
+     * The dispatcher running the task.
+     */
+    private final Dispatcher mDispatcher;
+
+    /**
+     * The host of the task.
+     */
+    private final String mHost;
+
+    /**
+     * The canceller aborting the work while it is running, or null.
+     */
+    private final Canceller mCanceller;
+
+    /**
+     * Flag for if the task is cancelled.
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * The thread running the task, or null if it is not running.
+     */
+    private Thread mThread;
+
+    /**
+     * Constructor.
+     *
+     * @param dispatcher the dispatcher.
+     * @param host       the host of the task.
+     * @param canceller  the canceller aborting the work while it is running, or null.
+     */
+    DispatcherTask(Dispatcher dispatcher, String host, Canceller canceller) {
+        mDispatcher = dispatcher;
+        mHost = host;
+        mCanceller = canceller;
+    }
+
+    /**
+     * Get the dispatcher running the task.
+     *
+     * @return the dispatcher.
+     */
+    final Dispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    /**
+     * Get the host of the task.
+     *
+     * @return the host.
+     */
+    final String getHost() {
+        return mHost;
+    }
+
+    /**
+     * Check if the task is cancelled.
+     *
+     * @return true if it is cancelled.
+     */
+    final boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Callback on the enqueuing thread when the task has been accepted by the dispatcher.
+     */
+    void onPreExecute() {
+    }
+
+    /**
+     * Do the work of the task on a worker thread, also when the task was cancelled before it
+     * started running.
+     */
+    abstract void execute();
+
+    /**
+     * Callback when the task is dropped from the queue, or cancelled while queued, so that it
+     * is never run.
+     */
+    abstract void onDropped();
+
+    /**
+     * Drop the task without running it.
+     */
+    final void drop() {
+        mCancelled = true;
+        onDropped();
+    }
+
+    @Override
+    public final void run() {
+        synchronized (this) {
+            mThread = Thread.currentThread();
+        }
+
+        try {
+            execute();
+        } finally {
+            synchronized (this) {
+                mThread = null;
+
+                // Clear a cancellation interrupt so it does not leak to the next task.
+                Thread.interrupted();
+            }
+            mDispatcher.finished(this);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        mCancelled = true;
+
+        if (mDispatcher.remove(this)) {
+            onDropped();
+        } else {
+            synchronized (this) {
+                if (mThread != null) {
+                    if (mCanceller != null) {
+                        mCanceller.cancel();
+                    }
+                    mThread.interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.tuz.network;
+
+/**
+ * Listener for the lifecycle events of requests, for measuring where the time of a call goes.
+ * <p>
+ * Every callback receives the request it belongs to and a timestamp from
+ * {@link System#nanoTime()}, so that durations are the differences between timestamps of the
+ * same request. A call starts and then either ends or fails once per execution, while the
+ * events in between are repeated for every attempt and may be left out, for example when the
+ * response is served from the memory cache or shared with an identical request in flight.
+ * <p>
+ * Callbacks are made on the thread executing the request, and from several threads at once
+ * for concurrent requests and segmented downloads, so implementations must be thread safe and
+ * fast. The default implementations do nothing.
+ *
+ * @see Setup#setEventListener(EventListener)
+ * @see RequestBuilder#setEventListener(EventListener)
+ */
+public abstract class EventListener {
+
+    /**
+     * Listener ignoring all events.
+     */
+    public static final EventListener NONE = new EventListener() {
+    };
+
+    /**
+     * Callback when a call starts.
+     *
+     * @param call  the request.
+     * @param nanos the timestamp.
+     */
+    public void callStart(Request<?> call, long nanos) {
+    }
+
+    /**
+     * Callback when a fresh response is served from the memory cache.
+     *
+     * @param call  the request.
+     * @param nanos the timestamp.
+     */
+    public void cacheHit(Request<?> call, long nanos) {
+    }
+
+    /**
+     * Callback before connecting, which includes the dns lookup and the tls handshake when the
+     * connection is not reused.
+     *
+     * @param call  the request.
+     * @param host  the host.
+     * @param nanos the timestamp.
+     */
+    public void connectStart(Request<?> call, String host, long nanos) {
+    }
+
+    /**
+     * Callback when connected.
+     *
+     * @param call  the request.
+     * @param host  the host.
+     * @param nanos the timestamp.
+     */
+    public void connectEnd(Request<?> call, String host, long nanos) {
+    }
+
+    /**
+     * Callback when the request line and headers are committed to the connection.
+     *
+     * @param call  the request.
+     * @param nanos the timestamp.
+     */
+    public void requestHeadersEnd(Request<?> call, long nanos) {
+    }
+
+    /**
+     * Callback when the request body has been written.
+     *
+     * @param call      the request.
+     * @param byteCount the number of body bytes written to the connection, after encoding.
+     * @param nanos     the timestamp.
+     */
+    public void requestBodyEnd(Request<?> call, long byteCount, long nanos) {
+    }
+
+    /**
+     * Callback when an encoded request body has been written, before
+     * {@link #requestBodyEnd(Request, long, long)}.
+     *
+     * @param call             the request.
+     * @param rawByteCount     the number of body bytes before encoding.
+     * @param encodedByteCount the number of body bytes written to the connection.
+     * @param nanos            the timestamp.
+     * @see RequestBuilder#setBodyEncoding(ContentCodec)
+     */
+    public void requestBodyEncoded(Request<?> call, long rawByteCount, long encodedByteCount,
+                                   long nanos) {
+    }
+
+    /**
+     * Callback when the response status and headers have been received.
+     *
+     * @param call   the request.
+     * @param status the http status.
+     * @param nanos  the timestamp.
+     */
+    public void responseHeadersEnd(Request<?> call, int status, long nanos) {
+    }
+
+    /**
+     * Callback when the response body is closed, which is after it has been parsed.
+     *
+     * @param call      the request.
+     * @param byteCount the number of body bytes read from the connection before decoding, or
+     *                  -1 if they are not counted.
+     * @param nanos     the timestamp.
+     */
+    public void responseBodyEnd(Request<?> call, long byteCount, long nanos) {
+    }
+
+    /**
+     * Callback when a response body decoded by a {@link ContentCodec} is closed, before
+     * {@link #responseBodyEnd(Request, long, long)}.
+     *
+     * @param call             the request.
+     * @param encodedByteCount the number of body bytes read from the connection.
+     * @param decodedByteCount the number of body bytes read after decoding.
+     * @param nanos            the timestamp.
+     */
+    public void responseBodyDecoded(Request<?> call, long encodedByteCount,
+                                    long decodedByteCount, long nanos) {
+    }
+
+    /**
+     * Callback before the response is parsed.
+     *
+     * @param call  the request.
+     * @param nanos the timestamp.
+     */
+    public void parseStart(Request<?> call, long nanos) {
+    }
+
+    /**
+     * Callback when the response has been parsed.
+     *
+     * @param call  the request.
+     * @param nanos the timestamp.
+     */
+    public void parseEnd(Request<?> call, long nanos) {
+    }
+
+    /**
+     * Callback when a call ends without an exception, which includes calls failing with an
+     * unsuccessful status.
+     *
+     * @param call  the request.
+     * @param nanos the timestamp.
+     */
+    public void callEnd(Request<?> call, long nanos) {
+    }
+
+    /**
+     * Callback when a call fails with an exception.
+     *
+     * @param call  the request.
+     * @param error the exception.
+     * @param nanos the timestamp.
+     */
+    public void callFailed(Request<?> call, NetworkException error, long nanos) {
+    }
+}
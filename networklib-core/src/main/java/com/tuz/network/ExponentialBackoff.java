@@ -0,0 +1,222 @@
+package com.tuz.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.security.cert.CertificateException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+
+/**
+ * Retry policy with exponential backoff and full jitter.
+ * <p>
+ * The delay before attempt {@code n + 1} is a random value between zero and
+ * {@code min(maxDelay, baseDelay * 2^(n - 1))}, or the delay requested by the server through
+ * {@code Retry-After} if that is longer. Requests are retried when they fail with a transient
+ * network error or with one of the retry statuses. Requests with a non idempotent method are
+ * only retried if they failed before reaching the server, unless explicitly allowed. Every
+ * retry is withdrawn from a {@link RetryBudget}.
+ *
+ * @see RequestBuilder#setRetryPolicy(RetryPolicy)
+ */
+public final class ExponentialBackoff implements RetryPolicy {
+
+    /**
+     * The default max number of retries.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * The default base delay in milliseconds.
+     */
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 200;
+
+    /**
+     * The default max delay in milliseconds.
+     */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30 * 1000;
+
+    /**
+     * The statuses retried by default: request timeout, too many requests, internal server
+     * error, bad gateway, service unavailable and gateway timeout.
+     */
+    private static final int[] DEFAULT_RETRY_STATUSES = {408, 429, 500, 502, 503, 504};
+
+    /**
+     * The max number of retries.
+     */
+    private final int mMaxRetries;
+
+    /**
+     * The base delay in milliseconds.
+     */
+    private final long mBaseDelayMillis;
+
+    /**
+     * The max delay in milliseconds.
+     */
+    private final long mMaxDelayMillis;
+
+    /**
+     * The statuses that are retried.
+     */
+    private final Set<Integer> mRetryStatuses;
+
+    /**
+     * Flag for if requests with a non idempotent method are retried.
+     */
+    private boolean mRetryNonIdempotent;
+
+    /**
+     * The retry budget, or null to use the budget of {@link Setup}.
+     */
+    private RetryBudget mBudget;
+
+    /**
+     * Constructor using the default settings.
+     */
+    public ExponentialBackoff() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxRetries      the max number of retries.
+     * @param baseDelayMillis the delay ceiling of the first retry in milliseconds.
+     * @param maxDelayMillis  the max delay ceiling in milliseconds.
+     * @throws IllegalArgumentException if any of the values are negative.
+     */
+    public ExponentialBackoff(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        if (maxRetries < 0 || baseDelayMillis < 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Values cannot be negative.");
+        }
+        mMaxRetries = maxRetries;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRetryStatuses = new HashSet<>();
+        for (int status : DEFAULT_RETRY_STATUSES) {
+            mRetryStatuses.add(status);
+        }
+    }
+
+    /**
+     * Set the statuses that are retried, replacing the default statuses.
+     *
+     * @param statuses the statuses.
+     * @return the policy instance.
+     */
+    public ExponentialBackoff setRetryStatuses(int... statuses) {
+        mRetryStatuses.clear();
+        for (int status : statuses) {
+            mRetryStatuses.add(status);
+        }
+        return this;
+    }
+
+    /**
+     * Set if requests with a non idempotent method, such as {@link Method#POST}, are retried
+     * even if they may have reached the server.
+     *
+     * @param retry flag for if non idempotent requests are retried, default is false.
+     * @return the policy instance.
+     */
+    public ExponentialBackoff setRetryNonIdempotent(boolean retry) {
+        mRetryNonIdempotent = retry;
+        return this;
+    }
+
+    /**
+     * Set the retry budget.
+     *
+     * @param budget the budget, or null to use the budget of {@link Setup}.
+     * @return the policy instance.
+     * @see Setup#getRetryBudget()
+     */
+    public ExponentialBackoff setBudget(RetryBudget budget) {
+        mBudget = budget;
+        return this;
+    }
+
+    @Override
+    public long getRetryDelay(Method method, int attempt, int status, Exception error,
+                              long retryAfter) {
+        if (attempt > mMaxRetries || retryAfter > mMaxDelayMillis) {
+            return NO_RETRY;
+        }
+
+        boolean retryable;
+        if (error != null) {
+            retryable = isRetryable(error)
+                    && (method.isIdempotent() || mRetryNonIdempotent || isNotSent(error));
+        } else {
+            retryable = mRetryStatuses.contains(status)
+                    && (method.isIdempotent() || mRetryNonIdempotent);
+        }
+
+        if (!retryable || !getBudget().tryWithdraw()) {
+            return NO_RETRY;
+        }
+
+        long ceiling = mBaseDelayMillis << Math.min(attempt - 1, 30);
+        if (ceiling < 0 || ceiling > mMaxDelayMillis) {
+            ceiling = mMaxDelayMillis;
+        }
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        return Math.max(delay, retryAfter);
+    }
+
+    @Override
+    public void onSuccess() {
+        getBudget().deposit();
+    }
+
+    /**
+     * Get the retry budget.
+     *
+     * @return the budget.
+     */
+    private RetryBudget getBudget() {
+        return mBudget != null ? mBudget : Setup.getRetryBudget();
+    }
+
+    /**
+     * Check if an exception is a transient network error.
+     *
+     * @param error the exception.
+     * @return true if the request may succeed if retried.
+     */
+    static boolean isRetryable(Exception error) {
+        if (error instanceof SocketTimeoutException) {
+            return true;
+        } else if (error instanceof InterruptedIOException) {
+            // Cancelled or out of time.
+            return false;
+        } else if (error instanceof SSLHandshakeException) {
+            return !(error.getCause() instanceof CertificateException);
+        } else if (error instanceof SSLPeerUnverifiedException
+                || error instanceof ProtocolException
+                || error instanceof MalformedURLException) {
+            return false;
+        }
+        return error instanceof IOException;
+    }
+
+    /**
+     * Check if an exception means that the request never reached the server.
+     *
+     * @param error the exception.
+     * @return true if the request was not sent.
+     */
+    private static boolean isNotSent(Exception error) {
+        return error instanceof ConnectException || error instanceof UnknownHostException;
+    }
+}
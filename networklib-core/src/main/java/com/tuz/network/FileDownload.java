@@ -0,0 +1,272 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser streaming the response body to a file.
+ * <p>
+ * The body is first written to a partial file next to the target, together with the
+ * validator of the response. If the transfer is interrupted the next execution of the
+ * request asks for the remaining bytes with a {@code Range} header, guarded by an
+ * {@code If-Range} header with the validator, and appends them to the partial file. When the
+ * transfer is complete the partial file is renamed to the target. A partial file that already
+ * holds the whole resource is completed when the server rejects the range request.
+ *
+ * @see RequestBuilder#newDownload(String, File)
+ */
+final class FileDownload implements ResponseParser<File> {
+
+    /**
+     * Suffix of the partial file.
+     */
+    private static final String PART_SUFFIX = ".part";
+
+    /**
+     * Suffix of the file holding the validator of the partial file.
+     */
+    private static final String VALIDATOR_SUFFIX = ".part.validator";
+
+    /**
+     * The number of bytes transferred from the response between progress updates.
+     */
+    private static final long TRANSFER_SIZE = 64 * 1024;
+
+    /**
+     * The target file.
+     */
+    private final File mTarget;
+
+    /**
+     * The partial file.
+     */
+    private final File mPartFile;
+
+    /**
+     * The validator file.
+     */
+    private final File mValidatorFile;
+
+    /**
+     * Flag for if interrupted transfers should be resumed.
+     */
+    private boolean mResumable;
+
+    /**
+     * The progress updater.
+     */
+    private ProgressUpdater mUpdater;
+
+    /**
+     * Constructor.
+     *
+     * @param target the target file.
+     */
+    FileDownload(File target) {
+        mTarget = target;
+        mPartFile = new File(target.getPath() + PART_SUFFIX);
+        mValidatorFile = new File(target.getPath() + VALIDATOR_SUFFIX);
+        mResumable = true;
+    }
+
+    /**
+     * Set if interrupted transfers should be resumed.
+     *
+     * @param resumable true to resume, false to always start over.
+     */
+    void setResumable(boolean resumable) {
+        mResumable = resumable;
+    }
+
+    /**
+     * Set the progress updater.
+     *
+     * @param updater the progress updater.
+     */
+    void setProgressUpdater(ProgressUpdater updater) {
+        mUpdater = updater;
+    }
+
+    /**
+     * Add the range headers to the connection if a partial file can be resumed.
+     *
+     * @param connection the connection.
+     */
+    void addRangeHeaders(HttpURLConnection connection) {
+        long offset = mPartFile.length();
+        String validator = mResumable ? readValidator() : null;
+
+        if (offset > 0 && validator != null) {
+            connection.setRequestProperty(Http.RANGE, Http.BYTES + "=" + offset + "-");
+            connection.setRequestProperty(Http.IF_RANGE, validator);
+        }
+    }
+
+    /**
+     * Check if a response rejecting the range request shows that the partial file already
+     * holds the whole resource, which is the case when a transfer was interrupted after its
+     * last byte was written.
+     *
+     * @param response the response.
+     * @return true if the partial file is complete.
+     */
+    boolean isComplete(Response response) {
+        if (response.getStatus() != Http.STATUS_RANGE_NOT_SATISFIABLE) {
+            return false;
+        }
+        long length = mPartFile.length();
+        return length > 0 && length == parseCompleteLength(response.getHeader(Http.CONTENT_RANGE));
+    }
+
+    @Override
+    public File parseResponse(Response response) throws Exception {
+        if (response.getStatus() == Http.STATUS_RANGE_NOT_SATISFIABLE) {
+            if (!isComplete(response)) {
+                throw new IOException("Range not satisfiable");
+            }
+            long length = mPartFile.length();
+            if (mUpdater != null) {
+                mUpdater.update(length, length);
+            }
+            return complete();
+        }
+
+        long offset = 0;
+        long length = response.getContentLength();
+
+        if (response.getStatus() == Http.STATUS_PARTIAL_CONTENT) {
+            offset = parseRangeStart(response.getHeader(Http.CONTENT_RANGE));
+            if (offset != mPartFile.length()) {
+                throw new IOException("Unexpected range start " + offset);
+            }
+        }
+        writeValidator(response);
+
+        long total = length < 0 ? -1 : offset + length;
+        long position = offset;
+
+        try (RandomAccessFile file = new RandomAccessFile(mPartFile, "rw")) {
+            FileChannel channel = file.getChannel();
+            channel.truncate(offset);
+
+            InputStream is = response.getInputStream();
+            ReadableByteChannel source = Channels.newChannel(is);
+            long count;
+
+            while ((count = channel.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+                position += count;
+                if (mUpdater != null) {
+                    mUpdater.update(total, position);
+                }
+            }
+        }
+
+        if (total >= 0 && position != total) {
+            throw new IOException("Transfer ended at " + position + " of " + total + " bytes.");
+        }
+        return complete();
+    }
+
+    /**
+     * Move the complete partial file to the target.
+     *
+     * @return the target file.
+     * @throws IOException if the file cannot be moved.
+     */
+    private File complete() throws IOException {
+        if ((mTarget.exists() && !mTarget.delete()) || !mPartFile.renameTo(mTarget)) {
+            throw new IOException("Could not move download to " + mTarget);
+        }
+        mValidatorFile.delete();
+        return mTarget;
+    }
+
+    /**
+     * Parse the first byte position of a content range header.
+     *
+     * @param contentRange the header value, for example {@code bytes 100-199/200}.
+     * @return the first byte position.
+     * @throws IOException if the header is missing or malformed.
+     */
+    private static long parseRangeStart(String contentRange) throws IOException {
+        if (contentRange != null) {
+            int start = contentRange.indexOf(' ');
+            int end = contentRange.indexOf('-');
+            if (start >= 0 && end > start) {
+                try {
+                    return Long.parseLong(contentRange.substring(start + 1, end).trim());
+                } catch (NumberFormatException e) {
+                    // Fall through.
+                }
+            }
+        }
+        throw new IOException("Malformed content range " + contentRange);
+    }
+
+    /**
+     * Parse the complete length of a content range header.
+     *
+     * @param contentRange the header value, for example <code>bytes &#42;/200</code>.
+     * @return the complete length, or -1 if it is unknown or the header is malformed.
+     */
+    private static long parseCompleteLength(String contentRange) {
+        int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+        if (slash >= 0) {
+            try {
+                return Long.parseLong(contentRange.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                // Unknown length.
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Save the validator of the response, an entity tag or else the last modified date.
+     *
+     * @param response the response.
+     * @throws IOException if the validator cannot be saved.
+     */
+    private void writeValidator(Response response) throws IOException {
+        String validator = response.getHeader(Http.ETAG);
+        if (validator == null || validator.startsWith("W/")) {
+            // Weak entity tags cannot be used for range requests.
+            validator = response.getHeader(Http.LAST_MODIFIED);
+        }
+
+        if (validator == null) {
+            mValidatorFile.delete();
+        } else {
+            try (FileOutputStream fos = new FileOutputStream(mValidatorFile)) {
+                fos.write(validator.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Read the saved validator of the partial file.
+     *
+     * @return the validator, or null if there is none.
+     */
+    private String readValidator() {
+        String validator = null;
+
+        if (mValidatorFile.isFile()) {
+            try (InputStream is = new FileInputStream(mValidatorFile)) {
+                validator = Utils.toString(is).trim();
+            } catch (IOException e) {
+                // Start over.
+            }
+        }
+        return validator == null || validator.isEmpty() ? null : validator;
+    }
+}
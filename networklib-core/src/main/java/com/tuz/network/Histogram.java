@@ -0,0 +1,206 @@
+package com.tuz.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free log linear histogram of latencies in microseconds.
+ * <p>
+ * Values are counted in buckets whose width doubles for every power of two, and every power of
+ * two is split into 32 linear sub buckets, so that any recorded value is known within about 3%
+ * from one microsecond up to 19 hours in a fixed array of about a thousand counters. Recording
+ * is a few atomic increments without locking or allocation.
+ *
+ * @see MetricsRegistry
+ */
+public final class Histogram {
+
+    /**
+     * The number of bits of the sub bucket index.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of sub buckets per power of two.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest value that is tracked, larger values are counted as this value.
+     */
+    static final long MAX_VALUE = (1L << 36) - 1;
+
+    /**
+     * The number of buckets.
+     */
+    private static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+    /**
+     * The counts of the buckets.
+     */
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * The number of values.
+     */
+    private final LongAdder mCount = new LongAdder();
+
+    /**
+     * The sum of the values.
+     */
+    private final LongAdder mSum = new LongAdder();
+
+    /**
+     * The largest value.
+     */
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Constructor.
+     */
+    Histogram() {
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param micros the value in microseconds.
+     */
+    void record(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        mCounts.incrementAndGet(index(value));
+        mCount.increment();
+        mSum.add(value);
+
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Create a copy of the histogram, which is not changed by later recordings.
+     *
+     * @return the copy.
+     */
+    Histogram copy() {
+        Histogram copy = new Histogram();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = mCounts.get(i);
+            if (count > 0) {
+                copy.mCounts.set(i, count);
+                copy.mCount.add(count);
+            }
+        }
+        copy.mSum.add(mSum.sum());
+        copy.mMax.set(mMax.get());
+        return copy;
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return the count.
+     */
+    public long getCount() {
+        return mCount.sum();
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return the value in microseconds, or 0 if none is recorded.
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     *
+     * @return the mean in microseconds, or 0 if none is recorded.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count > 0 ? (double) mSum.sum() / count : 0;
+    }
+
+    /**
+     * Get the value at a percentile, which is the upper bound of the bucket holding it.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     * @return the value in microseconds, or 0 if none is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Get the counts of the non empty buckets, for exporting the histogram.
+     *
+     * @return pairs of the upper bound of a bucket in microseconds and its count, in order of
+     * the bounds.
+     */
+    public long[][] getBuckets() {
+        int buckets = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (mCounts.get(i) > 0) {
+                buckets++;
+            }
+        }
+
+        long[][] output = new long[buckets][];
+        int next = 0;
+        for (int i = 0; i < BUCKET_COUNT && next < buckets; i++) {
+            long count = mCounts.get(i);
+            if (count > 0) {
+                output[next++] = new long[]{upperBound(i), count};
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Get the index of the bucket of a value.
+     *
+     * @param value the value.
+     * @return the index.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKET_COUNT + sub - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Get the largest value counted in a bucket.
+     *
+     * @param index the index of the bucket.
+     * @return the value.
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long sub = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,305 @@
+package com.tuz.network;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Created by henrik on 2017-04-21.
+ */
+
+public abstract class Http {
+
+    // ////////////////////////////////////////////////////
+    // Header keys
+    // ////////////////////////////////////////////////////
+
+    /**
+     * Header key content type.
+     */
+    public static final String CONTENT_TYPE = "Content-Type";
+
+    /**
+     * Header key content encoding.
+     */
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+
+    /**
+     * Header key content length.
+     */
+    public static final String CONTENT_LENGTH = "Content-Length";
+
+    /**
+     * Header key content disposition.
+     */
+    public static final String CONTENT_DISPOSITION = "Content-Disposition";
+
+    /**
+     * Header key authorization.
+     */
+    public static final String AUTHORIZATION = "Authorization";
+
+    /**
+     * Header key cookie.
+     */
+    public static final String COOKIE = "Cookie";
+
+    /**
+     * Header key accept.
+     */
+    public static final String ACCEPT = "Accept";
+
+    /**
+     * Header key accept language.
+     */
+    public static final String ACCEPT_LANGUAGE = "Accept-Language";
+
+    /**
+     * Header key cache control.
+     */
+    public static final String CACHE_CONTROL = "Cache-Control";
+
+    /**
+     * Header key range.
+     */
+    public static final String RANGE = "Range";
+
+    /**
+     * Header key if range.
+     */
+    public static final String IF_RANGE = "If-Range";
+
+    /**
+     * Header key content range.
+     */
+    public static final String CONTENT_RANGE = "Content-Range";
+
+    /**
+     * Header key retry after.
+     */
+    public static final String RETRY_AFTER = "Retry-After";
+
+    /**
+     * Header key accept ranges.
+     */
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
+
+    /**
+     * Header key entity tag.
+     */
+    public static final String ETAG = "ETag";
+
+    /**
+     * Header key last modified.
+     */
+    public static final String LAST_MODIFIED = "Last-Modified";
+
+    /**
+     * Header key if none match.
+     */
+    public static final String IF_NONE_MATCH = "If-None-Match";
+
+    /**
+     * Header key if modified since.
+     */
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * Header key content dictionary, the id of the preset dictionary of a request body.
+     */
+    public static final String CONTENT_DICTIONARY = "Content-Dictionary";
+
+    /**
+     * Header key accept dictionary, the ids of the preset dictionaries a server accepts.
+     */
+    public static final String ACCEPT_DICTIONARY = "Accept-Dictionary";
+
+    /**
+     * Header key expires.
+     */
+    public static final String EXPIRES = "Expires";
+
+    /**
+     * Header key date.
+     */
+    public static final String DATE = "Date";
+
+    /**
+     * Header key age.
+     */
+    public static final String AGE = "Age";
+
+    /**
+     * Header key vary.
+     */
+    public static final String VARY = "Vary";
+
+    /**
+     * Header key accept encoding.
+     */
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    /**
+     * Header key location.
+     */
+    public static final String LOCATION = "Location";
+
+    /**
+     * Header key overriding the method of a {@code POST} request.
+     */
+    public static final String METHOD_OVERRIDE = "X-HTTP-Method-Override";
+
+    // ////////////////////////////////////////////////////
+    // Header values
+    // ////////////////////////////////////////////////////
+
+    /**
+     * Header value encoding gzip.
+     */
+    public static final String ENCODING_GZIP = "gzip";
+
+    /**
+     * Header value encoding deflate.
+     */
+    public static final String ENCODING_DEFLATE = "deflate";
+
+    /**
+     * Header value encoding identity.
+     */
+    public static final String ENCODING_IDENTITY = "identity";
+
+    /**
+     * Header value no cache.
+     */
+    public static final String NO_CACHE = "no-cache";
+
+    /**
+     * Bearer identifier for token authentication.
+     */
+    public static final String BEARER = "Bearer";
+
+    /**
+     * Range unit bytes.
+     */
+    public static final String BYTES = "bytes";
+
+    // ////////////////////////////////////////////////////
+    // Status codes
+    // ////////////////////////////////////////////////////
+
+    /**
+     * Status ok.
+     */
+    public static final int STATUS_OK = 200;
+
+    /**
+     * Status unsupported media type.
+     */
+    public static final int STATUS_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    /**
+     * Status partial content.
+     */
+    public static final int STATUS_PARTIAL_CONTENT = 206;
+
+    /**
+     * Status not modified.
+     */
+    public static final int STATUS_NOT_MODIFIED = 304;
+
+    /**
+     * Status not found.
+     */
+    public static final int STATUS_NOT_FOUND = 404;
+
+    /**
+     * Status gone.
+     */
+    public static final int STATUS_GONE = 410;
+
+    /**
+     * Status range not satisfiable.
+     */
+    public static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+
+
+    // ////////////////////////////////////////////////////
+    // Mime type values
+    // ////////////////////////////////////////////////////
+
+    /**
+     * Mime type json.
+     */
+    public static final String MIME_JSON = "application/json";
+
+    // ////////////////////////////////////////////////////
+    // Charset type values
+    // ////////////////////////////////////////////////////
+
+    public static final String CHARSET_UTF8 = "charset=UTF-8";
+
+    // ////////////////////////////////////////////////////
+    // Utility functions.
+    // ////////////////////////////////////////////////////
+
+    /**
+     * Check if the status is successful.
+     *
+     * @param status the status.
+     * @return true if successful, otherwise false.
+     */
+    public static boolean isSuccessfulStatus(int status) {
+        return status >= 200 && status < 299;
+    }
+
+    /**
+     * Check if the status is a failed status.
+     *
+     * @param status the status.
+     * @return true if the status is a failure, otherwise false.
+     */
+    public static boolean isFailedStatus(int status) {
+        return status >= 400;
+    }
+
+    /**
+     * Parse the value of a retry after header, either a number of seconds or a http date.
+     *
+     * @param value the header value, or null.
+     * @param now   the current time in milliseconds.
+     * @return the delay in milliseconds, or -1 if the value is missing or malformed.
+     */
+    static long parseRetryAfter(String value, long now) {
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not seconds, try a date.
+        }
+
+        try {
+            return Math.max(0, parseDate(value) - now);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parse a http date.
+     *
+     * @param value the date, for example {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+     * @return the time in milliseconds.
+     * @throws ParseException if the date is malformed.
+     */
+    static long parseDate(String value) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",
+                Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.parse(value).getTime();
+    }
+}
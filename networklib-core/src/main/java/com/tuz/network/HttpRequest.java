@@ -0,0 +1,995 @@
+package com.tuz.network;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class for making a http request.
+ */
+
+class HttpRequest extends Http implements ProgressUpdater {
+
+    /**
+     * Listener interface for the transfer progress.
+     */
+    interface IHttpTransferListener {
+
+        /**
+         * Callback for when the transfer progress is updated which is whenever the percentage of
+         * the transfer has changed.
+         */
+        void onTransferProgressUpdated(TransferProgress progress);
+    }
+
+    /**
+     * The default read timeout.
+     */
+    static final int DEFAULT_READ_TIMEOUT = 1500;
+
+    /**
+     * The default connection timeout.
+     */
+    static final int DEFAULT_CONNECTION_TIMEOUT = 1500;
+
+    /**
+     * The request headers that are part of the memory cache key.
+     */
+    static final String[] CACHE_KEY_HEADERS = {AUTHORIZATION, COOKIE,
+            ACCEPT, ACCEPT_LANGUAGE};
+
+    /**
+     * The url of the request.
+     */
+    private final String mUrl;
+
+    /**
+     * The method of the request.
+     */
+    private final Method mMethod;
+
+    /**
+     * The headers of the request.
+     */
+    private Set<Header> mHeaders;
+
+    /**
+     * Flag for if the cache should be used.
+     */
+    private boolean mUseCache;
+
+    /**
+     * Flag for if stale cached responses are revalidated with a conditional request.
+     */
+    private boolean mRevalidate;
+
+    /**
+     * The policy for serving stale cached responses.
+     */
+    private CachePolicy mCachePolicy = CachePolicy.NETWORK;
+
+    /**
+     * Flag for if responses are stored in the memory cache to be served stale.
+     */
+    private boolean mStoreStale;
+
+    /**
+     * The progress listener.
+     */
+    private IHttpTransferListener mListener;
+
+    /**
+     * Flag for if streaming mode should be used.
+     */
+    private boolean mUseStreamingMode;
+
+    /**
+     * The codec encoding the body, or null if the body is not encoded.
+     */
+    private ContentCodec mBodyCodec;
+
+    /**
+     * Flag for if responses are requested with the registered content codings and decoded.
+     */
+    private boolean mDecompress = true;
+
+    /**
+     * The body.
+     */
+    private RequestBody mBody;
+
+    /**
+     * The file download, or null if the response is not downloaded to a file.
+     */
+    private FileDownload mDownload;
+
+    /**
+     * The transfer progress, reset for every execution.
+     */
+    private final TransferProgress mProgress = new TransferProgress();
+
+    /**
+     * The min time between progress reports in milliseconds, or -1 to use the interval of
+     * {@link Setup}.
+     */
+    private long mProgressInterval = -1;
+
+    /**
+     * The event listener, or null to use the listener of {@link Setup}.
+     */
+    private EventListener mEventListener;
+
+    /**
+     * The request reported to the event listener.
+     */
+    private Request<?> mCall;
+
+    /**
+     * The connect timeout in milliseconds.
+     */
+    private int mConnectTimeout = DEFAULT_CONNECTION_TIMEOUT;
+
+    /**
+     * The read timeout in milliseconds.
+     */
+    private int mReadTimeout = DEFAULT_READ_TIMEOUT;
+
+    /**
+     * The call timeout in milliseconds, or 0 for no call timeout.
+     */
+    private long mCallTimeout;
+
+    /**
+     * Flag for if the timeouts are adapted to the observed latency of the host.
+     */
+    private boolean mAdaptiveTimeouts;
+
+    /**
+     * The bandwidth limiter of the request, or null.
+     */
+    private BandwidthLimiter mBandwidthLimiter;
+
+    /**
+     * Flag for if the request is interactive and may borrow bandwidth.
+     */
+    private boolean mInteractive;
+
+    /**
+     * The connection of the current execution, or null.
+     */
+    private volatile HttpURLConnection mConnection;
+
+    /**
+     * Flag for if the current execution is cancelled.
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Constructor.
+     *
+     * @param url    the url of the request.
+     * @param method the method.
+     */
+    HttpRequest(String url, Method method) {
+        mUrl = url;
+        mMethod = method;
+        mHeaders = new HashSet<>();
+    }
+
+    /**
+     * Get the url of the request.
+     *
+     * @return the url.
+     */
+    String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Get the method of the request.
+     *
+     * @return the method.
+     */
+    Method getMethod() {
+        return mMethod;
+    }
+
+    /**
+     * Get the headers added to the request.
+     *
+     * @return the headers.
+     */
+    Set<Header> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * Check if the request can be sent again, which is not the case once a body that is
+     * read from an input stream has been sent.
+     *
+     * @return true if the request can be sent again.
+     */
+    boolean isReplayable() {
+        return mBody == null || mBody.isReplayable();
+    }
+
+    /**
+     * Check if an unsuccessful response completes the file download of the request.
+     *
+     * @param response the response.
+     * @return true if the download is complete.
+     * @see FileDownload#isComplete(Response)
+     */
+    boolean isDownloadComplete(Response response) {
+        return mDownload != null && mDownload.isComplete(response);
+    }
+
+    /**
+     * Get the host of the request.
+     *
+     * @return the host, or an empty string if the url is malformed.
+     */
+    String getHost() {
+        try {
+            return new URL(mUrl).getHost();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Set if the cache should be used.
+     *
+     * @param useCache true if the cache should be used, otherwise false.
+     */
+    void setUseCache(boolean useCache) {
+        mUseCache = useCache;
+    }
+
+    /**
+     * Set if stale responses in the memory cache are revalidated with a conditional request.
+     *
+     * @param revalidate true if responses should be revalidated.
+     */
+    void setRevalidate(boolean revalidate) {
+        mRevalidate = revalidate;
+    }
+
+    /**
+     * Check if stale responses in the memory cache are revalidated.
+     *
+     * @return true if responses are revalidated.
+     */
+    boolean isRevalidate() {
+        return mRevalidate;
+    }
+
+    /**
+     * Set the policy for serving stale cached responses.
+     *
+     * @param policy the cache policy.
+     */
+    void setCachePolicy(CachePolicy policy) {
+        mCachePolicy = policy;
+        mStoreStale = policy != CachePolicy.NETWORK;
+    }
+
+    /**
+     * Get the policy for serving stale cached responses.
+     *
+     * @return the cache policy.
+     */
+    CachePolicy getCachePolicy() {
+        return mCachePolicy;
+    }
+
+    /**
+     * Look up the response of the request in the memory cache.
+     *
+     * @return the cache entry, which may be stale, or null if there is none.
+     */
+    CacheEntry peekCache() {
+        MemoryCache memoryCache = getMemoryCache();
+        return memoryCache != null ? memoryCache.peek(getCacheKey()) : null;
+    }
+
+    /**
+     * Get the key of the response in the memory cache, made up of the url and the request
+     * headers that select a representation or a user. Only GET responses are cached, so the
+     * method is left out.
+     *
+     * @return the key.
+     */
+    String getCacheKey() {
+        StringBuilder key = new StringBuilder(mUrl);
+        for (String name : CACHE_KEY_HEADERS) {
+            List<String> values = new ArrayList<>();
+            for (Header header : mHeaders) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    values.add(header.getValue());
+                }
+            }
+            if (!values.isEmpty()) {
+                Collections.sort(values);
+                key.append('\n').append(name).append(':').append(values);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Create a copy of the request for refreshing its cached response, which does not serve
+     * stale responses.
+     *
+     * @return the copy.
+     */
+    HttpRequest copyForRefresh() {
+        HttpRequest request = new HttpRequest(mUrl, mMethod);
+        request.mHeaders.addAll(mHeaders);
+        request.mUseCache = mUseCache;
+        request.mRevalidate = mRevalidate;
+        request.mConnectTimeout = mConnectTimeout;
+        request.mReadTimeout = mReadTimeout;
+        request.mCallTimeout = mCallTimeout;
+        request.mAdaptiveTimeouts = mAdaptiveTimeouts;
+        request.mProgressInterval = mProgressInterval;
+        request.mBandwidthLimiter = mBandwidthLimiter;
+        request.mInteractive = mInteractive;
+        request.mEventListener = mEventListener;
+        // Keep storing responses that are only useful stale.
+        request.mStoreStale = mCachePolicy != CachePolicy.NETWORK;
+        return request;
+    }
+
+    /**
+     * Set the event listener.
+     *
+     * @param listener the listener, or null to use the listener of {@link Setup}.
+     */
+    void setEventListener(EventListener listener) {
+        mEventListener = listener;
+    }
+
+    /**
+     * Get the event listener set on the request.
+     *
+     * @return the listener, or null if the listener of {@link Setup} is used.
+     */
+    EventListener getEventListener() {
+        return mEventListener;
+    }
+
+    /**
+     * Get the event listener receiving the events of the request.
+     *
+     * @return the listener of the request, or else the listener of {@link Setup}.
+     */
+    EventListener getEvents() {
+        return mEventListener != null ? mEventListener : Setup.getEventListener();
+    }
+
+    /**
+     * Set the request reported to the event listener.
+     *
+     * @param call the request.
+     */
+    void setCall(Request<?> call) {
+        mCall = call;
+    }
+
+    /**
+     * Set the transfer listener.
+     *
+     * @param listener the listener.
+     */
+    void setProgressListener(IHttpTransferListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Set the connect timeout.
+     *
+     * @param timeout the timeout in milliseconds, or 0 for no timeout.
+     */
+    void setConnectTimeout(int timeout) {
+        mConnectTimeout = timeout;
+    }
+
+    /**
+     * Get the connect timeout.
+     *
+     * @return the timeout in milliseconds.
+     */
+    int getConnectTimeout() {
+        return mConnectTimeout;
+    }
+
+    /**
+     * Set the read timeout.
+     *
+     * @param timeout the timeout in milliseconds, or 0 for no timeout.
+     */
+    void setReadTimeout(int timeout) {
+        mReadTimeout = timeout;
+    }
+
+    /**
+     * Get the read timeout.
+     *
+     * @return the timeout in milliseconds.
+     */
+    int getReadTimeout() {
+        return mReadTimeout;
+    }
+
+    /**
+     * Set the call timeout.
+     *
+     * @param timeout the timeout in milliseconds, or 0 for no call timeout.
+     */
+    void setCallTimeout(long timeout) {
+        mCallTimeout = timeout;
+    }
+
+    /**
+     * Get the call timeout.
+     *
+     * @return the timeout in milliseconds, or 0 for no call timeout.
+     */
+    long getCallTimeout() {
+        return mCallTimeout;
+    }
+
+    /**
+     * Set if the timeouts are adapted to the observed latency of the host.
+     *
+     * @param adaptive true if the timeouts are adaptive.
+     */
+    void setAdaptiveTimeouts(boolean adaptive) {
+        mAdaptiveTimeouts = adaptive;
+    }
+
+    /**
+     * Set the min time between progress reports.
+     *
+     * @param interval the interval in milliseconds, or -1 to use the interval of {@link Setup}.
+     */
+    void setProgressInterval(long interval) {
+        mProgressInterval = interval;
+    }
+
+    /**
+     * Get the min time between progress reports.
+     *
+     * @return the interval of the request in milliseconds, or else the interval of
+     * {@link Setup}.
+     */
+    long getProgressInterval() {
+        return mProgressInterval >= 0 ? mProgressInterval : Setup.getProgressIntervalMillis();
+    }
+
+    /**
+     * Set the bandwidth limiter of the request.
+     *
+     * @param limiter the limiter, or null.
+     */
+    void setBandwidthLimiter(BandwidthLimiter limiter) {
+        mBandwidthLimiter = limiter;
+    }
+
+    /**
+     * Get the bandwidth limiter of the request.
+     *
+     * @return the limiter, or null.
+     */
+    BandwidthLimiter getBandwidthLimiter() {
+        return mBandwidthLimiter;
+    }
+
+    /**
+     * Set if the request is interactive, which lets it borrow bandwidth.
+     *
+     * @param interactive true if the request is interactive.
+     */
+    void setInteractive(boolean interactive) {
+        mInteractive = interactive;
+    }
+
+    /**
+     * Check if the request is interactive.
+     *
+     * @return true if the request is interactive.
+     */
+    boolean isInteractive() {
+        return mInteractive;
+    }
+
+    /**
+     * Get the bandwidth limiters of the request, its host and all requests.
+     *
+     * @return the limiters, which is empty if the request is not limited.
+     */
+    private BandwidthLimiter[] getBandwidthLimiters() {
+        List<BandwidthLimiter> limiters = new ArrayList<>(3);
+        BandwidthLimiter host = Setup.getBandwidthLimiter(getHost());
+        BandwidthLimiter global = Setup.getBandwidthLimiter();
+
+        if (mBandwidthLimiter != null) {
+            limiters.add(mBandwidthLimiter);
+        }
+        if (host != null && !limiters.contains(host)) {
+            limiters.add(host);
+        }
+        if (global != null && !limiters.contains(global)) {
+            limiters.add(global);
+        }
+        return limiters.toArray(new BandwidthLimiter[limiters.size()]);
+    }
+
+    /**
+     * Check if the timeouts are adapted to the observed latency of the host.
+     *
+     * @return true if the timeouts are adaptive.
+     */
+    boolean isAdaptiveTimeouts() {
+        return mAdaptiveTimeouts;
+    }
+
+    /**
+     * Cancel the current execution by disconnecting its connection, which makes any blocking
+     * read or write fail. The request stays cancelled until {@link #reset()} is called.
+     */
+    void cancel() {
+        mCancelled = true;
+        HttpURLConnection connection = mConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Reset the cancelled state before a new call.
+     */
+    void reset() {
+        mCancelled = false;
+    }
+
+    /**
+     * Add a header.
+     *
+     * @param header the header.
+     * @return true if the header was added, otherwise the header was already added.
+     */
+    boolean addHeader(Header header) {
+        return mHeaders.add(header);
+    }
+
+    /**
+     * Add a header.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return true if the header was added, otherwise the header was already added.
+     * @throws IllegalArgumentException if the supplied value is not an integer, long or a string.
+     */
+    boolean addHeader(String key, Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof String) {
+            return mHeaders.add(new Header(key, String.valueOf(value)));
+        } else {
+            throw new IllegalArgumentException("Unsupported value " + value);
+        }
+    }
+
+    /**
+     * Set a form body, which is streamed with its exact length.
+     *
+     * @param body the form body.
+     */
+    void setMultipartBody(MultipartForm body) {
+        setBody(body.toRequestBody(), body.getContentType(), false, true);
+    }
+
+    /**
+     * Set the file download, which adds range headers to resume a partial download.
+     *
+     * @param download the file download.
+     */
+    void setDownload(FileDownload download) {
+        mDownload = download;
+    }
+
+    /**
+     * Set the body of the request.
+     *
+     * @param body     the body.
+     * @param mime     the mime type of the data.
+     * @param compress true if the body should be compressed using gzip.
+     * @param stream   true if streaming mode should be used.
+     */
+    void setBody(byte[] body, String mime, boolean compress, boolean stream) {
+        setBody(RequestBody.create(body), mime, compress, stream);
+    }
+
+    /**
+     * Set the body of the request.
+     *
+     * @param body     the body.
+     * @param mime     the mime type of the data.
+     * @param compress true if the body should be compressed using gzip.
+     * @param stream   true if streaming mode should be used.
+     */
+    void setBody(RequestBody body, String mime, boolean compress, boolean stream) {
+        mBody = body;
+        addHeader(CONTENT_TYPE, mime);
+        setBodyCodec(compress ? ContentCodecs.GZIP : null);
+        mUseStreamingMode = stream;
+    }
+
+    /**
+     * Set the codec encoding the body, replacing any previous content encoding.
+     *
+     * @param codec the codec, or null if the body should not be encoded.
+     */
+    void setBodyCodec(ContentCodec codec) {
+        Iterator<Header> iterator = mHeaders.iterator();
+        while (iterator.hasNext()) {
+            if (CONTENT_ENCODING.equalsIgnoreCase(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+
+        mBodyCodec = codec;
+        if (codec != null) {
+            addHeader(CONTENT_ENCODING, codec.getEncoding());
+        }
+    }
+
+    /**
+     * Set if responses are requested with the registered content codings and decoded while
+     * they are read. Byte range requests must not be decoded since the ranges refer to the
+     * encoded content.
+     *
+     * @param decompress true if responses should be decoded, default is true.
+     */
+    void setDecompress(boolean decompress) {
+        mDecompress = decompress;
+    }
+
+    /**
+     * Set the json object body.
+     *
+     * @param json     the json object.
+     * @param compress true if the body should be compressed using gzip.
+     * @param stream   true if streaming mode should be used.
+     */
+    void setBody(JSONObject json, boolean compress, boolean stream) {
+        setBody(json.toString().getBytes(StandardCharsets.UTF_8), MIME_JSON, compress, stream);
+    }
+
+    /**
+     * Set the json array body.
+     *
+     * @param json     the json object.
+     * @param compress true if the body should be compressed using gzip.
+     * @param stream   true if streaming mode should be used.
+     */
+    void setBody(JSONArray json, boolean compress, boolean stream) {
+        setBody(json.toString().getBytes(StandardCharsets.UTF_8), MIME_JSON, compress, stream);
+    }
+
+    /**
+     * Execute the request.
+     *
+     * @return the response.
+     * @throws Exception if the execution fails while performing network operations.
+     */
+    final Response execute() throws Exception {
+        mProgress.reset(getProgressInterval());
+        MemoryCache memoryCache = getMemoryCache();
+        CacheEntry cached = null;
+        if (memoryCache != null) {
+            long now = System.currentTimeMillis();
+            cached = memoryCache.get(getCacheKey(), now);
+            if (cached != null && cached.isFresh(now)) {
+                getEvents().cacheHit(mCall, System.nanoTime());
+                return new Response(cached);
+            }
+        }
+
+        ConnectionPool pool = Setup.getConnectionPool();
+        if (pool != null) {
+            pool.acquire(getHost());
+        }
+
+        HttpURLConnection connection = setupConnection();
+        mConnection = connection;
+        if (mCancelled) {
+            connection.disconnect();
+            throw new InterruptedIOException("Request was cancelled");
+        }
+        boolean conditional = mRevalidate && cached != null
+                && cached.addConditionalHeaders(connection);
+        Response response = execute(connection, pool);
+        long now = System.currentTimeMillis();
+
+        if (conditional && response.getStatus() == STATUS_NOT_MODIFIED) {
+            CacheEntry refreshed = cached.refresh(response.getHeaders(), now);
+            response.close();
+            memoryCache.putRevalidated(refreshed);
+            return new Response(refreshed);
+        } else if (memoryCache != null && CacheEntry.isStorable(response, now, mRevalidate,
+                mStoreStale)) {
+            response.cacheTo(memoryCache, getCacheKey());
+        }
+        if (mUseCache) {
+            CacheFlusher.requestFlush();
+        }
+        return response;
+    }
+
+    /**
+     * Get the memory cache if the request can be served from it.
+     *
+     * @return the memory cache, or null if the request neither uses the cache, revalidates
+     * nor stores stale responses, is not a {@code GET} request or is a file download.
+     */
+    private MemoryCache getMemoryCache() {
+        if ((!mUseCache && !mRevalidate && !mStoreStale) || mMethod != Method.GET
+                || mDownload != null) {
+            return null;
+        }
+        return Setup.getMemoryCache();
+    }
+
+    @Override
+    public void update(long totalBytes, long transferredBytes) {
+        if (mProgress.update(totalBytes, transferredBytes) && mListener != null) {
+            mListener.onTransferProgressUpdated(mProgress);
+        }
+    }
+
+    /**
+     * Execute the request.
+     *
+     * @param connection the connection.
+     * @param pool       the connection pool, or null if connections are not pooled.
+     * @return the response.
+     * @throws IOException if anything goes wrong.
+     */
+    private Response execute(HttpURLConnection connection, ConnectionPool pool)
+            throws IOException {
+        EventListener events = getEvents();
+        MetricsRegistry registry = Setup.getMetricsRegistry();
+        MetricsRegistry.EndpointStats stats = registry != null ? registry.getStats(mUrl) : null;
+        long attemptStart = System.nanoTime();
+        String dictionary = null;
+        ContentCodec codec = null;
+        if (mBody != null) {
+            codec = prepareBody(connection);
+            if (codec instanceof DictionaryCodec) {
+                dictionary = ((DictionaryCodec) codec).getId();
+            }
+        } else {
+            connection.setDoOutput(false);
+        }
+
+        events.connectStart(mCall, getHost(), System.nanoTime());
+        try {
+            connection.connect();
+        } catch (SocketTimeoutException e) {
+            recordLatency(connection.getConnectTimeout());
+            throw e;
+        }
+        events.connectEnd(mCall, getHost(), System.nanoTime());
+        events.requestHeadersEnd(mCall, System.nanoTime());
+
+        BandwidthLimiter[] limiters = getBandwidthLimiters();
+        long bytesSent = 0;
+        if (mBody != null) {
+            bytesSent = writeBody(connection, codec, limiters);
+            events.requestBodyEnd(mCall, bytesSent, System.nanoTime());
+        }
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = new Response(connection, pool, getHost());
+        } catch (IOException e) {
+            // Failed responses are sampled too, timeouts at least at the timeout.
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (e instanceof SocketTimeoutException) {
+                latency = Math.max(latency, connection.getReadTimeout());
+            }
+            recordLatency(latency);
+            throw e;
+        }
+        long end = System.nanoTime();
+        recordLatency(TimeUnit.NANOSECONDS.toMillis(end - start));
+        events.responseHeadersEnd(mCall, response.getStatus(), end);
+        response.setEventListener(events, mCall);
+        if (stats != null) {
+            stats.recordResponse(response.getStatus(), end - attemptStart);
+            stats.addBytesSent(bytesSent);
+            response.setMetrics(stats);
+        }
+        if (dictionary != null && response.getStatus() == STATUS_UNSUPPORTED_MEDIA_TYPE) {
+            ContentCodecs.revokeDictionary(getHost(), dictionary);
+        }
+        ContentCodecs.acceptDictionaries(getHost(), response.getHeader(ACCEPT_DICTIONARY));
+        if (limiters.length > 0) {
+            response.throttle(limiters, mInteractive);
+        }
+        if (isDecompressed()) {
+            response.decode();
+        }
+        return response;
+    }
+
+    /**
+     * Set up the connection.
+     *
+     * @return the http connection.
+     * @throws Exception If something went wrong when connection to
+     *                   server was made.
+     */
+    HttpURLConnection setupConnection() throws Exception {
+        URL url = new URL(mUrl);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        if (!mUseCache) {
+            // Make sure we are not using the cache
+            connection.addRequestProperty(CACHE_CONTROL, NO_CACHE);
+        }
+
+        for (Header header : mHeaders) {
+            connection.addRequestProperty(header.getKey(), header.getValue());
+        }
+
+        if (mDownload != null) {
+            mDownload.addRangeHeaders(connection);
+        }
+        if (connection.getRequestProperty(ACCEPT_ENCODING) == null) {
+            String acceptEncoding = ContentCodecs.getAcceptEncoding();
+            // Request identity explicitly so that the platform does not decode on its own.
+            connection.setRequestProperty(ACCEPT_ENCODING, isDecompressed()
+                    && acceptEncoding != null ? acceptEncoding : ENCODING_IDENTITY);
+        }
+        connection.setDefaultUseCaches(mUseCache);
+        connection.setUseCaches(mUseCache);
+        int connectTimeout = mConnectTimeout;
+        int readTimeout = mReadTimeout;
+        if (mAdaptiveTimeouts) {
+            LatencyTracker tracker = LatencyTracker.getDefault();
+            connectTimeout = tracker.getTimeout(getHost(), connectTimeout);
+            readTimeout = tracker.getTimeout(getHost(), readTimeout);
+        }
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        setRequestMethod(connection);
+        connection.setDoInput(true);
+        connection.setDoOutput(true);
+        return connection;
+    }
+
+    /**
+     * Record a latency sample of the host for adaptive timeouts. Requests without adaptive
+     * timeouts do not pay for the sampling.
+     *
+     * @param latency the latency in milliseconds.
+     */
+    private void recordLatency(long latency) {
+        if (mAdaptiveTimeouts) {
+            LatencyTracker.getDefault().record(getHost(), latency);
+        }
+    }
+
+    /**
+     * Set the method of the connection. {@code PATCH} is not supported by the
+     * {@link HttpURLConnection} of the jvm, so it is then sent as a {@code POST} request with
+     * the method in an override header.
+     *
+     * @param connection the connection.
+     * @throws ProtocolException if the method is not supported.
+     */
+    private void setRequestMethod(HttpURLConnection connection) throws ProtocolException {
+        try {
+            connection.setRequestMethod(mMethod.toString());
+        } catch (ProtocolException e) {
+            if (mMethod != Method.PATCH) {
+                throw e;
+            }
+            connection.setRequestMethod(Method.POST.toString());
+            connection.setRequestProperty(METHOD_OVERRIDE, mMethod.toString());
+        }
+    }
+
+    /**
+     * Prepare the connection for writing the body, before it is connected.
+     *
+     * @param connection the connection.
+     * @return the codec encoding the body, or null if the body is not encoded.
+     * @throws IOException if the length of the body cannot be read.
+     */
+    private ContentCodec prepareBody(HttpURLConnection connection) throws IOException {
+        ContentCodec codec = mBodyCodec;
+        if (codec instanceof DictionaryCodec) {
+            DictionaryCodec dictionaryCodec = (DictionaryCodec) codec;
+            if (ContentCodecs.isDictionaryAccepted(getHost(), dictionaryCodec.getId())) {
+                connection.setRequestProperty(CONTENT_DICTIONARY, dictionaryCodec.getId());
+            } else {
+                codec = dictionaryCodec.getFallback();
+            }
+        }
+
+        if (mUseStreamingMode) {
+            long length = mBody.length();
+
+            if (codec != null || length < 0) {
+                connection.setChunkedStreamingMode(-1);
+            } else {
+                connection.setFixedLengthStreamingMode(length);
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Write the body to the connection output.
+     *
+     * @param connection the connection.
+     * @param codec      the codec encoding the body, or null if the body is not encoded.
+     * @param limiters   the bandwidth limiters of the request.
+     * @return the number of bytes written to the connection.
+     * @throws IOException if the writing of the body fails.
+     */
+    private long writeBody(HttpURLConnection connection, ContentCodec codec,
+                           BandwidthLimiter[] limiters) throws IOException {
+        OutputStream output = connection.getOutputStream();
+        if (limiters.length > 0) {
+            output = new ThrottledOutputStream(output, limiters, mInteractive);
+        }
+        CountingOutputStream encoded = new CountingOutputStream(output);
+
+        if (codec == null) {
+            try (OutputStream os = new DataOutputStream(encoded)) {
+                mBody.writeTo(os, this);
+            }
+            return encoded.getCount();
+        }
+
+        CountingOutputStream raw = new CountingOutputStream(codec.encode(encoded));
+        try (OutputStream os = raw) {
+            mBody.writeTo(os, this);
+        }
+        ContentCodecs.addSent(raw.getCount(), encoded.getCount());
+        getEvents().requestBodyEncoded(mCall, raw.getCount(), encoded.getCount(),
+                System.nanoTime());
+        return encoded.getCount();
+    }
+
+    /**
+     * Check if the response is decoded, which is never the case for byte range requests.
+     *
+     * @return true if the response is decoded.
+     */
+    private boolean isDecompressed() {
+        return mDecompress && mDownload == null;
+    }
+}
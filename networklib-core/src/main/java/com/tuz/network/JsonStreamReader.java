@@ -0,0 +1,725 @@
+package com.tuz.network;
+
+import org.json.JSONException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pull parser reading a json document one token at a time.
+ * <p>
+ * Only a small window of the document is held in memory, so payloads of any size can be
+ * parsed without first reading the whole body into a string.
+ * <p>
+ * <pre>
+ * <code>
+ *     reader.beginArray();
+ *     while (reader.hasNext()) {
+ *         reader.beginObject();
+ *         while (reader.hasNext()) {
+ *             String name = reader.nextName();
+ *             ...
+ *         }
+ *         reader.endObject();
+ *     }
+ *     reader.endArray();
+ * </code>
+ * </pre>
+ *
+ * @see Parsers#newJsonReaderParser(Parsers.JsonReaderHandler)
+ */
+public final class JsonStreamReader implements Closeable {
+
+    /**
+     * The json tokens.
+     */
+    public enum Token {
+
+        /**
+         * The start of an array.
+         */
+        BEGIN_ARRAY,
+
+        /**
+         * The end of an array.
+         */
+        END_ARRAY,
+
+        /**
+         * The start of an object.
+         */
+        BEGIN_OBJECT,
+
+        /**
+         * The end of an object.
+         */
+        END_OBJECT,
+
+        /**
+         * A property name.
+         */
+        NAME,
+
+        /**
+         * A string value.
+         */
+        STRING,
+
+        /**
+         * A number value.
+         */
+        NUMBER,
+
+        /**
+         * A boolean value.
+         */
+        BOOLEAN,
+
+        /**
+         * A null value.
+         */
+        NULL,
+
+        /**
+         * The end of the document.
+         */
+        END_DOCUMENT
+    }
+
+    /**
+     * The smallest read buffer.
+     */
+    private static final int MIN_BUFFER_SIZE = 256;
+
+    /**
+     * The largest read buffer, also used when the content length is unknown.
+     */
+    private static final int MAX_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * End of file marker.
+     */
+    private static final int EOF = -1;
+
+    // Scopes of the nesting stack.
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    /**
+     * The reader.
+     */
+    private final Reader mReader;
+
+    /**
+     * The read buffer.
+     */
+    private final char[] mBuffer;
+
+    /**
+     * The position in the buffer.
+     */
+    private int mPos;
+
+    /**
+     * The number of valid characters in the buffer.
+     */
+    private int mLimit;
+
+    /**
+     * The nesting stack.
+     */
+    private int[] mStack;
+
+    /**
+     * The size of the nesting stack.
+     */
+    private int mStackSize;
+
+    /**
+     * The peeked token, or null if no token has been peeked.
+     */
+    private Token mPeeked;
+
+    /**
+     * The text of the peeked name, string, number or boolean.
+     */
+    private String mPeekedValue;
+
+    /**
+     * Builder reused for strings and literals.
+     */
+    private final StringBuilder mBuilder;
+
+    /**
+     * Constructor.
+     *
+     * @param reader the reader.
+     */
+    public JsonStreamReader(Reader reader) {
+        this(reader, -1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param is            the utf-8 encoded input stream.
+     * @param contentLength the length of the content, or -1 if unknown.
+     */
+    public JsonStreamReader(InputStream is, long contentLength) {
+        this(new InputStreamReader(is, StandardCharsets.UTF_8), contentLength);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param reader        the reader.
+     * @param contentLength the length of the content used to size the read buffer, or -1 if
+     *                      unknown.
+     */
+    public JsonStreamReader(Reader reader, long contentLength) {
+        int size = MAX_BUFFER_SIZE;
+        if (contentLength >= 0) {
+            size = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, contentLength));
+        }
+        mReader = reader;
+        mBuffer = new char[size];
+        mStack = new int[16];
+        mStack[mStackSize++] = EMPTY_DOCUMENT;
+        mBuilder = new StringBuilder();
+    }
+
+    /**
+     * Peek at the next token without consuming it.
+     *
+     * @return the next token.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     */
+    public Token peek() throws IOException, JSONException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+        int scope = mStack[mStackSize - 1];
+        int c;
+
+        switch (scope) {
+            case EMPTY_ARRAY:
+                mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                mPos--;
+                return mPeeked = readValue();
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                return mPeeked = readValue();
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                mStack[mStackSize - 1] = DANGLING_NAME;
+                mPeekedValue = readString();
+                return mPeeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+                return mPeeked = readValue();
+            case EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+                return mPeeked = readValue();
+            default:
+                if (nextNonWhitespaceOrEof() != EOF) {
+                    throw syntaxError("Expected end of document");
+                }
+                return mPeeked = Token.END_DOCUMENT;
+        }
+    }
+
+    /**
+     * Check if the current array or object has more elements.
+     *
+     * @return true if there are more elements, otherwise false.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     */
+    public boolean hasNext() throws IOException, JSONException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT
+                && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consume the start of an array.
+     *
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not the start of an array.
+     */
+    public void beginArray() throws IOException, JSONException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consume the end of an array.
+     *
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not the end of an array.
+     */
+    public void endArray() throws IOException, JSONException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    /**
+     * Consume the start of an object.
+     *
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not the start of an object.
+     */
+    public void beginObject() throws IOException, JSONException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consume the end of an object.
+     *
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not the end of an object.
+     */
+    public void endObject() throws IOException, JSONException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    /**
+     * Consume a property name.
+     *
+     * @return the name.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not a name.
+     */
+    public String nextName() throws IOException, JSONException {
+        expect(Token.NAME);
+        return mPeekedValue;
+    }
+
+    /**
+     * Consume a string value. Numbers are returned as their string representation.
+     *
+     * @return the string.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not a string or a number.
+     */
+    public String nextString() throws IOException, JSONException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw new IllegalStateException("Expected a string but was " + token);
+        }
+        mPeeked = null;
+        return mPeekedValue;
+    }
+
+    /**
+     * Consume a boolean value.
+     *
+     * @return the boolean.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not a boolean.
+     */
+    public boolean nextBoolean() throws IOException, JSONException {
+        expect(Token.BOOLEAN);
+        return Boolean.parseBoolean(mPeekedValue);
+    }
+
+    /**
+     * Consume a null value.
+     *
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not null.
+     */
+    public void nextNull() throws IOException, JSONException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Consume a number value as a double.
+     *
+     * @return the number.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not a number.
+     */
+    public double nextDouble() throws IOException, JSONException {
+        return Double.parseDouble(nextNumber());
+    }
+
+    /**
+     * Consume a number value as a long.
+     *
+     * @return the number.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not a number.
+     * @throws NumberFormatException if the number is not an integer.
+     */
+    public long nextLong() throws IOException, JSONException {
+        return Long.parseLong(nextNumber());
+    }
+
+    /**
+     * Consume a number value as an int.
+     *
+     * @return the number.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not a number.
+     * @throws NumberFormatException if the number is not an integer.
+     */
+    public int nextInt() throws IOException, JSONException {
+        return Integer.parseInt(nextNumber());
+    }
+
+    /**
+     * Skip the next value, including all nested values of an array or object.
+     *
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     */
+    public void skipValue() throws IOException, JSONException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            if (token == Token.BEGIN_ARRAY) {
+                beginArray();
+                depth++;
+            } else if (token == Token.BEGIN_OBJECT) {
+                beginObject();
+                depth++;
+            } else if (token == Token.END_ARRAY) {
+                endArray();
+                depth--;
+            } else if (token == Token.END_OBJECT) {
+                endObject();
+                depth--;
+            } else if (token == Token.END_DOCUMENT) {
+                throw new IllegalStateException("No value to skip");
+            } else {
+                mPeeked = null;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mPeeked = null;
+        mReader.close();
+    }
+
+    /**
+     * Consume a number value.
+     *
+     * @return the text of the number.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not a number.
+     */
+    private String nextNumber() throws IOException, JSONException {
+        Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw new IllegalStateException("Expected a number but was " + token);
+        }
+        mPeeked = null;
+        return mPeekedValue;
+    }
+
+    /**
+     * Consume the next token.
+     *
+     * @param expected the expected token.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     * @throws IllegalStateException if the next token is not the expected token.
+     */
+    private void expect(Token expected) throws IOException, JSONException {
+        Token token = peek();
+        if (token != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    /**
+     * Push a scope to the nesting stack.
+     *
+     * @param scope the scope.
+     */
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            mStack = Arrays.copyOf(mStack, mStackSize * 2);
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    /**
+     * Read the start of a value.
+     *
+     * @return the token of the value.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the json is malformed.
+     */
+    private Token readValue() throws IOException, JSONException {
+        int c = nextNonWhitespace();
+
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                mPeekedValue = readString();
+                return Token.STRING;
+            case 't':
+            case 'f':
+            case 'n':
+                mPos--;
+                String literal = readLiteral();
+                if ("null".equals(literal)) {
+                    return Token.NULL;
+                } else if ("true".equals(literal) || "false".equals(literal)) {
+                    mPeekedValue = literal;
+                    return Token.BOOLEAN;
+                }
+                throw syntaxError("Unexpected literal " + literal);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    mPos--;
+                    mPeekedValue = readLiteral();
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Read a quoted string, the opening quote already consumed.
+     *
+     * @return the unescaped string.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the string is not terminated.
+     */
+    private String readString() throws IOException, JSONException {
+        mBuilder.setLength(0);
+
+        while (true) {
+            int start = mPos;
+            while (mPos < mLimit) {
+                char c = mBuffer[mPos++];
+                if (c == '"') {
+                    mBuilder.append(mBuffer, start, mPos - start - 1);
+                    return mBuilder.toString();
+                } else if (c == '\\') {
+                    mBuilder.append(mBuffer, start, mPos - start - 1);
+                    mBuilder.append(readEscape());
+                    start = mPos;
+                }
+            }
+            mBuilder.append(mBuffer, start, mPos - start);
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    /**
+     * Read an escaped character, the backslash already consumed.
+     *
+     * @return the character.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the escape sequence is invalid.
+     */
+    private char readEscape() throws IOException, JSONException {
+        int c = read();
+
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Read an unquoted literal such as a number, boolean or null.
+     *
+     * @return the literal.
+     * @throws IOException if reading fails.
+     */
+    private String readLiteral() throws IOException {
+        mBuilder.setLength(0);
+
+        while (true) {
+            int start = mPos;
+            while (mPos < mLimit) {
+                if (isLiteralEnd(mBuffer[mPos])) {
+                    mBuilder.append(mBuffer, start, mPos - start);
+                    return mBuilder.toString();
+                }
+                mPos++;
+            }
+            mBuilder.append(mBuffer, start, mPos - start);
+            if (!fill()) {
+                return mBuilder.toString();
+            }
+        }
+    }
+
+    /**
+     * Check if a character ends a literal.
+     *
+     * @param c the character.
+     * @return true if the character ends a literal.
+     */
+    private static boolean isLiteralEnd(char c) {
+        switch (c) {
+            case ',':
+            case ']':
+            case '}':
+            case ':':
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read the next non whitespace character.
+     *
+     * @return the character.
+     * @throws IOException if reading fails.
+     * @throws JSONException if the end of the document is reached.
+     */
+    private int nextNonWhitespace() throws IOException, JSONException {
+        int c = nextNonWhitespaceOrEof();
+        if (c == EOF) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return c;
+    }
+
+    /**
+     * Read the next non whitespace character.
+     *
+     * @return the character, or EOF at the end of the document.
+     * @throws IOException if reading fails.
+     */
+    private int nextNonWhitespaceOrEof() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+        return c;
+    }
+
+    /**
+     * Read the next character.
+     *
+     * @return the character, or EOF at the end of the document.
+     * @throws IOException if reading fails.
+     */
+    private int read() throws IOException {
+        if (mPos == mLimit && !fill()) {
+            return EOF;
+        }
+        return mBuffer[mPos++];
+    }
+
+    /**
+     * Refill the buffer.
+     *
+     * @return true if more characters were read, false at the end of the document.
+     * @throws IOException if reading fails.
+     */
+    private boolean fill() throws IOException {
+        int read = mReader.read(mBuffer, 0, mBuffer.length);
+        if (read == EOF) {
+            return false;
+        }
+        mPos = 0;
+        mLimit = read;
+        return true;
+    }
+
+    /**
+     * Create an exception for malformed json.
+     *
+     * @param message the message.
+     * @return the exception.
+     */
+    private JSONException syntaxError(String message) {
+        return new JSONException("Malformed json: " + message);
+    }
+}
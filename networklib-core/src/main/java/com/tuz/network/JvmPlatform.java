@@ -0,0 +1,45 @@
+package com.tuz.network;
+
+import java.net.URLConnection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The plain jvm platform.
+ * <p>
+ * Callbacks are delivered in order on a single daemon thread, which takes the place of the
+ * android main thread, mime types are guessed by the jvm and messages are logged with
+ * {@link java.util.logging}. There is no disk response cache.
+ */
+final class JvmPlatform extends Platform {
+
+    /**
+     * The callback executor, created on first use.
+     */
+    private ExecutorService mCallbackExecutor;
+
+    @Override
+    public synchronized Executor getCallbackExecutor() {
+        if (mCallbackExecutor == null) {
+            mCallbackExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "NetworkCallbacks");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return mCallbackExecutor;
+    }
+
+    @Override
+    public String getMimeType(String fileName) {
+        return URLConnection.guessContentTypeFromName(fileName);
+    }
+
+    @Override
+    public void log(String tag, String message) {
+        Logger.getLogger(tag).log(Level.INFO, message);
+    }
+}
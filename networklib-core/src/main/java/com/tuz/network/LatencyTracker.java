@@ -0,0 +1,157 @@
+package com.tuz.network;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracker of the response latency per host, used for adaptive timeouts.
+ * <p>
+ * The latency is the time from when a request has been sent until the response headers are
+ * received. The most recent samples are kept per host, and the adaptive timeout is a multiple
+ * of their 99th percentile, so that a fast host fails fast while a slow host is given the time
+ * it usually needs. A request that times out is recorded at its timeout, which raises the
+ * percentile, so that the timeout of a host that has become slower grows back instead of
+ * failing every request.
+ *
+ * @see RequestBuilder#setAdaptiveTimeouts(boolean)
+ */
+final class LatencyTracker {
+
+    /**
+     * The number of samples kept per host.
+     */
+    static final int SAMPLE_COUNT = 64;
+
+    /**
+     * The number of samples needed before the timeout is adapted.
+     */
+    static final int MIN_SAMPLES = 8;
+
+    /**
+     * The percentile of the latency the timeout is based on.
+     */
+    static final double PERCENTILE = 0.99;
+
+    /**
+     * The multiplier applied to the percentile.
+     */
+    static final int MULTIPLIER = 3;
+
+    /**
+     * The smallest adaptive timeout in milliseconds.
+     */
+    static final int MIN_TIMEOUT = 500;
+
+    /**
+     * The max number of hosts tracked, beyond which the least recently used host is dropped.
+     */
+    static final int MAX_HOSTS = 256;
+
+    /**
+     * The default tracker.
+     */
+    private static final LatencyTracker sDefault = new LatencyTracker();
+
+    /**
+     * The samples per host, in least recently used order.
+     */
+    private final Map<String, Samples> mSamples =
+            new LinkedHashMap<String, Samples>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Samples> eldest) {
+                    return size() > MAX_HOSTS;
+                }
+            };
+
+    /**
+     * Get the default tracker.
+     *
+     * @return the tracker.
+     */
+    static LatencyTracker getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Record the latency of a response.
+     *
+     * @param host   the host.
+     * @param millis the latency in milliseconds.
+     */
+    synchronized void record(String host, long millis) {
+        Samples samples = mSamples.get(host);
+        if (samples == null) {
+            samples = new Samples();
+            mSamples.put(host, samples);
+        }
+        samples.add(millis);
+    }
+
+    /**
+     * Get the latency percentile of a host.
+     *
+     * @param host       the host.
+     * @param percentile the percentile, between 0 and 1.
+     * @return the latency in milliseconds, or -1 if there are not enough samples.
+     */
+    synchronized long getPercentile(String host, double percentile) {
+        Samples samples = mSamples.get(host);
+        if (samples == null || samples.mCount < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples.mValues, samples.mCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+
+    /**
+     * Get the adaptive timeout of a host.
+     *
+     * @param host    the host.
+     * @param timeout the configured timeout in milliseconds, which is also the largest
+     *                adaptive timeout.
+     * @return the timeout in milliseconds, or the configured timeout if there are not enough
+     * samples.
+     */
+    int getTimeout(String host, int timeout) {
+        long latency = getPercentile(host, PERCENTILE);
+        if (latency < 0) {
+            return timeout;
+        }
+        long adaptive = Math.max(MIN_TIMEOUT, latency * MULTIPLIER);
+        return timeout > 0 ? (int) Math.min(timeout, adaptive) : (int) adaptive;
+    }
+
+    /**
+     * Ring buffer of the most recent samples of a host.
+     */
+    private static final class Samples {
+
+        /**
+         * The samples.
+         */
+        private final long[] mValues = new long[SAMPLE_COUNT];
+
+        /**
+         * The number of samples.
+         */
+        private int mCount;
+
+        /**
+         * The position of the next sample.
+         */
+        private int mNext;
+
+        /**
+         * Add a sample, replacing the oldest sample if the buffer is full.
+         *
+         * @param value the sample.
+         */
+        void add(long value) {
+            mValues[mNext] = value;
+            mNext = (mNext + 1) % mValues.length;
+            mCount = Math.min(mCount + 1, mValues.length);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.tuz.network;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of responses, in front of the disk cache installed with
+ * {@link Setup#installCache(java.io.File, long)}.
+ * <p>
+ * Successful {@code GET} responses of requests using the cache are stored by url when their
+ * {@code Cache-Control} or {@code Expires} header makes them fresh for some time, and served
+ * from memory without touching the disk or the network while they are fresh. Requests that
+ * revalidate also store responses with an {@code ETag} or {@code Last-Modified} validator, and
+ * revalidate stale entries with a conditional request. Entries are
+ * evicted in least recently used order when the total size exceeds the max size, and entries
+ * larger than a quarter of the max size are never stored.
+ *
+ * @see Setup#setMemoryCache(MemoryCache)
+ * @see RequestBuilder#setUseCache(boolean)
+ */
+public final class MemoryCache {
+
+    /**
+     * The default max size in bytes.
+     */
+    public static final long DEFAULT_MAX_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * The max size in bytes.
+     */
+    private final long mMaxSize;
+
+    /**
+     * The entries in access order.
+     */
+    private final LinkedHashMap<String, CacheEntry> mEntries;
+
+    /**
+     * The current size in bytes.
+     */
+    private long mSize;
+
+    /**
+     * The number of lookups that found a fresh entry.
+     */
+    private long mHitCount;
+
+    /**
+     * The number of lookups that found no fresh entry.
+     */
+    private long mMissCount;
+
+    /**
+     * The number of evicted entries.
+     */
+    private long mEvictionCount;
+
+    /**
+     * The number of stale entries revalidated by a not modified response.
+     */
+    private long mRevalidatedCount;
+
+    /**
+     * The number of stale entries served under a cache policy.
+     */
+    private long mStaleHitCount;
+
+    /**
+     * Constructor using the default max size.
+     */
+    public MemoryCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize the max size in bytes.
+     * @throws IllegalArgumentException if the max size is not positive.
+     */
+    public MemoryCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive.");
+        }
+        mMaxSize = maxSize;
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get the max size.
+     *
+     * @return the max size in bytes.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Get the current size.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Get the number of lookups that found a fresh entry.
+     *
+     * @return the hit count.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Get the number of lookups that found no fresh entry.
+     *
+     * @return the miss count.
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Get the number of entries evicted to make room for new entries.
+     *
+     * @return the eviction count.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Get the number of stale entries that were revalidated by a not modified response
+     * instead of downloaded again.
+     *
+     * @return the revalidated count.
+     * @see RequestBuilder#setRevalidate(boolean)
+     */
+    public synchronized long getRevalidatedCount() {
+        return mRevalidatedCount;
+    }
+
+    /**
+     * Get the number of stale entries served immediately or in place of a failed request.
+     *
+     * @return the stale hit count.
+     * @see RequestBuilder#setCachePolicy(CachePolicy)
+     */
+    public synchronized long getStaleHitCount() {
+        return mStaleHitCount;
+    }
+
+    /**
+     * Remove the entries of a url, for all request headers they were cached under.
+     *
+     * @param url the url of the entries.
+     */
+    public synchronized void remove(String url) {
+        String prefix = url + '\n';
+        Iterator<Map.Entry<String, CacheEntry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CacheEntry> entry = iterator.next();
+            String key = entry.getKey();
+            if (key.equals(url) || key.startsWith(prefix)) {
+                mSize -= entry.getValue().size();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void evictAll() {
+        mEntries.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Look up an entry, counting a hit if it is fresh.
+     *
+     * @param key the key.
+     * @param now the current time in milliseconds.
+     * @return the entry, which may be stale, or null if there is none.
+     */
+    synchronized CacheEntry get(String key, long now) {
+        CacheEntry entry = mEntries.get(key);
+        if (entry != null && entry.isFresh(now)) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Look up an entry without counting a hit or miss.
+     *
+     * @param key the key.
+     * @return the entry, which may be stale, or null if there is none.
+     */
+    synchronized CacheEntry peek(String key) {
+        return mEntries.get(key);
+    }
+
+    /**
+     * Count a stale entry served under a cache policy.
+     */
+    synchronized void recordStaleHit() {
+        mStaleHitCount++;
+    }
+
+    /**
+     * Store an entry, replacing any entry with the same key and evicting the least recently
+     * used entries if the cache is full.
+     *
+     * @param entry the entry.
+     * @return true if the entry was stored, false if it is too large.
+     */
+    synchronized boolean put(CacheEntry entry) {
+        long size = entry.size();
+        if (size > getMaxEntrySize()) {
+            return false;
+        }
+
+        CacheEntry previous = mEntries.put(entry.getKey(), entry);
+        if (previous != null) {
+            mSize -= previous.size();
+        }
+        mSize += size;
+        trim();
+        return true;
+    }
+
+    /**
+     * Replace an entry revalidated by a not modified response.
+     *
+     * @param entry the refreshed entry.
+     */
+    synchronized void putRevalidated(CacheEntry entry) {
+        mRevalidatedCount++;
+        put(entry);
+    }
+
+    /**
+     * Get the size of the largest entry that is stored.
+     *
+     * @return the size in bytes.
+     */
+    long getMaxEntrySize() {
+        return mMaxSize / 4;
+    }
+
+    /**
+     * Evict least recently used entries until the size is within the max size.
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, CacheEntry>> iterator = mEntries.entrySet().iterator();
+
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            mSize -= iterator.next().getValue().size();
+            iterator.remove();
+            mEvictionCount++;
+        }
+    }
+}
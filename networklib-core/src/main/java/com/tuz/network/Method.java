@@ -0,0 +1,61 @@
+package com.tuz.network;
+
+/**
+ * Http methods.
+ */
+public enum Method {
+
+    /**
+     * Method post.
+     */
+    POST(false),
+
+    /**
+     * Method put.
+     */
+    PUT(true),
+
+    /**
+     * Method patch.
+     */
+    PATCH(false),
+
+    /**
+     * Method get.
+     */
+    GET(true),
+
+    /**
+     * Method delete.
+     */
+    DELETE(true),
+
+    /**
+     * Method head.
+     */
+    HEAD(true);
+
+    /**
+     * Flag for if the method is idempotent.
+     */
+    private final boolean mIdempotent;
+
+    /**
+     * Constructor.
+     *
+     * @param idempotent flag for if the method is idempotent.
+     */
+    Method(boolean idempotent) {
+        mIdempotent = idempotent;
+    }
+
+    /**
+     * Check if the method is idempotent, meaning that repeating a request has the same effect
+     * as making it once, which makes it safe to retry.
+     *
+     * @return true if idempotent, otherwise false.
+     */
+    public boolean isIdempotent() {
+        return mIdempotent;
+    }
+}
@@ -0,0 +1,497 @@
+package com.tuz.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of request metrics per endpoint.
+ * <p>
+ * An endpoint is a host and a route, which is the path of the url with the variable segments
+ * collapsed so that {@code /posts/1} and {@code /posts/2} are counted together. A path matching
+ * a registered route template such as {@code /posts/{id}/comments} uses the template as route.
+ * Other paths have their numeric, uuid and long hex segments replaced by {@code {id}}. The
+ * number of endpoints is bounded, and new endpoints beyond the bound are counted with the route
+ * {@code {other}} of their host.
+ * <p>
+ * For every endpoint the registry keeps a histogram of the call latency, covering retries and
+ * parsing, a histogram of the time to the response headers of every attempt, the status codes,
+ * the errors of failed calls and the body bytes sent and received. Recording is lock free.
+ *
+ * @see Setup#setMetricsRegistry(MetricsRegistry)
+ */
+public final class MetricsRegistry {
+
+    /**
+     * The max number of endpoints.
+     */
+    public static final int MAX_ENDPOINTS = 512;
+
+    /**
+     * The route of the paths beyond the max number of endpoints.
+     */
+    public static final String OTHER_ROUTE = "{other}";
+
+    /**
+     * The segment replacing a variable path segment.
+     */
+    private static final String ID_SEGMENT = "{id}";
+
+    /**
+     * The statistics by endpoint key.
+     */
+    private final Map<String, EndpointStats> mEndpoints = new ConcurrentHashMap<>();
+
+    /**
+     * The route templates split into segments.
+     */
+    private final List<String[]> mTemplates = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a route template. Segments in braces match any segment.
+     *
+     * @param template the template, for example {@code /users/{user}/posts}.
+     * @return the registry instance.
+     */
+    public MetricsRegistry addRouteTemplate(String template) {
+        mTemplates.add(split(template));
+        return this;
+    }
+
+    /**
+     * Get a snapshot of the statistics of all endpoints.
+     *
+     * @return the statistics, which are not changed by later recordings.
+     */
+    public List<EndpointStats> snapshot() {
+        List<EndpointStats> snapshot = new ArrayList<>();
+        for (EndpointStats stats : mEndpoints.values()) {
+            snapshot.add(stats.copy());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Remove the statistics of all endpoints.
+     */
+    public void reset() {
+        mEndpoints.clear();
+    }
+
+    /**
+     * Get the statistics of the endpoint of a url, creating them on first use.
+     *
+     * @param url the url.
+     * @return the statistics.
+     */
+    EndpointStats getStats(String url) {
+        int hostStart = url.indexOf("://");
+        hostStart = hostStart < 0 ? 0 : hostStart + 3;
+        int pathStart = hostStart;
+        while (pathStart < url.length() && "/?#".indexOf(url.charAt(pathStart)) < 0) {
+            pathStart++;
+        }
+        int pathEnd = pathStart;
+        while (pathEnd < url.length() && "?#".indexOf(url.charAt(pathEnd)) < 0) {
+            pathEnd++;
+        }
+
+        String host = url.substring(hostStart, pathStart);
+        int port = host.lastIndexOf(':');
+        if (port > host.lastIndexOf(']')) {
+            host = host.substring(0, port);
+        }
+        host = host.toLowerCase(Locale.US);
+        String route = getRoute(url.substring(pathStart, pathEnd));
+
+        String key = host + ' ' + route;
+        EndpointStats stats = mEndpoints.get(key);
+        if (stats == null) {
+            if (mEndpoints.size() >= MAX_ENDPOINTS) {
+                route = OTHER_ROUTE;
+                key = host + ' ' + route;
+            }
+            stats = mEndpoints.get(key);
+            if (stats == null) {
+                EndpointStats created = new EndpointStats(host, route);
+                stats = mEndpoints.putIfAbsent(key, created);
+                stats = stats != null ? stats : created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Get the route of a path.
+     *
+     * @param path the path of the url.
+     * @return the matching template, or else the path with its variable segments replaced.
+     */
+    String getRoute(String path) {
+        String[] segments = split(path);
+
+        for (String[] template : mTemplates) {
+            if (matches(template, segments)) {
+                return join(template);
+            }
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            if (isVariable(segments[i])) {
+                segments[i] = ID_SEGMENT;
+            }
+        }
+        return join(segments);
+    }
+
+    /**
+     * Check if path segments match a template.
+     *
+     * @param template the segments of the template.
+     * @param segments the segments of the path.
+     * @return true if they match.
+     */
+    private static boolean matches(String[] template, String[] segments) {
+        if (template.length != segments.length) {
+            return false;
+        }
+        for (int i = 0; i < template.length; i++) {
+            if (!template[i].startsWith("{") && !template[i].equals(segments[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if a path segment is an id rather than a fixed part of the route.
+     *
+     * @param segment the segment.
+     * @return true if the segment is a number, a uuid or a long hex string.
+     */
+    private static boolean isVariable(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        boolean digits = true;
+        boolean hex = true;
+        int dashes = 0;
+
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '-') {
+                dashes++;
+                digits = false;
+            } else if (c < '0' || c > '9') {
+                digits = false;
+                if ((c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                    hex = false;
+                }
+            }
+        }
+        return digits || (hex && dashes == 4 && segment.length() == 36)
+                || (hex && dashes == 0 && segment.length() >= 16);
+    }
+
+    /**
+     * Split a path into its segments.
+     *
+     * @param path the path.
+     * @return the segments, without empty segments.
+     */
+    private static String[] split(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    /**
+     * Join segments into a path.
+     *
+     * @param segments the segments.
+     * @return the path.
+     */
+    private static String join(String[] segments) {
+        if (segments.length == 0) {
+            return "/";
+        }
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments) {
+            path.append('/').append(segment);
+        }
+        return path.toString();
+    }
+
+    /**
+     * The statistics of an endpoint.
+     */
+    public static final class EndpointStats {
+
+        /**
+         * The largest status code that is counted.
+         */
+        private static final int MAX_STATUS = 599;
+
+        /**
+         * The host.
+         */
+        private final String mHost;
+
+        /**
+         * The route.
+         */
+        private final String mRoute;
+
+        /**
+         * The latency of calls.
+         */
+        private final Histogram mCallLatency;
+
+        /**
+         * The time to the response headers of attempts.
+         */
+        private final Histogram mResponseLatency;
+
+        /**
+         * The number of responses by status code.
+         */
+        private final AtomicLongArray mStatuses;
+
+        /**
+         * The number of failed calls by exception name.
+         */
+        private final Map<String, LongAdder> mErrors;
+
+        /**
+         * The number of body bytes sent.
+         */
+        private final LongAdder mBytesSent;
+
+        /**
+         * The number of body bytes received.
+         */
+        private final LongAdder mBytesReceived;
+
+        /**
+         * Constructor.
+         *
+         * @param host  the host.
+         * @param route the route.
+         */
+        EndpointStats(String host, String route) {
+            mHost = host;
+            mRoute = route;
+            mCallLatency = new Histogram();
+            mResponseLatency = new Histogram();
+            mStatuses = new AtomicLongArray(MAX_STATUS + 1);
+            mErrors = new ConcurrentHashMap<>();
+            mBytesSent = new LongAdder();
+            mBytesReceived = new LongAdder();
+        }
+
+        /**
+         * Copy constructor.
+         *
+         * @param source the statistics to copy.
+         */
+        private EndpointStats(EndpointStats source) {
+            mHost = source.mHost;
+            mRoute = source.mRoute;
+            mCallLatency = source.mCallLatency.copy();
+            mResponseLatency = source.mResponseLatency.copy();
+            mStatuses = new AtomicLongArray(MAX_STATUS + 1);
+            for (int status = 0; status <= MAX_STATUS; status++) {
+                mStatuses.set(status, source.mStatuses.get(status));
+            }
+            mErrors = new ConcurrentHashMap<>();
+            for (Map.Entry<String, LongAdder> entry : source.mErrors.entrySet()) {
+                LongAdder count = new LongAdder();
+                count.add(entry.getValue().sum());
+                mErrors.put(entry.getKey(), count);
+            }
+            mBytesSent = new LongAdder();
+            mBytesSent.add(source.mBytesSent.sum());
+            mBytesReceived = new LongAdder();
+            mBytesReceived.add(source.mBytesReceived.sum());
+        }
+
+        /**
+         * Record a call.
+         *
+         * @param nanos the duration of the call in nanoseconds.
+         * @param error the exception of a failed call, or null.
+         */
+        void recordCall(long nanos, NetworkException error) {
+            mCallLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                String name = cause.getClass().getSimpleName();
+                LongAdder count = mErrors.get(name);
+                if (count == null) {
+                    LongAdder created = new LongAdder();
+                    count = mErrors.putIfAbsent(name, created);
+                    count = count != null ? count : created;
+                }
+                count.increment();
+            }
+        }
+
+        /**
+         * Record the response of an attempt.
+         *
+         * @param status the status code.
+         * @param nanos  the time to the response headers in nanoseconds.
+         */
+        void recordResponse(int status, long nanos) {
+            mResponseLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            if (status >= 0 && status <= MAX_STATUS) {
+                mStatuses.incrementAndGet(status);
+            }
+        }
+
+        /**
+         * Add sent body bytes.
+         *
+         * @param count the number of bytes.
+         */
+        void addBytesSent(long count) {
+            mBytesSent.add(count);
+        }
+
+        /**
+         * Add received body bytes.
+         *
+         * @param count the number of bytes.
+         */
+        void addBytesReceived(long count) {
+            mBytesReceived.add(count);
+        }
+
+        /**
+         * Create a copy of the statistics, which is not changed by later recordings.
+         *
+         * @return the copy.
+         */
+        EndpointStats copy() {
+            return new EndpointStats(this);
+        }
+
+        /**
+         * Get the host.
+         *
+         * @return the host.
+         */
+        public String getHost() {
+            return mHost;
+        }
+
+        /**
+         * Get the route.
+         *
+         * @return the route, for example {@code /posts/{id}}.
+         */
+        public String getRoute() {
+            return mRoute;
+        }
+
+        /**
+         * Get the histogram of the call latency, which covers retries and parsing.
+         *
+         * @return the histogram in microseconds.
+         */
+        public Histogram getCallLatency() {
+            return mCallLatency;
+        }
+
+        /**
+         * Get the histogram of the time from the start of an attempt to its response headers.
+         *
+         * @return the histogram in microseconds.
+         */
+        public Histogram getResponseLatency() {
+            return mResponseLatency;
+        }
+
+        /**
+         * Get the number of responses by status code.
+         *
+         * @return the counts of the status codes that occurred, in order of the codes.
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (int status = 0; status <= MAX_STATUS; status++) {
+                long count = mStatuses.get(status);
+                if (count > 0) {
+                    counts.put(status, count);
+                }
+            }
+            return Collections.unmodifiableMap(counts);
+        }
+
+        /**
+         * Get the number of failed calls by the simple name of the exception causing them.
+         *
+         * @return the counts of the exceptions that occurred.
+         */
+        public Map<String, Long> getErrorCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Map.Entry<String, LongAdder> entry : mErrors.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().sum());
+            }
+            return Collections.unmodifiableMap(counts);
+        }
+
+        /**
+         * Get the number of failed calls.
+         *
+         * @return the count.
+         */
+        public long getErrorCount() {
+            long count = 0;
+            for (LongAdder adder : mErrors.values()) {
+                count += adder.sum();
+            }
+            return count;
+        }
+
+        /**
+         * Get the number of body bytes sent, after encoding.
+         *
+         * @return the count.
+         */
+        public long getBytesSent() {
+            return mBytesSent.sum();
+        }
+
+        /**
+         * Get the number of body bytes received, before decoding.
+         *
+         * @return the count.
+         */
+        public long getBytesReceived() {
+            return mBytesReceived.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %s calls=%d errors=%d p50=%dus p99=%dus"
+                            + " max=%dus sent=%d received=%d statuses=%s", mHost, mRoute,
+                    mCallLatency.getCount(), getErrorCount(),
+                    mCallLatency.getValueAtPercentile(50), mCallLatency.getValueAtPercentile(99),
+                    mCallLatency.getMax(), getBytesSent(), getBytesReceived(),
+                    getStatusCounts());
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Multipart form implementation.
+ * <p>
+ * The form is encoded as multipart/form-data while it is written. Part headers and text values
+ * are copied into a pooled buffer that is written to the connection when it is full, and files
+ * are transferred from their channels in chunks, so they are never held in memory as a whole.
+ * The length of the form is known exactly before it is written, so it is always sent with a
+ * fixed length.
+ *
+ * @see RequestBuilder#setBody(MultipartForm)
+ */
+public class MultipartForm {
+
+    /**
+     * The prefix of generated boundaries.
+     */
+    private static final String BOUNDARY_PREFIX = "NetworkLibBoundary";
+
+    /**
+     * Line end identifier.
+     */
+    private static final byte[] LINE_END = ascii("\r\n");
+
+    /**
+     * Two hyphens identifier.
+     */
+    private static final byte[] TWO_HYPHENS = ascii("--");
+
+    /**
+     * The start of the content disposition of a part, followed by the field name.
+     */
+    private static final byte[] DISPOSITION = ascii("Content-Disposition: form-data; name=\"");
+
+    /**
+     * The file name parameter of the content disposition.
+     */
+    private static final byte[] FILE_NAME = ascii("\"; filename=\"");
+
+    /**
+     * The end of a quoted parameter.
+     */
+    private static final byte[] QUOTE = ascii("\"");
+
+    /**
+     * The content type header of a part, followed by the type.
+     */
+    private static final byte[] CONTENT_TYPE = ascii("Content-Type: ");
+
+    /**
+     * The content type of text parts.
+     */
+    private static final byte[] TEXT_TYPE = ascii("text/plain; charset=utf-8");
+
+    /**
+     * A part of the form.
+     */
+    private abstract static class Part {
+
+        /**
+         * The encoded field name.
+         */
+        private final byte[] mName;
+
+        /**
+         * The encoded file name, or null for parts that are not files.
+         */
+        private final byte[] mFileName;
+
+        /**
+         * The encoded content type, or null if the part has no content type header.
+         */
+        private final byte[] mType;
+
+        /**
+         * Constructor.
+         *
+         * @param name     the field name.
+         * @param fileName the file name, or null.
+         * @param type     the content type, or null.
+         */
+        Part(String name, String fileName, byte[] type) {
+            mName = quote(name);
+            mFileName = fileName != null ? quote(fileName) : null;
+            mType = type;
+        }
+
+        /**
+         * Get the length of the content.
+         *
+         * @return the length in bytes.
+         */
+        abstract long length();
+
+        /**
+         * Write the content.
+         *
+         * @param writer the writer.
+         * @throws IOException if writing fails.
+         */
+        abstract void writeContent(Writer writer) throws IOException;
+
+        /**
+         * Get the length of the part, from its delimiter to the line end after the content.
+         *
+         * @param boundary the length of the boundary.
+         * @return the length in bytes.
+         */
+        long size(int boundary) {
+            long size = TWO_HYPHENS.length + boundary + LINE_END.length + DISPOSITION.length
+                    + mName.length + QUOTE.length + LINE_END.length;
+            if (mFileName != null) {
+                size += FILE_NAME.length + mFileName.length;
+            }
+            if (mType != null) {
+                size += CONTENT_TYPE.length + mType.length + LINE_END.length;
+            }
+            return size + LINE_END.length + length() + LINE_END.length;
+        }
+
+        /**
+         * Write the part.
+         *
+         * @param writer   the writer.
+         * @param boundary the encoded boundary.
+         * @throws IOException if writing fails.
+         */
+        void writeTo(Writer writer, byte[] boundary) throws IOException {
+            writer.write(TWO_HYPHENS);
+            writer.write(boundary);
+            writer.write(LINE_END);
+            writer.write(DISPOSITION);
+            writer.write(mName);
+            if (mFileName != null) {
+                writer.write(FILE_NAME);
+                writer.write(mFileName);
+            }
+            writer.write(QUOTE);
+            writer.write(LINE_END);
+            if (mType != null) {
+                writer.write(CONTENT_TYPE);
+                writer.write(mType);
+                writer.write(LINE_END);
+            }
+            writer.write(LINE_END);
+            writeContent(writer);
+            writer.write(LINE_END);
+        }
+    }
+
+    /**
+     * Text part.
+     */
+    private static final class TextPart extends Part {
+
+        /**
+         * The encoded value.
+         */
+        private final byte[] mValue;
+
+        /**
+         * Constructor.
+         *
+         * @param name  the field name.
+         * @param value the value.
+         */
+        TextPart(String name, String value) {
+            super(name, null, TEXT_TYPE);
+            mValue = value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        long length() {
+            return mValue.length;
+        }
+
+        @Override
+        void writeContent(Writer writer) throws IOException {
+            writer.write(mValue);
+        }
+    }
+
+    /**
+     * File part, whose content is transferred from the file channel.
+     */
+    private static final class FilePart extends Part {
+
+        /**
+         * The file to upload.
+         */
+        private final File mFile;
+
+        /**
+         * Constructor.
+         *
+         * @param name the field name.
+         * @param file the file.
+         * @param type the content type, or null.
+         */
+        FilePart(String name, File file, String type) {
+            super(name, file.getName(), type != null ? ascii(type) : null);
+            mFile = file;
+        }
+
+        @Override
+        long length() {
+            return mFile.length();
+        }
+
+        @Override
+        void writeContent(Writer writer) throws IOException {
+            try (FileInputStream fis = new FileInputStream(mFile)) {
+                writer.transfer(fis.getChannel(), length());
+            }
+        }
+    }
+
+    /**
+     * Writer buffering small writes in a pooled buffer and reporting the progress.
+     */
+    private static final class Writer {
+
+        /**
+         * The output stream.
+         */
+        private final OutputStream mOutput;
+
+        /**
+         * The progress updater.
+         */
+        private final ProgressUpdater mUpdater;
+
+        /**
+         * The total size of the form.
+         */
+        private final long mSize;
+
+        /**
+         * The buffer.
+         */
+        private final byte[] mBuffer;
+
+        /**
+         * The number of bytes in the buffer.
+         */
+        private int mCount;
+
+        /**
+         * The number of bytes written to the output stream.
+         */
+        private long mWritten;
+
+        /**
+         * Constructor.
+         *
+         * @param os      the output stream.
+         * @param updater the progress updater.
+         * @param size    the total size of the form.
+         * @param buffer  the buffer.
+         */
+        Writer(OutputStream os, ProgressUpdater updater, long size, byte[] buffer) {
+            mOutput = os;
+            mUpdater = updater;
+            mSize = size;
+            mBuffer = buffer;
+        }
+
+        /**
+         * Write bytes through the buffer.
+         *
+         * @param bytes the bytes.
+         * @throws IOException if writing fails.
+         */
+        void write(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (mCount == mBuffer.length) {
+                    flush();
+                }
+                int count = Math.min(bytes.length - offset, mBuffer.length - mCount);
+                System.arraycopy(bytes, offset, mBuffer, mCount, count);
+                mCount += count;
+                offset += count;
+            }
+        }
+
+        /**
+         * Transfer the content of a file channel to the output stream.
+         *
+         * @param channel the channel.
+         * @param length  the number of bytes to transfer.
+         * @throws IOException if writing fails.
+         */
+        void transfer(FileChannel channel, long length) throws IOException {
+            flush();
+            final long start = mWritten;
+            RequestBody.writeChannel(channel, 0, length, mOutput, (total, current) -> {
+                mWritten = start + current;
+                mUpdater.update(mSize, mWritten);
+            });
+            checkInterrupted();
+        }
+
+        /**
+         * Write the buffered bytes to the output stream.
+         *
+         * @throws IOException if writing fails.
+         */
+        void flush() throws IOException {
+            checkInterrupted();
+            if (mCount > 0) {
+                mOutput.write(mBuffer, 0, mCount);
+                mWritten += mCount;
+                mCount = 0;
+                mUpdater.update(mSize, mWritten);
+            }
+        }
+
+        /**
+         * Check that the writing thread has not been interrupted.
+         *
+         * @throws InterruptedIOException if it has.
+         */
+        private static void checkInterrupted() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Multipart upload was interrupted");
+            }
+        }
+    }
+
+    /**
+     * The form parts.
+     */
+    private final List<Part> mParts;
+
+    /**
+     * The form boundary.
+     */
+    private final String mBoundary;
+
+    /**
+     * The encoded form boundary.
+     */
+    private final byte[] mBoundaryBytes;
+
+    /**
+     * Constructor.
+     */
+    public MultipartForm() {
+        this(getMultipartBoundary());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param boundary the boundary, which must not occur in any part.
+     */
+    public MultipartForm(String boundary) {
+        mBoundary = boundary;
+        mBoundaryBytes = ascii(boundary);
+        mParts = new ArrayList<>();
+    }
+
+    /**
+     * Add a file to the form.
+     *
+     * @param fieldName the field name.
+     * @param file      the file to add.
+     * @param addMime   flag for if the mime type of the field should be added.
+     */
+    public void addFile(String fieldName, File file, boolean addMime) {
+        String type = addMime ? Setup.getPlatform().getMimeType(file.getName()) : null;
+        mParts.add(new FilePart(fieldName, file, type));
+    }
+
+    /**
+     * Add text to the form.
+     *
+     * @param fieldName the field name.
+     * @param value     the text.
+     */
+    public void addTextField(String fieldName, String value) {
+        mParts.add(new TextPart(fieldName, value));
+    }
+
+    /**
+     * Add text to the form.
+     *
+     * @param fieldName the field name.
+     * @param value     the value.
+     */
+    public void addTextField(String fieldName, int value) {
+        addTextField(fieldName, String.valueOf(value));
+    }
+
+    /**
+     * Create the body of a request sending the form.
+     *
+     * @return the body.
+     */
+    RequestBody toRequestBody() {
+        return new RequestBody() {
+            @Override
+            long length() {
+                return size();
+            }
+
+            @Override
+            void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+                MultipartForm.this.writeTo(os, updater);
+            }
+        };
+    }
+
+    /**
+     * Write the form to the output stream.
+     *
+     * @param os      the output stream.
+     * @param updater the progress updater.
+     * @throws IOException when writing fails.
+     */
+    void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+        long size = size();
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(BufferPool.chunkSize(size));
+
+        try {
+            Writer writer = new Writer(os, updater, size, buffer);
+            for (Part part : mParts) {
+                part.writeTo(writer, mBoundaryBytes);
+            }
+            writer.write(TWO_HYPHENS);
+            writer.write(mBoundaryBytes);
+            writer.write(TWO_HYPHENS);
+            writer.write(LINE_END);
+            writer.flush();
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Get the exact size of the encoded form, including the closing delimiter.
+     *
+     * @return the size in bytes.
+     */
+    long size() {
+        long size = 0;
+        for (Part part : mParts) {
+            size += part.size(mBoundaryBytes.length);
+        }
+        return size + TWO_HYPHENS.length + mBoundaryBytes.length + TWO_HYPHENS.length
+                + LINE_END.length;
+    }
+
+    /**
+     * Get the boundary.
+     *
+     * @return the boundary.
+     */
+    String getBoundary() {
+        return mBoundary;
+    }
+
+    /**
+     * Get the multipart content type.
+     *
+     * @return the content type with the boundary.
+     */
+    String getContentType() {
+        return "multipart/form-data; boundary=" + mBoundary;
+    }
+
+    /**
+     * Get a random multipart boundary.
+     *
+     * @return the boundary.
+     */
+    private static String getMultipartBoundary() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return BOUNDARY_PREFIX + Long.toHexString(random.nextLong())
+                + Long.toHexString(random.nextLong());
+    }
+
+    /**
+     * Encode a field or file name for a quoted parameter, escaping quotes and line breaks.
+     *
+     * @param value the name.
+     * @return the utf-8 bytes.
+     */
+    private static byte[] quote(String value) {
+        return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encode an ascii string.
+     *
+     * @param value the string.
+     * @return the bytes.
+     */
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,607 @@
+package com.tuz.network;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of the Request interface.
+ */
+
+class NetworkRequest<Output> implements Request<Output>, HttpRequest.IHttpTransferListener {
+
+    /**
+     * An attempt of a call, which is retried by {@link #retry} when it fails.
+     *
+     * @param <T> the output of the call.
+     */
+    interface Attempt<T> {
+
+        /**
+         * Make the attempt.
+         *
+         * @return the output.
+         * @throws Exception if the attempt fails.
+         */
+        T run() throws Exception;
+    }
+
+    /**
+     * The key identifying identical requests. The parser is compared by identity, as only a
+     * request parsed by the same parser can share the output.
+     */
+    private static final class CoalesceKey {
+
+        /**
+         * The method, the url and the key headers.
+         */
+        private final String mRequest;
+
+        /**
+         * The parser.
+         */
+        private final ResponseParser<?> mParser;
+
+        /**
+         * Constructor.
+         *
+         * @param request the method, the url and the key headers.
+         * @param parser  the parser.
+         */
+        CoalesceKey(String request, ResponseParser<?> parser) {
+            mRequest = request;
+            mParser = parser;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CoalesceKey)) {
+                return false;
+            }
+            CoalesceKey other = (CoalesceKey) o;
+            return mParser == other.mParser && mRequest.equals(other.mRequest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mRequest.hashCode() + System.identityHashCode(mParser);
+        }
+    }
+
+    /**
+     * The http request.
+     */
+    private final HttpRequest mRequest;
+
+    /**
+     * The response parser.
+     */
+    private final ResponseParser<Output> mParser;
+
+    /**
+     * The request progress listener.
+     */
+    private RequestProgressListener<Output> mProgressListener;
+
+    /**
+     * The dispatcher for asynchronous execution, or null to use the default dispatcher.
+     */
+    private Dispatcher mDispatcher;
+
+    /**
+     * The retry policy, or null if the request should not be retried.
+     */
+    private RetryPolicy mRetryPolicy;
+
+    /**
+     * The headers included in the coalescing key, or null if the request is not coalesced.
+     */
+    private String[] mCoalesceHeaders;
+
+    /**
+     * The flight of the current execution, or null if it is not coalesced.
+     */
+    private final AtomicReference<SingleFlight.Flight> mFlight = new AtomicReference<>();
+
+    /**
+     * Constructor.
+     *
+     * @param request the http request.
+     * @param parser  the response parser.
+     */
+    NetworkRequest(HttpRequest request, ResponseParser<Output> parser) {
+        mRequest = request;
+        mParser = parser;
+        mRequest.setCall(this);
+    }
+
+    /**
+     * Set the dispatcher for asynchronous execution.
+     *
+     * @param dispatcher the dispatcher, or null to use the default dispatcher.
+     * @see Setup#getDispatcher()
+     */
+    void setDispatcher(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * Set the retry policy.
+     *
+     * @param policy the retry policy, or null if the request should not be retried.
+     */
+    void setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+    }
+
+    /**
+     * Set if identical requests in flight are coalesced into one.
+     *
+     * @param keyHeaders the headers included in the coalescing key, or null if the request is
+     *                   not coalesced.
+     */
+    void setCoalesce(String[] keyHeaders) {
+        mCoalesceHeaders = keyHeaders;
+    }
+
+    /**
+     * Cancel the current execution. A coalesced request leaves its flight, which is only
+     * aborted when no other caller is waiting for it.
+     */
+    void cancel() {
+        SingleFlight.Flight flight = mFlight.getAndSet(null);
+        if (flight != null) {
+            flight.leave();
+        } else {
+            mRequest.cancel();
+        }
+    }
+
+    @Override
+    public Output execute(RequestProgressListener<Output> listener) throws NetworkException {
+        mProgressListener = listener;
+        return execute();
+    }
+
+    @Override
+    public Output execute() throws NetworkException {
+        return execute(mRetryPolicy, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Output execute(final int retries) {
+        try {
+            return execute(getRetryPolicy(mRetryPolicy, retries), retries);
+        } catch (NetworkException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the retry policy of an execution with a max number of retries.
+     *
+     * @param policy  the retry policy set on the request, or null.
+     * @param retries the max number of retries.
+     * @return the policy set on the request, or else exponential backoff allowing the
+     * retries.
+     */
+    static RetryPolicy getRetryPolicy(RetryPolicy policy, int retries) {
+        if (policy != null) {
+            return policy;
+        }
+        return new ExponentialBackoff(Math.max(retries, 0),
+                ExponentialBackoff.DEFAULT_BASE_DELAY_MILLIS,
+                ExponentialBackoff.DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    @Override
+    public Canceller executeAsync(RequestListener<Output> listener) {
+        Dispatcher dispatcher = mDispatcher != null ? mDispatcher : Setup.getDispatcher();
+        NetworkTask<Output> task = new NetworkTask<>(dispatcher, this, listener,
+                mRequest.getHost(), this::cancel);
+        dispatcher.enqueue(task);
+        return task;
+    }
+
+
+    @Override
+    public void onTransferProgressUpdated(TransferProgress progress) {
+        if (mProgressListener != null) {
+            mProgressListener.onExecutionProgress(this, progress);
+        }
+    }
+
+    /**
+     * Execute the request within a call timeout started by the caller, which is expected to
+     * cancel the http request of this request when it expires.
+     *
+     * @param listener   the progress listener, or null.
+     * @param policy     the retry policy, or null if the request should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @param timeout    the call timeout.
+     * @return the output, or null if the request failed with an unsuccessful status.
+     * @throws NetworkException when the request fails with an exception or times out.
+     */
+    Output execute(RequestProgressListener<Output> listener, RetryPolicy policy, int maxRetries,
+                   CallTimeout timeout) throws NetworkException {
+        mProgressListener = listener;
+        mRequest.setProgressListener(this);
+        return execute(policy, maxRetries, timeout);
+    }
+
+    /**
+     * Make attempts of a call within a call timeout, retrying failed attempts as decided by the
+     * retry policy. This is the retry loop of calls made up of several http requests.
+     *
+     * @param attempt    the attempt.
+     * @param method     the method the retry policy judges the call by.
+     * @param policy     the retry policy, or null if the call should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @param timeout    the call timeout.
+     * @param <T>        the output of the call.
+     * @return the output.
+     * @throws NetworkException when the last attempt fails or the call times out.
+     */
+    static <T> T retry(Attempt<T> attempt, Method method, RetryPolicy policy, int maxRetries,
+                       CallTimeout timeout) throws NetworkException {
+        int count = 0;
+
+        while (true) {
+            count++;
+            long delay;
+
+            try {
+                T output = attempt.run();
+                if (policy != null) {
+                    policy.onSuccess();
+                }
+                return output;
+            } catch (Exception e) {
+                delay = getRetryDelay(e, method, policy, count, maxRetries, timeout);
+            }
+            sleep(delay);
+        }
+    }
+
+    /**
+     * Get the delay before retrying an attempt that failed with an exception.
+     *
+     * @param e          the exception.
+     * @param method     the method the retry policy judges the call by.
+     * @param policy     the retry policy, or null if the call should not be retried.
+     * @param attempt    the number of attempts made so far.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @param timeout    the call timeout.
+     * @return the delay in milliseconds.
+     * @throws NetworkException if the attempt should not be retried or the call times out.
+     */
+    private static long getRetryDelay(Exception e, Method method, RetryPolicy policy,
+                                      int attempt, int maxRetries, CallTimeout timeout)
+            throws NetworkException {
+        if (timeout.isExpired()) {
+            throw new NetworkException(new InterruptedIOException("Call timed out"));
+        }
+        Exception error = e instanceof NetworkException && e.getCause() instanceof Exception
+                ? (Exception) e.getCause() : e;
+        long delay = policy == null || attempt > maxRetries ? RetryPolicy.NO_RETRY
+                : policy.getRetryDelay(method, attempt, 0, error, -1);
+
+        if (delay < 0) {
+            throw e instanceof NetworkException ? (NetworkException) e : new NetworkException(e);
+        } else if (delay >= timeout.getRemaining()) {
+            throw new NetworkException(new InterruptedIOException("Call timed out"));
+        }
+        return delay;
+    }
+
+    /**
+     * Sleep before a retry.
+     *
+     * @param delay the delay in milliseconds.
+     * @throws NetworkException if the thread is interrupted.
+     */
+    private static void sleep(long delay) throws NetworkException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NetworkException(e);
+        }
+    }
+
+    /**
+     * Execute the request, reporting the call to the event listener.
+     *
+     * @param policy     the retry policy, or null if the request should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @return the output, or null if the request failed with an unsuccessful status.
+     * @throws NetworkException when the request fails with an exception or times out.
+     */
+    private Output execute(RetryPolicy policy, int maxRetries) throws NetworkException {
+        EventListener events = mRequest.getEvents();
+        MetricsRegistry registry = Setup.getMetricsRegistry();
+        long start = System.nanoTime();
+        events.callStart(this, start);
+
+        try {
+            Output output = executeCached(policy, maxRetries);
+            long end = System.nanoTime();
+            events.callEnd(this, end);
+            if (registry != null) {
+                registry.getStats(mRequest.getUrl()).recordCall(end - start, null);
+            }
+            return output;
+        } catch (NetworkException e) {
+            long end = System.nanoTime();
+            events.callFailed(this, e, end);
+            if (registry != null) {
+                registry.getStats(mRequest.getUrl()).recordCall(end - start, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Execute the request, serving a stale cached response instead if the cache policy allows
+     * it.
+     *
+     * @param policy     the retry policy, or null if the request should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @return the output, or null if the request failed with an unsuccessful status.
+     * @throws NetworkException when the request fails with an exception or times out.
+     */
+    private Output executeCached(RetryPolicy policy, int maxRetries) throws NetworkException {
+        CachePolicy cachePolicy = mRequest.getCachePolicy();
+        CacheEntry entry = cachePolicy != CachePolicy.NETWORK ? mRequest.peekCache() : null;
+        if (entry == null) {
+            return executeShared(policy, maxRetries);
+        }
+
+        if (!entry.isFresh(System.currentTimeMillis())
+                && entry.isServableStale(cachePolicy, System.currentTimeMillis(), false)) {
+            Output output = parseStale(entry);
+            if (output != null) {
+                refreshInBackground();
+                return output;
+            }
+        }
+
+        Output output;
+        try {
+            output = executeShared(policy, maxRetries);
+        } catch (NetworkException e) {
+            output = serveStaleOnError(entry, cachePolicy);
+            if (output == null) {
+                throw e;
+            }
+            return output;
+        }
+        return output != null ? output : serveStaleOnError(entry, cachePolicy);
+    }
+
+    /**
+     * Serve a stale cached response in place of a failed request.
+     *
+     * @param entry       the cache entry.
+     * @param cachePolicy the cache policy.
+     * @return the output, or null if the entry may not be served.
+     */
+    private Output serveStaleOnError(CacheEntry entry, CachePolicy cachePolicy) {
+        if (entry.isServableStale(cachePolicy, System.currentTimeMillis(), true)) {
+            return parseStale(entry);
+        }
+        return null;
+    }
+
+    /**
+     * Parse a stale cached response, counting it as a stale hit.
+     *
+     * @param entry the cache entry.
+     * @return the output, or null if parsing fails.
+     */
+    private Output parseStale(CacheEntry entry) {
+        try (Response response = new Response(entry)) {
+            Output output = parse(response);
+            MemoryCache memoryCache = Setup.getMemoryCache();
+            if (memoryCache != null) {
+                memoryCache.recordStaleHit();
+            }
+            return output;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Refresh the cached response in the background on the dispatcher. Concurrent refreshes
+     * of the same url and cache key headers are coalesced.
+     */
+    private void refreshInBackground() {
+        NetworkRequest<Output> refresh = new NetworkRequest<>(mRequest.copyForRefresh(),
+                mParser);
+        refresh.setDispatcher(mDispatcher);
+        refresh.setRetryPolicy(mRetryPolicy);
+        refresh.setCoalesce(mCoalesceHeaders != null ? mCoalesceHeaders
+                : HttpRequest.CACHE_KEY_HEADERS);
+
+        try {
+            refresh.executeAsync(null);
+        } catch (RejectedExecutionException e) {
+            // The next request refreshes instead.
+        }
+    }
+
+    /**
+     * Execute the request, sharing the output of an identical request in flight if the
+     * request is coalesced.
+     *
+     * @param policy     the retry policy, or null if the request should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @return the output, or null if the request failed with an unsuccessful status.
+     * @throws NetworkException when the request fails with an exception or times out.
+     */
+    @SuppressWarnings("unchecked")
+    private Output executeShared(RetryPolicy policy, int maxRetries) throws NetworkException {
+        if (mCoalesceHeaders == null) {
+            return executeWithTimeout(policy, maxRetries);
+        }
+
+        SingleFlight.Flight flight = SingleFlight.getDefault().join(getCoalesceKey(),
+                mRequest::cancel);
+        mFlight.set(flight);
+
+        try {
+            if (!flight.isLeader()) {
+                return (Output) flight.await();
+            }
+
+            Output output = null;
+            NetworkException error = null;
+            try {
+                output = executeWithTimeout(policy, maxRetries);
+                return output;
+            } catch (NetworkException e) {
+                error = e;
+                throw e;
+            } finally {
+                flight.complete(output, error);
+            }
+        } finally {
+            mFlight.compareAndSet(flight, null);
+        }
+    }
+
+    /**
+     * Get the key identifying identical requests, made up of the method, the url, the key
+     * headers and the parser.
+     *
+     * @return the key.
+     */
+    private CoalesceKey getCoalesceKey() {
+        StringBuilder key = new StringBuilder();
+        key.append(mRequest.getMethod()).append(' ').append(mRequest.getUrl());
+
+        for (String name : mCoalesceHeaders) {
+            key.append('\n').append(name).append(':');
+            for (Header header : mRequest.getHeaders()) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    key.append(header.getValue()).append(',');
+                }
+            }
+        }
+        return new CoalesceKey(key.toString(), mParser);
+    }
+
+    /**
+     * Execute the request, starting the call timeout of the request.
+     *
+     * @param policy     the retry policy, or null if the request should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @return the output, or null if the request failed with an unsuccessful status.
+     * @throws NetworkException when the request fails with an exception or times out.
+     */
+    private Output executeWithTimeout(RetryPolicy policy, int maxRetries)
+            throws NetworkException {
+        mRequest.setProgressListener(this);
+        mRequest.reset();
+        CallTimeout timeout = new CallTimeout(mRequest.getCallTimeout(), mRequest::cancel);
+
+        try {
+            return execute(policy, maxRetries, timeout);
+        } finally {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Execute the request within a call timeout, retrying failed attempts as decided by the
+     * retry policy.
+     *
+     * @param policy     the retry policy, or null if the request should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @param timeout    the call timeout.
+     * @return the output, or null if the request failed with an unsuccessful status.
+     * @throws NetworkException when the request fails with an exception or times out.
+     */
+    private Output execute(RetryPolicy policy, int maxRetries, CallTimeout timeout)
+            throws NetworkException {
+        Method method = mRequest.getMethod();
+        int attempt = 0;
+
+        while (true) {
+            attempt++;
+            long delay;
+
+            try (Response response = mRequest.execute()) {
+                int status = response.getStatus();
+                if (Http.isSuccessfulStatus(status) || mRequest.isDownloadComplete(response)) {
+                    Output output;
+                    try {
+                        output = parse(response);
+                    } catch (Exception e) {
+                        // Fetching the same response again would not parse any better.
+                        throw new NetworkException(timeout.isExpired()
+                                ? new InterruptedIOException("Call timed out") : e);
+                    }
+                    if (policy != null) {
+                        policy.onSuccess();
+                    }
+                    return output;
+                }
+
+                long retryAfter = Http.parseRetryAfter(response.getHeader(Http.RETRY_AFTER),
+                        System.currentTimeMillis());
+                delay = policy == null || attempt > maxRetries || !mRequest.isReplayable()
+                        ? RetryPolicy.NO_RETRY
+                        : policy.getRetryDelay(method, attempt, status, null, retryAfter);
+                if (delay < 0 || delay >= timeout.getRemaining()) {
+                    return null;
+                }
+            } catch (NetworkException e) {
+                throw e;
+            } catch (Exception e) {
+                // A body that cannot be sent again fails the call instead of being retried.
+                delay = getRetryDelay(e, method, mRequest.isReplayable() ? policy : null,
+                        attempt, maxRetries, timeout);
+            }
+            sleep(delay);
+        }
+    }
+
+    /**
+     * Parse a successful response. A revalidating request reuses the output the same parser
+     * memoized for a cached response, so that an unchanged response is only parsed once.
+     *
+     * @param response the response.
+     * @return the output.
+     * @throws Exception if parsing fails.
+     */
+    @SuppressWarnings("unchecked")
+    private Output parse(Response response) throws Exception {
+        if (!mRequest.isRevalidate()) {
+            return parseResponse(response);
+        }
+
+        Output output = (Output) response.getParsedOutput(mParser);
+        if (output == null) {
+            output = parseResponse(response);
+            response.setParsedOutput(mParser, output);
+        }
+        return output;
+    }
+
+    /**
+     * Parse a response with the parser, reporting it to the event listener.
+     *
+     * @param response the response.
+     * @return the output.
+     * @throws Exception if parsing fails.
+     */
+    private Output parseResponse(Response response) throws Exception {
+        EventListener events = mRequest.getEvents();
+        events.parseStart(this, System.nanoTime());
+        Output output = mParser.parseResponse(response);
+        events.parseEnd(this, System.nanoTime());
+        return output;
+    }
+}
@@ -0,0 +1,137 @@
+package com.tuz.network;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class for executing a request asynchronously on a {@link Dispatcher}.
+ */
+class NetworkTask<Output> extends DispatcherTask implements RequestProgressListener<Output> {
+
+    /**
+     * The request listener.
+     */
+    private final WeakReference<RequestListener<Output>> mListener;
+
+    /**
+     * The request.
+     */
+    private final Request<Output> mRequest;
+
+    /**
+     * The executor on which the listener callbacks are delivered.
+     */
+    private final Executor mCallbackExecutor;
+
+    /**
+     * Flag for if the task has delivered its result.
+     */
+    private final AtomicBoolean mDone;
+
+    /**
+     * Flag for if a progress callback is waiting to be delivered.
+     */
+    private final AtomicBoolean mProgressPending;
+
+    /**
+     * The latest progress of the request.
+     */
+    private volatile TransferProgress mProgress;
+
+    /**
+     * Constructor.
+     *
+     * @param dispatcher the dispatcher.
+     * @param request    the request.
+     * @param listener   the request listener.
+     * @param host       the host of the request.
+     */
+    NetworkTask(Dispatcher dispatcher, Request<Output> request, RequestListener<Output> listener,
+                String host) {
+        this(dispatcher, request, listener, host, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dispatcher       the dispatcher.
+     * @param request          the request.
+     * @param listener         the request listener.
+     * @param host             the host of the request.
+     * @param requestCanceller the canceller aborting the request while it is running, or null.
+     */
+    NetworkTask(Dispatcher dispatcher, Request<Output> request, RequestListener<Output> listener,
+                String host, Canceller requestCanceller) {
+        super(dispatcher, host, requestCanceller);
+        mCallbackExecutor = dispatcher.getCallbackExecutor();
+        mRequest = request;
+        mListener = new WeakReference<>(listener);
+        mDone = new AtomicBoolean();
+        mProgressPending = new AtomicBoolean();
+    }
+
+    @Override
+    void onPreExecute() {
+        RequestListener<Output> listener = mListener.get();
+
+        if (listener != null) {
+            listener.onPreExecution(mRequest);
+        }
+    }
+
+    @Override
+    void onDropped() {
+        onPostExecute(null);
+    }
+
+    @Override
+    void execute() {
+        Output output = null;
+
+        try {
+            if (!isCancelled()) {
+                output = mRequest.execute(this);
+            }
+        } catch (NetworkException e) {
+            // Nop
+        } finally {
+            onPostExecute(output);
+        }
+    }
+
+    @Override
+    public void onExecutionProgress(final Request<Output> request,
+                                    final TransferProgress progress) {
+        mProgress = progress;
+
+        // The progress instance is reused, so a pending callback delivers the latest values.
+        if (!isCancelled() && mProgressPending.compareAndSet(false, true)) {
+            mCallbackExecutor.execute(() -> {
+                mProgressPending.set(false);
+                RequestListener<Output> listener = mListener.get();
+
+                if (listener != null) {
+                    listener.onExecutionProgress(request, mProgress);
+                }
+            });
+        }
+    }
+
+    /**
+     * Deliver the result to the listener, at most once.
+     *
+     * @param output the output.
+     */
+    private void onPostExecute(final Output output) {
+        if (mDone.compareAndSet(false, true)) {
+            mCallbackExecutor.execute(() -> {
+                RequestListener<Output> listener = mListener.get();
+
+                if (listener != null) {
+                    listener.onExecutionDone(mRequest, output);
+                }
+            });
+        }
+    }
+}
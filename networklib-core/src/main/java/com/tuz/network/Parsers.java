@@ -0,0 +1,189 @@
+package com.tuz.network;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Common parsers for the response.
+ */
+public class Parsers {
+
+    /**
+     * Handler reading the output from a json stream.
+     *
+     * @param <Output> the output type.
+     * @see #newJsonReaderParser(JsonReaderHandler)
+     */
+    public interface JsonReaderHandler<Output> {
+
+        /**
+         * Read the output from the json stream.
+         *
+         * @param reader the json reader positioned at the start of the document.
+         * @return the output.
+         * @throws Exception if anything goes wrong while reading.
+         */
+        Output read(JsonStreamReader reader) throws Exception;
+    }
+
+    /**
+     * Callback for the elements of a json array.
+     *
+     * @see #newJsonArrayParser(ElementCallback)
+     */
+    public interface ElementCallback {
+
+        /**
+         * Callback for each element of the array.
+         *
+         * @param index   the index of the element.
+         * @param element the element, which is a {@link JSONObject}, {@link JSONArray},
+         *                {@link String}, {@link Number}, {@link Boolean} or
+         *                {@link JSONObject#NULL}.
+         * @throws Exception if the element cannot be handled, which stops the parsing.
+         */
+        void onElement(int index, Object element) throws Exception;
+    }
+
+    /**
+     * Creates a new string parser.
+     *
+     * @return a parser for strings.
+     */
+    public static ResponseParser<String> newStringParser() {
+        return response -> Utils.toString(response.getInputStream(), response.getContentLength());
+    }
+
+    /**
+     * Creates a new json object parser. The object is built while the response is streamed so
+     * the body is never held in memory as a string.
+     *
+     * @return a parser for a json object.
+     */
+    public static ResponseParser<JSONObject> newJsonParser() {
+        return newJsonReaderParser(reader -> {
+            if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                throw new JSONException("Expected a json object but was " + reader.peek());
+            }
+            return readObject(reader);
+        });
+    }
+
+    /**
+     * Creates a new parser reading the response with a json pull parser.
+     *
+     * @param handler the handler reading the output from the stream.
+     * @return a parser for the output of the handler.
+     */
+    public static <Output> ResponseParser<Output> newJsonReaderParser(
+            JsonReaderHandler<Output> handler) {
+        return response -> {
+            try (JsonStreamReader reader = new JsonStreamReader(response.getInputStream(),
+                    response.getContentLength())) {
+                return handler.read(reader);
+            }
+        };
+    }
+
+    /**
+     * Creates a new parser for a json array response, emitting the elements one at a time so
+     * that only a single element is held in memory at once.
+     *
+     * @param callback the element callback.
+     * @return a parser returning the number of elements.
+     */
+    public static ResponseParser<Integer> newJsonArrayParser(ElementCallback callback) {
+        return newJsonReaderParser(reader -> {
+            int index = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                callback.onElement(index++, readValue(reader));
+            }
+            reader.endArray();
+            return index;
+        });
+    }
+
+    /**
+     * Read the next value of the reader into its json representation.
+     *
+     * @param reader the reader.
+     * @return the value.
+     * @throws IOException   if reading fails.
+     * @throws JSONException if the value cannot be represented.
+     */
+    static Object readValue(JsonStreamReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected token " + reader.peek());
+        }
+    }
+
+    /**
+     * Read the next object of the reader. Duplicate names are rejected, as by the json
+     * tokener.
+     *
+     * @param reader the reader.
+     * @return the json object.
+     * @throws IOException   if reading fails.
+     * @throws JSONException if the object cannot be represented or has a duplicate name.
+     */
+    private static JSONObject readObject(JsonStreamReader reader) throws IOException,
+            JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (object.has(name)) {
+                throw new JSONException("Duplicate key \"" + name + "\"");
+            }
+            object.put(name, readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    /**
+     * Convert a number literal to the narrowest number type, the same way as the json tokener.
+     *
+     * @param literal the literal.
+     * @return the number.
+     */
+    private static Number toNumber(String literal) {
+        if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1
+                && literal.indexOf('E') == -1) {
+            try {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                // Too large for a long, fall through to double.
+            }
+        }
+        return Double.valueOf(literal);
+    }
+}
@@ -0,0 +1,87 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * The services of the platform the library runs on.
+ * <p>
+ * The core of the library is plain java. What differs between platforms, such as the thread
+ * callbacks are delivered on, the mime types of files, logging and the disk response cache, is
+ * provided by a platform. The android platform is used when the android module is on the class
+ * path, and otherwise a plain jvm platform.
+ *
+ * @see Setup#setPlatform(Platform)
+ */
+public abstract class Platform {
+
+    /**
+     * The class name of the platform of the android module.
+     */
+    private static final String ANDROID_PLATFORM = "com.tuz.network.AndroidPlatform";
+
+    /**
+     * Get the executor delivering the callbacks of asynchronous requests.
+     *
+     * @return the executor.
+     */
+    public abstract Executor getCallbackExecutor();
+
+    /**
+     * Get the mime type of a file from its name.
+     *
+     * @param fileName the file name.
+     * @return the mime type, or null if it is not known.
+     */
+    public abstract String getMimeType(String fileName);
+
+    /**
+     * Log a debug message.
+     *
+     * @param tag     the tag of the message.
+     * @param message the message.
+     */
+    public abstract void log(String tag, String message);
+
+    /**
+     * Install the disk response cache of the platform http stack.
+     *
+     * @param dir  the directory of the cache.
+     * @param size the max size of the cache in bytes.
+     * @throws IOException if the cache cannot be created.
+     * @throws UnsupportedOperationException if the platform has no response cache.
+     */
+    public void installCache(File dir, long size) throws IOException {
+        throw new UnsupportedOperationException("The platform has no response cache");
+    }
+
+    /**
+     * Check if a disk response cache is installed.
+     *
+     * @return true if a cache is installed.
+     */
+    public boolean isCacheInstalled() {
+        return false;
+    }
+
+    /**
+     * Flush the disk response cache, if one is installed.
+     */
+    public void flushCache() {
+    }
+
+    /**
+     * Find the platform the library runs on.
+     *
+     * @return the android platform if it is on the class path, or else the jvm platform.
+     */
+    static Platform detect() {
+        try {
+            return (Platform) Class.forName(ANDROID_PLATFORM).getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new JvmPlatform();
+        }
+    }
+}
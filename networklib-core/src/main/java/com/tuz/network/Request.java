@@ -25,17 +25,24 @@ public interface Request<Output> {
     Output execute() throws NetworkException;
 
     /**
-     * Execute the request.
+     * Execute the request, retrying failed attempts at most the given number of times. The
+     * retry policy of the request decides which failures are retried and the delay between
+     * attempts, by default {@link ExponentialBackoff}.
      *
-     * @param retries the number of retries.
-     * @return the output.
+     * @param retries the max number of retries.
+     * @return the output, or null if all attempts failed.
+     * @see RequestBuilder#setRetryPolicy(RetryPolicy)
      */
     Output execute(int retries);
 
     /**
-     * Execute the request asynchronously.
+     * Execute the request asynchronously on the dispatcher.
      *
+     * @param listener the request listener.
      * @return a canceller.
+     * @throws java.util.concurrent.RejectedExecutionException if the dispatcher rejects the
+     *                                                         request.
+     * @see Setup#setDispatcher(Dispatcher)
      */
     Canceller executeAsync(RequestListener<Output> listener);
 }
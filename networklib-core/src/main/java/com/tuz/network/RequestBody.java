@@ -0,0 +1,291 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The body of a request, streamed to the connection output when the request is executed.
+ */
+abstract class RequestBody {
+
+    /**
+     * The number of bytes transferred from a file channel between progress updates.
+     */
+    private static final long FILE_TRANSFER_SIZE = 256 * 1024;
+
+    /**
+     * Get the length of the body.
+     *
+     * @return the length in bytes, or -1 if unknown.
+     */
+    abstract long length();
+
+    /**
+     * Write the body to the output stream.
+     *
+     * @param os      the output stream.
+     * @param updater the progress updater.
+     * @throws IOException if writing fails.
+     */
+    abstract void writeTo(OutputStream os, ProgressUpdater updater) throws IOException;
+
+    /**
+     * Check if the body can be written again, for example when retrying.
+     *
+     * @return true if the body can be written again.
+     */
+    boolean isReplayable() {
+        return true;
+    }
+
+    /**
+     * Create a body from a byte array.
+     *
+     * @param bytes the bytes.
+     * @return the body.
+     */
+    static RequestBody create(final byte[] bytes) {
+        return new RequestBody() {
+            @Override
+            long length() {
+                return bytes.length;
+            }
+
+            @Override
+            void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+                writeArray(bytes, 0, bytes.length, os, updater);
+            }
+        };
+    }
+
+    /**
+     * Create a body from a file. The file is opened each time the body is written.
+     *
+     * @param file the file.
+     * @return the body.
+     */
+    static RequestBody create(final File file) {
+        return new RequestBody() {
+            @Override
+            long length() {
+                return file.length();
+            }
+
+            @Override
+            void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+                try (FileInputStream fis = new FileInputStream(file)) {
+                    FileChannel channel = fis.getChannel();
+                    writeChannel(channel, 0, channel.size(), os, updater);
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a body from a range of a file. The file is opened each time the body is written.
+     *
+     * @param file     the file.
+     * @param position the position of the range.
+     * @param length   the length of the range.
+     * @return the body.
+     */
+    static RequestBody create(final File file, final long position, final long length) {
+        return new RequestBody() {
+            @Override
+            long length() {
+                return length;
+            }
+
+            @Override
+            void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+                try (FileInputStream fis = new FileInputStream(file)) {
+                    writeChannel(fis.getChannel(), position, length, os, updater);
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a body from a file channel, from its current position to its end. The channel is
+     * read with positional transfers and is not closed.
+     *
+     * @param channel the channel.
+     * @return the body.
+     * @throws IOException if the position or size of the channel cannot be read.
+     */
+    static RequestBody create(final FileChannel channel) throws IOException {
+        final long position = channel.position();
+        final long length = channel.size() - position;
+
+        return new RequestBody() {
+            @Override
+            long length() {
+                return length;
+            }
+
+            @Override
+            void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+                writeChannel(channel, position, length, os, updater);
+            }
+        };
+    }
+
+    /**
+     * Create a body from the remaining bytes of a byte buffer. Heap buffers are written from
+     * their backing array, while direct and mapped buffers are copied to the connection stream
+     * one chunk at a time, so they are never copied to the heap as a whole. The position of
+     * the buffer is not changed.
+     *
+     * @param buffer the buffer.
+     * @return the body.
+     */
+    static RequestBody create(ByteBuffer buffer) {
+        final ByteBuffer body = buffer.slice();
+
+        return new RequestBody() {
+            @Override
+            long length() {
+                return body.remaining();
+            }
+
+            @Override
+            void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+                if (body.hasArray()) {
+                    writeArray(body.array(), body.arrayOffset(), body.remaining(), os, updater);
+                } else {
+                    writeBuffer(body.duplicate(), os, updater);
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a body from an input stream. The stream can only be written once and is closed
+     * when it has been written, so the body is not replayable once writing has started.
+     *
+     * @param is     the input stream.
+     * @param length the number of bytes in the stream, or -1 if unknown.
+     * @return the body.
+     */
+    static RequestBody create(final InputStream is, final long length) {
+        return new RequestBody() {
+
+            /**
+             * Flag for if writing the stream has started.
+             */
+            private volatile boolean mWritten;
+
+            @Override
+            long length() {
+                return length;
+            }
+
+            @Override
+            boolean isReplayable() {
+                return !mWritten;
+            }
+
+            @Override
+            void writeTo(OutputStream os, ProgressUpdater updater) throws IOException {
+                if (mWritten) {
+                    throw new IOException("An input stream body can only be sent once");
+                }
+                mWritten = true;
+                BufferPool pool = BufferPool.getDefault();
+                byte[] buffer = pool.acquire(BufferPool.chunkSize(length));
+                long written = 0;
+                int read;
+
+                try (InputStream in = is) {
+                    while ((read = in.read(buffer)) != -1) {
+                        os.write(buffer, 0, read);
+                        written += read;
+                        updater.update(length, written);
+                    }
+                } finally {
+                    pool.release(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Write a range of a byte array in chunks.
+     *
+     * @param bytes   the bytes.
+     * @param offset  the offset of the range.
+     * @param length  the length of the range.
+     * @param os      the output stream.
+     * @param updater the progress updater.
+     * @throws IOException if writing fails.
+     */
+    private static void writeArray(byte[] bytes, int offset, int length, OutputStream os,
+                                   ProgressUpdater updater) throws IOException {
+        int chunkSize = BufferPool.chunkSize(length);
+        int written = 0;
+
+        while (written < length) {
+            int count = Math.min(chunkSize, length - written);
+            os.write(bytes, offset + written, count);
+            written += count;
+            updater.update(length, written);
+        }
+    }
+
+    /**
+     * Write the remaining bytes of a byte buffer in chunks.
+     *
+     * @param buffer  the buffer.
+     * @param os      the output stream.
+     * @param updater the progress updater.
+     * @throws IOException if writing fails.
+     */
+    private static void writeBuffer(ByteBuffer buffer, OutputStream os, ProgressUpdater updater)
+            throws IOException {
+        WritableByteChannel target = Channels.newChannel(os);
+        int length = buffer.remaining();
+        int chunkSize = BufferPool.chunkSize(length);
+        int end = buffer.limit();
+
+        while (buffer.position() < end) {
+            buffer.limit(Math.min(end, buffer.position() + chunkSize));
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            updater.update(length, length - (end - buffer.position()));
+        }
+    }
+
+    /**
+     * Write a range of a file channel using positional transfers.
+     *
+     * @param channel  the channel.
+     * @param position the position of the range.
+     * @param length   the length of the range.
+     * @param os       the output stream.
+     * @param updater  the progress updater.
+     * @throws IOException if writing fails.
+     */
+    static void writeChannel(FileChannel channel, long position, long length, OutputStream os,
+                             ProgressUpdater updater) throws IOException {
+        WritableByteChannel target = Channels.newChannel(os);
+        long written = 0;
+
+        while (written < length) {
+            long count = channel.transferTo(position + written,
+                    Math.min(FILE_TRANSFER_SIZE, length - written), target);
+            if (count <= 0) {
+                throw new IOException("Unexpected end of file channel.");
+            }
+            written += count;
+            updater.update(length, written);
+        }
+    }
+}
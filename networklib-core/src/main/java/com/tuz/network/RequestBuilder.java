@@ -0,0 +1,653 @@
+/*
+ * Copyright (C) 2017 Henrik Tuszynski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tuz.network;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builder for creating a request.
+ * <p>
+ * <pre>
+ * <code>
+ *     RequestParser parser = Parsers.newJsonParser();
+ *     RequestBuilder builder = new RequestBuilder(Method.GET, url, parser);
+ *     builder.addHeader("Content-Type", "application/json");
+ *     Request request = builder.build();
+ *     JSONObject json = request.execute();
+ * </code>
+ * </pre>
+ *
+ * @see Request
+ */
+public final class RequestBuilder<Output> {
+
+    /**
+     * The http request.
+     */
+    private final HttpRequest mRequest;
+
+    /**
+     * The response parser.
+     */
+    private final ResponseParser<Output> mParser;
+
+    /**
+     * The dispatcher for asynchronous execution.
+     */
+    private Dispatcher mDispatcher;
+
+    /**
+     * The retry policy.
+     */
+    private RetryPolicy mRetryPolicy;
+
+    /**
+     * The headers included in the coalescing key, or null if the request is not coalesced.
+     */
+    private String[] mCoalesceHeaders;
+
+    /**
+     * The file download, or null if this is not a download request.
+     */
+    private FileDownload mDownload;
+
+    /**
+     * The target file of the download.
+     */
+    private File mTarget;
+
+    /**
+     * The number of parallel segments of the download.
+     */
+    private int mSegments = 1;
+
+    /**
+     * The resumable upload, or null if this is not an upload request.
+     */
+    private ResumableUpload mUpload;
+
+    /**
+     * Constructor.
+     *
+     * @param url    the url.
+     * @param method the method.
+     * @param parser the response parser.
+     */
+    public RequestBuilder(String url, Method method, ResponseParser<Output> parser) {
+        mRequest = new HttpRequest(url, method);
+        mParser = parser;
+    }
+
+    /**
+     * Create a builder for downloading a resource to a file. The response body is streamed
+     * to a partial file next to the target, and moved to the target when complete. If the
+     * transfer is interrupted, executing the request again resumes it from the end of the
+     * partial file using a range request, as long as the resource has not changed.
+     *
+     * @param url    the url of the resource.
+     * @param target the target file.
+     * @return the builder, whose request outputs the target file.
+     * @see #setResumable(boolean)
+     */
+    public static RequestBuilder<File> newDownload(String url, File target) {
+        FileDownload download = new FileDownload(target);
+        RequestBuilder<File> builder = new RequestBuilder<>(url, Method.GET, download);
+        download.setProgressUpdater(builder.mRequest);
+        builder.mRequest.setDownload(download);
+        builder.mDownload = download;
+        builder.mTarget = target;
+        return builder;
+    }
+
+    /**
+     * Create a builder for uploading a file in resumable chunks using the tus protocol. The
+     * upload resource is created with a {@code POST} request to the url, and the file is sent
+     * to it in {@code PATCH} requests of the chunk size. The location of the resource and the
+     * offset acknowledged by the server are saved to the state file after each chunk, so if
+     * the transfer is interrupted, executing the request again, also after a restart of the
+     * process, asks the server for its offset and sends the rest of the file from there.
+     *
+     * @param url       the url creating upload resources.
+     * @param source    the file to upload.
+     * @param stateFile the file the upload state is saved to, or null to keep it in memory.
+     * @return the builder, whose request outputs the location of the upload resource.
+     * @see #setChunkSize(long)
+     */
+    public static RequestBuilder<String> newResumableUpload(String url, File source,
+                                                            File stateFile) {
+        return newResumableUpload(url, source, null, stateFile);
+    }
+
+    /**
+     * Create a builder for uploading the remaining bytes of a buffer in resumable chunks
+     * using the tus protocol. The position of the buffer is not changed. A saved state is
+     * matched to the buffer by a checksum of its contents.
+     *
+     * @param url       the url creating upload resources.
+     * @param source    the buffer to upload.
+     * @param stateFile the file the upload state is saved to, or null to keep it in memory.
+     * @return the builder, whose request outputs the location of the upload resource.
+     * @see #newResumableUpload(String, File, File)
+     */
+    public static RequestBuilder<String> newResumableUpload(String url, ByteBuffer source,
+                                                            File stateFile) {
+        return newResumableUpload(url, null, source, stateFile);
+    }
+
+    /**
+     * Create a builder for a resumable upload of a file or a buffer.
+     *
+     * @param url       the url creating upload resources.
+     * @param file      the file to upload, or null.
+     * @param buffer    the buffer to upload, or null.
+     * @param stateFile the state file, or null.
+     * @return the builder.
+     */
+    private static RequestBuilder<String> newResumableUpload(String url, File file,
+                                                             ByteBuffer buffer,
+                                                             File stateFile) {
+        RequestBuilder<String> builder = new RequestBuilder<>(url, Method.POST, null);
+        builder.mUpload = new ResumableUpload(builder.mRequest, file, buffer, stateFile);
+        return builder;
+    }
+
+    /**
+     * Set the number of bytes sent in each request of a resumable upload. Smaller chunks lose
+     * less progress when a connection fails, larger chunks need fewer round trips.
+     *
+     * @param chunkSize the chunk size in bytes, default is one megabyte.
+     * @return the builder instance.
+     * @throws IllegalStateException    if the builder was not created for a resumable upload.
+     * @throws IllegalArgumentException if the chunk size is not positive.
+     * @see #newResumableUpload(String, File, File)
+     */
+    public RequestBuilder setChunkSize(long chunkSize) {
+        if (mUpload == null) {
+            throw new IllegalStateException("Not a resumable upload request.");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        mUpload.setChunkSize(chunkSize);
+        return this;
+    }
+
+    /**
+     * Set if an interrupted download should be resumed from the partial file.
+     *
+     * @param resumable flag for if the download should be resumed, default is true.
+     * @return the builder instance.
+     * @throws IllegalStateException if the builder was not created for a download.
+     * @see #newDownload(String, File)
+     */
+    public RequestBuilder setResumable(boolean resumable) {
+        if (mDownload == null) {
+            throw new IllegalStateException("Not a download request.");
+        }
+        mDownload.setResumable(resumable);
+        return this;
+    }
+
+    /**
+     * Set the number of byte ranges a download is split into. The ranges are fetched in
+     * parallel over separate connections and written to the target file at their offsets,
+     * with the progress of all ranges reported as one. If the server does not accept byte
+     * ranges, or the resource is smaller than one megabyte, the download uses a single stream.
+     *
+     * @param segments the number of segments, default is 1.
+     * @return the builder instance.
+     * @throws IllegalStateException    if the builder was not created for a download.
+     * @throws IllegalArgumentException if the number of segments is less than one.
+     * @see #newDownload(String, File)
+     */
+    public RequestBuilder setSegments(int segments) {
+        if (mDownload == null) {
+            throw new IllegalStateException("Not a download request.");
+        }
+        if (segments < 1) {
+            throw new IllegalArgumentException("Segments must be at least one.");
+        }
+        mSegments = segments;
+        return this;
+    }
+
+    /**
+     * Set if the cached should be used. The cache need to be installed in order for this to be
+     * used.
+     *
+     * @param useCache flag for if the cache should be used, default is false.
+     * @return the builder instance.
+     * @see Setup#installCache(File, long)
+     * @see Setup#setMemoryCache(MemoryCache)
+     */
+    public RequestBuilder setUseCache(boolean useCache) {
+        mRequest.setUseCache(useCache);
+        return this;
+    }
+
+    /**
+     * Add a header to the request.
+     *
+     * @param key   the key of the header.
+     * @param value the value of the header.
+     * @return the builder instance.
+     * @throws IllegalArgumentException if the value is not either string, long or integer.
+     */
+    public RequestBuilder addHeader(String key, Object value) {
+        mRequest.addHeader(key, value);
+        return this;
+    }
+
+    /**
+     * Add a header to the request.
+     *
+     * @param header the header.
+     * @return the builder instance.
+     */
+    public RequestBuilder addHeader(Header header) {
+        mRequest.addHeader(header);
+        return this;
+    }
+
+    /**
+     * Set a body.
+     *
+     * @param body     the body.
+     * @param mime     the mime type of the body.
+     * @param compress flag for if the request should be compressed using gzip.
+     * @param stream   flag for if streaming mode should be used.
+     * @return the builder instance.
+     */
+    public RequestBuilder setBody(byte[] body, String mime, boolean compress, boolean stream) {
+        mRequest.setBody(body, mime, compress, stream);
+        return this;
+    }
+
+    /**
+     * Set json body.
+     *
+     * @param json     the json object.
+     * @param compress flag for if the request should be compressed using gzip.
+     * @param stream   flag for if streaming mode should be used.
+     * @return the builder instance.
+     */
+    public RequestBuilder setBody(JSONObject json, boolean compress, boolean stream) {
+        mRequest.setBody(json, compress, stream);
+        return this;
+    }
+
+    /**
+     * Set json body.
+     *
+     * @param json     the json object.
+     * @param compress flag for if the request should be compressed using gzip.
+     * @param stream   flag for if streaming mode should be used.
+     * @return the builder instance.
+     */
+    public RequestBuilder setBody(JSONArray json, boolean compress, boolean stream) {
+        mRequest.setBody(json, compress, stream);
+        return this;
+    }
+
+    /**
+     * Set a file body. The file is streamed to the connection without being read into memory,
+     * using fixed length streaming mode, or chunked streaming mode if compressed.
+     *
+     * @param file     the file.
+     * @param mime     the mime type of the body.
+     * @param compress flag for if the request should be compressed using gzip.
+     * @return the builder instance.
+     */
+    public RequestBuilder setBody(File file, String mime, boolean compress) {
+        mRequest.setBody(RequestBody.create(file), mime, compress, true);
+        return this;
+    }
+
+    /**
+     * Set a file channel body, from the current position of the channel to its end. The
+     * channel is streamed to the connection without being read into memory, using fixed
+     * length streaming mode, or chunked streaming mode if compressed. The channel is not
+     * closed by the request.
+     *
+     * @param channel  the file channel.
+     * @param mime     the mime type of the body.
+     * @param compress flag for if the request should be compressed using gzip.
+     * @return the builder instance.
+     * @throws IOException if the position or size of the channel cannot be read.
+     */
+    public RequestBuilder setBody(FileChannel channel, String mime, boolean compress)
+            throws IOException {
+        mRequest.setBody(RequestBody.create(channel), mime, compress, true);
+        return this;
+    }
+
+    /**
+     * Set a byte buffer body from the remaining bytes of the buffer. Direct and memory mapped
+     * buffers are copied to the connection one chunk at a time rather than as a whole. The
+     * body is sent using fixed length streaming mode, or chunked streaming mode if compressed.
+     *
+     * @param buffer   the buffer.
+     * @param mime     the mime type of the body.
+     * @param compress flag for if the request should be compressed using gzip.
+     * @return the builder instance.
+     */
+    public RequestBuilder setBody(ByteBuffer buffer, String mime, boolean compress) {
+        mRequest.setBody(RequestBody.create(buffer), mime, compress, true);
+        return this;
+    }
+
+    /**
+     * Set an input stream body. The stream is sent using fixed length streaming mode when the
+     * length is known and the body is not compressed, otherwise chunked streaming mode. The
+     * stream is closed after it has been written and can therefore only be sent once, so the
+     * request is not retried after the body has been sent, and executing it again fails.
+     *
+     * @param is       the input stream.
+     * @param length   the number of bytes in the stream, or -1 if unknown.
+     * @param mime     the mime type of the body.
+     * @param compress flag for if the request should be compressed using gzip.
+     * @return the builder instance.
+     */
+    public RequestBuilder setBody(InputStream is, long length, String mime, boolean compress) {
+        mRequest.setBody(RequestBody.create(is, length), mime, compress, true);
+        return this;
+    }
+
+    /**
+     * Set a multi part form body.
+     *
+     * @param body the body.
+     * @return the builder instance.
+     */
+    public RequestBuilder setBody(MultipartForm body) {
+        mRequest.setMultipartBody(body);
+        return this;
+    }
+
+    /**
+     * Set the codec encoding the body, replacing the encoding chosen by the compress flag of
+     * the body. Must be called after the body is set.
+     *
+     * @param codec the codec, or null to send the body unencoded.
+     * @return the builder instance.
+     * @see ContentCodecs#gzip(int)
+     * @see DictionaryCodec
+     */
+    public RequestBuilder setBodyEncoding(ContentCodec codec) {
+        mRequest.setBodyCodec(codec);
+        return this;
+    }
+
+    /**
+     * Set the dispatcher used when the request is executed asynchronously.
+     *
+     * @param dispatcher the dispatcher, default is the dispatcher of {@link Setup}.
+     * @return the builder instance.
+     * @see Setup#getDispatcher()
+     */
+    public RequestBuilder setDispatcher(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Set the connect timeout.
+     *
+     * @param timeout the timeout, or 0 for no timeout, default is 1500 milliseconds.
+     * @param unit    the unit of the timeout.
+     * @return the builder instance.
+     */
+    public RequestBuilder setConnectTimeout(long timeout, TimeUnit unit) {
+        mRequest.setConnectTimeout(toMillis(timeout, unit));
+        return this;
+    }
+
+    /**
+     * Set the read timeout, which is the max time to wait for data while reading the
+     * response.
+     *
+     * @param timeout the timeout, or 0 for no timeout, default is 1500 milliseconds.
+     * @param unit    the unit of the timeout.
+     * @return the builder instance.
+     */
+    public RequestBuilder setReadTimeout(long timeout, TimeUnit unit) {
+        mRequest.setReadTimeout(toMillis(timeout, unit));
+        return this;
+    }
+
+    /**
+     * Set the call timeout, which is the max time for the whole call including connecting,
+     * writing the body, reading and parsing the response and any retries. A call that times
+     * out fails with an {@link java.io.InterruptedIOException}.
+     *
+     * @param timeout the timeout, or 0 for no call timeout which is the default.
+     * @param unit    the unit of the timeout.
+     * @return the builder instance.
+     */
+    public RequestBuilder setCallTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative.");
+        }
+        mRequest.setCallTimeout(unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Set if the connect and read timeouts are adapted to the observed latency of the host.
+     * Once enough responses from the host have been seen, the timeouts are set to a multiple
+     * of the 99th percentile latency, bounded by the configured timeouts.
+     *
+     * @param adaptive true if the timeouts should be adaptive, default is false.
+     * @return the builder instance.
+     */
+    public RequestBuilder setAdaptiveTimeouts(boolean adaptive) {
+        mRequest.setAdaptiveTimeouts(adaptive);
+        return this;
+    }
+
+    /**
+     * Set the min time between progress reports of the request. Progress is reported when
+     * the interval has passed and more bytes have been transferred, and when the transfer
+     * completes.
+     *
+     * @param interval the interval, or 0 to report every update.
+     * @param unit     the unit of the interval.
+     * @return the builder instance.
+     * @throws IllegalArgumentException if the interval is negative.
+     * @see Setup#setProgressInterval(long, TimeUnit)
+     */
+    public RequestBuilder setProgressInterval(long interval, TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Interval cannot be negative.");
+        }
+        mRequest.setProgressInterval(unit.toMillis(interval));
+        return this;
+    }
+
+    /**
+     * Set a bandwidth limiter of the request, which applies to the request and response
+     * bodies together with the limiters of the host and of all requests.
+     *
+     * @param limiter the limiter, which may be shared by several requests, or null.
+     * @return the builder instance.
+     * @see Setup#setBandwidthLimiter(BandwidthLimiter)
+     * @see Setup#setBandwidthLimiter(String, BandwidthLimiter)
+     */
+    public RequestBuilder setBandwidthLimiter(BandwidthLimiter limiter) {
+        mRequest.setBandwidthLimiter(limiter);
+        return this;
+    }
+
+    /**
+     * Set if the request is interactive, meaning that a user is waiting for it. Interactive
+     * requests may borrow up to a second of bandwidth from their limiters without waiting,
+     * which the background requests sharing the limiters then wait for.
+     *
+     * @param interactive true if the request is interactive, default is false.
+     * @return the builder instance.
+     * @see BandwidthLimiter
+     */
+    public RequestBuilder setInteractive(boolean interactive) {
+        mRequest.setInteractive(interactive);
+        return this;
+    }
+
+    /**
+     * Set if responses are revalidated. Successful responses with an {@code ETag} or
+     * {@code Last-Modified} validator are then stored in the memory cache, and once stale they
+     * are revalidated with {@code If-None-Match} and {@code If-Modified-Since}. A
+     * {@code 304 Not Modified} response returns the output previously parsed by the same parser
+     * instance without running it again, so the same output instance may be returned more than
+     * once and must not be modified. A memory cache must be set for this to be used.
+     *
+     * @param revalidate true if responses should be revalidated, default is false.
+     * @return the builder instance.
+     * @see Setup#setMemoryCache(MemoryCache)
+     */
+    public RequestBuilder setRevalidate(boolean revalidate) {
+        mRequest.setRevalidate(revalidate);
+        return this;
+    }
+
+    /**
+     * Set the policy for serving stale responses from the memory cache. With a policy other
+     * than {@link CachePolicy#NETWORK} successful responses are stored in the memory cache even
+     * if they are never fresh, a stale response may be returned immediately while it is
+     * refreshed in the background on the dispatcher, and a stale response may be returned
+     * instead of failing when the network fails. A memory cache must be set for this to be
+     * used.
+     *
+     * @param policy the cache policy, default is {@link CachePolicy#NETWORK}.
+     * @return the builder instance.
+     * @throws IllegalStateException if the method is not {@link Method#GET}, or if the request
+     *                               is a download.
+     * @see Setup#setMemoryCache(MemoryCache)
+     */
+    public RequestBuilder setCachePolicy(CachePolicy policy) {
+        if (policy != CachePolicy.NETWORK
+                && (mRequest.getMethod() != Method.GET || mDownload != null)) {
+            throw new IllegalStateException("Only GET requests can be served stale");
+        }
+        mRequest.setCachePolicy(policy);
+        return this;
+    }
+
+    /**
+     * Set if identical requests in flight are coalesced. Concurrent coalesced requests with the
+     * same method, url, key headers and parser instance share one network round trip, and
+     * every caller gets the same output instance, which must therefore not be modified. Reuse
+     * one parser instance for the requests that should be coalesced. A caller that cancels
+     * leaves the shared request, which is only aborted when every caller has cancelled.
+     *
+     * @param coalesce   true if the request should be coalesced, default is false.
+     * @param keyHeaders the names of the headers that are part of the key, for example
+     *                   {@code Authorization} if the response depends on the user.
+     * @return the builder instance.
+     * @throws IllegalStateException if the method is not {@link Method#GET} or
+     *                               {@link Method#HEAD}, or if the request is a download.
+     */
+    public RequestBuilder setCoalesce(boolean coalesce, String... keyHeaders) {
+        Method method = mRequest.getMethod();
+        if (coalesce && method != Method.GET && method != Method.HEAD) {
+            throw new IllegalStateException("Only GET and HEAD requests can be coalesced");
+        } else if (coalesce && mDownload != null) {
+            throw new IllegalStateException("Downloads cannot be coalesced");
+        }
+        mCoalesceHeaders = coalesce ? keyHeaders : null;
+        return this;
+    }
+
+    /**
+     * Set the event listener of the request, which replaces the listener of {@link Setup}.
+     *
+     * @param listener the listener, or null to use the listener of {@link Setup}.
+     * @return the builder instance.
+     * @see Setup#setEventListener(EventListener)
+     */
+    public RequestBuilder setEventListener(EventListener listener) {
+        mRequest.setEventListener(listener);
+        return this;
+    }
+
+    /**
+     * Set the retry policy deciding if and when a failed request is retried.
+     *
+     * @param policy the retry policy, default is null meaning that {@link Request#execute()}
+     *               does not retry and {@link Request#execute(int)} uses
+     *               {@link ExponentialBackoff}.
+     * @return the builder instance.
+     */
+    public RequestBuilder setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Build the request.
+     *
+     * @return the Request.
+     */
+    public Request<Output> build() {
+        if (mUpload != null) {
+            mUpload.setDispatcher(mDispatcher);
+            mUpload.setRetryPolicy(mRetryPolicy);
+            @SuppressWarnings("unchecked")
+            Request<Output> output = (Request<Output>) mUpload;
+            return output;
+        }
+
+        NetworkRequest<Output> request = new NetworkRequest<>(mRequest, mParser);
+        request.setDispatcher(mDispatcher);
+        request.setRetryPolicy(mRetryPolicy);
+        request.setCoalesce(mCoalesceHeaders);
+
+        if (mSegments > 1) {
+            @SuppressWarnings("unchecked")
+            SegmentedDownload download = new SegmentedDownload(mRequest,
+                    (NetworkRequest<File>) request, mTarget, mSegments);
+            download.setDispatcher(mDispatcher);
+            download.setRetryPolicy(mRetryPolicy);
+            @SuppressWarnings("unchecked")
+            Request<Output> output = (Request<Output>) download;
+            return output;
+        }
+        return request;
+    }
+
+    /**
+     * Convert a connection timeout to milliseconds.
+     *
+     * @param timeout the timeout.
+     * @param unit    the unit of the timeout.
+     * @return the timeout in milliseconds.
+     * @throws IllegalArgumentException if the timeout is negative or too large.
+     */
+    private static int toMillis(long timeout, TimeUnit unit) {
+        long millis = unit.toMillis(timeout);
+        if (millis < 0 || millis > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid timeout " + timeout + " " + unit);
+        }
+        return (int) millis;
+    }
+}
@@ -0,0 +1,624 @@
+package com.tuz.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class representing a http response.
+ */
+final class Response implements Closeable {
+
+    /**
+     * The http status.
+     */
+    private int mStatus;
+
+    /**
+     * The input stream.
+     */
+    private InputStream mInputStream;
+
+    /**
+     * The mime type.
+     */
+    private String mMime;
+
+    /**
+     * The content length.
+     */
+    private long mContentLength;
+
+    /**
+     * The set of headers.
+     */
+    private Set<Header> mHeaders;
+
+    /**
+     * The http connection.
+     */
+    private HttpURLConnection mConnection;
+
+    /**
+     * The connection pool, or null if connections are not pooled.
+     */
+    private ConnectionPool mPool;
+
+    /**
+     * The host of the connection.
+     */
+    private String mHost;
+
+    /**
+     * The cache entry the response was served from, or null.
+     */
+    private CacheEntry mCacheEntry;
+
+    /**
+     * Counter of the bytes read from the connection, or null if not counted.
+     */
+    private CountingInputStream mEncodedCounter;
+
+    /**
+     * Counter of the bytes read after decoding, or null if not counted.
+     */
+    private CountingInputStream mDecodedCounter;
+
+    /**
+     * The cache entry the response was stored in, or null.
+     */
+    private CacheEntry mStoredEntry;
+
+    /**
+     * The parser of the output parsed from the response, or null.
+     */
+    private ResponseParser<?> mParser;
+
+    /**
+     * The output parsed from the response, or null.
+     */
+    private Object mOutput;
+
+    /**
+     * The event listener notified when the body is closed, or null.
+     */
+    private EventListener mEventListener;
+
+    /**
+     * The request reported to the event listener.
+     */
+    private Request<?> mCall;
+
+    /**
+     * The metrics of the endpoint of the response, or null if metrics are not recorded.
+     */
+    private MetricsRegistry.EndpointStats mMetrics;
+
+    /**
+     * Constructor.
+     *
+     * @param connection the http connection.
+     * @param pool       the connection pool, or null if the connection should be disconnected
+     *                   when the response is closed.
+     * @param host       the host of the connection.
+     * @throws IOException if connection is interrupted while reading.
+     */
+    Response(HttpURLConnection connection, ConnectionPool pool, String host) throws IOException {
+        mConnection = connection;
+        mPool = pool;
+        mHost = host;
+        mMime = mConnection.getContentType();
+        mContentLength = mConnection.getContentLengthLong();
+        mStatus = mConnection.getResponseCode();
+        Map<String, List<String>> headerFields = mConnection.getHeaderFields();
+        mHeaders = new HashSet<>();
+
+        for (Map.Entry<String, List<String>> entry : headerFields.entrySet()) {
+            for (String value : entry.getValue()) {
+                mHeaders.add(new Header(entry.getKey(), value));
+            }
+        }
+
+        if (Http.isFailedStatus(mStatus)) {
+            mInputStream = mConnection.getErrorStream();
+        } else {
+            mInputStream = mConnection.getInputStream();
+        }
+    }
+
+    /**
+     * Constructor for a response served from the memory cache.
+     *
+     * @param entry the cache entry.
+     */
+    Response(CacheEntry entry) {
+        mStatus = entry.getStatus();
+        mMime = entry.getMime();
+        mContentLength = entry.getBody().length;
+        mHeaders = entry.getHeaders();
+        mInputStream = new ByteArrayInputStream(entry.getBody());
+        mCacheEntry = entry;
+    }
+
+    /**
+     * Limit the rate at which the body is received.
+     *
+     * @param limiters    the bandwidth limiters.
+     * @param interactive true if the request is interactive.
+     */
+    void throttle(BandwidthLimiter[] limiters, boolean interactive) {
+        if (mInputStream != null) {
+            mInputStream = new ThrottledInputStream(mInputStream, limiters, interactive);
+        }
+    }
+
+    /**
+     * Decode the body as it is read if it has a content coding with a registered codec, and
+     * count the bytes read before and after decoding. The content encoding and length headers
+     * are removed from a decoded response since they no longer describe the body.
+     *
+     * @see ContentCodecs
+     */
+    void decode() {
+        if (mInputStream == null) {
+            return;
+        }
+        mEncodedCounter = new CountingInputStream(mInputStream);
+        mDecodedCounter = mEncodedCounter;
+
+        ContentCodec codec = ContentCodecs.get(getHeader(Http.CONTENT_ENCODING));
+        if (codec != null) {
+            mDecodedCounter = new CountingInputStream(new DecodingInputStream(mEncodedCounter,
+                    codec));
+            mContentLength = -1;
+            Iterator<Header> iterator = mHeaders.iterator();
+            while (iterator.hasNext()) {
+                String key = iterator.next().getKey();
+                if (Http.CONTENT_ENCODING.equalsIgnoreCase(key)
+                        || Http.CONTENT_LENGTH.equalsIgnoreCase(key)) {
+                    iterator.remove();
+                }
+            }
+        }
+        mInputStream = mDecodedCounter;
+    }
+
+    /**
+     * Get the number of body bytes received so far, before decoding.
+     *
+     * @return the number of bytes, or -1 if the bytes are not counted.
+     */
+    public long getEncodedByteCount() {
+        return mEncodedCounter != null ? mEncodedCounter.getCount() : -1;
+    }
+
+    /**
+     * Get the number of body bytes read so far, after decoding.
+     *
+     * @return the number of bytes, or -1 if the bytes are not counted.
+     */
+    public long getDecodedByteCount() {
+        return mDecodedCounter != null ? mDecodedCounter.getCount() : -1;
+    }
+
+    /**
+     * Set the event listener notified when the body is closed.
+     *
+     * @param listener the listener.
+     * @param call     the request reported to the listener.
+     */
+    void setEventListener(EventListener listener, Request<?> call) {
+        mEventListener = listener;
+        mCall = call;
+    }
+
+    /**
+     * Set the metrics of the endpoint, which receive the number of body bytes read when the
+     * response is closed.
+     *
+     * @param metrics the metrics of the endpoint.
+     */
+    void setMetrics(MetricsRegistry.EndpointStats metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Get the cache entry the response was served from.
+     *
+     * @return the entry, or null if the response was not served from the memory cache.
+     */
+    CacheEntry getCacheEntry() {
+        return mCacheEntry;
+    }
+
+    /**
+     * Get the output memoized for the response.
+     *
+     * @param parser the parser, compared by identity.
+     * @return the output, or null if the response was not served from the memory cache or no
+     * output of the parser is memoized.
+     */
+    Object getParsedOutput(ResponseParser<?> parser) {
+        return mCacheEntry != null ? mCacheEntry.getOutput(parser) : null;
+    }
+
+    /**
+     * Set the output parsed from the response, which is memoized in the cache entry the
+     * response was served from or stored in.
+     *
+     * @param parser the parser.
+     * @param output the output.
+     */
+    void setParsedOutput(ResponseParser<?> parser, Object output) {
+        mParser = parser;
+        mOutput = output;
+        CacheEntry entry = mCacheEntry != null ? mCacheEntry : mStoredEntry;
+        if (entry != null) {
+            entry.setOutput(parser, output);
+        }
+    }
+
+    /**
+     * Store the body in the memory cache as it is read. The entry is stored when the end of
+     * the body is reached, unless it is larger than the cache accepts.
+     *
+     * @param cache the memory cache.
+     * @param key   the key of the entry.
+     */
+    void cacheTo(MemoryCache cache, String key) {
+        if (mInputStream != null && mContentLength <= cache.getMaxEntrySize()) {
+            mInputStream = new CachingInputStream(mInputStream, cache, key);
+        }
+    }
+
+    /**
+     * Get the response headers.
+     *
+     * @return the headers.
+     */
+    public Set<Header> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * Get the first value of a header.
+     *
+     * @param key the header key, matched ignoring case.
+     * @return the value, or null if the response has no such header.
+     */
+    public String getHeader(String key) {
+        for (Header header : mHeaders) {
+            if (key.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the status code.
+     *
+     * @return the status code.
+     */
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * Get the content.
+     *
+     * @return an input stream.
+     */
+    public InputStream getInputStream() {
+        return mInputStream;
+    }
+
+    /**
+     * Get the length of the content.
+     *
+     * @return the content length in bytes, or -1 if unknown.
+     */
+    public long getContentLength() {
+        return mContentLength;
+    }
+
+    /**
+     * Get the mime type.
+     *
+     * @return the mime type.
+     */
+    public String getMime() {
+        return mMime;
+    }
+
+    @Override
+    public void close() {
+        if (mInputStream instanceof CachingInputStream) {
+            ((CachingInputStream) mInputStream).finish();
+        }
+        long byteCount = getEncodedByteCount();
+        boolean decoded = mEncodedCounter != null && mDecodedCounter != mEncodedCounter;
+        long decodedByteCount = getDecodedByteCount();
+        if (mEncodedCounter != null) {
+            ContentCodecs.addReceived(byteCount, decodedByteCount);
+            mEncodedCounter = null;
+        }
+        if (mEventListener != null) {
+            long now = System.nanoTime();
+            if (decoded) {
+                mEventListener.responseBodyDecoded(mCall, byteCount, decodedByteCount, now);
+            }
+            mEventListener.responseBodyEnd(mCall, byteCount, now);
+            mEventListener = null;
+        }
+        if (mMetrics != null) {
+            mMetrics.addBytesReceived(Math.max(0, byteCount));
+            mMetrics = null;
+        }
+        if (mConnection != null) {
+            if (mPool == null || !release()) {
+                mConnection.disconnect();
+                if (decoded) {
+                    closeDecoder();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the decoding stream after disconnecting, which releases the native memory of the
+     * decoder.
+     */
+    private void closeDecoder() {
+        try {
+            mInputStream.close();
+        } catch (IOException e) {
+            // The connection is already closed.
+        }
+    }
+
+    /**
+     * Drain and close the input stream so that the connection can be reused.
+     *
+     * @return true if the connection was released to the pool, false if it should be
+     * disconnected.
+     */
+    private boolean release() {
+        boolean drained = true;
+
+        if (mInputStream != null) {
+            try {
+                drained = drain(mInputStream);
+                mInputStream.close();
+            } catch (IOException e) {
+                drained = false;
+            }
+        }
+        return drained && mPool.release(mHost);
+    }
+
+    /**
+     * Read what is left of a stream.
+     *
+     * @param is the input stream.
+     * @return true if the end of the stream was reached within the drain limit.
+     * @throws IOException if reading fails.
+     */
+    private static boolean drain(InputStream is) throws IOException {
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(BufferPool.MIN_CHUNK_SIZE);
+        long drained = 0;
+        int read;
+
+        try {
+            while ((read = is.read(buffer)) != -1) {
+                drained += read;
+                if (drained > ConnectionPool.MAX_DRAIN_BYTES) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Input stream decoding the body, which opens the decoder on the first read so that an
+     * empty body is not mistaken for malformed content.
+     */
+    private static final class DecodingInputStream extends InputStream {
+
+        /**
+         * The encoded stream.
+         */
+        private final PushbackInputStream mEncoded;
+
+        /**
+         * The codec.
+         */
+        private final ContentCodec mCodec;
+
+        /**
+         * The decoded stream, or null until the first read.
+         */
+        private InputStream mDecoded;
+
+        /**
+         * Flag for if the body is empty.
+         */
+        private boolean mEmpty;
+
+        /**
+         * Constructor.
+         *
+         * @param encoded the encoded stream.
+         * @param codec   the codec.
+         */
+        DecodingInputStream(InputStream encoded, ContentCodec codec) {
+            mEncoded = new PushbackInputStream(encoded, 1);
+            mCodec = codec;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open() ? mDecoded.read() : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return open() ? mDecoded.read(buffer, offset, length) : -1;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mDecoded != null ? mDecoded.available() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mDecoded != null) {
+                mDecoded.close();
+            } else {
+                mEncoded.close();
+            }
+        }
+
+        /**
+         * Open the decoder unless the body is empty.
+         *
+         * @return true if the decoder is open, false if the body is empty.
+         * @throws IOException if reading fails or the content is malformed.
+         */
+        private boolean open() throws IOException {
+            if (mDecoded == null && !mEmpty) {
+                int first = mEncoded.read();
+                if (first == -1) {
+                    mEmpty = true;
+                } else {
+                    mEncoded.unread(first);
+                    mDecoded = mCodec.decode(mEncoded);
+                }
+            }
+            return mDecoded != null;
+        }
+    }
+
+    /**
+     * Input stream copying the body into a cache entry as it is read.
+     */
+    private final class CachingInputStream extends FilterInputStream {
+
+        /**
+         * The memory cache.
+         */
+        private final MemoryCache mCache;
+
+        /**
+         * The key of the entry.
+         */
+        private final String mKey;
+
+        /**
+         * The copy of the body, or null if the body is too large to be cached.
+         */
+        private ByteArrayOutputStream mCopy;
+
+        /**
+         * The buffer used when reading the rest of the body.
+         */
+        private final byte[] mFinishBuffer = new byte[256];
+
+        /**
+         * Constructor.
+         *
+         * @param in    the body.
+         * @param cache the memory cache.
+         * @param key   the key of the entry.
+         */
+        CachingInputStream(InputStream in, MemoryCache cache, String key) {
+            super(in);
+            mCache = cache;
+            mKey = key;
+            mCopy = new ByteArrayOutputStream(mContentLength > 0 ? (int) mContentLength : 256);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                commit();
+            } else if (mCopy != null) {
+                mCopy.write(value);
+                checkSize();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                commit();
+            } else if (mCopy != null) {
+                mCopy.write(buffer, offset, read);
+                checkSize();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            // Skipped bytes are not copied, so the body can no longer be cached.
+            mCopy = null;
+            return super.skip(count);
+        }
+
+        /**
+         * Read what is left of the body so that the entry is stored even if the parser did not
+         * read to the end.
+         */
+        void finish() {
+            try {
+                while (mCopy != null && read(mFinishBuffer) != -1) {
+                    // Copied by read.
+                }
+            } catch (IOException e) {
+                mCopy = null;
+            }
+        }
+
+        /**
+         * Give up on caching the body if it has grown too large.
+         */
+        private void checkSize() {
+            if (mCopy.size() > mCache.getMaxEntrySize()) {
+                mCopy = null;
+            }
+        }
+
+        /**
+         * Store the entry when the end of the body has been reached.
+         */
+        private void commit() {
+            if (mCopy != null) {
+                CacheEntry entry = new CacheEntry(mKey, mStatus, mMime, mHeaders,
+                        mCopy.toByteArray(), System.currentTimeMillis());
+                entry.setOutput(mParser, mOutput);
+                mCache.put(entry);
+                mStoredEntry = entry;
+                mCopy = null;
+            }
+        }
+    }
+}
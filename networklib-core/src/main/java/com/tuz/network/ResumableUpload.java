@@ -0,0 +1,588 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Request uploading a large body in chunks that can be resumed, following the tus protocol.
+ * <p>
+ * A {@code POST} request to the url creates an upload resource with the length of the body,
+ * and the body is then sent to the resource in {@code PATCH} requests of a fixed size, each
+ * starting at the {@code Upload-Offset} acknowledged by the server for the previous chunk. The
+ * location of the resource and the acknowledged offset are saved to a state file after every
+ * chunk, so that an upload interrupted by a lost connection or a restart of the process
+ * continues where it stopped. A resumed upload asks the server for its offset with a
+ * {@code HEAD} request, since the server may have stored part of a chunk that was never
+ * acknowledged, and starts over if the resource is gone or the file or buffer has changed
+ * since the state was saved.
+ *
+ * @see RequestBuilder#newResumableUpload(String, File, File)
+ */
+final class ResumableUpload implements Request<String> {
+
+    /**
+     * The default chunk size.
+     */
+    static final long DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The version of the protocol.
+     */
+    private static final String TUS_VERSION = "1.0.0";
+
+    /**
+     * Header key for the version of the protocol.
+     */
+    private static final String TUS_RESUMABLE = "Tus-Resumable";
+
+    /**
+     * Header key for the offset of a chunk.
+     */
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    /**
+     * Header key for the length of the upload.
+     */
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    /**
+     * The content type of chunks.
+     */
+    private static final String OFFSET_TYPE = "application/offset+octet-stream";
+
+    /**
+     * State key for the location of the upload resource.
+     */
+    private static final String STATE_LOCATION = "location";
+
+    /**
+     * State key for the acknowledged offset.
+     */
+    private static final String STATE_OFFSET = "offset";
+
+    /**
+     * State key for the length of the upload.
+     */
+    private static final String STATE_LENGTH = "length";
+
+    /**
+     * State key for the last modified time of the uploaded file.
+     */
+    private static final String STATE_MODIFIED = "modified";
+
+    /**
+     * State key for the CRC-32 checksum of the uploaded buffer.
+     */
+    private static final String STATE_CHECKSUM = "checksum";
+
+    /**
+     * Suffix of the temporary file the state is written to before it replaces the state file.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The http request holding the url and headers of the upload.
+     */
+    private final HttpRequest mRequest;
+
+    /**
+     * The file to upload, or null if a buffer is uploaded.
+     */
+    private final File mFile;
+
+    /**
+     * The buffer to upload, or null if a file is uploaded.
+     */
+    private final ByteBuffer mBuffer;
+
+    /**
+     * The file the upload state is saved to, or null if it is only kept in memory.
+     */
+    private final File mStateFile;
+
+    /**
+     * The http requests of the current execution, cancelled when the call is cancelled.
+     */
+    private final Set<HttpRequest> mActive =
+            Collections.newSetFromMap(new ConcurrentHashMap<HttpRequest, Boolean>());
+
+    /**
+     * The chunk size.
+     */
+    private long mChunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * The dispatcher for asynchronous execution, or null to use the default dispatcher.
+     */
+    private Dispatcher mDispatcher;
+
+    /**
+     * The retry policy, or null if the upload should not be retried.
+     */
+    private RetryPolicy mRetryPolicy;
+
+    /**
+     * The location of the upload resource, or null if it has not been created.
+     */
+    private String mLocation;
+
+    /**
+     * The offset last acknowledged by the server.
+     */
+    private long mOffset;
+
+    /**
+     * The checksum of the uploaded buffer, or 0 if a file is uploaded.
+     */
+    private long mChecksum;
+
+    /**
+     * Flag for if the current execution has been cancelled.
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Constructor.
+     *
+     * @param request   the http request of the upload.
+     * @param file      the file to upload, or null.
+     * @param buffer    the buffer to upload, or null.
+     * @param stateFile the state file, or null.
+     */
+    ResumableUpload(HttpRequest request, File file, ByteBuffer buffer, File stateFile) {
+        mRequest = request;
+        mFile = file;
+        mBuffer = buffer != null ? buffer.slice() : null;
+        mStateFile = stateFile;
+        mRequest.setCall(this);
+    }
+
+    /**
+     * Set the chunk size.
+     *
+     * @param chunkSize the number of bytes sent in each request.
+     */
+    void setChunkSize(long chunkSize) {
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * Set the dispatcher for asynchronous execution.
+     *
+     * @param dispatcher the dispatcher, or null to use the default dispatcher.
+     */
+    void setDispatcher(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * Set the retry policy.
+     *
+     * @param policy the retry policy, or null if the upload should not be retried.
+     */
+    void setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+    }
+
+    @Override
+    public String execute(RequestProgressListener<String> listener) throws NetworkException {
+        return execute(listener, mRetryPolicy, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String execute() throws NetworkException {
+        return execute((RequestProgressListener<String>) null);
+    }
+
+    @Override
+    public String execute(int retries) {
+        try {
+            return execute(null, NetworkRequest.getRetryPolicy(mRetryPolicy, retries), retries);
+        } catch (NetworkException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Canceller executeAsync(RequestListener<String> listener) {
+        Dispatcher dispatcher = mDispatcher != null ? mDispatcher : Setup.getDispatcher();
+        NetworkTask<String> task = new NetworkTask<>(dispatcher, this, listener,
+                mRequest.getHost(), this::cancelActive);
+        dispatcher.enqueue(task);
+        return task;
+    }
+
+    /**
+     * Execute the upload, reporting the call to the event listener.
+     *
+     * @param listener   the progress listener, or null.
+     * @param policy     the retry policy, or null if the upload should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @return the location of the upload resource.
+     * @throws NetworkException if the upload fails.
+     */
+    private String execute(final RequestProgressListener<String> listener, RetryPolicy policy,
+                           int maxRetries) throws NetworkException {
+        mActive.clear();
+        mCancelled = false;
+        mRequest.reset();
+        EventListener events = mRequest.getEvents();
+        MetricsRegistry registry = Setup.getMetricsRegistry();
+        long start = System.nanoTime();
+        events.callStart(this, start);
+        CallTimeout timeout = new CallTimeout(mRequest.getCallTimeout(), this::cancelActive);
+
+        try {
+            // Resuming from the offset of the server never sends a byte twice.
+            String output = NetworkRequest.retry(() -> upload(listener), Method.PUT, policy,
+                    maxRetries, timeout);
+            long end = System.nanoTime();
+            events.callEnd(this, end);
+            if (registry != null) {
+                registry.getStats(mRequest.getUrl()).recordCall(end - start, null);
+            }
+            return output;
+        } catch (NetworkException e) {
+            if (timeout.isExpired()) {
+                e = new NetworkException(new InterruptedIOException("Call timed out"));
+            }
+            long end = System.nanoTime();
+            events.callFailed(this, e, end);
+            if (registry != null) {
+                registry.getStats(mRequest.getUrl()).recordCall(end - start, e);
+            }
+            throw e;
+        } finally {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Create or resume the upload resource and send the remaining chunks.
+     *
+     * @param listener the progress listener, or null.
+     * @return the location of the upload resource.
+     * @throws Exception if the upload fails.
+     */
+    private String upload(RequestProgressListener<String> listener) throws Exception {
+        long length = mFile != null ? mFile.length() : mBuffer.remaining();
+        TransferProgress progress = new TransferProgress();
+        progress.reset(mRequest.getProgressInterval());
+        if (mBuffer != null && mStateFile != null) {
+            mChecksum = getChecksum();
+        }
+        readState(length);
+
+        if (mLocation != null) {
+            mOffset = queryOffset(length);
+        }
+        if (mLocation == null) {
+            mLocation = create(length);
+            mOffset = 0;
+            writeState(length);
+        }
+        if (progress.update(length, mOffset) && listener != null) {
+            listener.onExecutionProgress(this, progress);
+        }
+
+        while (mOffset < length) {
+            if (mCancelled) {
+                throw new InterruptedIOException("Upload was cancelled");
+            }
+            mOffset = sendChunk(mOffset, Math.min(mChunkSize, length - mOffset), length,
+                    progress, listener);
+            writeState(length);
+        }
+
+        String location = mLocation;
+        mLocation = null;
+        mOffset = 0;
+        if (mStateFile != null) {
+            mStateFile.delete();
+        }
+        return location;
+    }
+
+    /**
+     * Create the upload resource.
+     *
+     * @param length the length of the upload.
+     * @return the location of the resource.
+     * @throws Exception if the resource cannot be created.
+     */
+    private String create(long length) throws Exception {
+        HttpRequest request = newRequest(mRequest.getUrl(), Method.POST);
+        request.addHeader(UPLOAD_LENGTH, length);
+
+        try (Response response = request.execute()) {
+            String location = response.getHeader(Http.LOCATION);
+            if (!Http.isSuccessfulStatus(response.getStatus()) || location == null) {
+                throw new IOException("Upload not created, status " + response.getStatus());
+            }
+            return new URL(new URL(mRequest.getUrl()), location).toString();
+        }
+    }
+
+    /**
+     * Ask the server for the offset of the upload resource. The resource is forgotten if the
+     * server no longer has it, or if it does not match the length of the upload.
+     *
+     * @param length the length of the upload.
+     * @return the offset of the server.
+     * @throws Exception if the offset cannot be read.
+     */
+    private long queryOffset(long length) throws Exception {
+        try (Response response = newRequest(mLocation, Method.HEAD).execute()) {
+            int status = response.getStatus();
+            if (status == Http.STATUS_NOT_FOUND || status == Http.STATUS_GONE) {
+                mLocation = null;
+                return 0;
+            } else if (!Http.isSuccessfulStatus(status)) {
+                throw new IOException("Upload offset not served, status " + status);
+            }
+
+            String uploadLength = response.getHeader(UPLOAD_LENGTH);
+            if (uploadLength != null && parseLong(uploadLength) != length) {
+                mLocation = null;
+                return 0;
+            }
+            long offset = parseLong(response.getHeader(UPLOAD_OFFSET));
+            if (offset < 0 || offset > length) {
+                throw new IOException("Unexpected upload offset " + offset);
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Send one chunk of the body.
+     *
+     * @param offset   the offset of the chunk.
+     * @param size     the size of the chunk.
+     * @param length   the length of the upload.
+     * @param progress the progress of the upload.
+     * @param listener the progress listener, or null.
+     * @return the offset acknowledged by the server.
+     * @throws Exception if the chunk is not accepted.
+     */
+    private long sendChunk(final long offset, long size, final long length,
+                           final TransferProgress progress,
+                           final RequestProgressListener<String> listener) throws Exception {
+        final RequestBody chunk = createChunk(offset, size);
+        HttpRequest request = newRequest(mLocation, Method.PATCH);
+        request.addHeader(UPLOAD_OFFSET, offset);
+        request.setBody(new RequestBody() {
+            @Override
+            long length() {
+                return chunk.length();
+            }
+
+            @Override
+            void writeTo(OutputStream os, final ProgressUpdater updater) throws IOException {
+                chunk.writeTo(os, (total, current) -> {
+                    updater.update(total, current);
+                    if (progress.update(length, offset + current) && listener != null) {
+                        listener.onExecutionProgress(ResumableUpload.this, progress);
+                    }
+                });
+            }
+        }, OFFSET_TYPE, false, true);
+
+        try (Response response = request.execute()) {
+            if (!Http.isSuccessfulStatus(response.getStatus())) {
+                throw new IOException("Chunk not accepted, status " + response.getStatus());
+            }
+            long acknowledged = parseLong(response.getHeader(UPLOAD_OFFSET));
+            if (acknowledged <= offset || acknowledged > length) {
+                throw new IOException("Unexpected upload offset " + acknowledged);
+            }
+            return acknowledged;
+        }
+    }
+
+    /**
+     * Create the body of a chunk.
+     *
+     * @param offset the offset of the chunk.
+     * @param size   the size of the chunk.
+     * @return the body.
+     */
+    private RequestBody createChunk(long offset, long size) {
+        if (mFile != null) {
+            return RequestBody.create(mFile, offset, size);
+        }
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position((int) offset);
+        buffer.limit((int) (offset + size));
+        return RequestBody.create(buffer);
+    }
+
+    /**
+     * Create a new http request with the headers of the upload.
+     *
+     * @param url    the url.
+     * @param method the method.
+     * @return the http request.
+     */
+    private HttpRequest newRequest(String url, Method method) {
+        HttpRequest request = new HttpRequest(url, method);
+
+        for (Header header : mRequest.getHeaders()) {
+            request.addHeader(header);
+        }
+        request.addHeader(TUS_RESUMABLE, TUS_VERSION);
+        request.setConnectTimeout(mRequest.getConnectTimeout());
+        request.setReadTimeout(mRequest.getReadTimeout());
+        request.setAdaptiveTimeouts(mRequest.isAdaptiveTimeouts());
+        request.setBandwidthLimiter(mRequest.getBandwidthLimiter());
+        request.setInteractive(mRequest.isInteractive());
+        request.setEventListener(mRequest.getEventListener());
+        request.setCall(this);
+        mActive.add(request);
+        if (mCancelled) {
+            request.cancel();
+        }
+        return request;
+    }
+
+    /**
+     * Cancel all active http requests of the upload.
+     */
+    private void cancelActive() {
+        mCancelled = true;
+        mRequest.cancel();
+        for (HttpRequest request : mActive) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Read the saved upload state, unless a resource is already known in memory. A state
+     * saved for an upload of another length, of a file modified since, or of a buffer with
+     * other contents, is ignored.
+     *
+     * @param length the length of the upload.
+     */
+    private void readState(long length) {
+        if (mLocation != null || mStateFile == null || !mStateFile.isFile()) {
+            return;
+        }
+        Properties state = new Properties();
+
+        try (InputStream is = new FileInputStream(mStateFile)) {
+            state.load(is);
+            if (Long.parseLong(state.getProperty(STATE_LENGTH, "-1")) == length
+                    && Long.parseLong(state.getProperty(STATE_MODIFIED, "0"))
+                    == getModified()
+                    && Long.parseLong(state.getProperty(STATE_CHECKSUM, "0")) == mChecksum) {
+                mLocation = state.getProperty(STATE_LOCATION);
+                mOffset = Long.parseLong(state.getProperty(STATE_OFFSET, "0"));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Start over.
+            mLocation = null;
+            mOffset = 0;
+        }
+    }
+
+    /**
+     * Save the upload state. The state is written to a temporary file which then replaces the
+     * state file, so that a crash while saving never leaves a truncated state behind.
+     *
+     * @param length the length of the upload.
+     * @throws IOException if the state cannot be saved.
+     */
+    private void writeState(long length) throws IOException {
+        if (mStateFile == null) {
+            return;
+        }
+        Properties state = new Properties();
+        state.setProperty(STATE_LOCATION, mLocation);
+        state.setProperty(STATE_OFFSET, String.valueOf(mOffset));
+        state.setProperty(STATE_LENGTH, String.valueOf(length));
+        state.setProperty(STATE_MODIFIED, String.valueOf(getModified()));
+        state.setProperty(STATE_CHECKSUM, String.valueOf(mChecksum));
+        File temp = new File(mStateFile.getPath() + TEMP_SUFFIX);
+
+        try (FileOutputStream os = new FileOutputStream(temp)) {
+            state.store(os, null);
+            os.getFD().sync();
+        }
+        if (!temp.renameTo(mStateFile)) {
+            // Renaming over an existing file fails on some file systems.
+            mStateFile.delete();
+            if (!temp.renameTo(mStateFile)) {
+                temp.delete();
+                throw new IOException("Could not save upload state to " + mStateFile);
+            }
+        }
+    }
+
+    /**
+     * Get the last modified time of the uploaded file.
+     *
+     * @return the time in milliseconds, or 0 if a buffer is uploaded.
+     */
+    private long getModified() {
+        return mFile != null ? mFile.lastModified() : 0;
+    }
+
+    /**
+     * Compute the checksum of the uploaded buffer, which tells a saved state apart from one
+     * of another buffer of the same length.
+     *
+     * @return the CRC-32 checksum.
+     */
+    private long getChecksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = mBuffer.duplicate();
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+            return crc.getValue();
+        }
+        BufferPool pool = BufferPool.getDefault();
+        byte[] chunk = pool.acquire(BufferPool.chunkSize(buffer.remaining()));
+
+        try {
+            while (buffer.hasRemaining()) {
+                int size = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, size);
+                crc.update(chunk, 0, size);
+            }
+        } finally {
+            pool.release(chunk);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Parse a numeric header value.
+     *
+     * @param value the value.
+     * @return the number.
+     * @throws IOException if the value is missing or malformed.
+     */
+    private static long parseLong(String value) throws IOException {
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // Fall through.
+            }
+        }
+        throw new IOException("Malformed number " + value);
+    }
+}
@@ -0,0 +1,125 @@
+package com.tuz.network;
+
+/**
+ * Token bucket limiting the number of retries in relation to the number of successful
+ * requests.
+ * <p>
+ * Every retry withdraws one token and every successful request deposits a fraction of a
+ * token, so that retries can only make up a fixed share of the traffic. In addition a minimum
+ * number of tokens per second is always refilled, which lets clients with little traffic
+ * retry. When the bucket is empty requests fail without retrying, which keeps a short backend
+ * outage from turning into a retry storm.
+ *
+ * @see Setup#setRetryBudget(RetryBudget)
+ */
+public final class RetryBudget {
+
+    /**
+     * The default max number of tokens.
+     */
+    public static final double DEFAULT_MAX_TOKENS = 20;
+
+    /**
+     * The default number of tokens deposited per successful request.
+     */
+    public static final double DEFAULT_DEPOSIT_RATIO = 0.1;
+
+    /**
+     * The default number of tokens refilled per second.
+     */
+    public static final double DEFAULT_MIN_RETRIES_PER_SECOND = 1;
+
+    /**
+     * The max number of tokens.
+     */
+    private final double mMaxTokens;
+
+    /**
+     * The number of tokens deposited per successful request.
+     */
+    private final double mDepositRatio;
+
+    /**
+     * The number of tokens refilled per second.
+     */
+    private final double mMinRetriesPerSecond;
+
+    /**
+     * The current number of tokens.
+     */
+    private double mTokens;
+
+    /**
+     * The time of the last refill in nanoseconds.
+     */
+    private long mLastRefill;
+
+    /**
+     * Constructor using the default settings.
+     */
+    public RetryBudget() {
+        this(DEFAULT_MAX_TOKENS, DEFAULT_DEPOSIT_RATIO, DEFAULT_MIN_RETRIES_PER_SECOND);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxTokens           the max number of tokens, which is the largest burst of
+     *                            retries.
+     * @param depositRatio        the number of tokens deposited per successful request, which
+     *                            is the share of retries allowed in relation to the traffic.
+     * @param minRetriesPerSecond the number of tokens refilled per second.
+     * @throws IllegalArgumentException if any of the values are negative.
+     */
+    public RetryBudget(double maxTokens, double depositRatio, double minRetriesPerSecond) {
+        if (maxTokens < 0 || depositRatio < 0 || minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("Values cannot be negative.");
+        }
+        mMaxTokens = maxTokens;
+        mDepositRatio = depositRatio;
+        mMinRetriesPerSecond = minRetriesPerSecond;
+        mTokens = maxTokens;
+        mLastRefill = System.nanoTime();
+    }
+
+    /**
+     * Try to withdraw a token for a retry.
+     *
+     * @return true if the retry is allowed, false if the budget is exhausted.
+     */
+    public synchronized boolean tryWithdraw() {
+        refill();
+        if (mTokens >= 1) {
+            mTokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Deposit the share of a successful request.
+     */
+    public synchronized void deposit() {
+        mTokens = Math.min(mMaxTokens, mTokens + mDepositRatio);
+    }
+
+    /**
+     * Get the current number of tokens.
+     *
+     * @return the number of tokens.
+     */
+    public synchronized double getTokens() {
+        refill();
+        return mTokens;
+    }
+
+    /**
+     * Refill the tokens accumulated since the last refill.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        double seconds = (now - mLastRefill) / 1e9;
+        mTokens = Math.min(mMaxTokens, mTokens + seconds * mMinRetriesPerSecond);
+        mLastRefill = now;
+    }
+}
@@ -0,0 +1,37 @@
+package com.tuz.network;
+
+/**
+ * Policy deciding if and when a failed request is retried.
+ *
+ * @see RequestBuilder#setRetryPolicy(RetryPolicy)
+ * @see ExponentialBackoff
+ */
+public interface RetryPolicy {
+
+    /**
+     * Delay returned when the request should not be retried.
+     */
+    long NO_RETRY = -1;
+
+    /**
+     * Get the delay before the next attempt of a failed request.
+     *
+     * @param method     the method of the request.
+     * @param attempt    the number of attempts made so far, starting at 1.
+     * @param status     the http status of the failed attempt, or 0 if it failed with an
+     *                   exception.
+     * @param error      the exception of the failed attempt, or null if it failed with a
+     *                   status.
+     * @param retryAfter the delay in milliseconds requested by the server through the
+     *                   {@code Retry-After} header, or -1 if none.
+     * @return the delay in milliseconds, or {@link #NO_RETRY} if the request should not be
+     * retried.
+     */
+    long getRetryDelay(Method method, int attempt, int status, Exception error,
+                       long retryAfter);
+
+    /**
+     * Callback when an attempt succeeds.
+     */
+    void onSuccess();
+}
@@ -0,0 +1,622 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request downloading a resource to a file in parallel byte ranges.
+ * <p>
+ * A {@code HEAD} request first checks that the server accepts byte ranges and returns the
+ * size of the resource. The resource is then split into segments which are fetched
+ * concurrently on the dispatcher over separate connections and written to the file at their
+ * offsets with positional writes. When ranges are not supported, the resource is too small
+ * to be worth splitting or it changes while the segments are fetched, the download falls back
+ * to a single stream.
+ *
+ * @see RequestBuilder#setSegments(int)
+ */
+final class SegmentedDownload implements Request<File> {
+
+    /**
+     * The smallest resource size that is split into segments.
+     */
+    static final long MIN_SEGMENTED_SIZE = 1024 * 1024;
+
+    /**
+     * Suffix of the file the segments are written to, which is not resumed and so must not be
+     * mistaken for the partial file of a single stream download.
+     */
+    private static final String SEGMENTS_SUFFIX = ".segments";
+
+    /**
+     * The http request holding the url and headers of the download.
+     */
+    private final HttpRequest mRequest;
+
+    /**
+     * The single stream request used as fallback.
+     */
+    private final NetworkRequest<File> mFallback;
+
+    /**
+     * The target file.
+     */
+    private final File mTarget;
+
+    /**
+     * The number of segments.
+     */
+    private final int mSegments;
+
+    /**
+     * The dispatcher for asynchronous execution and the segments, or null to use the default
+     * dispatcher.
+     */
+    private Dispatcher mDispatcher;
+
+    /**
+     * The retry policy, or null if the download should not be retried.
+     */
+    private RetryPolicy mRetryPolicy;
+
+    /**
+     * The http requests of the current execution, cancelled when the call times out.
+     */
+    private final Set<HttpRequest> mActive =
+            Collections.newSetFromMap(new ConcurrentHashMap<HttpRequest, Boolean>());
+
+    /**
+     * Constructor.
+     *
+     * @param request  the http request of the download.
+     * @param fallback the single stream request.
+     * @param target   the target file.
+     * @param segments the number of segments.
+     */
+    SegmentedDownload(HttpRequest request, NetworkRequest<File> fallback, File target,
+                      int segments) {
+        mRequest = request;
+        mFallback = fallback;
+        mTarget = target;
+        mSegments = segments;
+        mRequest.setCall(this);
+    }
+
+    /**
+     * Set the dispatcher for asynchronous execution.
+     *
+     * @param dispatcher the dispatcher, or null to use the default dispatcher.
+     */
+    void setDispatcher(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * Set the retry policy.
+     *
+     * @param policy the retry policy, or null if the download should not be retried.
+     */
+    void setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+    }
+
+    @Override
+    public File execute(RequestProgressListener<File> listener) throws NetworkException {
+        return execute(listener, mRetryPolicy, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public File execute() throws NetworkException {
+        return execute((RequestProgressListener<File>) null);
+    }
+
+    @Override
+    public File execute(int retries) {
+        try {
+            return execute(null, NetworkRequest.getRetryPolicy(mRetryPolicy, retries), retries);
+        } catch (NetworkException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Canceller executeAsync(RequestListener<File> listener) {
+        Dispatcher dispatcher = getDispatcher();
+        NetworkTask<File> task = new NetworkTask<>(dispatcher, this, listener,
+                mRequest.getHost(), this::cancelActive);
+        dispatcher.enqueue(task);
+        return task;
+    }
+
+    /**
+     * Execute the download, reporting the call to the event listener.
+     *
+     * @param listener   the progress listener, or null.
+     * @param policy     the retry policy, or null if the download should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @return the target file.
+     * @throws NetworkException if the download fails.
+     */
+    private File execute(RequestProgressListener<File> listener, RetryPolicy policy,
+                         int maxRetries) throws NetworkException {
+        mActive.clear();
+        mRequest.reset();
+        EventListener events = mRequest.getEvents();
+        MetricsRegistry registry = Setup.getMetricsRegistry();
+        long start = System.nanoTime();
+        events.callStart(this, start);
+        CallTimeout timeout = new CallTimeout(mRequest.getCallTimeout(), this::cancelActive);
+
+        try {
+            File output = execute(listener, policy, maxRetries, timeout);
+            long end = System.nanoTime();
+            events.callEnd(this, end);
+            if (registry != null) {
+                registry.getStats(mRequest.getUrl()).recordCall(end - start, null);
+            }
+            return output;
+        } catch (NetworkException e) {
+            if (timeout.isExpired()) {
+                e = new NetworkException(new InterruptedIOException("Call timed out"));
+            }
+            long end = System.nanoTime();
+            events.callFailed(this, e, end);
+            if (registry != null) {
+                registry.getStats(mRequest.getUrl()).recordCall(end - start, e);
+            }
+            throw e;
+        } finally {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Execute the download within a call timeout.
+     *
+     * @param listener   the progress listener, or null.
+     * @param policy     the retry policy, or null if the download should not be retried.
+     * @param maxRetries the max number of retries regardless of the policy.
+     * @param timeout    the call timeout.
+     * @return the target file.
+     * @throws NetworkException if the download fails.
+     */
+    private File execute(final RequestProgressListener<File> listener, RetryPolicy policy,
+                         int maxRetries, CallTimeout timeout) throws NetworkException {
+        // Every attempt probes again, so that a retry sees a resource that has changed.
+        File output = NetworkRequest.retry(() -> {
+            Resource resource = probe();
+            return resource != null ? download(resource, listener) : null;
+        }, Method.GET, policy, maxRetries, timeout);
+
+        if (output == null) {
+            return mFallback.execute(listener, policy, maxRetries, timeout);
+        }
+        return output;
+    }
+
+    /**
+     * Check that the server accepts byte ranges and get the length of the resource.
+     *
+     * @return the resource, or null if it should be downloaded in a single stream.
+     * @throws Exception if the request fails.
+     */
+    private Resource probe() throws Exception {
+        try (Response response = newRequest(Method.HEAD).execute()) {
+            boolean ranges = Http.BYTES.equalsIgnoreCase(response.getHeader(Http.ACCEPT_RANGES));
+            long length = response.getContentLength();
+
+            if (!Http.isSuccessfulStatus(response.getStatus()) || !ranges
+                    || length < MIN_SEGMENTED_SIZE) {
+                return null;
+            }
+            return new Resource(length, getValidator(response));
+        }
+    }
+
+    /**
+     * Download the segments in parallel on the dispatcher.
+     *
+     * @param resource the resource.
+     * @param listener the progress listener, or null.
+     * @return the target file, or null if the server stopped serving ranges of the resource,
+     * for example because it changed, and it should be downloaded in a single stream.
+     * @throws Exception if any segment fails.
+     */
+    private File download(Resource resource, RequestProgressListener<File> listener)
+            throws Exception {
+        File part = new File(mTarget.getPath() + SEGMENTS_SUFFIX);
+        Dispatcher dispatcher = getDispatcher();
+        BlockingQueue<Segment> finished = new LinkedBlockingQueue<>();
+        List<Segment> segments = new ArrayList<>();
+        Progress progress = new Progress(resource.mLength, listener);
+        boolean complete = false;
+
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            long length = resource.mLength;
+            file.setLength(length);
+            FileChannel channel = file.getChannel();
+            long segmentSize = (length + mSegments - 1) / mSegments;
+
+            for (long start = 0; start < length; start += segmentSize) {
+                long end = Math.min(length, start + segmentSize) - 1;
+                segments.add(new Segment(dispatcher, newRequest(Method.GET), channel, start, end,
+                        resource.mValidator, progress, finished));
+            }
+            for (Segment segment : segments) {
+                try {
+                    dispatcher.enqueue(segment);
+                } catch (RejectedExecutionException e) {
+                    segment.execute();
+                }
+            }
+            complete = await(dispatcher, segments, finished);
+        } finally {
+            if (!complete) {
+                for (Segment segment : segments) {
+                    segment.cancel();
+                }
+                part.delete();
+            }
+        }
+
+        if (!complete) {
+            return null;
+        }
+        if ((mTarget.exists() && !mTarget.delete()) || !part.renameTo(mTarget)) {
+            throw new IOException("Could not move download to " + mTarget);
+        }
+        return mTarget;
+    }
+
+    /**
+     * Wait for the segments to finish. Segments still waiting for a worker thread are run on
+     * the calling thread, so that a download running on the dispatcher never waits for workers
+     * that are held by itself or other downloads.
+     *
+     * @param dispatcher the dispatcher.
+     * @param segments   the segments.
+     * @param finished   the queue the segments add themselves to when finished.
+     * @return true if all segments were downloaded, false if a range was not served.
+     * @throws Exception if any segment fails.
+     */
+    private static boolean await(Dispatcher dispatcher, List<Segment> segments,
+                              BlockingQueue<Segment> finished) throws Exception {
+        Iterator<Segment> queued = segments.iterator();
+        int pending = segments.size();
+
+        while (pending > 0) {
+            Segment segment = finished.poll();
+            if (segment == null) {
+                Segment next = null;
+                while (next == null && queued.hasNext()) {
+                    Segment candidate = queued.next();
+                    if (dispatcher.remove(candidate)) {
+                        next = candidate;
+                    }
+                }
+                if (next != null) {
+                    next.execute();
+                    continue;
+                }
+                segment = finished.take();
+            }
+
+            pending--;
+            if (segment.mRangeIgnored) {
+                return false;
+            } else if (segment.mError != null) {
+                throw segment.mError;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the dispatcher.
+     *
+     * @return the dispatcher of the download, or else the default dispatcher.
+     */
+    private Dispatcher getDispatcher() {
+        return mDispatcher != null ? mDispatcher : Setup.getDispatcher();
+    }
+
+    /**
+     * Create a new http request to the url of the download, with the same headers.
+     *
+     * @param method the method.
+     * @return the http request.
+     */
+    private HttpRequest newRequest(Method method) {
+        HttpRequest request = new HttpRequest(mRequest.getUrl(), method);
+        Set<Header> headers = mRequest.getHeaders();
+
+        for (Header header : headers) {
+            request.addHeader(header);
+        }
+        request.setConnectTimeout(mRequest.getConnectTimeout());
+        request.setReadTimeout(mRequest.getReadTimeout());
+        request.setAdaptiveTimeouts(mRequest.isAdaptiveTimeouts());
+        request.setBandwidthLimiter(mRequest.getBandwidthLimiter());
+        request.setInteractive(mRequest.isInteractive());
+        request.setDecompress(false);
+        request.setEventListener(mRequest.getEventListener());
+        request.setCall(this);
+        mActive.add(request);
+        return request;
+    }
+
+    /**
+     * Cancel all active http requests of the download.
+     */
+    private void cancelActive() {
+        mRequest.cancel();
+        for (HttpRequest request : mActive) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Get the strong validator of a response.
+     *
+     * @param response the response.
+     * @return the entity tag or last modified date, or null if there is none.
+     */
+    private static String getValidator(Response response) {
+        String validator = response.getHeader(Http.ETAG);
+        if (validator == null || validator.startsWith("W/")) {
+            validator = response.getHeader(Http.LAST_MODIFIED);
+        }
+        return validator;
+    }
+
+    /**
+     * The aggregated progress of all segments.
+     */
+    private final class Progress {
+
+        /**
+         * The transfer progress.
+         */
+        private final TransferProgress mProgress;
+
+        /**
+         * The total number of bytes.
+         */
+        private final long mTotal;
+
+        /**
+         * The number of bytes transferred by all segments.
+         */
+        private final AtomicLong mTransferred;
+
+        /**
+         * The progress listener, or null.
+         */
+        private final RequestProgressListener<File> mListener;
+
+        /**
+         * Constructor.
+         *
+         * @param total    the total number of bytes.
+         * @param listener the progress listener, or null.
+         */
+        Progress(long total, RequestProgressListener<File> listener) {
+            mProgress = new TransferProgress();
+            mProgress.reset(mRequest.getProgressInterval());
+            mTotal = total;
+            mTransferred = new AtomicLong();
+            mListener = listener;
+        }
+
+        /**
+         * Add transferred bytes.
+         *
+         * @param count the number of bytes.
+         */
+        void add(long count) {
+            long transferred = mTransferred.addAndGet(count);
+            boolean changed;
+
+            synchronized (this) {
+                changed = mProgress.update(mTotal, transferred);
+            }
+
+            if (changed && mListener != null) {
+                mListener.onExecutionProgress(SegmentedDownload.this, mProgress);
+            }
+        }
+    }
+
+    /**
+     * The length and validator of the resource.
+     */
+    private static final class Resource {
+
+        /**
+         * The length of the resource.
+         */
+        private final long mLength;
+
+        /**
+         * The validator of the resource, or null.
+         */
+        private final String mValidator;
+
+        /**
+         * Constructor.
+         *
+         * @param length    the length of the resource.
+         * @param validator the validator of the resource, or null.
+         */
+        Resource(long length, String validator) {
+            mLength = length;
+            mValidator = validator;
+        }
+    }
+
+    /**
+     * Task downloading one byte range.
+     */
+    private static final class Segment extends DispatcherTask {
+
+        /**
+         * The http request of the range.
+         */
+        private final HttpRequest mRequest;
+
+        /**
+         * The file channel.
+         */
+        private final FileChannel mChannel;
+
+        /**
+         * The first byte of the range.
+         */
+        private final long mStart;
+
+        /**
+         * The last byte of the range.
+         */
+        private final long mEnd;
+
+        /**
+         * The validator of the resource, or null.
+         */
+        private final String mValidator;
+
+        /**
+         * The aggregated progress.
+         */
+        private final Progress mProgress;
+
+        /**
+         * The queue the segment adds itself to when finished.
+         */
+        private final BlockingQueue<Segment> mFinished;
+
+        /**
+         * The error of the segment, or null if it succeeded.
+         */
+        private volatile Exception mError;
+
+        /**
+         * Flag for if the server answered with the whole resource instead of the range.
+         */
+        private volatile boolean mRangeIgnored;
+
+        /**
+         * Constructor.
+         *
+         * @param dispatcher the dispatcher.
+         * @param request    the http request of the range.
+         * @param channel    the file channel.
+         * @param start      the first byte of the range.
+         * @param end        the last byte of the range.
+         * @param validator  the validator of the resource, or null.
+         * @param progress   the aggregated progress.
+         * @param finished   the queue the segment adds itself to when finished.
+         */
+        Segment(Dispatcher dispatcher, HttpRequest request, FileChannel channel, long start,
+                long end, String validator, Progress progress, BlockingQueue<Segment> finished) {
+            super(dispatcher, request.getHost(), request::cancel);
+            mRequest = request;
+            mChannel = channel;
+            mStart = start;
+            mEnd = end;
+            mValidator = validator;
+            mProgress = progress;
+            mFinished = finished;
+        }
+
+        @Override
+        void execute() {
+            try {
+                if (isCancelled()) {
+                    throw new InterruptedIOException("Segment download was cancelled.");
+                }
+                download();
+            } catch (Exception e) {
+                mError = e;
+            } finally {
+                mFinished.add(this);
+            }
+        }
+
+        @Override
+        void onDropped() {
+            mError = new InterruptedIOException("Segment download was dropped.");
+            mFinished.add(this);
+        }
+
+        /**
+         * Download the range.
+         *
+         * @throws Exception if the download fails.
+         */
+        private void download() throws Exception {
+            mRequest.addHeader(Http.RANGE, Http.BYTES + "=" + mStart + "-" + mEnd);
+            if (mValidator != null) {
+                mRequest.addHeader(Http.IF_RANGE, mValidator);
+            }
+
+            try (Response response = mRequest.execute()) {
+                int status = response.getStatus();
+                if (status != Http.STATUS_PARTIAL_CONTENT) {
+                    // A changed validator makes the server send the whole resource.
+                    mRangeIgnored = Http.isSuccessfulStatus(status);
+                    throw new IOException("Range not served, status " + status);
+                }
+                write(response.getInputStream());
+            }
+        }
+
+        /**
+         * Write the range to the file at its offset. Bytes beyond the range are ignored.
+         *
+         * @param is the input stream of the range.
+         * @throws IOException if reading or writing fails.
+         */
+        private void write(InputStream is) throws IOException {
+            BufferPool pool = BufferPool.getDefault();
+            byte[] buffer = pool.acquire(BufferPool.chunkSize(mEnd - mStart + 1));
+            long position = mStart;
+            int read;
+
+            try {
+                while (position <= mEnd && (read = is.read(buffer)) != -1) {
+                    int count = (int) Math.min(read, mEnd + 1 - position);
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+                    while (bytes.hasRemaining()) {
+                        position += mChannel.write(bytes, position);
+                    }
+                    mProgress.add(count);
+
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new IOException("Segment download was interrupted.");
+                    }
+                }
+            } finally {
+                pool.release(buffer);
+            }
+
+            if (position != mEnd + 1) {
+                throw new IOException("Segment ended at " + position + " of " + (mEnd + 1));
+            }
+        }
+    }
+}
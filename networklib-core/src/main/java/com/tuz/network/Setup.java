@@ -0,0 +1,329 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by henrik on 2017-04-21.
+ */
+
+public class Setup {
+
+    /**
+     * The default cache size.
+     */
+    public static final long DEFAULT_CACHE_SIZE = 5 * 1024L * 1024L;
+
+    /**
+     * The default min time between progress reports in milliseconds.
+     */
+    public static final long DEFAULT_PROGRESS_INTERVAL = 100;
+
+    /**
+     * The platform, or null until it is detected.
+     */
+    private static Platform sPlatform;
+
+    /**
+     * The dispatcher for asynchronous requests.
+     */
+    private static Dispatcher sDispatcher;
+
+    /**
+     * The connection pool.
+     */
+    private static ConnectionPool sConnectionPool;
+
+    /**
+     * The platform properties replaced by the connection pool, or null if no pool is set.
+     */
+    private static Map<String, String> sPlatformProperties;
+
+    /**
+     * The retry budget shared by all retry policies.
+     */
+    private static RetryBudget sRetryBudget;
+
+    /**
+     * The memory cache, or null.
+     */
+    private static MemoryCache sMemoryCache;
+
+    /**
+     * The event listener of requests without a listener of their own.
+     */
+    private static volatile EventListener sEventListener = EventListener.NONE;
+
+    /**
+     * The metrics registry, or null if metrics are not recorded.
+     */
+    private static volatile MetricsRegistry sMetricsRegistry;
+
+    /**
+     * The min time between progress reports in milliseconds.
+     */
+    private static volatile long sProgressInterval = DEFAULT_PROGRESS_INTERVAL;
+
+    /**
+     * The bandwidth limiter of all requests, or null.
+     */
+    private static volatile BandwidthLimiter sBandwidthLimiter;
+
+    /**
+     * The bandwidth limiters of hosts.
+     */
+    private static final Map<String, BandwidthLimiter> sHostLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Set the platform, which replaces the detected platform. The platform should be set before
+     * the first request is executed.
+     *
+     * @param platform the platform, or null to detect it again.
+     */
+    public static synchronized void setPlatform(Platform platform) {
+        sPlatform = platform;
+    }
+
+    /**
+     * Get the platform, which is detected unless one has been set.
+     *
+     * @return the platform.
+     */
+    public static synchronized Platform getPlatform() {
+        if (sPlatform == null) {
+            sPlatform = Platform.detect();
+        }
+        return sPlatform;
+    }
+
+    /**
+     * Install the response cache of the platform.
+     *
+     * @param dir the directory of the cache.
+     * @param size the max size of the cache.
+     * @throws IOException if the cache cannot be created.
+     * @throws UnsupportedOperationException if the platform has no response cache.
+     */
+    public static void installCache(File dir, long size) throws IOException {
+        getPlatform().installCache(dir, size);
+    }
+
+    /**
+     * Flush the response cache to disk now. Requests using the cache schedule a batched flush
+     * in the background, so this is only needed before the process may be killed.
+     */
+    public static void flushCache() {
+        CacheFlusher.flush();
+    }
+
+    /**
+     * Set the memory cache in front of the response cache. Fresh responses of requests using
+     * the cache are then served from memory.
+     *
+     * @param cache the memory cache, or null to disable the memory cache.
+     * @see RequestBuilder#setUseCache(boolean)
+     */
+    public static synchronized void setMemoryCache(MemoryCache cache) {
+        sMemoryCache = cache;
+    }
+
+    /**
+     * Get the memory cache.
+     *
+     * @return the memory cache, or null if none is set.
+     */
+    public static synchronized MemoryCache getMemoryCache() {
+        return sMemoryCache;
+    }
+
+    /**
+     * Set the dispatcher used for asynchronous requests.
+     *
+     * @param dispatcher the dispatcher.
+     * @see Request#executeAsync(RequestListener)
+     */
+    public static synchronized void setDispatcher(Dispatcher dispatcher) {
+        sDispatcher = dispatcher;
+    }
+
+    /**
+     * Get the dispatcher used for asynchronous requests. A dispatcher delivering its callbacks
+     * with the executor of the platform, which is the main thread on android, is created unless
+     * one has been set.
+     *
+     * @return the dispatcher.
+     */
+    public static synchronized Dispatcher getDispatcher() {
+        if (sDispatcher == null) {
+            sDispatcher = new Dispatcher(getPlatform().getCallbackExecutor());
+        }
+        return sDispatcher;
+    }
+
+    /**
+     * Set the connection pool. When a pool is set, closed responses are drained and their
+     * connections kept alive for reuse instead of disconnected. The pool settings are applied
+     * to the platform connection pool through process wide system properties, which the
+     * platform reads when its pool is created, so the pool should be set before the first
+     * request is executed. Removing the pool restores the properties it replaced, which only
+     * affects a platform pool that has not been created yet.
+     *
+     * @param pool the connection pool, or null to disconnect every connection after use.
+     */
+    public static synchronized void setConnectionPool(ConnectionPool pool) {
+        if (pool != null) {
+            Map<String, String> previous = pool.applyToPlatform();
+            if (sPlatformProperties == null) {
+                sPlatformProperties = previous;
+            }
+        } else if (sPlatformProperties != null) {
+            ConnectionPool.restorePlatform(sPlatformProperties);
+            sPlatformProperties = null;
+        }
+        sConnectionPool = pool;
+    }
+
+    /**
+     * Get the connection pool.
+     *
+     * @return the connection pool, or null if connections are not pooled.
+     */
+    public static synchronized ConnectionPool getConnectionPool() {
+        return sConnectionPool;
+    }
+
+    /**
+     * Set the retry budget shared by the retry policies that have no budget of their own.
+     *
+     * @param budget the budget.
+     * @see ExponentialBackoff#setBudget(RetryBudget)
+     */
+    public static synchronized void setRetryBudget(RetryBudget budget) {
+        sRetryBudget = budget;
+    }
+
+    /**
+     * Get the shared retry budget. A budget with the default settings is created unless one
+     * has been set.
+     *
+     * @return the retry budget.
+     */
+    public static synchronized RetryBudget getRetryBudget() {
+        if (sRetryBudget == null) {
+            sRetryBudget = new RetryBudget();
+        }
+        return sRetryBudget;
+    }
+
+    /**
+     * Set the event listener of the requests that have no listener of their own.
+     *
+     * @param listener the listener, or null to ignore events.
+     * @see RequestBuilder#setEventListener(EventListener)
+     */
+    public static void setEventListener(EventListener listener) {
+        sEventListener = listener != null ? listener : EventListener.NONE;
+    }
+
+    /**
+     * Get the event listener of the requests that have no listener of their own.
+     *
+     * @return the listener, which is {@link EventListener#NONE} unless one has been set.
+     */
+    public static EventListener getEventListener() {
+        return sEventListener;
+    }
+
+    /**
+     * Set the registry recording the metrics of all requests.
+     *
+     * @param registry the registry, or null to not record metrics.
+     */
+    public static void setMetricsRegistry(MetricsRegistry registry) {
+        sMetricsRegistry = registry;
+    }
+
+    /**
+     * Get the registry recording the metrics of all requests.
+     *
+     * @return the registry, or null if metrics are not recorded.
+     */
+    public static MetricsRegistry getMetricsRegistry() {
+        return sMetricsRegistry;
+    }
+
+    /**
+     * Set the min time between progress reports of requests that have no interval of their
+     * own. The completion of a transfer is always reported.
+     *
+     * @param interval the interval, or 0 to report every update.
+     * @param unit     the unit of the interval.
+     * @throws IllegalArgumentException if the interval is negative.
+     * @see RequestBuilder#setProgressInterval(long, TimeUnit)
+     */
+    public static void setProgressInterval(long interval, TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Interval cannot be negative.");
+        }
+        sProgressInterval = unit.toMillis(interval);
+    }
+
+    /**
+     * Get the min time between progress reports of requests that have no interval of their
+     * own.
+     *
+     * @return the interval in milliseconds, which is {@link #DEFAULT_PROGRESS_INTERVAL} unless
+     * one has been set.
+     */
+    public static long getProgressIntervalMillis() {
+        return sProgressInterval;
+    }
+
+    /**
+     * Set the bandwidth limiter shared by all requests, which applies together with the
+     * limiters of hosts and requests.
+     *
+     * @param limiter the limiter, or null to not limit all requests.
+     * @see RequestBuilder#setInteractive(boolean)
+     */
+    public static void setBandwidthLimiter(BandwidthLimiter limiter) {
+        sBandwidthLimiter = limiter;
+    }
+
+    /**
+     * Get the bandwidth limiter shared by all requests.
+     *
+     * @return the limiter, or null if all requests are not limited.
+     */
+    public static BandwidthLimiter getBandwidthLimiter() {
+        return sBandwidthLimiter;
+    }
+
+    /**
+     * Set the bandwidth limiter shared by the requests to a host, which applies together with
+     * the limiters of all requests and of the request.
+     *
+     * @param host    the host.
+     * @param limiter the limiter, or null to not limit the host.
+     */
+    public static void setBandwidthLimiter(String host, BandwidthLimiter limiter) {
+        if (limiter != null) {
+            sHostLimiters.put(host, limiter);
+        } else {
+            sHostLimiters.remove(host);
+        }
+    }
+
+    /**
+     * Get the bandwidth limiter shared by the requests to a host.
+     *
+     * @param host the host.
+     * @return the limiter, or null if the host is not limited.
+     */
+    public static BandwidthLimiter getBandwidthLimiter(String host) {
+        return sHostLimiters.get(host);
+    }
+}
@@ -0,0 +1,222 @@
+package com.tuz.network;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalescing of identical in-flight requests.
+ * <p>
+ * The first caller of a key becomes the leader of a flight and executes the request, while
+ * later callers of the same key join the flight and wait for the output of the leader instead
+ * of making their own round trip. Cancellation is reference counted: a caller that cancels
+ * leaves the flight, and the request of the leader is only aborted when every caller has left.
+ *
+ * @see RequestBuilder#setCoalesce(boolean, String...)
+ */
+final class SingleFlight {
+
+    /**
+     * The default instance.
+     */
+    private static final SingleFlight sDefault = new SingleFlight();
+
+    /**
+     * The flights in progress by key.
+     */
+    private final Map<Object, Flight> mFlights = new HashMap<>();
+
+    /**
+     * The number of callers that shared the output of another caller.
+     */
+    private final AtomicLong mSharedCount = new AtomicLong();
+
+    /**
+     * Get the default instance.
+     *
+     * @return the instance.
+     */
+    static SingleFlight getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Join the flight of a key, starting a new flight if there is none in progress.
+     *
+     * @param key   the key, compared by {@link Object#equals(Object)}.
+     * @param abort the action aborting the request of the leader, run if every caller leaves.
+     * @return the flight, which is led by the caller if {@link Flight#isLeader()} is true.
+     */
+    synchronized Flight join(Object key, Runnable abort) {
+        Flight flight = mFlights.get(key);
+        if (flight == null) {
+            flight = new Flight(key, abort);
+            mFlights.put(key, flight);
+            return flight;
+        }
+        flight.mCallers++;
+        mSharedCount.incrementAndGet();
+        return new Flight(flight);
+    }
+
+    /**
+     * Get the number of callers that shared the output of another caller.
+     *
+     * @return the count.
+     */
+    long getSharedCount() {
+        return mSharedCount.get();
+    }
+
+    /**
+     * A caller's membership of a flight.
+     */
+    final class Flight {
+
+        /**
+         * The key.
+         */
+        private final Object mKey;
+
+        /**
+         * The shared flight state, which is this instance for the leader.
+         */
+        private final Flight mShared;
+
+        /**
+         * The action aborting the request of the leader.
+         */
+        private final Runnable mAbort;
+
+        /**
+         * Latch released when the leader completes.
+         */
+        private final CountDownLatch mLatch;
+
+        /**
+         * The number of callers that have not left the flight.
+         */
+        private int mCallers;
+
+        /**
+         * Flag for if the caller has left the flight.
+         */
+        private boolean mLeft;
+
+        /**
+         * The output of the leader.
+         */
+        private Object mOutput;
+
+        /**
+         * The exception of the leader, or null.
+         */
+        private NetworkException mError;
+
+        /**
+         * Constructor for the leader.
+         *
+         * @param key   the key.
+         * @param abort the action aborting the request of the leader.
+         */
+        private Flight(Object key, Runnable abort) {
+            mKey = key;
+            mShared = this;
+            mAbort = abort;
+            mLatch = new CountDownLatch(1);
+            mCallers = 1;
+        }
+
+        /**
+         * Constructor for a follower.
+         *
+         * @param shared the flight of the leader.
+         */
+        private Flight(Flight shared) {
+            mKey = shared.mKey;
+            mShared = shared;
+            mAbort = null;
+            mLatch = null;
+        }
+
+        /**
+         * Check if the caller is the leader which should execute the request.
+         *
+         * @return true for the leader.
+         */
+        boolean isLeader() {
+            return mShared == this;
+        }
+
+        /**
+         * Complete the flight with the output of the leader.
+         *
+         * @param output the output.
+         * @param error  the exception, or null.
+         */
+        void complete(Object output, NetworkException error) {
+            synchronized (SingleFlight.this) {
+                if (mFlights.get(mKey) == mShared) {
+                    mFlights.remove(mKey);
+                }
+                mShared.mOutput = output;
+                mShared.mError = error;
+            }
+            mShared.mLatch.countDown();
+        }
+
+        /**
+         * Wait for the output of the leader.
+         *
+         * @return the output.
+         * @throws NetworkException if the leader failed, or the caller left or was interrupted
+         *                          while waiting.
+         */
+        Object await() throws NetworkException {
+            try {
+                mShared.mLatch.await();
+            } catch (InterruptedException e) {
+                leave();
+                Thread.currentThread().interrupt();
+                throw new NetworkException(new InterruptedIOException("Request was cancelled"));
+            }
+
+            synchronized (SingleFlight.this) {
+                if (mLeft) {
+                    throw new NetworkException(
+                            new InterruptedIOException("Request was cancelled"));
+                } else if (mShared.mError != null) {
+                    throw mShared.mError;
+                }
+                return mShared.mOutput;
+            }
+        }
+
+        /**
+         * Leave the flight. The request of the leader is aborted if this was the last caller.
+         */
+        void leave() {
+            boolean abort = false;
+
+            synchronized (SingleFlight.this) {
+                if (mLeft) {
+                    return;
+                }
+                mLeft = true;
+                if (--mShared.mCallers == 0 && mShared.mLatch.getCount() > 0) {
+                    // Let new callers start a new flight instead of joining an aborted one.
+                    if (mFlights.get(mKey) == mShared) {
+                        mFlights.remove(mKey);
+                    }
+                    abort = true;
+                }
+            }
+
+            if (abort) {
+                mShared.mAbort.run();
+            }
+        }
+    }
+}
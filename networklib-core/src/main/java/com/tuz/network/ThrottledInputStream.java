@@ -0,0 +1,67 @@
+package com.tuz.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream limiting the rate of the bytes read through it. The bytes are paid for after
+ * they have been read, since the size of a read is not known in advance.
+ */
+final class ThrottledInputStream extends FilterInputStream {
+
+    /**
+     * The limiters.
+     */
+    private final BandwidthLimiter[] mLimiters;
+
+    /**
+     * Flag for if the bytes belong to an interactive request.
+     */
+    private final boolean mInteractive;
+
+    /**
+     * Constructor.
+     *
+     * @param in          the stream.
+     * @param limiters    the limiters.
+     * @param interactive true if the request is interactive.
+     */
+    ThrottledInputStream(InputStream in, BandwidthLimiter[] limiters, boolean interactive) {
+        super(in);
+        mLimiters = limiters;
+        mInteractive = interactive;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            BandwidthLimiter.acquire(mLimiters, 1, mInteractive);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, Math.min(length, BandwidthLimiter.CHUNK_SIZE));
+        if (read > 0) {
+            BandwidthLimiter.acquire(mLimiters, read, mInteractive);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = super.skip(Math.min(count, BandwidthLimiter.CHUNK_SIZE));
+        if (skipped > 0) {
+            BandwidthLimiter.acquire(mLimiters, (int) skipped, mInteractive);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.tuz.network;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream limiting the rate of the bytes written through it.
+ */
+final class ThrottledOutputStream extends FilterOutputStream {
+
+    /**
+     * The limiters.
+     */
+    private final BandwidthLimiter[] mLimiters;
+
+    /**
+     * Flag for if the bytes belong to an interactive request.
+     */
+    private final boolean mInteractive;
+
+    /**
+     * Constructor.
+     *
+     * @param out         the stream.
+     * @param limiters    the limiters.
+     * @param interactive true if the request is interactive.
+     */
+    ThrottledOutputStream(OutputStream out, BandwidthLimiter[] limiters, boolean interactive) {
+        super(out);
+        mLimiters = limiters;
+        mInteractive = interactive;
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        BandwidthLimiter.acquire(mLimiters, 1, mInteractive);
+        out.write(value);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = Math.min(length, BandwidthLimiter.CHUNK_SIZE);
+            BandwidthLimiter.acquire(mLimiters, count, mInteractive);
+            out.write(buffer, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.tuz.network;
+
+/**
+ * Class representing the current transfer progress.
+ * <p>
+ * Updates are only reported once the minimum progress interval has passed since the previous
+ * report, or when the transfer completes, so that transfers of any size are reported at a
+ * steady pace. The throughput is a moving average weighted by time, which is used to estimate
+ * the remaining time. A progress instance is reused for the whole transfer, so a listener
+ * always sees the latest values and should copy them if they are kept.
+ *
+ * @see Setup#setProgressInterval(long, java.util.concurrent.TimeUnit)
+ */
+public final class TransferProgress {
+
+    /**
+     * The time constant of the throughput average, in nanoseconds. Older samples lose weight
+     * with a factor of e for each period.
+     */
+    private static final double RATE_TIME_CONSTANT_NANOS = 2e9;
+
+    /**
+     * The shortest period a throughput sample is taken over, in nanoseconds.
+     */
+    private static final long MIN_SAMPLE_NANOS = 50_000_000;
+
+    /**
+     * The total bytes transferred.
+     */
+    private volatile long mTotalBytes;
+
+    /**
+     * The number of bytes transferred.
+     */
+    private volatile long mBytesTransferred;
+
+    /**
+     * The average throughput in bytes per second, or 0 until it is known.
+     */
+    private volatile double mBytesPerSecond;
+
+    /**
+     * The time of the first update in nanoseconds.
+     */
+    private volatile long mStartTime;
+
+    /**
+     * The time of the latest update in nanoseconds.
+     */
+    private volatile long mUpdateTime;
+
+    /**
+     * The min time between reports in nanoseconds.
+     */
+    private long mIntervalNanos;
+
+    /**
+     * Flag for if the transfer has been updated since it was reset.
+     */
+    private boolean mStarted;
+
+    /**
+     * The time the current throughput sample started.
+     */
+    private long mSampleTime;
+
+    /**
+     * The number of bytes transferred when the current throughput sample started.
+     */
+    private long mSampleBytes;
+
+    /**
+     * The time of the latest report.
+     */
+    private long mReportTime;
+
+    /**
+     * The number of bytes transferred at the latest report, or -1 if nothing is reported.
+     */
+    private long mReportBytes;
+
+    /**
+     * Constructor, using the progress interval of {@link Setup}.
+     */
+    public TransferProgress() {
+        reset(Setup.getProgressIntervalMillis());
+    }
+
+    /**
+     * Reset the progress before a new transfer.
+     *
+     * @param intervalMillis the min time between reports in milliseconds.
+     */
+    void reset(long intervalMillis) {
+        mTotalBytes = 0;
+        mBytesTransferred = 0;
+        mBytesPerSecond = 0;
+        mStartTime = 0;
+        mUpdateTime = 0;
+        mIntervalNanos = intervalMillis * 1_000_000;
+        mStarted = false;
+        mReportBytes = -1;
+    }
+
+    /**
+     * Update the current progress.
+     *
+     * @param totalBytes the total bytes transferred.
+     * @param bytesTransferred the bytes transferred.
+     * @return true if the update should be reported, otherwise false.
+     */
+    boolean update(long totalBytes, long bytesTransferred) {
+        return update(totalBytes, bytesTransferred, System.nanoTime());
+    }
+
+    /**
+     * Update the current progress.
+     *
+     * @param totalBytes       the total bytes transferred.
+     * @param bytesTransferred the bytes transferred.
+     * @param now              the current time in nanoseconds.
+     * @return true if the transfer is complete or the progress interval has passed since the
+     * previous report, and bytes have been transferred since then.
+     */
+    boolean update(long totalBytes, long bytesTransferred, long now) {
+        if (!mStarted) {
+            mStarted = true;
+            mStartTime = now;
+            mSampleTime = now;
+            mSampleBytes = bytesTransferred;
+            mReportTime = now;
+        }
+        boolean done = totalBytes >= 0 && bytesTransferred >= totalBytes;
+
+        if (bytesTransferred < mSampleBytes) {
+            // The transfer started over, which says nothing about the throughput.
+            mSampleTime = now;
+            mSampleBytes = bytesTransferred;
+        } else if (now - mSampleTime >= MIN_SAMPLE_NANOS || (done && now > mSampleTime)) {
+            long elapsed = now - mSampleTime;
+            double rate = (bytesTransferred - mSampleBytes) * 1e9 / elapsed;
+            double average = mBytesPerSecond;
+            if (average > 0) {
+                double weight = 1 - Math.exp(-elapsed / RATE_TIME_CONSTANT_NANOS);
+                rate = average + weight * (rate - average);
+            }
+            mBytesPerSecond = rate;
+            mSampleTime = now;
+            mSampleBytes = bytesTransferred;
+        }
+
+        mTotalBytes = totalBytes;
+        mBytesTransferred = bytesTransferred;
+        mUpdateTime = now;
+
+        if (bytesTransferred == mReportBytes
+                || (!done && now - mReportTime < mIntervalNanos)) {
+            return false;
+        }
+        mReportTime = now;
+        mReportBytes = bytesTransferred;
+        return true;
+    }
+
+    /**
+     * Get the total number of bytes to transfer.
+     *
+     * @return the byte size.
+     */
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    /**
+     * Get the number of bytes transferred.
+     *
+     * @return the byte size.
+     */
+    public long getTransferredBytes() {
+        return mBytesTransferred;
+    }
+
+    /**
+     * Get the percent transferred.
+     *
+     * @return the percent.
+     */
+    public int getPercent() {
+        int percent = 0;
+        long totalBytes = mTotalBytes;
+
+        if (totalBytes > 0) {
+            percent = (int) (100 * mBytesTransferred / totalBytes);
+        }
+
+        return percent;
+    }
+
+    /**
+     * Get the average throughput of the transfer.
+     *
+     * @return the throughput in bytes per second, or 0 if it is not known yet.
+     */
+    public long getBytesPerSecond() {
+        return (long) mBytesPerSecond;
+    }
+
+    /**
+     * Get the time since the transfer started.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return (mUpdateTime - mStartTime) / 1_000_000;
+    }
+
+    /**
+     * Get the estimated time until the transfer completes, at the average throughput.
+     *
+     * @return the time in milliseconds, or -1 if the total size or throughput is not known.
+     */
+    public long getRemainingMillis() {
+        long totalBytes = mTotalBytes;
+        double rate = mBytesPerSecond;
+
+        if (totalBytes < 0 || rate <= 0) {
+            return -1;
+        }
+        return (long) (Math.max(0, totalBytes - mBytesTransferred) * 1000 / rate);
+    }
+}
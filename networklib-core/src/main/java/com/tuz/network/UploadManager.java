@@ -0,0 +1,667 @@
+package com.tuz.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Manager uploading many files to one endpoint as independent requests.
+ * <p>
+ * Every file is sent as a multipart form of its own, so that a slow file does not stall the
+ * others and a failed file is retried alone. At most the max number of concurrent uploads run
+ * at a time, which is kept below the per host limit of the dispatcher so that other requests
+ * to the host are not starved by a large batch. The retry policy applies to each file.
+ * Progress is reported for each file and for the whole upload. Listeners are called on the
+ * callback executor of the dispatcher.
+ */
+public final class UploadManager {
+
+    /**
+     * Listener for an upload.
+     */
+    public interface UploadListener {
+
+        /**
+         * Callback when a file has been partly uploaded.
+         *
+         * @param file          the file.
+         * @param fileProgress  the progress of the file.
+         * @param totalProgress the progress of the whole upload.
+         */
+        void onProgress(File file, TransferProgress fileProgress, TransferProgress totalProgress);
+
+        /**
+         * Callback when a file has been uploaded.
+         *
+         * @param file     the file.
+         * @param response the response body.
+         */
+        void onFileDone(File file, String response);
+
+        /**
+         * Callback when a file failed to upload after its retries.
+         *
+         * @param file  the file.
+         * @param error the error.
+         */
+        void onFileFailed(File file, NetworkException error);
+
+        /**
+         * Callback when no file is left to upload, which is once more after every call to
+         * {@link Upload#retryFailed()} that retries files.
+         *
+         * @param upload the upload.
+         */
+        void onUploadDone(Upload upload);
+    }
+
+    /**
+     * The default max number of concurrent uploads.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 3;
+
+    /**
+     * The default form field name of the files.
+     */
+    public static final String DEFAULT_FIELD_NAME = "file";
+
+    /**
+     * The url.
+     */
+    private final String mUrl;
+
+    /**
+     * The host of the url.
+     */
+    private final String mHost;
+
+    /**
+     * The headers of the requests.
+     */
+    private final List<Header> mHeaders = new ArrayList<>();
+
+    /**
+     * The form field name of the files.
+     */
+    private String mFieldName = DEFAULT_FIELD_NAME;
+
+    /**
+     * The max number of concurrent uploads.
+     */
+    private int mMaxConcurrentUploads = DEFAULT_MAX_CONCURRENT_UPLOADS;
+
+    /**
+     * The retry policy, or null.
+     */
+    private RetryPolicy mRetryPolicy;
+
+    /**
+     * The bandwidth limiter shared by the files, or null.
+     */
+    private BandwidthLimiter mBandwidthLimiter;
+
+    /**
+     * The dispatcher, or null for the dispatcher of {@link Setup}.
+     */
+    private Dispatcher mDispatcher;
+
+    /**
+     * Constructor.
+     *
+     * @param url the url the files are posted to.
+     * @throws IllegalArgumentException if the url is malformed.
+     */
+    public UploadManager(String url) {
+        mUrl = url;
+        try {
+            mHost = new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Malformed url: " + url, e);
+        }
+    }
+
+    /**
+     * Add a header to the upload requests.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return the manager instance.
+     */
+    public synchronized UploadManager addHeader(String key, Object value) {
+        mHeaders.add(new Header(key, String.valueOf(value)));
+        return this;
+    }
+
+    /**
+     * Set the form field name of the files.
+     *
+     * @param fieldName the field name, default is {@link #DEFAULT_FIELD_NAME}.
+     * @return the manager instance.
+     */
+    public synchronized UploadManager setFieldName(String fieldName) {
+        mFieldName = fieldName;
+        return this;
+    }
+
+    /**
+     * Set the max number of files uploaded at a time. All files go to the host of the url, so
+     * this is the concurrency of the uploads to that host. The dispatcher limits it further to
+     * its own max number of requests per host.
+     *
+     * @param max the max number of concurrent uploads, default is
+     *            {@link #DEFAULT_MAX_CONCURRENT_UPLOADS}.
+     * @return the manager instance.
+     * @throws IllegalArgumentException if the max is less than one.
+     */
+    public synchronized UploadManager setMaxConcurrentUploads(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("Max concurrent uploads must be at least one.");
+        }
+        mMaxConcurrentUploads = max;
+        return this;
+    }
+
+    /**
+     * Set the retry policy of each file.
+     *
+     * @param policy the policy, or null to not retry, default is null.
+     * @return the manager instance.
+     */
+    public synchronized UploadManager setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Set the bandwidth limiter shared by the files of the uploads.
+     *
+     * @param limiter the limiter, or null to only use the limiters of {@link Setup}.
+     * @return the manager instance.
+     */
+    public synchronized UploadManager setBandwidthLimiter(BandwidthLimiter limiter) {
+        mBandwidthLimiter = limiter;
+        return this;
+    }
+
+    /**
+     * Set the dispatcher executing the uploads.
+     *
+     * @param dispatcher the dispatcher, default is the dispatcher of {@link Setup}.
+     * @return the manager instance.
+     */
+    public synchronized UploadManager setDispatcher(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Start uploading files.
+     *
+     * @param files    the files.
+     * @param listener the listener.
+     * @return the upload, which cancels the files not yet uploaded when cancelled.
+     */
+    public Upload upload(Collection<File> files, UploadListener listener) {
+        Upload upload;
+        synchronized (this) {
+            upload = new Upload(this, files, listener);
+        }
+        upload.start();
+        return upload;
+    }
+
+    /**
+     * Create the request uploading a file.
+     *
+     * @param form the form holding the file.
+     * @return the request.
+     */
+    private synchronized NetworkRequest<String> newRequest(MultipartForm form) {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.POST,
+                Parsers.newStringParser());
+        builder.setBody(form);
+        for (Header header : mHeaders) {
+            builder.addHeader(header);
+        }
+        builder.setRetryPolicy(mRetryPolicy);
+        builder.setBandwidthLimiter(mBandwidthLimiter);
+        return (NetworkRequest<String>) builder.build();
+    }
+
+    /**
+     * An upload of files, which is cancelled as a whole.
+     */
+    public static final class Upload implements Canceller {
+
+        /**
+         * The manager.
+         */
+        private final UploadManager mManager;
+
+        /**
+         * The files.
+         */
+        private final List<FileUpload> mFiles = new ArrayList<>();
+
+        /**
+         * The listener.
+         */
+        private final UploadListener mListener;
+
+        /**
+         * The dispatcher.
+         */
+        private final Dispatcher mDispatcher;
+
+        /**
+         * The callback executor.
+         */
+        private final Executor mCallbackExecutor;
+
+        /**
+         * The max number of concurrent uploads.
+         */
+        private final int mMaxConcurrentUploads;
+
+        /**
+         * The progress of all files, guarded by the upload.
+         */
+        private final TransferProgress mTotalProgress = new TransferProgress();
+
+        /**
+         * The number of running uploads.
+         */
+        private int mRunning;
+
+        /**
+         * Flag for if the upload is cancelled.
+         */
+        private boolean mCancelled;
+
+        /**
+         * Constructor.
+         *
+         * @param manager  the manager.
+         * @param files    the files.
+         * @param listener the listener.
+         */
+        private Upload(UploadManager manager, Collection<File> files, UploadListener listener) {
+            mManager = manager;
+            mListener = listener;
+            mDispatcher = manager.mDispatcher != null ? manager.mDispatcher
+                    : Setup.getDispatcher();
+            mCallbackExecutor = mDispatcher.getCallbackExecutor();
+            mMaxConcurrentUploads = manager.mMaxConcurrentUploads;
+
+            for (File file : files) {
+                MultipartForm form = new MultipartForm();
+                form.addFile(manager.mFieldName, file, true);
+                mFiles.add(new FileUpload(file, form));
+            }
+        }
+
+        /**
+         * Cancel the files not yet uploaded. No callbacks are made after the upload is
+         * cancelled.
+         */
+        @Override
+        public void cancel() {
+            List<FileUpload> running = new ArrayList<>();
+
+            synchronized (this) {
+                mCancelled = true;
+                for (FileUpload file : mFiles) {
+                    if (file.mState == State.RUNNING) {
+                        running.add(file);
+                    }
+                }
+            }
+
+            for (FileUpload file : running) {
+                file.mTask.cancel();
+            }
+        }
+
+        /**
+         * Upload the failed files again.
+         *
+         * @return the number of files retried.
+         */
+        public int retryFailed() {
+            int retried = 0;
+
+            synchronized (this) {
+                if (mCancelled) {
+                    return 0;
+                }
+                for (FileUpload file : mFiles) {
+                    if (file.mState == State.FAILED) {
+                        file.mState = State.PENDING;
+                        file.mTransferred = 0;
+                        retried++;
+                    }
+                }
+            }
+
+            if (retried > 0) {
+                start();
+            }
+            return retried;
+        }
+
+        /**
+         * Get the files that failed to upload.
+         *
+         * @return the files.
+         */
+        public synchronized List<File> getFailedFiles() {
+            List<File> failed = new ArrayList<>();
+            for (FileUpload file : mFiles) {
+                if (file.mState == State.FAILED) {
+                    failed.add(file.mFile);
+                }
+            }
+            return failed;
+        }
+
+        /**
+         * Check if no file is left to upload.
+         *
+         * @return true if every file has been uploaded or failed, or the upload is cancelled.
+         */
+        public synchronized boolean isDone() {
+            if (mCancelled) {
+                return true;
+            }
+            for (FileUpload file : mFiles) {
+                if (file.mState == State.PENDING || file.mState == State.RUNNING) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get the progress of the whole upload.
+         *
+         * @return the progress, in bytes of the encoded forms.
+         */
+        public synchronized TransferProgress getProgress() {
+            TransferProgress progress = new TransferProgress();
+            updateTotal(progress);
+            return progress;
+        }
+
+        /**
+         * Update a progress with the bytes of all files.
+         *
+         * @param progress the progress.
+         * @return true if the update should be reported.
+         */
+        private boolean updateTotal(TransferProgress progress) {
+            long total = 0;
+            long transferred = 0;
+            for (FileUpload file : mFiles) {
+                total += file.mTotal;
+                transferred += file.mTransferred;
+            }
+            return progress.update(total, transferred);
+        }
+
+        /**
+         * Start pending files while fewer than the max are running.
+         */
+        private void start() {
+            List<FileUpload> started = new ArrayList<>();
+
+            synchronized (this) {
+                for (FileUpload file : mFiles) {
+                    if (mCancelled || mRunning >= mMaxConcurrentUploads) {
+                        break;
+                    }
+                    if (file.mState == State.PENDING) {
+                        file.mState = State.RUNNING;
+                        file.mTask = new FileTask(file, mManager.newRequest(file.mForm));
+                        mRunning++;
+                        started.add(file);
+                    }
+                }
+            }
+
+            for (FileUpload file : started) {
+                enqueue(file.mTask);
+            }
+        }
+
+        /**
+         * Record the progress of a file, and report it when the total progress is due to be
+         * reported or the file is complete.
+         *
+         * @param file     the file.
+         * @param progress the progress of the request of the file.
+         */
+        private void onProgress(FileUpload file, final TransferProgress progress) {
+            boolean report;
+
+            synchronized (this) {
+                if (mCancelled || file.mState != State.RUNNING) {
+                    return;
+                }
+                file.mTotal = progress.getTotalBytes();
+                file.mTransferred = progress.getTransferredBytes();
+                report = updateTotal(mTotalProgress) || file.mTransferred == file.mTotal;
+            }
+
+            if (report) {
+                mCallbackExecutor.execute(() -> {
+                    if (!isCancelled()) {
+                        mListener.onProgress(file.mFile, progress, mTotalProgress);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Finish a file, reporting its result and starting the next pending file.
+         *
+         * @param file   the file.
+         * @param result the response, or null if the file failed.
+         * @param error  the error, or null.
+         */
+        private void finished(FileUpload file, String result, NetworkException error) {
+            boolean done;
+
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mRunning--;
+                if (error == null && result == null) {
+                    error = new NetworkException(new IOException("File was not uploaded"));
+                }
+                if (error == null) {
+                    file.mState = State.DONE;
+                    file.mTransferred = file.mTotal;
+                } else {
+                    file.mState = State.FAILED;
+                }
+            }
+
+            if (error == null) {
+                mListener.onFileDone(file.mFile, result);
+            } else {
+                mListener.onFileFailed(file.mFile, error);
+            }
+
+            start();
+            synchronized (this) {
+                done = mRunning == 0 && isDone() && !mCancelled;
+            }
+            if (done) {
+                mListener.onUploadDone(this);
+            }
+        }
+
+        /**
+         * Check if the upload is cancelled.
+         *
+         * @return true if it is cancelled.
+         */
+        private synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Enqueue the task of a file on the dispatcher.
+         *
+         * @param task the task.
+         */
+        private void enqueue(final FileTask task) {
+            try {
+                mDispatcher.enqueue(task);
+            } catch (final RejectedExecutionException e) {
+                mCallbackExecutor.execute(
+                        () -> finished(task.mFile, null, new NetworkException(e)));
+            }
+        }
+
+        /**
+         * The upload state of a file.
+         */
+        private final class FileUpload {
+
+            /**
+             * The file.
+             */
+            private final File mFile;
+
+            /**
+             * The form holding the file.
+             */
+            private final MultipartForm mForm;
+
+            /**
+             * The state, guarded by the upload.
+             */
+            private State mState = State.PENDING;
+
+            /**
+             * The total number of bytes, guarded by the upload.
+             */
+            private long mTotal;
+
+            /**
+             * The number of bytes transferred, guarded by the upload.
+             */
+            private long mTransferred;
+
+            /**
+             * The task of the current attempt, guarded by the upload.
+             */
+            private FileTask mTask;
+
+            /**
+             * Constructor.
+             *
+             * @param file the file.
+             * @param form the form holding the file.
+             */
+            FileUpload(File file, MultipartForm form) {
+                mFile = file;
+                mForm = form;
+                mTotal = form.size();
+            }
+        }
+
+        /**
+         * Task running one attempt to upload a file.
+         */
+        private final class FileTask extends DispatcherTask {
+
+            /**
+             * The file.
+             */
+            private final FileUpload mFile;
+
+            /**
+             * The request of the attempt.
+             */
+            private final NetworkRequest<String> mRequest;
+
+            /**
+             * Constructor.
+             *
+             * @param file    the file.
+             * @param request the request of the attempt.
+             */
+            FileTask(FileUpload file, NetworkRequest<String> request) {
+                super(mDispatcher, mManager.mHost, request::cancel);
+                mFile = file;
+                mRequest = request;
+            }
+
+            @Override
+            void execute() {
+                String result = null;
+                NetworkException error = null;
+
+                try {
+                    if (!isCancelled()) {
+                        result = mRequest.execute((request, progress) -> onProgress(mFile,
+                                progress));
+                    }
+                } catch (NetworkException e) {
+                    error = e;
+                }
+                onDone(result, error);
+            }
+
+            @Override
+            void onDropped() {
+                onDone(null, null);
+            }
+
+            /**
+             * Finish the file on the callback executor.
+             *
+             * @param result the response, or null if the file failed.
+             * @param error  the error, or null.
+             */
+            private void onDone(final String result, final NetworkException error) {
+                mCallbackExecutor.execute(() -> finished(mFile, result, error));
+            }
+        }
+    }
+
+    /**
+     * The state of a file.
+     */
+    private enum State {
+
+        /**
+         * Waiting to be uploaded.
+         */
+        PENDING,
+
+        /**
+         * Being uploaded.
+         */
+        RUNNING,
+
+        /**
+         * Uploaded.
+         */
+        DONE,
+
+        /**
+         * Failed to upload.
+         */
+        FAILED
+    }
+}
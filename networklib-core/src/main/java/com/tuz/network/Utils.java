@@ -1,6 +1,5 @@
 package com.tuz.network;
 
-import android.util.Log;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -12,7 +11,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -31,6 +32,17 @@ public abstract class Utils {
      */
     private static final int EOF = -1;
 
+    /**
+     * The largest char buffer used when decoding a stream into a string.
+     */
+    private static final int MAX_CHAR_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The largest initial capacity of the builder when decoding a stream into a string, so
+     * that a wrong or hostile content length cannot allocate a huge buffer up front.
+     */
+    static final int MAX_PRESIZE = 64 * 1024;
+
     /**
      * Constructor.
      */
@@ -76,6 +88,29 @@ public abstract class Utils {
         return new String(toByteArray(is), StandardCharsets.UTF_8);
     }
 
+    /**
+     * Reads a utf-8 input stream into a string, decoding it directly into a builder presized to
+     * the content length, up to {@link #MAX_PRESIZE} chars.
+     *
+     * @param is            the input stream.
+     * @param contentLength the length of the content in bytes, or -1 if unknown.
+     * @return the string.
+     * @throws IOException when reading fails.
+     */
+    public static String toString(InputStream is, long contentLength) throws IOException {
+        int capacity = contentLength > 0 ? (int) Math.min(contentLength, MAX_PRESIZE)
+                : BUFFER_SIZE;
+        StringBuilder builder = new StringBuilder(capacity);
+        char[] buffer = new char[Math.min(capacity, MAX_CHAR_BUFFER_SIZE)];
+        Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+        int read;
+
+        while ((read = reader.read(buffer)) != EOF) {
+            builder.append(buffer, 0, read);
+        }
+        return builder.toString();
+    }
+
     /**
      * Reads an input stream into a json object.
      *
@@ -99,7 +134,7 @@ public abstract class Utils {
      */
     public static void debugPrintJson(String tag, InputStream is, int indentation) throws IOException,
             JSONException {
-        Log.d(tag, toJson(is).toString(indentation));
+        Setup.getPlatform().log(tag, toJson(is).toString(indentation));
     }
 
     /**
@@ -124,15 +159,30 @@ public abstract class Utils {
      * @throws IOException when writing fails.
      */
     public static void write(InputStream is, OutputStream os) throws IOException {
-        int read = 0;
-        byte[] buffer = new byte[BUFFER_SIZE];
+        write(is, os, -1);
+    }
 
-        while (read != EOF) {
-            read = is.read(buffer, 0, BUFFER_SIZE);
+    /**
+     * Write an input stream to an output stream using a pooled buffer sized for the content.
+     *
+     * @param is            the input stream.
+     * @param os            the output stream.
+     * @param contentLength the length of the content, or -1 if unknown.
+     * @throws IOException when writing fails.
+     * @see BufferPool#chunkSize(long)
+     */
+    public static void write(InputStream is, OutputStream os, long contentLength)
+            throws IOException {
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(BufferPool.chunkSize(contentLength));
+        int read;
 
-            if (read != EOF) {
+        try {
+            while ((read = is.read(buffer, 0, buffer.length)) != EOF) {
                 os.write(buffer, 0, read);
             }
+        } finally {
+            pool.release(buffer);
         }
     }
 
@@ -0,0 +1,155 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for limiting the bandwidth of requests.
+ */
+public class BandwidthLimiterTest {
+
+    private static final long MS = 1_000_000;
+
+    private static final int BODY_SIZE = 200 * 1024;
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    private volatile int mReceived;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] body = new byte[BODY_SIZE];
+        Arrays.fill(body, (byte) 'a');
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/sync", exchange -> {
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            Utils.write(exchange.getRequestBody(), received);
+            mReceived = received.size();
+            boolean get = "GET".equals(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(200, get ? body.length : -1);
+            if (get) {
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+            exchange.close();
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/sync";
+    }
+
+    @After
+    public void tearDown() {
+        Setup.setBandwidthLimiter(null);
+        Setup.setBandwidthLimiter("127.0.0.1", null);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testReservationsWaitForTokens() {
+        BandwidthLimiter limiter = new BandwidthLimiter(100_000);
+        long now = System.nanoTime();
+
+        // The burst is a tenth of a second.
+        assertEquals(0, limiter.reserve(10_000, false, now));
+        assertEquals(50 * MS, limiter.reserve(5000, false, now));
+        assertEquals(100 * MS, limiter.reserve(5000, false, now));
+        assertEquals(0, limiter.reserve(1000, false, now + 110 * MS));
+    }
+
+    @Test
+    public void testBurstIsCapped() {
+        BandwidthLimiter limiter = new BandwidthLimiter(100_000);
+        long now = System.nanoTime();
+
+        assertEquals(100 * MS, limiter.reserve(20_000, false, now + 10_000 * MS));
+    }
+
+    @Test
+    public void testInteractiveRequestsBorrow() {
+        BandwidthLimiter limiter = new BandwidthLimiter(100_000);
+        long now = System.nanoTime();
+        limiter.reserve(10_000, false, now);
+
+        assertEquals(0, limiter.reserve(50_000, true, now));
+        assertEquals(510 * MS, limiter.reserve(1000, false, now));
+        assertEquals(0, limiter.reserve(49_000, true, now));
+        assertEquals(10 * MS, limiter.reserve(1000, true, now));
+    }
+
+    @Test
+    public void testRateCanChange() {
+        BandwidthLimiter limiter = new BandwidthLimiter(100_000);
+        limiter.reserve(10_000, false, System.nanoTime());
+
+        limiter.setRate(10_000);
+
+        assertEquals(10_000, limiter.getRate());
+        long wait = limiter.reserve(1000, false, System.nanoTime());
+        assertTrue(wait > 90 * MS && wait <= 100 * MS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive() {
+        new BandwidthLimiter(0);
+    }
+
+    @Test
+    public void testDownloadOfHostIsLimited() throws Exception {
+        Setup.setBandwidthLimiter("127.0.0.1", new BandwidthLimiter(400 * 1024));
+        long start = System.nanoTime();
+
+        String body = new RequestBuilder<>(mUrl, Method.GET, Parsers.newStringParser())
+                .build()
+                .execute();
+
+        long elapsed = System.nanoTime() - start;
+        assertEquals(BODY_SIZE, body.length());
+        // The body minus the burst takes 0.4 seconds at the rate.
+        assertTrue("Took " + elapsed / MS + " ms", elapsed >= 350 * MS);
+    }
+
+    @Test
+    public void testUploadOfRequestIsLimited() throws Exception {
+        BandwidthLimiter limiter = new BandwidthLimiter(400 * 1024);
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.POST,
+                Parsers.newStringParser());
+        builder.setBody(new byte[BODY_SIZE], "application/octet-stream", false, true)
+                .setBandwidthLimiter(limiter);
+        long start = System.nanoTime();
+
+        builder.build().execute();
+
+        long elapsed = System.nanoTime() - start;
+        assertEquals(BODY_SIZE, mReceived);
+        assertTrue("Took " + elapsed / MS + " ms", elapsed >= 350 * MS);
+    }
+
+    @Test
+    public void testInteractiveRequestIsNotLimited() throws Exception {
+        Setup.setBandwidthLimiter(new BandwidthLimiter(400 * 1024));
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser());
+        builder.setInteractive(true);
+        long start = System.nanoTime();
+
+        String body = builder.build().execute();
+
+        long elapsed = System.nanoTime() - start;
+        assertEquals(BODY_SIZE, body.length());
+        assertTrue("Took " + elapsed / MS + " ms", elapsed < 300 * MS);
+    }
+}
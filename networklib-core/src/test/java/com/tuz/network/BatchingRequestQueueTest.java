@@ -0,0 +1,213 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for batching small requests against a loopback server.
+ */
+public class BatchingRequestQueueTest {
+
+    private final List<Integer> mBatchSizes = new CopyOnWriteArrayList<>();
+
+    private final Map<Object, Object> mResults = new ConcurrentHashMap<>();
+
+    private final Map<Object, NetworkException> mErrors = new ConcurrentHashMap<>();
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    private Dispatcher mDispatcher;
+
+    private volatile boolean mTruncate;
+
+    private CountDownLatch mDone;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/events", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Utils.write(exchange.getRequestBody(), body);
+            byte[] response;
+            try {
+                JSONArray items = new JSONArray(body.toString("UTF-8"));
+                mBatchSizes.add(items.length());
+                JSONArray results = new JSONArray();
+                int count = mTruncate ? items.length() - 1 : items.length();
+                for (int i = 0; i < count; i++) {
+                    JSONObject item = items.getJSONObject(i);
+                    JSONObject result = new JSONObject();
+                    if (item.optBoolean("invalid")) {
+                        result.put("error", "invalid event");
+                    } else {
+                        result.put("ack", item.getInt("id"));
+                    }
+                    results.put(result);
+                }
+                response = results.toString().getBytes(StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/events";
+        mDispatcher = new Dispatcher(Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        mDispatcher.shutdown();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testBatchIsSentWhenFull() throws Exception {
+        BatchingRequestQueue queue = newQueue(3, 60000, 60000);
+        mDone = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            queue.add(event(i, false), mListener);
+        }
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mBatchSizes.size());
+        assertEquals(3, (int) mBatchSizes.get(0));
+        for (Object item : mResults.keySet()) {
+            assertEquals(((JSONObject) item).getInt("id"),
+                    ((JSONObject) mResults.get(item)).getInt("ack"));
+        }
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void testBatchIsSentAfterWindow() throws Exception {
+        BatchingRequestQueue queue = newQueue(100, 50, 60000);
+        mDone = new CountDownLatch(2);
+
+        queue.add(event(1, false), mListener);
+        queue.add(event(2, false), mListener);
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mBatchSizes.size());
+        assertEquals(2, mResults.size());
+    }
+
+    @Test
+    public void testMaxLatencyBoundsWindow() throws Exception {
+        BatchingRequestQueue queue = newQueue(1000, 100, 250);
+        mDone = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        // Keep adding within the window so that only the max latency sends the batch.
+        queue.add(event(0, false), mListener);
+        for (int i = 1; mDone.getCount() > 0 && i < 50; i++) {
+            Thread.sleep(20);
+            queue.add(event(i, false), null);
+        }
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Sent after " + elapsed + " ms", elapsed < 900);
+    }
+
+    @Test
+    public void testItemFailuresAreMapped() throws Exception {
+        BatchingRequestQueue queue = newQueue(3, 60000, 60000);
+        mDone = new CountDownLatch(3);
+        JSONObject invalid = event(1, true);
+
+        queue.add(event(0, false), mListener);
+        queue.add(invalid, mListener);
+        queue.add(event(2, false), mListener);
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(2, mResults.size());
+        assertEquals(1, mErrors.size());
+        Throwable cause = mErrors.get(invalid).getCause();
+        assertTrue(cause instanceof BatchingRequestQueue.ItemException);
+        assertEquals("invalid event", cause.getMessage());
+    }
+
+    @Test
+    public void testMismatchedResponseFailsBatch() throws Exception {
+        mTruncate = true;
+        BatchingRequestQueue queue = newQueue(2, 60000, 60000);
+        mDone = new CountDownLatch(2);
+
+        queue.add(event(0, false), mListener);
+        queue.add(event(1, false), mListener);
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(0, mResults.size());
+        assertEquals(2, mErrors.size());
+    }
+
+    @Test
+    public void testCancelledItemIsNotSent() throws Exception {
+        BatchingRequestQueue queue = newQueue(100, 60000, 60000);
+        mDone = new CountDownLatch(1);
+
+        Canceller canceller = queue.add(event(0, false), mListener);
+        queue.add(event(1, false), mListener);
+        canceller.cancel();
+        queue.flush();
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, (int) mBatchSizes.get(0));
+        assertEquals(1, mResults.size());
+    }
+
+    private final BatchingRequestQueue.ItemListener mListener =
+            new BatchingRequestQueue.ItemListener() {
+                @Override
+                public void onItemDone(Object item, Object result) {
+                    mResults.put(item, result);
+                    mDone.countDown();
+                }
+
+                @Override
+                public void onItemFailed(Object item, NetworkException error) {
+                    mErrors.put(item, error);
+                    mDone.countDown();
+                }
+            };
+
+    private BatchingRequestQueue newQueue(int size, long window, long maxLatency) {
+        return new BatchingRequestQueue(mUrl, size, window, maxLatency)
+                .setDispatcher(mDispatcher);
+    }
+
+    private static JSONObject event(int id, boolean invalid) throws Exception {
+        JSONObject event = new JSONObject();
+        event.put("id", id);
+        if (invalid) {
+            event.put("invalid", true);
+        }
+        return event;
+    }
+}
@@ -0,0 +1,65 @@
+package com.tuz.network;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the buffer pool.
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void testChunkSizeAdaptsToContentLength() {
+        assertEquals(BufferPool.DEFAULT_CHUNK_SIZE, BufferPool.chunkSize(-1));
+        assertEquals(BufferPool.MIN_CHUNK_SIZE, BufferPool.chunkSize(100));
+        assertEquals(8 * 1024, BufferPool.chunkSize(5000));
+        assertEquals(BufferPool.MAX_CHUNK_SIZE, BufferPool.chunkSize(200L * 1024 * 1024));
+    }
+
+    @Test
+    public void testSteadyStateDoesNotAllocate() {
+        BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES);
+
+        for (int i = 0; i < 100; i++) {
+            byte[] first = pool.acquire(16 * 1024);
+            byte[] second = pool.acquire(16 * 1024);
+            assertNotSame(first, second);
+            pool.release(first);
+            pool.release(second);
+        }
+        assertEquals(2, pool.getAllocationCount());
+        assertEquals(198, pool.getReuseCount());
+    }
+
+    @Test
+    public void testPooledBytesAreBounded() {
+        BufferPool pool = new BufferPool(BufferPool.MAX_CHUNK_SIZE);
+        byte[][] buffers = new byte[4][];
+
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(BufferPool.MAX_CHUNK_SIZE);
+        }
+        for (byte[] buffer : buffers) {
+            pool.release(buffer);
+        }
+        // One buffer is cached by the thread, one fits the free list and the rest are dropped.
+        assertEquals(BufferPool.MAX_CHUNK_SIZE, pool.getPooledBytes());
+        assertEquals(2, pool.getDiscardCount());
+    }
+
+    @Test
+    public void testWriteCopiesAllBytes() throws Exception {
+        byte[] data = new byte[100 * 1024 + 7];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        Utils.write(new ByteArrayInputStream(data), os, data.length);
+        assertArrayEquals(data, os.toByteArray());
+    }
+}
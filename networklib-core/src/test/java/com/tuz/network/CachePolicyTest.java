@@ -0,0 +1,122 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for serving stale responses under a cache policy.
+ */
+public class CachePolicyTest {
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private volatile String mCacheControl;
+
+    private volatile boolean mFailing;
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/data", exchange -> {
+            int request = mRequests.incrementAndGet();
+            if (mFailing) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            if (mCacheControl != null) {
+                exchange.getResponseHeaders().add(Http.CACHE_CONTROL, mCacheControl);
+            }
+            byte[] body = ("v" + request).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/data";
+        Setup.setMemoryCache(new MemoryCache());
+        Setup.setDispatcher(new Dispatcher(Runnable::run));
+    }
+
+    @After
+    public void tearDown() {
+        Setup.setMemoryCache(null);
+        Setup.setDispatcher(null);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testStaleIsServedWhileRefreshing() throws Exception {
+        mCacheControl = "max-age=0, stale-while-revalidate=60";
+
+        assertEquals("v1", get(CachePolicy.STALE_WHILE_REVALIDATE));
+        assertEquals("v1", get(CachePolicy.STALE_WHILE_REVALIDATE));
+        awaitRequests(2);
+        assertEquals("v2", get(CachePolicy.STALE_WHILE_REVALIDATE));
+        assertEquals(2, Setup.getMemoryCache().getStaleHitCount());
+    }
+
+    @Test
+    public void testStaleIsServedOnError() throws Exception {
+        mCacheControl = "max-age=0, stale-if-error=60";
+
+        assertEquals("v1", get(CachePolicy.STALE_WHILE_REVALIDATE));
+        mFailing = true;
+        assertEquals("v1", get(CachePolicy.STALE_WHILE_REVALIDATE));
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void testMustRevalidateIsNotServedStale() throws Exception {
+        mCacheControl = "max-age=0, must-revalidate, stale-if-error=60";
+
+        assertEquals("v1", get(CachePolicy.STALE_WHILE_REVALIDATE));
+        mFailing = true;
+        assertNull(get(CachePolicy.STALE_WHILE_REVALIDATE));
+    }
+
+    @Test
+    public void testOfflineFirstServesCachedWhenOffline() throws Exception {
+        assertEquals("v1", get(CachePolicy.OFFLINE_FIRST));
+        mServer.stop(0);
+
+        assertEquals("v1", get(CachePolicy.OFFLINE_FIRST));
+        try {
+            get(CachePolicy.NETWORK);
+            fail("Expected the network request to fail");
+        } catch (NetworkException e) {
+            // Expected
+        }
+    }
+
+    private String get(CachePolicy policy) throws NetworkException {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser());
+        builder.setCachePolicy(policy);
+        Request<String> request = builder.build();
+        return request.execute();
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && mRequests.get() < count; i++) {
+            Thread.sleep(20);
+        }
+        // Let the refresh store its response.
+        Thread.sleep(100);
+    }
+}
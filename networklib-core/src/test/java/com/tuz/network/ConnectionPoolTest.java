@@ -0,0 +1,81 @@
+package com.tuz.network;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the connection pool bookkeeping.
+ */
+public class ConnectionPoolTest {
+
+    @Test
+    public void testReleasedConnectionIsReused() {
+        ConnectionPool pool = new ConnectionPool(2, 1, TimeUnit.MINUTES);
+
+        assertFalse(pool.acquire("a"));
+        assertTrue(pool.release("a"));
+        assertTrue(pool.acquire("a"));
+        assertFalse(pool.acquire("b"));
+
+        assertEquals(1, pool.getEstimatedHitCount());
+        assertEquals(2, pool.getEstimatedMissCount());
+    }
+
+    @Test
+    public void testMaxIdleConnectionsPerHost() {
+        ConnectionPool pool = new ConnectionPool(1, 1, TimeUnit.MINUTES);
+
+        assertTrue(pool.release("a"));
+        assertFalse(pool.release("a"));
+        assertTrue(pool.release("b"));
+
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    @Test
+    public void testExpiredConnectionsAreEvicted() throws Exception {
+        ConnectionPool pool = new ConnectionPool(1, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(pool.release("a"));
+        Thread.sleep(50);
+
+        assertFalse(pool.acquire("a"));
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    @Test
+    public void testPlatformPropertiesAreRestored() {
+        String keepAlive = System.getProperty("http.keepAlive");
+        String duration = System.getProperty("http.keepAliveDuration");
+        System.setProperty("http.keepAlive", "false");
+        System.clearProperty("http.keepAliveDuration");
+
+        try {
+            Setup.setConnectionPool(new ConnectionPool(2, 1, TimeUnit.MINUTES));
+            assertEquals("true", System.getProperty("http.keepAlive"));
+            assertEquals("60000", System.getProperty("http.keepAliveDuration"));
+            Setup.setConnectionPool(new ConnectionPool(0, 1, TimeUnit.MINUTES));
+            Setup.setConnectionPool(null);
+
+            assertEquals("false", System.getProperty("http.keepAlive"));
+            assertNull(System.getProperty("http.keepAliveDuration"));
+        } finally {
+            Setup.setConnectionPool(null);
+            restore("http.keepAlive", keepAlive);
+            restore("http.keepAliveDuration", duration);
+        }
+    }
+
+    private static void restore(String key, String value) {
+        if (value != null) {
+            System.setProperty(key, value);
+        } else {
+            System.clearProperty(key);
+        }
+    }
+}
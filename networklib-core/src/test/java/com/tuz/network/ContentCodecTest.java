@@ -0,0 +1,233 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for content coding of requests and responses.
+ */
+public class ContentCodecTest {
+
+    private final String mText;
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    private volatile String mAcceptEncoding;
+
+    public ContentCodecTest() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            builder.append("{\"id\":").append(i).append(",\"name\":\"event\"},");
+        }
+        mText = builder.toString();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/text", exchange -> {
+            mAcceptEncoding = exchange.getRequestHeaders().getFirst(Http.ACCEPT_ENCODING);
+            byte[] body = mText.getBytes(StandardCharsets.UTF_8);
+            if (mAcceptEncoding != null && mAcceptEncoding.contains(Http.ENCODING_GZIP)) {
+                body = gzip(body);
+                exchange.getResponseHeaders().add(Http.CONTENT_ENCODING, Http.ENCODING_GZIP);
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        mServer.createContext("/empty", exchange -> {
+            exchange.getResponseHeaders().add(Http.CONTENT_ENCODING, Http.ENCODING_GZIP);
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        mServer.createContext("/echo", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst(Http.CONTENT_ENCODING);
+            InputStream is = exchange.getRequestBody();
+            if (Http.ENCODING_GZIP.equals(encoding)) {
+                is = new GZIPInputStream(is);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Utils.write(is, body);
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream os = exchange.getResponseBody()) {
+                body.writeTo(os);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testResponseIsNegotiatedAndDecoded() throws Exception {
+        final long[] counts = new long[2];
+        Request<String> request = new RequestBuilder<>(mUrl + "/text", Method.GET,
+                (ResponseParser<String>) response -> {
+                    String text = Utils.toString(response.getInputStream(),
+                            response.getContentLength());
+                    counts[0] = response.getEncodedByteCount();
+                    counts[1] = response.getDecodedByteCount();
+                    assertNull(response.getHeader(Http.CONTENT_ENCODING));
+                    return text;
+                }).build();
+
+        assertEquals(mText, request.execute());
+        assertEquals("gzip, deflate", mAcceptEncoding);
+        assertEquals(mText.length(), counts[1]);
+        assertTrue(counts[0] > 0 && counts[0] < counts[1] / 4);
+    }
+
+    @Test
+    public void testEncodedByteCountsAreReported() throws Exception {
+        final long[] counts = new long[4];
+        EventListener listener = new EventListener() {
+            @Override
+            public void requestBodyEncoded(Request<?> call, long rawByteCount,
+                                           long encodedByteCount, long nanos) {
+                counts[0] = rawByteCount;
+                counts[1] = encodedByteCount;
+            }
+
+            @Override
+            public void responseBodyDecoded(Request<?> call, long encodedByteCount,
+                                            long decodedByteCount, long nanos) {
+                counts[2] = encodedByteCount;
+                counts[3] = decodedByteCount;
+            }
+        };
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl + "/text", Method.POST,
+                Parsers.newStringParser());
+        builder.setBody(mText.getBytes(StandardCharsets.UTF_8), "text/plain", true, true)
+                .setEventListener(listener);
+
+        assertEquals(mText, builder.build().execute());
+        assertEquals(mText.length(), counts[0]);
+        assertTrue(counts[1] > 0 && counts[1] < counts[0] / 4);
+        assertEquals(mText.length(), counts[3]);
+        assertTrue(counts[2] > 0 && counts[2] < counts[3] / 4);
+    }
+
+    @Test
+    public void testInflaterIsEndedOnClose() throws Exception {
+        Inflater inflater = new Inflater();
+        ContentCodecs.newInflaterStream(new ByteArrayInputStream(new byte[0]), inflater).close();
+
+        try {
+            inflater.getAdler();
+            fail("Expected the inflater to be ended");
+        } catch (NullPointerException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testEmptyEncodedResponse() throws Exception {
+        Request<String> request = new RequestBuilder<>(mUrl + "/empty", Method.GET,
+                Parsers.newStringParser()).build();
+
+        assertEquals("", request.execute());
+    }
+
+    @Test
+    public void testRequestBodyIsEncoded() throws Exception {
+        long rawSent = ContentCodecs.getRawBytesSent();
+        long encodedSent = ContentCodecs.getEncodedBytesSent();
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl + "/echo", Method.POST,
+                Parsers.newStringParser());
+        builder.setBody(mText.getBytes(StandardCharsets.UTF_8), "text/plain", true, true);
+        Request<String> request = builder.build();
+
+        assertEquals(mText, request.execute());
+        assertEquals(mText.length(), ContentCodecs.getRawBytesSent() - rawSent);
+        assertTrue(ContentCodecs.getEncodedBytesSent() - encodedSent < mText.length() / 4);
+    }
+
+    @Test
+    public void testDeflateDecodesZlibAndRaw() throws Exception {
+        byte[] data = mText.getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(data, decode(ContentCodecs.DEFLATE, deflate(data, false)));
+        assertArrayEquals(data, decode(ContentCodecs.DEFLATE, deflate(data, true)));
+    }
+
+    @Test
+    public void testRegistry() {
+        ContentCodec codec = new ContentCodec() {
+            @Override
+            public String getEncoding() {
+                return "br";
+            }
+
+            @Override
+            public InputStream decode(InputStream is) {
+                return is;
+            }
+
+            @Override
+            public OutputStream encode(OutputStream os) {
+                return os;
+            }
+        };
+
+        ContentCodecs.register(codec);
+        try {
+            assertEquals("gzip, deflate, br", ContentCodecs.getAcceptEncoding());
+            assertSame(codec, ContentCodecs.get("BR"));
+        } finally {
+            ContentCodecs.unregister("br");
+        }
+        assertEquals("gzip, deflate", ContentCodecs.getAcceptEncoding());
+        assertNull(ContentCodecs.get("br"));
+    }
+
+    private static byte[] decode(ContentCodec codec, byte[] data) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = codec.decode(new ByteArrayInputStream(data))) {
+            Utils.write(is, os);
+        }
+        return os.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(os)) {
+            gzip.write(data);
+        }
+        return os.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(os,
+                new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflater.write(data);
+        }
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,191 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for compression levels and preset dictionary compression.
+ */
+public class DictionaryCodecTest {
+
+    private static final byte[] DICTIONARY = ("{\"type\":\"event\",\"session\":\"\",\"timestamp\":"
+            + "\"2024-01-01T00:00:00Z\",\"platform\":\"android\",\"properties\":{\"screen\":"
+            + "\"\",\"action\":\"click\"}}").getBytes(StandardCharsets.UTF_8);
+
+    private final List<String> mDictionaries = Collections.synchronizedList(new ArrayList<>());
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    private volatile boolean mReject;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/events", exchange -> {
+            String dictionary = exchange.getRequestHeaders().getFirst(Http.CONTENT_DICTIONARY);
+            mDictionaries.add(String.valueOf(dictionary));
+            if (dictionary != null && mReject) {
+                exchange.sendResponseHeaders(Http.STATUS_UNSUPPORTED_MEDIA_TYPE, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = inflate(exchange.getRequestBody(), dictionary != null);
+            if (!mReject) {
+                exchange.getResponseHeaders().add(Http.ACCEPT_DICTIONARY, "other, " + idOf());
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/events";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testDictionaryIsNegotiated() throws Exception {
+        String event = event(1);
+        DictionaryCodec codec = new DictionaryCodec(idOf(), DICTIONARY, Deflater.BEST_COMPRESSION);
+
+        assertEquals(event, post(codec, event));
+        assertEquals(event, post(codec, event));
+        assertEquals(Arrays.asList("null", idOf()), mDictionaries);
+    }
+
+    @Test
+    public void testRejectedDictionaryFallsBack() throws Exception {
+        String event = event(2);
+        DictionaryCodec codec = new DictionaryCodec(idOf(), DICTIONARY, Deflater.BEST_COMPRESSION);
+        post(codec, event);
+        mReject = true;
+
+        post(codec, event);
+        assertEquals(event, post(codec, event));
+        assertEquals(Arrays.asList("null", idOf(), "null"), mDictionaries);
+    }
+
+    @Test
+    public void testDictionaryCompressesSmallBodies() throws Exception {
+        byte[] event = event(3).getBytes(StandardCharsets.UTF_8);
+        DictionaryCodec codec = new DictionaryCodec(DICTIONARY, Deflater.BEST_COMPRESSION);
+
+        byte[] plain = encode(ContentCodecs.deflate(Deflater.BEST_COMPRESSION), event);
+        byte[] preset = encode(codec, event);
+
+        assertTrue(preset.length < plain.length * 2 / 3);
+        assertArrayEquals(event, decode(codec, preset));
+        assertArrayEquals(event, decode(codec, plain));
+        try {
+            decode(new DictionaryCodec(new byte[]{1, 2, 3}, Deflater.BEST_SPEED), preset);
+            fail("Expected an unknown dictionary");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCompressionLevel() throws Exception {
+        byte[] data = event(4).getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(data, decode(ContentCodecs.GZIP,
+                encode(ContentCodecs.gzip(Deflater.BEST_SPEED), data)));
+        assertArrayEquals(data, decode(ContentCodecs.DEFLATE,
+                encode(ContentCodecs.deflate(Deflater.NO_COMPRESSION), data)));
+        try {
+            ContentCodecs.gzip(10);
+            fail("Expected an invalid level");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private String post(DictionaryCodec codec, String event) throws NetworkException {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.POST,
+                Parsers.newStringParser());
+        builder.setBody(event.getBytes(StandardCharsets.UTF_8), Http.MIME_JSON, false, false)
+                .setBodyEncoding(codec);
+        Request<String> request = builder.build();
+        return request.execute();
+    }
+
+    private String idOf() {
+        // A dictionary id per test, since accepted dictionaries are recorded per host.
+        return "events-" + mServer.getAddress().getPort();
+    }
+
+    private static String event(int id) {
+        return "{\"type\":\"event\",\"session\":\"s" + id + "\",\"timestamp\":"
+                + "\"2024-03-02T10:11:12Z\",\"platform\":\"android\",\"properties\":{\"screen\":"
+                + "\"home\",\"action\":\"click\"}}";
+    }
+
+    private static byte[] inflate(InputStream is, boolean dictionary) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Utils.write(is, encoded);
+        Inflater inflater = new Inflater();
+        inflater.setInput(encoded.toByteArray());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsDictionary() && dictionary) {
+                    inflater.setDictionary(DICTIONARY);
+                } else if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated or unexpected dictionary");
+                }
+                os.write(buffer, 0, count);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+        return os.toByteArray();
+    }
+
+    private static byte[] encode(ContentCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (OutputStream encoder = codec.encode(os)) {
+            encoder.write(data);
+        }
+        return os.toByteArray();
+    }
+
+    private static byte[] decode(ContentCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = codec.decode(new ByteArrayInputStream(data))) {
+            Utils.write(is, os);
+        }
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,194 @@
+package com.tuz.network;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the dispatcher.
+ */
+public class DispatcherTest {
+
+    /**
+     * Request blocking until released.
+     */
+    private static class BlockingRequest implements Request<String> {
+
+        private final CountDownLatch mRelease;
+
+        private final AtomicInteger mRunning;
+
+        private final AtomicInteger mMaxRunning;
+
+        BlockingRequest(CountDownLatch release, AtomicInteger running, AtomicInteger maxRunning) {
+            mRelease = release;
+            mRunning = running;
+            mMaxRunning = maxRunning;
+        }
+
+        @Override
+        public String execute(RequestProgressListener<String> listener) throws NetworkException {
+            return execute();
+        }
+
+        @Override
+        public String execute() throws NetworkException {
+            int running = mRunning.incrementAndGet();
+            mMaxRunning.accumulateAndGet(running, Math::max);
+            try {
+                mRelease.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new NetworkException(e);
+            } finally {
+                mRunning.decrementAndGet();
+            }
+            return "done";
+        }
+
+        @Override
+        public String execute(int retries) {
+            return null;
+        }
+
+        @Override
+        public Canceller executeAsync(RequestListener<String> listener) {
+            return null;
+        }
+    }
+
+    /**
+     * Listener counting the results.
+     */
+    private static class Listener implements RequestListener<String> {
+
+        private final CountDownLatch mDone;
+
+        private final AtomicInteger mResults = new AtomicInteger();
+
+        private final AtomicInteger mNullResults = new AtomicInteger();
+
+        Listener(int count) {
+            mDone = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onPreExecution(Request<String> request) {
+        }
+
+        @Override
+        public void onExecutionDone(Request<String> request, String result) {
+            if (result != null) {
+                mResults.incrementAndGet();
+            } else {
+                mNullResults.incrementAndGet();
+            }
+            mDone.countDown();
+        }
+
+        @Override
+        public void onExecutionProgress(Request<String> request, TransferProgress progress) {
+        }
+    }
+
+    @Test
+    public void testPerHostLimit() throws Exception {
+        Dispatcher dispatcher = new Dispatcher(8, 2, 100, Dispatcher.BackpressurePolicy.REJECT,
+                Runnable::run);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Listener listener = new Listener(10);
+
+        for (int i = 0; i < 10; i++) {
+            BlockingRequest request = new BlockingRequest(release, running, maxRunning);
+            dispatcher.enqueue(new NetworkTask<>(dispatcher, request, listener, "host"));
+        }
+        Thread.sleep(100);
+        assertEquals(2, dispatcher.getRunningCount());
+        assertEquals(8, dispatcher.getQueuedCount());
+
+        release.countDown();
+        assertTrue(listener.mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(10, listener.mResults.get());
+        assertEquals(2, maxRunning.get());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() throws Exception {
+        Dispatcher dispatcher = new Dispatcher(1, 1, 1, Dispatcher.BackpressurePolicy.REJECT,
+                Runnable::run);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Listener listener = new Listener(2);
+
+        dispatcher.enqueue(new NetworkTask<>(dispatcher,
+                new BlockingRequest(release, running, maxRunning), listener, "host"));
+        Thread.sleep(100);
+        dispatcher.enqueue(new NetworkTask<>(dispatcher,
+                new BlockingRequest(release, running, maxRunning), listener, "host"));
+
+        try {
+            dispatcher.enqueue(new NetworkTask<>(dispatcher,
+                    new BlockingRequest(release, running, maxRunning), listener, "host"));
+            fail("Expected the request to be rejected");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+        release.countDown();
+        assertTrue(listener.mDone.await(5, TimeUnit.SECONDS));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testDropOldestWhenQueueIsFull() throws Exception {
+        Dispatcher dispatcher = new Dispatcher(1, 1, 1,
+                Dispatcher.BackpressurePolicy.DROP_OLDEST, Runnable::run);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Listener listener = new Listener(3);
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.enqueue(new NetworkTask<>(dispatcher,
+                    new BlockingRequest(release, running, maxRunning), listener, "host"));
+            Thread.sleep(50);
+        }
+        assertEquals(1, listener.mNullResults.get());
+
+        release.countDown();
+        assertTrue(listener.mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(2, listener.mResults.get());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testCancelQueuedTask() throws Exception {
+        Dispatcher dispatcher = new Dispatcher(1, 1, 10, Dispatcher.BackpressurePolicy.REJECT,
+                Runnable::run);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Listener listener = new Listener(2);
+
+        dispatcher.enqueue(new NetworkTask<>(dispatcher,
+                new BlockingRequest(release, running, maxRunning), listener, "host"));
+        NetworkTask<String> queued = new NetworkTask<>(dispatcher,
+                new BlockingRequest(release, running, maxRunning), listener, "host");
+        dispatcher.enqueue(queued);
+        queued.cancel();
+        assertEquals(0, dispatcher.getQueuedCount());
+        assertEquals(1, listener.mNullResults.get());
+
+        release.countDown();
+        assertTrue(listener.mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.mResults.get());
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,183 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the request lifecycle events against a loopback server.
+ */
+public class EventListenerTest {
+
+    private static final byte[] BODY = "{\"event\":\"click\"}".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/echo", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Utils.write(exchange.getRequestBody(), body);
+            exchange.sendResponseHeaders(201, body.size());
+            try (OutputStream os = exchange.getResponseBody()) {
+                body.writeTo(os);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/echo";
+    }
+
+    @After
+    public void tearDown() {
+        Setup.setEventListener(null);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testEventsOfCall() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.POST,
+                Parsers.newStringParser());
+        builder.setBody(BODY, Http.MIME_JSON, false, false)
+                .setEventListener(listener);
+        Request<String> request = builder.build();
+
+        assertEquals(new String(BODY, StandardCharsets.UTF_8), request.execute());
+        assertEquals(Arrays.asList("callStart", "connectStart 127.0.0.1", "connectEnd 127.0.0.1",
+                "requestHeadersEnd", "requestBodyEnd " + BODY.length, "responseHeadersEnd 201",
+                "parseStart", "parseEnd", "responseBodyEnd " + BODY.length, "callEnd"),
+                listener.mEvents);
+        for (int i = 1; i < listener.mTimes.size(); i++) {
+            assertTrue(listener.mTimes.get(i) >= listener.mTimes.get(i - 1));
+        }
+        for (Request<?> call : listener.mCalls) {
+            assertSame(request, call);
+        }
+    }
+
+    @Test
+    public void testFailedCall() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RecordingListener listener = new RecordingListener();
+        Setup.setEventListener(listener);
+        Request<String> request = new RequestBuilder<>("http://127.0.0.1:" + port + "/closed",
+                Method.GET, Parsers.newStringParser()).build();
+
+        try {
+            request.execute();
+            fail("Expected the connection to be refused");
+        } catch (NetworkException e) {
+            // Expected
+        }
+        assertEquals(Arrays.asList("callStart", "connectStart 127.0.0.1", "callFailed"),
+                listener.mEvents);
+    }
+
+    @Test
+    public void testRequestListenerReplacesGlobalListener() throws Exception {
+        RecordingListener global = new RecordingListener();
+        RecordingListener local = new RecordingListener();
+        Setup.setEventListener(global);
+
+        new RequestBuilder<>(mUrl, Method.GET, Parsers.newStringParser()).build().execute();
+        new RequestBuilder<>(mUrl, Method.GET, Parsers.newStringParser())
+                .setEventListener(local).build().execute();
+
+        assertEquals(global.mEvents, local.mEvents);
+        assertTrue(global.mEvents.contains("responseBodyEnd 0"));
+    }
+
+    private static final class RecordingListener extends EventListener {
+
+        private final List<String> mEvents = new ArrayList<>();
+
+        private final List<Long> mTimes = new ArrayList<>();
+
+        private final List<Request<?>> mCalls = new ArrayList<>();
+
+        @Override
+        public void callStart(Request<?> call, long nanos) {
+            record(call, "callStart", nanos);
+        }
+
+        @Override
+        public void cacheHit(Request<?> call, long nanos) {
+            record(call, "cacheHit", nanos);
+        }
+
+        @Override
+        public void connectStart(Request<?> call, String host, long nanos) {
+            record(call, "connectStart " + host, nanos);
+        }
+
+        @Override
+        public void connectEnd(Request<?> call, String host, long nanos) {
+            record(call, "connectEnd " + host, nanos);
+        }
+
+        @Override
+        public void requestHeadersEnd(Request<?> call, long nanos) {
+            record(call, "requestHeadersEnd", nanos);
+        }
+
+        @Override
+        public void requestBodyEnd(Request<?> call, long byteCount, long nanos) {
+            record(call, "requestBodyEnd " + byteCount, nanos);
+        }
+
+        @Override
+        public void responseHeadersEnd(Request<?> call, int status, long nanos) {
+            record(call, "responseHeadersEnd " + status, nanos);
+        }
+
+        @Override
+        public void responseBodyEnd(Request<?> call, long byteCount, long nanos) {
+            record(call, "responseBodyEnd " + byteCount, nanos);
+        }
+
+        @Override
+        public void parseStart(Request<?> call, long nanos) {
+            record(call, "parseStart", nanos);
+        }
+
+        @Override
+        public void parseEnd(Request<?> call, long nanos) {
+            record(call, "parseEnd", nanos);
+        }
+
+        @Override
+        public void callEnd(Request<?> call, long nanos) {
+            record(call, "callEnd", nanos);
+        }
+
+        @Override
+        public void callFailed(Request<?> call, NetworkException error, long nanos) {
+            record(call, "callFailed", nanos);
+        }
+
+        private synchronized void record(Request<?> call, String event, long nanos) {
+            mEvents.add(event);
+            mTimes.add(nanos);
+            mCalls.add(call);
+        }
+    }
+}
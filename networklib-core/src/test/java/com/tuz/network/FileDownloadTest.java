@@ -0,0 +1,358 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for downloading to a file against a loopback server.
+ */
+public class FileDownloadTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private final byte[] mData = new byte[300 * 1024];
+
+    private final byte[] mLargeData = new byte[3 * 1024 * 1024 + 11];
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private final AtomicInteger mRangeRequests = new AtomicInteger();
+
+    /**
+     * The number of range requests to fail.
+     */
+    private final AtomicInteger mFailedRanges = new AtomicInteger();
+
+    /**
+     * The number of range probes to fail by closing the connection.
+     */
+    private final AtomicInteger mFailedProbes = new AtomicInteger();
+
+    /**
+     * The number of bytes sent beyond each requested range.
+     */
+    private volatile int mExtraBytes;
+
+    /**
+     * The entity tag of the large resource.
+     */
+    private volatile String mLargeEtag = ETAG;
+
+    /**
+     * The entity tag sent in responses to range probes, or null to send the current one.
+     */
+    private volatile String mProbeEtag;
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < mData.length; i++) {
+            mData[i] = (byte) (i % 251);
+        }
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/file", exchange -> {
+            int request = mRequests.incrementAndGet();
+            String range = exchange.getRequestHeaders().getFirst(Http.RANGE);
+            String ifRange = exchange.getRequestHeaders().getFirst(Http.IF_RANGE);
+            exchange.getResponseHeaders().add(Http.ETAG, ETAG);
+
+            int start = 0;
+            if (range != null && ETAG.equals(ifRange)) {
+                start = Integer.parseInt(range.substring(range.indexOf('=') + 1,
+                        range.indexOf('-')));
+                if (start >= mData.length) {
+                    exchange.getResponseHeaders().add(Http.CONTENT_RANGE,
+                            "bytes */" + mData.length);
+                    exchange.sendResponseHeaders(Http.STATUS_RANGE_NOT_SATISFIABLE, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().add(Http.CONTENT_RANGE,
+                        "bytes " + start + "-" + (mData.length - 1) + "/" + mData.length);
+                exchange.sendResponseHeaders(Http.STATUS_PARTIAL_CONTENT, mData.length - start);
+            } else {
+                exchange.sendResponseHeaders(200, mData.length);
+            }
+
+            try (OutputStream os = exchange.getResponseBody()) {
+                if (request == 1) {
+                    // Simulate a dropped connection half way through the first transfer.
+                    os.write(mData, 0, mData.length / 2);
+                    os.flush();
+                    throw new IOException("Dropped");
+                }
+                os.write(mData, start, mData.length - start);
+            }
+        });
+        for (int i = 0; i < mLargeData.length; i++) {
+            mLargeData[i] = (byte) (i % 253);
+        }
+        mServer.createContext("/large", exchange -> {
+            exchange.getResponseHeaders().add(Http.ACCEPT_RANGES, Http.BYTES);
+            String range = exchange.getRequestHeaders().getFirst(Http.RANGE);
+            String ifRange = exchange.getRequestHeaders().getFirst(Http.IF_RANGE);
+
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                if (mFailedProbes.getAndDecrement() > 0) {
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().add(Http.ETAG,
+                        mProbeEtag != null ? mProbeEtag : mLargeEtag);
+                exchange.getResponseHeaders().add(Http.CONTENT_LENGTH,
+                        String.valueOf(mLargeData.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            if (range != null && mFailedRanges.getAndDecrement() > 0) {
+                // The resource changes while the failed ranges are served.
+                mRangeRequests.incrementAndGet();
+                mLargeEtag = "\"v2\"";
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add(Http.ETAG, mLargeEtag);
+            if (range == null || (ifRange != null && !ifRange.equals(mLargeEtag))) {
+                exchange.sendResponseHeaders(200, mLargeData.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(mLargeData);
+                } catch (IOException e) {
+                    // Client went away
+                }
+                return;
+            }
+            mRangeRequests.incrementAndGet();
+            String[] bounds = range.substring(range.indexOf('=') + 1).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Integer.parseInt(bounds[1]);
+            exchange.getResponseHeaders().add(Http.CONTENT_RANGE,
+                    "bytes " + start + "-" + end + "/" + mLargeData.length);
+            int extra = Math.min(mExtraBytes, mLargeData.length - end - 1);
+            exchange.sendResponseHeaders(Http.STATUS_PARTIAL_CONTENT, end - start + 1 + extra);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(mLargeData, start, end - start + 1 + extra);
+            }
+        });
+        mServer.setExecutor(Executors.newFixedThreadPool(4));
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/file";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testInterruptedDownloadIsResumed() throws Exception {
+        File target = File.createTempFile("download", ".bin");
+        target.delete();
+        target.deleteOnExit();
+        Request<File> request = RequestBuilder.newDownload(mUrl, target).build();
+
+        try {
+            request.execute();
+            fail("Expected the first transfer to fail");
+        } catch (NetworkException e) {
+            // Expected
+        }
+        File part = new File(target.getPath() + ".part");
+        assertTrue(part.length() > 0);
+        long resumedFrom = part.length();
+
+        assertEquals(target, request.execute());
+        assertFalse(part.exists());
+        assertArrayEquals(mData, readFile(target));
+        assertTrue(resumedFrom < mData.length);
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void testCompletePartialFileIsFinished() throws Exception {
+        File target = File.createTempFile("download", ".bin");
+        target.delete();
+        target.deleteOnExit();
+        File part = new File(target.getPath() + ".part");
+        try (FileOutputStream fos = new FileOutputStream(part)) {
+            fos.write(mData);
+        }
+        try (FileOutputStream fos = new FileOutputStream(target.getPath() + ".part.validator")) {
+            fos.write(ETAG.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(target, RequestBuilder.newDownload(mUrl, target).build().execute());
+        assertFalse(part.exists());
+        assertArrayEquals(mData, readFile(target));
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void testSegmentedDownload() throws Exception {
+        File target = File.createTempFile("segmented", ".bin");
+        target.deleteOnExit();
+        String url = mUrl.replace("/file", "/large");
+        final TransferProgress[] last = new TransferProgress[1];
+        RequestBuilder<File> builder = RequestBuilder.newDownload(url, target);
+        builder.setSegments(4);
+        Request<File> request = builder.build();
+
+        assertEquals(target, request.execute((r, progress) -> last[0] = progress));
+        assertArrayEquals(mLargeData, readFile(target));
+        assertEquals(4, mRangeRequests.get());
+        assertEquals(100, last[0].getPercent());
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(new File(target.getPath() + ".segments").exists());
+    }
+
+    @Test
+    public void testSegmentedDownloadUsesRetryPolicy() throws Exception {
+        File target = File.createTempFile("segmented", ".bin");
+        target.deleteOnExit();
+        mFailedRanges.set(1);
+        String url = mUrl.replace("/file", "/large");
+        RequestBuilder<File> builder = RequestBuilder.newDownload(url, target);
+        builder.setSegments(4)
+                .setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+
+        assertEquals(target, builder.build().execute());
+        assertArrayEquals(mLargeData, readFile(target));
+    }
+
+    @Test
+    public void testSegmentedDownloadRetryProbesAgain() throws Exception {
+        File target = File.createTempFile("segmented", ".bin");
+        target.deleteOnExit();
+        mFailedRanges.set(2);
+        String url = mUrl.replace("/file", "/large");
+        RequestBuilder<File> builder = RequestBuilder.newDownload(url, target);
+        builder.setSegments(2)
+                .setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+
+        assertEquals(target, builder.build().execute());
+        assertArrayEquals(mLargeData, readFile(target));
+        assertEquals(4, mRangeRequests.get());
+    }
+
+    @Test
+    public void testChangedResourceFallsBackToSingleStream() throws Exception {
+        File target = File.createTempFile("segmented", ".bin");
+        target.deleteOnExit();
+        mProbeEtag = "\"old\"";
+        String url = mUrl.replace("/file", "/large");
+        RequestBuilder<File> builder = RequestBuilder.newDownload(url, target);
+        builder.setSegments(4)
+                .setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+
+        assertEquals(target, builder.build().execute());
+        assertArrayEquals(mLargeData, readFile(target));
+        assertEquals(0, mRangeRequests.get());
+        assertFalse(new File(target.getPath() + ".segments").exists());
+    }
+
+    @Test
+    public void testSegmentedDownloadHonorsRetries() throws Exception {
+        File target = File.createTempFile("segmented", ".bin");
+        target.deleteOnExit();
+        Setup.setRetryBudget(new RetryBudget());
+        mFailedProbes.set(4);
+        String url = mUrl.replace("/file", "/large");
+        RequestBuilder<File> builder = RequestBuilder.newDownload(url, target);
+        builder.setSegments(2);
+
+        try {
+            assertEquals(target, builder.build().execute(10));
+        } finally {
+            Setup.setRetryBudget(null);
+        }
+        assertArrayEquals(mLargeData, readFile(target));
+    }
+
+    @Test
+    public void testSegmentIgnoresBytesBeyondItsRange() throws Exception {
+        File target = File.createTempFile("segmented", ".bin");
+        target.deleteOnExit();
+        mExtraBytes = 1000;
+        String url = mUrl.replace("/file", "/large");
+        RequestBuilder<File> builder = RequestBuilder.newDownload(url, target);
+        builder.setSegments(4);
+
+        assertEquals(target, builder.build().execute());
+        assertArrayEquals(mLargeData, readFile(target));
+    }
+
+    @Test
+    public void testAsyncSegmentedDownloadOnASingleWorker() throws Exception {
+        File target = File.createTempFile("segmented", ".bin");
+        target.deleteOnExit();
+        Dispatcher dispatcher = new Dispatcher(1, 1, 16, Dispatcher.BackpressurePolicy.REJECT,
+                Runnable::run);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<File> output = new AtomicReference<>();
+        String url = mUrl.replace("/file", "/large");
+        RequestBuilder<File> builder = RequestBuilder.newDownload(url, target);
+        builder.setSegments(4).setDispatcher(dispatcher);
+
+        // Tasks hold their listeners weakly.
+        RequestListener<File> listener = new RequestListener<File>() {
+            @Override
+            public void onPreExecution(Request<File> request) {
+            }
+
+            @Override
+            public void onExecutionDone(Request<File> request, File result) {
+                output.set(result);
+                done.countDown();
+            }
+
+            @Override
+            public void onExecutionProgress(Request<File> request, TransferProgress progress) {
+            }
+        };
+
+        try {
+            builder.build().executeAsync(listener);
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            dispatcher.shutdown();
+        }
+        assertNotNull(listener);
+        assertEquals(target, output.get());
+        assertArrayEquals(mLargeData, readFile(target));
+        assertEquals(4, mRangeRequests.get());
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream fis = new FileInputStream(file)) {
+            int offset = 0;
+            int read;
+            while ((read = fis.read(data, offset, data.length - offset)) > 0) {
+                offset += read;
+            }
+        }
+        return data;
+    }
+}
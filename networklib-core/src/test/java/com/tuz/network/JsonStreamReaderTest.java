@@ -0,0 +1,107 @@
+package com.tuz.network;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the json pull parser.
+ */
+public class JsonStreamReaderTest {
+
+    @Test
+    public void testReadObject() throws Exception {
+        String json = "{\"id\": 1, \"title\": \"a \\\"quoted\\\" \\u00e5\", \"tags\": [true, null],"
+                + " \"score\": -1.5e2}";
+        JsonStreamReader reader = new JsonStreamReader(new StringReader(json));
+
+        reader.beginObject();
+        assertEquals("id", reader.nextName());
+        assertEquals(1, reader.nextInt());
+        assertEquals("title", reader.nextName());
+        assertEquals("a \"quoted\" \u00e5", reader.nextString());
+        assertEquals("tags", reader.nextName());
+        reader.beginArray();
+        assertTrue(reader.nextBoolean());
+        reader.nextNull();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("score", reader.nextName());
+        assertEquals(-150.0, reader.nextDouble(), 0.0);
+        reader.endObject();
+        assertEquals(JsonStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void testTokensSpanningBufferRefills() throws Exception {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            builder.append(i == 0 ? "" : ",").append("{\"value\":\"element").append(i)
+                    .append("\",\"n\":").append(i).append('}');
+        }
+        builder.append(']');
+
+        JsonStreamReader reader = new JsonStreamReader(new StringReader(builder.toString()), 300);
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            assertEquals("value", reader.nextName());
+            assertEquals("element" + count, reader.nextString());
+            assertEquals("n", reader.nextName());
+            assertEquals(count, reader.nextLong());
+            reader.endObject();
+            count++;
+        }
+        reader.endArray();
+        assertEquals(1000, count);
+    }
+
+    @Test
+    public void testSkipValue() throws Exception {
+        JsonStreamReader reader = new JsonStreamReader(
+                new StringReader("{\"skip\": {\"a\": [1, {\"b\": 2}]}, \"keep\": \"yes\"}"));
+
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("keep", reader.nextName());
+        assertEquals("yes", reader.nextString());
+        reader.endObject();
+    }
+
+    @Test(expected = JSONException.class)
+    public void testDuplicateNameIsRejected() throws Exception {
+        parseJson("{\"id\": 1, \"id\": 2}");
+    }
+
+    @Test
+    public void testLargeContentLengthIsNotPresized() throws Exception {
+        InputStream is = new ByteArrayInputStream("text".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("text", Utils.toString(is, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = JSONException.class)
+    public void testMalformedJson() throws Exception {
+        JsonStreamReader reader = new JsonStreamReader(new StringReader("[1 2]"));
+        reader.beginArray();
+        reader.nextInt();
+        reader.nextInt();
+    }
+
+    private static JSONObject parseJson(String json) throws Exception {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        CacheEntry entry = new CacheEntry("json", 200, null, new HashSet<>(), body,
+                System.currentTimeMillis());
+        return Parsers.newJsonParser().parseResponse(new Response(entry));
+    }
+}
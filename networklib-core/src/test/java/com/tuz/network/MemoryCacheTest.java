@@ -0,0 +1,161 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the memory cache.
+ */
+public class MemoryCacheTest {
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", exchange -> {
+            mRequests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            String user = exchange.getRequestHeaders().getFirst(Http.AUTHORIZATION);
+            byte[] body = ("body of " + path + (user != null ? " for " + user : ""))
+                    .getBytes(StandardCharsets.UTF_8);
+            if (path.equals("/fresh") || path.equals("/private")) {
+                exchange.getResponseHeaders().add(Http.CACHE_CONTROL, "public, max-age=60");
+            } else if (path.equals("/nostore")) {
+                exchange.getResponseHeaders().add(Http.CACHE_CONTROL, "no-store, max-age=60");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+        Setup.setMemoryCache(new MemoryCache());
+    }
+
+    @After
+    public void tearDown() {
+        Setup.setMemoryCache(null);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromMemory() throws Exception {
+        assertEquals("body of /fresh", get("/fresh"));
+        assertEquals("body of /fresh", get("/fresh"));
+
+        MemoryCache cache = Setup.getMemoryCache();
+        assertEquals(1, mRequests.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void testUncacheableResponsesAreNotStored() throws Exception {
+        get("/nostore");
+        get("/nostore");
+        get("/plain");
+        get("/plain");
+
+        assertEquals(4, mRequests.get());
+        assertEquals(0, Setup.getMemoryCache().getEntryCount());
+    }
+
+    @Test
+    public void testResponsesAreNotSharedAcrossAuthorizations() throws Exception {
+        assertEquals("body of /private for alice", get("/private", "alice"));
+        assertEquals("body of /private for bob", get("/private", "bob"));
+        assertEquals("body of /private for alice", get("/private", "alice"));
+        assertEquals("body of /private", get("/private"));
+
+        MemoryCache cache = Setup.getMemoryCache();
+        assertEquals(3, mRequests.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getEntryCount());
+
+        cache.remove(mUrl + "/private");
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        MemoryCache cache = new MemoryCache(4000);
+        long now = System.currentTimeMillis();
+
+        assertTrue(cache.put(newEntry("a", 900, now)));
+        assertTrue(cache.put(newEntry("b", 900, now)));
+        assertTrue(cache.put(newEntry("c", 900, now)));
+        assertNotNull(cache.get("a", now));
+        assertTrue(cache.put(newEntry("d", 900, now)));
+        assertTrue(cache.put(newEntry("e", 900, now)));
+
+        assertNotNull(cache.get("a", now));
+        assertNull(cache.get("b", now));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+        assertFalse(cache.put(newEntry("large", 1500, now)));
+    }
+
+    @Test
+    public void testFreshness() {
+        long now = System.currentTimeMillis();
+        CacheEntry entry = newEntry("a", 10, now);
+
+        assertTrue(entry.isFresh(now + 59000));
+        assertFalse(entry.isFresh(now + 61000));
+
+        Set<Header> headers = new HashSet<>();
+        headers.add(new Header(Http.DATE, "Sun, 06 Nov 1994 08:49:37 GMT"));
+        headers.add(new Header(Http.EXPIRES, "Sun, 06 Nov 1994 08:50:37 GMT"));
+        headers.add(new Header(Http.AGE, "30"));
+        CacheEntry expires = new CacheEntry("b", 200, null, headers, new byte[0], now);
+        assertTrue(expires.isFresh(now + 29000));
+        assertFalse(expires.isFresh(now + 31000));
+
+        CacheControl control = CacheControl.parse("no-cache, max-age=\"5\", stale-if-error=30");
+        assertTrue(control.isNoCache());
+        assertEquals(5, control.getMaxAge());
+        assertEquals(30, control.getStaleIfError());
+        assertEquals(CacheControl.UNSET, control.getStaleWhileRevalidate());
+    }
+
+    private String get(String path) throws NetworkException {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl + path, Method.GET,
+                Parsers.newStringParser());
+        builder.setUseCache(true);
+        Request<String> request = builder.build();
+        return request.execute();
+    }
+
+    private String get(String path, String authorization) throws NetworkException {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl + path, Method.GET,
+                Parsers.newStringParser());
+        builder.setUseCache(true).addHeader(Http.AUTHORIZATION, authorization);
+        return builder.build().execute();
+    }
+
+    private static CacheEntry newEntry(String key, int length, long now) {
+        Set<Header> headers = new HashSet<>();
+        headers.add(new Header(Http.CACHE_CONTROL, "max-age=60"));
+        return new CacheEntry(key, 200, null, headers, new byte[length], now);
+    }
+}
@@ -0,0 +1,184 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the metrics registry and its histograms.
+ */
+public class MetricsRegistryTest {
+
+    private static final byte[] BODY = "{\"title\":\"metrics\"}".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer mServer;
+
+    private String mBaseUrl;
+
+    private MetricsRegistry mRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/posts", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Utils.write(exchange.getRequestBody(), body);
+            int status = exchange.getRequestURI().getPath().endsWith("/missing") ? 404 : 200;
+            exchange.sendResponseHeaders(status, body.size() > 0 ? body.size() : -1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                body.writeTo(os);
+            }
+        });
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+        mRegistry = new MetricsRegistry();
+        Setup.setMetricsRegistry(mRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        Setup.setMetricsRegistry(null);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testRoutesCollapseIds() {
+        assertEquals("/posts/{id}", mRegistry.getRoute("/posts/1"));
+        assertEquals("/posts/{id}/comments", mRegistry.getRoute("/posts/42/comments/"));
+        assertEquals("/users/{id}", mRegistry.getRoute(
+                "/users/123e4567-e89b-12d3-a456-426614174000"));
+        assertEquals("/blobs/{id}", mRegistry.getRoute("/blobs/0123456789abcdef0123"));
+        assertEquals("/v1/feed", mRegistry.getRoute("/v1/feed"));
+        assertEquals("/", mRegistry.getRoute(""));
+
+        mRegistry.addRouteTemplate("/users/{user}/repos/{repo}");
+        assertEquals("/users/{user}/repos/{repo}", mRegistry.getRoute("/users/octo/repos/hello"));
+        assertEquals("/users/octo", mRegistry.getRoute("/users/octo"));
+    }
+
+    @Test
+    public void testEndpointsAreBounded() {
+        for (int i = 0; i < MetricsRegistry.MAX_ENDPOINTS + 10; i++) {
+            mRegistry.getStats("http://example.com/page" + i);
+        }
+        MetricsRegistry.EndpointStats other = mRegistry.getStats("https://Example.com:443/x?q");
+
+        assertEquals("example.com", other.getHost());
+        assertEquals(MetricsRegistry.OTHER_ROUTE, other.getRoute());
+        assertEquals(MetricsRegistry.MAX_ENDPOINTS + 1, mRegistry.snapshot().size());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertEquals(5000, histogram.getValueAtPercentile(50), 5000 * 0.04);
+        assertEquals(9900, histogram.getValueAtPercentile(99), 9900 * 0.04);
+        assertEquals(10000, histogram.getValueAtPercentile(100));
+        long counted = 0;
+        for (long[] bucket : histogram.getBuckets()) {
+            counted += bucket[1];
+        }
+        assertEquals(10000, counted);
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 1000, 123456789, Histogram.MAX_VALUE}) {
+            int index = Histogram.index(value);
+            assertTrue(value <= Histogram.upperBound(index));
+            assertTrue(index == 0 || value > Histogram.upperBound(index - 1));
+        }
+    }
+
+    @Test
+    public void testCallsAreRecorded() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            new RequestBuilder<>(mBaseUrl + "/posts/" + i, Method.POST, Parsers.newStringParser())
+                    .setBody(BODY, Http.MIME_JSON, false, false)
+                    .build()
+                    .execute();
+        }
+        new RequestBuilder<>(mBaseUrl + "/posts/missing", Method.GET, Parsers.newStringParser())
+                .build()
+                .execute();
+
+        List<MetricsRegistry.EndpointStats> snapshot = mRegistry.snapshot();
+        assertEquals(2, snapshot.size());
+        MetricsRegistry.EndpointStats posts = find(snapshot, "/posts/{id}");
+        assertEquals("127.0.0.1", posts.getHost());
+        assertEquals(3, posts.getCallLatency().getCount());
+        assertEquals(3, posts.getResponseLatency().getCount());
+        assertEquals(Long.valueOf(3), posts.getStatusCounts().get(200));
+        assertEquals(3 * BODY.length, posts.getBytesSent());
+        assertEquals(3 * BODY.length, posts.getBytesReceived());
+        assertEquals(0, posts.getErrorCount());
+        assertTrue(posts.getCallLatency().getMax() >= posts.getResponseLatency().getMax());
+
+        MetricsRegistry.EndpointStats missing = find(snapshot, "/posts/missing");
+        assertEquals(Long.valueOf(1), missing.getStatusCounts().get(404));
+    }
+
+    @Test
+    public void testErrorsAreRecorded() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            new RequestBuilder<>("http://127.0.0.1:" + port + "/posts/1", Method.GET,
+                    Parsers.newStringParser()).build().execute();
+            fail("Expected the connection to be refused");
+        } catch (NetworkException e) {
+            // Expected
+        }
+
+        MetricsRegistry.EndpointStats stats = find(mRegistry.snapshot(), "/posts/{id}");
+        assertEquals(1, stats.getCallLatency().getCount());
+        assertEquals(0, stats.getResponseLatency().getCount());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(Long.valueOf(1), stats.getErrorCounts().get("ConnectException"));
+    }
+
+    @Test
+    public void testSnapshotIsNotChanged() throws Exception {
+        MetricsRegistry.EndpointStats stats = mRegistry.getStats(mBaseUrl + "/posts/1");
+        stats.recordCall(1000000, null);
+        MetricsRegistry.EndpointStats snapshot = mRegistry.snapshot().get(0);
+        stats.recordCall(2000000, null);
+
+        assertEquals(1, snapshot.getCallLatency().getCount());
+        assertEquals(1000, snapshot.getCallLatency().getMax());
+        assertEquals(2, stats.getCallLatency().getCount());
+
+        mRegistry.reset();
+        assertTrue(mRegistry.snapshot().isEmpty());
+    }
+
+    private static MetricsRegistry.EndpointStats find(List<MetricsRegistry.EndpointStats> stats,
+                                                     String route) {
+        for (MetricsRegistry.EndpointStats endpoint : stats) {
+            if (endpoint.getRoute().equals(route)) {
+                return endpoint;
+            }
+        }
+        throw new AssertionError("No endpoint " + route + " in " + stats);
+    }
+}
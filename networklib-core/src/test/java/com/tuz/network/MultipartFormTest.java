@@ -0,0 +1,174 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for encoding multipart forms.
+ */
+public class MultipartFormTest {
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    private File mFile;
+
+    private byte[] mFileData;
+
+    private volatile String mContentLength;
+
+    private volatile String mTransferEncoding;
+
+    private volatile String mContentType;
+
+    private volatile byte[] mReceived;
+
+    @Before
+    public void setUp() throws Exception {
+        mFileData = new byte[300 * 1024];
+        new Random(42).nextBytes(mFileData);
+        mFile = File.createTempFile("photo", ".png");
+        try (OutputStream os = new FileOutputStream(mFile)) {
+            os.write(mFileData);
+        }
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/upload", exchange -> {
+            mContentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            mTransferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+            mContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Utils.write(exchange.getRequestBody(), body);
+            mReceived = body.toByteArray();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/upload";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        mFile.delete();
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        MultipartForm form = new MultipartForm("BOUNDARY");
+        form.addTextField("title", "Hej d\u00e5");
+        form.addTextField("count", 3);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        form.writeTo(os, (total, current) -> {
+        });
+
+        String expected = "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n"
+                + "Content-Type: text/plain; charset=utf-8\r\n"
+                + "\r\n"
+                + "Hej d\u00e5\r\n"
+                + "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"count\"\r\n"
+                + "Content-Type: text/plain; charset=utf-8\r\n"
+                + "\r\n"
+                + "3\r\n"
+                + "--BOUNDARY--\r\n";
+        assertEquals(expected, os.toString("UTF-8"));
+        assertEquals(os.size(), form.size());
+    }
+
+    @Test
+    public void testNamesAreEscaped() throws Exception {
+        MultipartForm form = new MultipartForm("BOUNDARY");
+        form.addTextField("a\"b\r\nc", "value");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        form.writeTo(os, (total, current) -> {
+        });
+
+        assertTrue(os.toString("UTF-8").contains("name=\"a%22b%0D%0Ac\"\r\n"));
+        assertEquals(os.size(), form.size());
+    }
+
+    @Test
+    public void testFileProgress() throws Exception {
+        MultipartForm form = new MultipartForm();
+        form.addTextField("title", "photo");
+        form.addFile("photo", mFile, true);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        long[] progress = new long[2];
+
+        form.writeTo(os, (total, current) -> {
+            assertTrue(current >= progress[1]);
+            progress[0] = total;
+            progress[1] = current;
+        });
+
+        assertEquals(form.size(), os.size());
+        assertEquals(form.size(), progress[0]);
+        assertEquals(form.size(), progress[1]);
+    }
+
+    @Test
+    public void testUploadWithFixedLength() throws Exception {
+        MultipartForm form = new MultipartForm();
+        form.addTextField("album", "summer");
+        form.addFile("photo", mFile, true);
+        form.addFile("raw", mFile, false);
+
+        new RequestBuilder<>(mUrl, Method.POST, Parsers.newStringParser())
+                .setBody(form)
+                .build()
+                .execute();
+
+        assertNull(mTransferEncoding);
+        assertEquals(String.valueOf(form.size()), mContentLength);
+        assertEquals(form.size(), mReceived.length);
+        assertTrue(mContentType.startsWith("multipart/form-data; boundary="));
+        String boundary = mContentType.substring(mContentType.indexOf('=') + 1);
+
+        String text = new String(mReceived, StandardCharsets.ISO_8859_1);
+        String[] parts = text.split("--" + boundary);
+        assertEquals(5, parts.length);
+        assertEquals("--\r\n", parts[4]);
+        assertTrue(parts[1].contains("name=\"album\"\r\n"));
+        assertTrue(parts[2].contains("name=\"photo\"; filename=\"" + mFile.getName() + "\"\r\n"
+                + "Content-Type: image/png\r\n\r\n"));
+        assertFalse(parts[3].contains("Content-Type"));
+
+        int start = parts[2].indexOf("\r\n\r\n") + 4;
+        byte[] content = parts[2].substring(start, parts[2].length() - 2)
+                .getBytes(StandardCharsets.ISO_8859_1);
+        assertArrayEquals(mFileData, content);
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void testInterruptedUpload() throws Exception {
+        MultipartForm form = new MultipartForm();
+        form.addFile("photo", mFile, false);
+
+        Thread.currentThread().interrupt();
+        try {
+            form.writeTo(new ByteArrayOutputStream(), (total, current) -> {
+            });
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the platform services on the jvm.
+ */
+public class PlatformTest {
+
+    @After
+    public void tearDown() {
+        Setup.setPlatform(null);
+        Setup.setDispatcher(null);
+    }
+
+    @Test
+    public void testJvmPlatformIsDetected() {
+        assertTrue(Setup.getPlatform() instanceof JvmPlatform);
+        assertSame(Setup.getPlatform(), Setup.getPlatform());
+    }
+
+    @Test
+    public void testMimeTypes() {
+        Platform platform = new JvmPlatform();
+
+        assertEquals("image/png", platform.getMimeType("photo.png"));
+        assertEquals("text/plain", platform.getMimeType("notes.txt"));
+        assertNull(platform.getMimeType("archive.unknown"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNoResponseCache() throws Exception {
+        assertFalse(Setup.getPlatform().isCacheInstalled());
+        Setup.installCache(new File("cache"), Setup.DEFAULT_CACHE_SIZE);
+    }
+
+    @Test
+    public void testCallbacksAreDeliveredInOrder() throws Exception {
+        Executor executor = new JvmPlatform().getCallbackExecutor();
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            executor.execute(() -> {
+                order.add(index);
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) order.get(i));
+            assertEquals("NetworkCallbacks", threads.get(i));
+        }
+    }
+
+    @Test
+    public void testCustomPlatform() throws Exception {
+        RecordingPlatform platform = new RecordingPlatform();
+        Setup.setPlatform(platform);
+
+        Setup.flushCache();
+        Utils.debugPrintJson("Json", new ByteArrayInputStream(
+                "{\"id\":1}".getBytes(StandardCharsets.UTF_8)), 0);
+
+        assertEquals(1, platform.mFlushes.get());
+        assertEquals("Json {\"id\":1}", platform.mMessages.get(0));
+    }
+
+    @Test
+    public void testAsyncCallbacksUsePlatformExecutor() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/posts", exchange -> {
+            byte[] body = "post".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        RecordingPlatform platform = new RecordingPlatform();
+        Setup.setPlatform(platform);
+        Setup.setDispatcher(null);
+        CountDownLatch done = new CountDownLatch(1);
+        String[] result = new String[1];
+
+        // Tasks hold their listeners weakly.
+        RequestListener<String> listener = new RequestListener<String>() {
+            @Override
+            public void onPreExecution(Request<String> request) {
+            }
+
+            @Override
+            public void onExecutionDone(Request<String> request, String output) {
+                result[0] = output;
+                done.countDown();
+            }
+
+            @Override
+            public void onExecutionProgress(Request<String> request, TransferProgress progress) {
+            }
+        };
+
+        try {
+            new RequestBuilder<>("http://127.0.0.1:" + server.getAddress().getPort() + "/posts",
+                    Method.GET, Parsers.newStringParser())
+                    .build()
+                    .executeAsync(listener);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals("post", result[0]);
+            assertTrue(platform.mCallbacks.get() > 0);
+            assertNotNull(listener);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Platform recording its use, with callbacks run on the calling thread.
+     */
+    private static final class RecordingPlatform extends Platform {
+
+        private final AtomicInteger mCallbacks = new AtomicInteger();
+
+        private final AtomicInteger mFlushes = new AtomicInteger();
+
+        private final List<String> mMessages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Executor getCallbackExecutor() {
+            return command -> {
+                mCallbacks.incrementAndGet();
+                command.run();
+            };
+        }
+
+        @Override
+        public String getMimeType(String fileName) {
+            return null;
+        }
+
+        @Override
+        public void log(String tag, String message) {
+            mMessages.add(tag + " " + message);
+        }
+
+        @Override
+        public void flushCache() {
+            mFlushes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.tuz.network;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the request body sources.
+ */
+public class RequestBodyTest {
+
+    private static class Updater implements ProgressUpdater {
+
+        private long mTotal;
+
+        private long mCurrent;
+
+        @Override
+        public void update(long total, long current) {
+            mTotal = total;
+            mCurrent = current;
+        }
+    }
+
+    private static byte[] newData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private static byte[] write(RequestBody body, Updater updater) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        body.writeTo(os, updater);
+        return os.toByteArray();
+    }
+
+    @Test
+    public void testFileBody() throws Exception {
+        byte[] data = newData(600 * 1024 + 3);
+        File file = File.createTempFile("body", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+        Updater updater = new Updater();
+        RequestBody body = RequestBody.create(file);
+
+        assertEquals(data.length, body.length());
+        assertArrayEquals(data, write(body, updater));
+        assertEquals(data.length, updater.mCurrent);
+
+        // A file body can be written again, for example when retrying.
+        assertArrayEquals(data, write(body, updater));
+    }
+
+    @Test
+    public void testFileChannelBodyFromPosition() throws Exception {
+        byte[] data = newData(10000);
+        File file = File.createTempFile("body", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            channel.position(100);
+            RequestBody body = RequestBody.create(channel);
+            byte[] expected = new byte[data.length - 100];
+            System.arraycopy(data, 100, expected, 0, expected.length);
+
+            assertEquals(expected.length, body.length());
+            assertArrayEquals(expected, write(body, new Updater()));
+        }
+    }
+
+    @Test
+    public void testDirectByteBufferBody() throws Exception {
+        byte[] data = newData(70000);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        Updater updater = new Updater();
+        RequestBody body = RequestBody.create(buffer);
+
+        assertArrayEquals(data, write(body, updater));
+        assertArrayEquals(data, write(body, updater));
+        assertEquals(data.length, updater.mTotal);
+        assertEquals(data.length, updater.mCurrent);
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testInputStreamBodyWithUnknownLength() throws Exception {
+        byte[] data = newData(50000);
+        Updater updater = new Updater();
+        RequestBody body = RequestBody.create(new ByteArrayInputStream(data), -1);
+
+        assertEquals(-1, body.length());
+        assertArrayEquals(data, write(body, updater));
+        assertEquals(data.length, updater.mCurrent);
+    }
+
+    @Test
+    public void testInputStreamBodyIsNotReplayable() throws Exception {
+        byte[] data = newData(100);
+        RequestBody body = RequestBody.create(new ByteArrayInputStream(data), data.length);
+
+        assertTrue(body.isReplayable());
+        assertArrayEquals(data, write(body, new Updater()));
+        assertFalse(body.isReplayable());
+        try {
+            write(body, new Updater());
+            fail("Expected the second write to fail");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
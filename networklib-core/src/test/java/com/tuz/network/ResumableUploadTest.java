@@ -0,0 +1,341 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for resumable chunked uploads against a loopback tus server.
+ */
+public class ResumableUploadTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Map<String, ByteArrayOutputStream> mUploads = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> mLengths = new ConcurrentHashMap<>();
+
+    private final List<String> mCalls = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger mCreated = new AtomicInteger();
+
+    /**
+     * The number of bytes of the next chunk stored before the connection is dropped, or -1.
+     */
+    private volatile int mDropAfter = -1;
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    private byte[] mData;
+
+    private File mFile;
+
+    private File mStateFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mData = new byte[300 * 1024];
+        new Random(7).nextBytes(mData);
+        mFile = File.createTempFile("video", ".mp4");
+        mFile.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(mFile)) {
+            os.write(mData);
+        }
+        mStateFile = File.createTempFile("video", ".upload");
+        mStateFile.delete();
+        mStateFile.deleteOnExit();
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/files", this::handle);
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/files";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        mFile.delete();
+        mStateFile.delete();
+    }
+
+    @Test
+    public void testUploadInChunks() throws Exception {
+        long[] progress = new long[2];
+
+        String location = build(RequestBuilder.newResumableUpload(mUrl, mFile, mStateFile))
+                .execute((request, transfer) -> {
+                    assertTrue(transfer.getTransferredBytes() >= progress[1]);
+                    progress[0] = transfer.getTotalBytes();
+                    progress[1] = transfer.getTransferredBytes();
+                });
+
+        assertEquals(mUrl + "/1", location);
+        assertArrayEquals(mData, mUploads.get("/files/1").toByteArray());
+        assertEquals(6, mCalls.size());
+        assertEquals("POST /files", mCalls.get(0));
+        assertEquals("PATCH /files/1 0", mCalls.get(1));
+        assertEquals("PATCH /files/1 " + 4 * CHUNK_SIZE, mCalls.get(5));
+        assertEquals(mData.length, progress[0]);
+        assertEquals(mData.length, progress[1]);
+        assertFalse(mStateFile.exists());
+    }
+
+    @Test
+    public void testResumeAfterDisconnect() throws Exception {
+        mDropAfter = CHUNK_SIZE / 4;
+        mCalls.add("drop");
+
+        try {
+            build(RequestBuilder.newResumableUpload(mUrl, mFile, mStateFile)).execute();
+            fail("Upload should fail when the connection is dropped");
+        } catch (NetworkException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        Properties state = new Properties();
+        try (InputStream is = new FileInputStream(mStateFile)) {
+            state.load(is);
+        }
+        assertEquals(mUrl + "/1", state.getProperty("location"));
+        assertEquals("0", state.getProperty("offset"));
+        assertEquals(CHUNK_SIZE / 4, mUploads.get("/files/1").size());
+        assertFalse(new File(mStateFile.getPath() + ".tmp").exists());
+
+        // A new request, as after a restart of the process, continues from the server offset.
+        mCalls.clear();
+        String location = build(RequestBuilder.newResumableUpload(mUrl, mFile, mStateFile))
+                .execute();
+
+        assertEquals(mUrl + "/1", location);
+        assertEquals(1, mCreated.get());
+        assertEquals("HEAD /files/1", mCalls.get(0));
+        assertEquals("PATCH /files/1 " + CHUNK_SIZE / 4, mCalls.get(1));
+        assertArrayEquals(mData, mUploads.get("/files/1").toByteArray());
+        assertFalse(mStateFile.exists());
+    }
+
+    @Test
+    public void testRetriesResumeTheUpload() throws Exception {
+        Request<String> request = build(RequestBuilder.newResumableUpload(mUrl, mFile, null));
+        mCalls.add("drop");
+        mCalls.add("drop");
+        mDropAfter = 1000;
+
+        String location = request.execute(3);
+
+        assertEquals(mUrl + "/1", location);
+        assertEquals(1, mCreated.get());
+        assertTrue(mCalls.contains("HEAD /files/1"));
+        assertArrayEquals(mData, mUploads.get("/files/1").toByteArray());
+    }
+
+    @Test
+    public void testRetryPolicyOfBuilderIsUsed() throws Exception {
+        RequestBuilder<String> builder = RequestBuilder.newResumableUpload(mUrl, mFile, null);
+        builder.setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+        Request<String> request = build(builder);
+        mCalls.add("drop");
+        mCalls.add("drop");
+        mDropAfter = 1000;
+
+        assertEquals(mUrl + "/1", request.execute());
+        assertArrayEquals(mData, mUploads.get("/files/1").toByteArray());
+    }
+
+    @Test
+    public void testMoreThanThreeRetries() throws Exception {
+        Setup.setRetryBudget(new RetryBudget());
+        Request<String> request = build(RequestBuilder.newResumableUpload(mUrl, mFile, null));
+        for (int i = 0; i < 4; i++) {
+            mCalls.add("drop");
+        }
+        mDropAfter = 1000;
+
+        try {
+            assertEquals(mUrl + "/1", request.execute(10));
+        } finally {
+            Setup.setRetryBudget(null);
+        }
+        assertArrayEquals(mData, mUploads.get("/files/1").toByteArray());
+    }
+
+    @Test
+    public void testChangedFileStartsOver() throws Exception {
+        mDropAfter = CHUNK_SIZE / 4;
+        mCalls.add("drop");
+        try {
+            build(RequestBuilder.newResumableUpload(mUrl, mFile, mStateFile)).execute();
+            fail("Upload should fail when the connection is dropped");
+        } catch (NetworkException e) {
+            // Expected
+        }
+
+        // The file is rewritten with the same length.
+        long modified = mFile.lastModified();
+        new Random(8).nextBytes(mData);
+        try (OutputStream os = new FileOutputStream(mFile)) {
+            os.write(mData);
+        }
+        assertTrue(mFile.setLastModified(modified + 10_000));
+
+        mCalls.clear();
+        String location = build(RequestBuilder.newResumableUpload(mUrl, mFile, mStateFile))
+                .execute();
+
+        assertEquals(mUrl + "/2", location);
+        assertEquals("POST /files", mCalls.get(0));
+        assertArrayEquals(mData, mUploads.get("/files/2").toByteArray());
+    }
+
+    @Test
+    public void testChangedBufferStartsOver() throws Exception {
+        mDropAfter = CHUNK_SIZE / 4;
+        mCalls.add("drop");
+        try {
+            build(RequestBuilder.newResumableUpload(mUrl, ByteBuffer.wrap(mData), mStateFile))
+                    .execute();
+            fail("Upload should fail when the connection is dropped");
+        } catch (NetworkException e) {
+            // Expected
+        }
+        assertTrue(mStateFile.exists());
+
+        // Another buffer of the same length does not resume the saved upload.
+        byte[] data = new byte[mData.length];
+        new Random(8).nextBytes(data);
+        mCalls.clear();
+        String location = build(RequestBuilder.newResumableUpload(mUrl, ByteBuffer.wrap(data),
+                mStateFile)).execute();
+
+        assertEquals(mUrl + "/2", location);
+        assertEquals("POST /files", mCalls.get(0));
+        assertArrayEquals(data, mUploads.get("/files/2").toByteArray());
+    }
+
+    @Test
+    public void testExpiredUploadStartsOver() throws Exception {
+        Properties state = new Properties();
+        state.setProperty("location", mUrl + "/expired");
+        state.setProperty("offset", "1024");
+        state.setProperty("length", String.valueOf(mData.length));
+        CRC32 crc = new CRC32();
+        crc.update(mData);
+        state.setProperty("checksum", String.valueOf(crc.getValue()));
+        try (OutputStream os = new FileOutputStream(mStateFile)) {
+            state.store(os, null);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(mData.length + 10);
+        buffer.position(10);
+        buffer.put(mData);
+        buffer.position(10);
+
+        String location = build(RequestBuilder.newResumableUpload(mUrl, buffer, mStateFile))
+                .execute();
+
+        assertEquals(mUrl + "/1", location);
+        assertEquals("HEAD /files/expired", mCalls.get(0));
+        assertEquals("POST /files", mCalls.get(1));
+        assertArrayEquals(mData, mUploads.get("/files/1").toByteArray());
+        assertEquals(10, buffer.position());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testChunkSizeRequiresUpload() {
+        new RequestBuilder<>(mUrl, Method.POST, Parsers.newStringParser()).setChunkSize(1024);
+    }
+
+    private static Request<String> build(RequestBuilder<String> builder) {
+        builder.setChunkSize(CHUNK_SIZE);
+        return builder.build();
+    }
+
+    /**
+     * Handle a request of the tus protocol. A {@code drop} entry first in the calls makes the
+     * next chunk fail after part of it has been stored.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        String override = exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override");
+        if (override != null) {
+            method = override;
+        }
+        // Keep no connection alive, so that only the dropped chunks fail.
+        exchange.getResponseHeaders().add("Connection", "close");
+        if (!"1.0.0".equals(exchange.getRequestHeaders().getFirst("Tus-Resumable"))) {
+            exchange.sendResponseHeaders(412, -1);
+            exchange.close();
+            return;
+        }
+
+        if ("POST".equals(method)) {
+            mCalls.add("POST " + path);
+            String id = String.valueOf(mCreated.incrementAndGet());
+            mUploads.put(path + "/" + id, new ByteArrayOutputStream());
+            mLengths.put(path + "/" + id, Long.parseLong(
+                    exchange.getRequestHeaders().getFirst("Upload-Length")));
+            exchange.getResponseHeaders().add("Location", "/files/" + id);
+            exchange.sendResponseHeaders(201, -1);
+        } else if ("HEAD".equals(method)) {
+            mCalls.add("HEAD " + path);
+            ByteArrayOutputStream upload = mUploads.get(path);
+            if (upload == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.getResponseHeaders().add("Upload-Offset", String.valueOf(upload.size()));
+                exchange.getResponseHeaders().add("Upload-Length",
+                        String.valueOf(mLengths.get(path)));
+                exchange.sendResponseHeaders(200, -1);
+            }
+        } else if ("PATCH".equals(method)) {
+            long offset = Long.parseLong(exchange.getRequestHeaders().getFirst("Upload-Offset"));
+            ByteArrayOutputStream upload = mUploads.get(path);
+            boolean drop = !mCalls.isEmpty() && "drop".equals(mCalls.get(0));
+            mCalls.add("PATCH " + path + " " + offset);
+            if (upload == null || offset != upload.size()) {
+                exchange.sendResponseHeaders(409, -1);
+            } else if (drop) {
+                mCalls.remove(0);
+                byte[] part = new byte[mDropAfter];
+                InputStream is = exchange.getRequestBody();
+                int read = 0;
+                while (read < part.length) {
+                    read += is.read(part, read, part.length - read);
+                }
+                upload.write(part);
+                // Abort the exchange without a response, which closes the connection.
+                throw new IOException("Dropped connection");
+            } else {
+                Utils.write(exchange.getRequestBody(), upload);
+                exchange.getResponseHeaders().add("Upload-Offset", String.valueOf(upload.size()));
+                exchange.sendResponseHeaders(204, -1);
+            }
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,188 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the retry policy and retry loop.
+ */
+public class RetryPolicyTest {
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private volatile int mFailures = 2;
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/flaky", exchange -> {
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            if (mRequests.incrementAndGet() <= mFailures) {
+                exchange.getResponseHeaders().add(Http.RETRY_AFTER, "0");
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/flaky";
+    }
+
+    @After
+    public void tearDown() {
+        Setup.setRetryBudget(null);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testTransientStatusIsRetried() throws Exception {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser());
+        builder.setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+        Request<String> request = builder.build();
+
+        assertEquals("ok", request.execute());
+        assertEquals(3, mRequests.get());
+    }
+
+    @Test
+    public void testInputStreamBodyIsNotRetried() throws Exception {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.PUT,
+                Parsers.newStringParser());
+        builder.setBody(new ByteArrayInputStream(new byte[100]), 100, "text/plain", false)
+                .setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+        Request<String> request = builder.build();
+
+        assertNull(request.execute());
+        assertEquals(1, mRequests.get());
+        try {
+            request.execute();
+            fail("Expected the body to be sent only once");
+        } catch (NetworkException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testRetriesAreCapped() throws Exception {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser());
+        builder.setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+        Request<String> request = builder.build();
+
+        assertNull(request.execute(1));
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void testParseFailureIsNotRetried() {
+        mFailures = 0;
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET, response -> {
+            throw new IOException("Malformed body");
+        });
+        builder.setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+        Request<String> request = builder.build();
+
+        try {
+            request.execute();
+            fail("Expected the parse failure to fail the call");
+        } catch (NetworkException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void testDefaultPolicyAllowsTheGivenRetries() {
+        Setup.setRetryBudget(new RetryBudget());
+        mFailures = 4;
+        Request<String> request = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser()).build();
+
+        assertEquals("ok", request.execute(10));
+        assertEquals(5, mRequests.get());
+    }
+
+    @Test
+    public void testNonIdempotentStatusIsNotRetried() throws Exception {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.POST,
+                Parsers.newStringParser());
+        builder.setRetryPolicy(new ExponentialBackoff(3, 1, 10).setBudget(new RetryBudget()));
+        Request<String> request = builder.build();
+
+        assertNull(request.execute());
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void testNonIdempotentIsRetriedWhenNotSent() {
+        ExponentialBackoff policy = new ExponentialBackoff().setBudget(new RetryBudget());
+
+        assertTrue(policy.getRetryDelay(Method.POST, 1, 0, new ConnectException(), -1) >= 0);
+        assertEquals(RetryPolicy.NO_RETRY,
+                policy.getRetryDelay(Method.POST, 1, 0, new SocketTimeoutException(), -1));
+        assertTrue(policy.getRetryDelay(Method.GET, 1, 0, new SocketTimeoutException(), -1)
+                >= 0);
+    }
+
+    @Test
+    public void testDelayIsBoundedAndHonorsRetryAfter() {
+        ExponentialBackoff policy = new ExponentialBackoff(10, 100, 1000)
+                .setBudget(new RetryBudget());
+
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long delay = policy.getRetryDelay(Method.GET, attempt, 503, null, -1);
+            assertTrue(delay >= 0 && delay <= Math.min(1000, 100L << (attempt - 1)));
+        }
+        assertEquals(500, policy.getRetryDelay(Method.GET, 1, 503, null, 500));
+        assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(Method.GET, 1, 503, null, 5000));
+        assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(Method.GET, 1, 404, null, -1));
+    }
+
+    @Test
+    public void testBudgetLimitsRetries() {
+        RetryBudget budget = new RetryBudget(2, 0.5, 0);
+        ExponentialBackoff policy = new ExponentialBackoff().setBudget(budget);
+
+        assertTrue(policy.getRetryDelay(Method.GET, 1, 503, null, -1) >= 0);
+        assertTrue(policy.getRetryDelay(Method.GET, 1, 503, null, -1) >= 0);
+        assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(Method.GET, 1, 503, null, -1));
+
+        policy.onSuccess();
+        policy.onSuccess();
+        assertTrue(policy.getRetryDelay(Method.GET, 1, 503, null, -1) >= 0);
+    }
+
+    @Test
+    public void testParseRetryAfter() throws Exception {
+        long now = Http.parseDate("Sun, 06 Nov 1994 08:49:37 GMT");
+
+        assertEquals(120000, Http.parseRetryAfter("120", now));
+        assertEquals(30000, Http.parseRetryAfter("Sun, 06 Nov 1994 08:50:07 GMT", now));
+        assertEquals(0, Http.parseRetryAfter("Sun, 06 Nov 1994 08:00:00 GMT", now));
+        assertEquals(-1, Http.parseRetryAfter("soon", now));
+        assertEquals(-1, Http.parseRetryAfter(null, now));
+    }
+}
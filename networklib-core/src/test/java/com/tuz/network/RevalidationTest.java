@@ -0,0 +1,120 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for conditional revalidation of cached responses.
+ */
+public class RevalidationTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private final AtomicInteger mNotModified = new AtomicInteger();
+
+    private final AtomicInteger mParsed = new AtomicInteger();
+
+    private final ResponseParser<String> mParser = newParser(body -> body);
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/poll", exchange -> {
+            mRequests.incrementAndGet();
+            exchange.getResponseHeaders().add(Http.ETAG, ETAG);
+            exchange.getResponseHeaders().add(Http.CACHE_CONTROL, "no-cache");
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst(Http.IF_NONE_MATCH))) {
+                mNotModified.incrementAndGet();
+                exchange.sendResponseHeaders(Http.STATUS_NOT_MODIFIED, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = "state".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/poll";
+        Setup.setMemoryCache(new MemoryCache());
+    }
+
+    @After
+    public void tearDown() {
+        Setup.setMemoryCache(null);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testNotModifiedReturnsParsedOutput() throws Exception {
+        String first = poll();
+        String second = poll();
+        String third = poll();
+
+        assertEquals("state", first);
+        assertSame(first, second);
+        assertSame(first, third);
+        assertEquals(3, mRequests.get());
+        assertEquals(2, mNotModified.get());
+        assertEquals(1, mParsed.get());
+        assertEquals(2, Setup.getMemoryCache().getRevalidatedCount());
+    }
+
+    @Test
+    public void testOtherParserParsesAgain() throws Exception {
+        assertEquals("state", poll());
+        RequestBuilder<Integer> builder = new RequestBuilder<>(mUrl, Method.GET,
+                newParser(String::length));
+        builder.setRevalidate(true);
+
+        assertEquals(Integer.valueOf(5), builder.build().execute());
+        assertEquals("state", poll());
+        assertEquals(3, mParsed.get());
+        assertEquals(2, mNotModified.get());
+    }
+
+    @Test
+    public void testWithoutRevalidationNothingIsStored() throws Exception {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser());
+        builder.setUseCache(true);
+        Request<String> request = builder.build();
+
+        assertEquals("state", request.execute());
+        assertEquals("state", request.execute());
+        assertEquals(0, mNotModified.get());
+        assertEquals(0, Setup.getMemoryCache().getEntryCount());
+    }
+
+    private String poll() throws NetworkException {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET, mParser);
+        builder.setRevalidate(true);
+        return builder.build().execute();
+    }
+
+    private <T> ResponseParser<T> newParser(Function<String, T> mapper) {
+        return response -> {
+            mParsed.incrementAndGet();
+            return mapper.apply(Utils.toString(response.getInputStream(),
+                    response.getContentLength()));
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for coalescing identical in-flight requests.
+ */
+public class SingleFlightTest {
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/slow", exchange -> {
+            mRequests.incrementAndGet();
+            byte[] body = "shared".getBytes(StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            } catch (Exception e) {
+                // Client went away
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/slow";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testIdenticalRequestsShareOneRoundTrip() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        List<Future<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            Request<String> request = newRequest("token");
+            results.add(executor.submit((Callable<String>) request::execute));
+        }
+        for (Future<String> result : results) {
+            assertEquals("shared", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void testKeyHeadersSeparateFlights() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> first = executor.submit((Callable<String>) newRequest("a")::execute);
+        Future<String> second = executor.submit((Callable<String>) newRequest("b")::execute);
+
+        assertEquals("shared", first.get(5, TimeUnit.SECONDS));
+        assertEquals("shared", second.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void testDifferentParsersSeparateFlights() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        RequestBuilder<String> string = new RequestBuilder<>(mUrl, Method.GET,
+                newParser(body -> body));
+        string.setCoalesce(true);
+        RequestBuilder<Integer> length = new RequestBuilder<>(mUrl, Method.GET,
+                newParser(String::length));
+        length.setCoalesce(true);
+        Future<String> first = executor.submit((Callable<String>) string.build()::execute);
+        Future<Integer> second = executor.submit((Callable<Integer>) length.build()::execute);
+
+        assertEquals("shared", first.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(6), second.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void testCancelledFollowerDoesNotAbortLeader() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> leader = executor.submit((Callable<String>) newRequest("t")::execute);
+        Thread.sleep(100);
+        NetworkRequest<String> follower = (NetworkRequest<String>) newRequest("t");
+        Future<String> followed = executor.submit((Callable<String>) follower::execute);
+        Thread.sleep(100);
+
+        follower.cancel();
+        try {
+            followed.get(5, TimeUnit.SECONDS);
+            fail("Expected the follower to be cancelled");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NetworkException);
+        }
+        assertEquals("shared", leader.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPostCannotBeCoalesced() {
+        new RequestBuilder<>(mUrl, Method.POST, Parsers.newStringParser()).setCoalesce(true);
+    }
+
+    private Request<String> newRequest(String token) {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser());
+        builder.addHeader("Authorization", token)
+                .setCoalesce(true, "Authorization");
+        return builder.build();
+    }
+
+    private static <T> ResponseParser<T> newParser(Function<String, T> mapper) {
+        ResponseParser<String> parser = Parsers.newStringParser();
+        return response -> mapper.apply(parser.parseResponse(response));
+    }
+}
@@ -0,0 +1,167 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the call timeout and adaptive timeouts.
+ */
+public class TimeoutTest {
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    /**
+     * The delay before the headers of the slow endpoint are sent, in milliseconds.
+     */
+    private volatile long mDelay;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/trickle", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 0; i < 100; i++) {
+                    os.write('a');
+                    os.flush();
+                    Thread.sleep(100);
+                }
+            } catch (Exception e) {
+                // Client went away
+            }
+        });
+        mServer.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(mDelay);
+                exchange.sendResponseHeaders(200, 2);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write("ok".getBytes("UTF-8"));
+                }
+            } catch (Exception e) {
+                // Client went away
+            }
+            exchange.close();
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/trickle";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testCallTimeoutCoversSlowBody() throws Exception {
+        RequestBuilder<String> builder = new RequestBuilder<>(mUrl, Method.GET,
+                Parsers.newStringParser());
+        builder.setReadTimeout(5, TimeUnit.SECONDS)
+                .setCallTimeout(500, TimeUnit.MILLISECONDS);
+        Request<String> request = builder.build();
+        long start = System.nanoTime();
+
+        try {
+            request.execute();
+            fail("Expected the call to time out");
+        } catch (NetworkException e) {
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000);
+    }
+
+    @Test
+    public void testAdaptiveTimeout() {
+        LatencyTracker tracker = new LatencyTracker();
+
+        assertEquals(1500, tracker.getTimeout("host", 1500));
+        for (int i = 0; i < 100; i++) {
+            tracker.record("host", i < 99 ? 100 : 300);
+        }
+        assertEquals(300, tracker.getPercentile("host", 0.99));
+        assertEquals(100, tracker.getPercentile("host", 0.5));
+        assertEquals(900, tracker.getTimeout("host", 1500));
+        assertEquals(600, tracker.getTimeout("host", 600));
+
+        for (int i = 0; i < LatencyTracker.SAMPLE_COUNT; i++) {
+            tracker.record("host", 10);
+        }
+        assertEquals(LatencyTracker.MIN_TIMEOUT, tracker.getTimeout("host", 1500));
+        assertEquals(1500, tracker.getTimeout("other", 1500));
+    }
+
+    @Test
+    public void testTimedOutSamplesRaiseTheTimeout() {
+        LatencyTracker tracker = new LatencyTracker();
+        for (int i = 0; i < LatencyTracker.SAMPLE_COUNT; i++) {
+            tracker.record("host", 10);
+        }
+        assertEquals(500, tracker.getTimeout("host", 10_000));
+
+        tracker.record("host", 500);
+        assertEquals(1500, tracker.getTimeout("host", 10_000));
+        tracker.record("host", 1500);
+        assertEquals(4500, tracker.getTimeout("host", 10_000));
+    }
+
+    @Test
+    public void testHostsAreBounded() {
+        LatencyTracker tracker = new LatencyTracker();
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            tracker.record("first", 100);
+        }
+        for (int host = 0; host < LatencyTracker.MAX_HOSTS; host++) {
+            tracker.record("host" + host, 100);
+        }
+
+        assertEquals(-1, tracker.getPercentile("first", 0.99));
+    }
+
+    @Test
+    public void testAdaptiveTimeoutRecoversWhenHostSlowsDown() throws Exception {
+        String url = mUrl.replace("/trickle", "/slow");
+        for (int i = 0; i < LatencyTracker.SAMPLE_COUNT; i++) {
+            LatencyTracker.getDefault().record("127.0.0.1", 10);
+        }
+        mDelay = 1000;
+        RequestBuilder<String> builder = new RequestBuilder<>(url, Method.GET,
+                Parsers.newStringParser());
+        builder.setReadTimeout(10, TimeUnit.SECONDS)
+                .setAdaptiveTimeouts(true);
+        Request<String> request = builder.build();
+
+        try {
+            request.execute();
+            fail("Expected the adapted timeout to expire");
+        } catch (NetworkException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+        assertEquals("ok", request.execute());
+    }
+
+    @Test
+    public void testLatencyIsOnlySampledForAdaptiveTimeouts() throws Exception {
+        String url = "http://localhost:" + mServer.getAddress().getPort() + "/slow";
+        Request<String> request = new RequestBuilder<>(url, Method.GET,
+                Parsers.newStringParser()).build();
+
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            assertEquals("ok", request.execute());
+        }
+        assertEquals(-1, LatencyTracker.getDefault().getPercentile("localhost", 0.99));
+    }
+}
@@ -0,0 +1,182 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for throttled progress with throughput and remaining time.
+ */
+public class TransferProgressTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void testUpdatesAreThrottled() {
+        TransferProgress progress = new TransferProgress();
+        progress.reset(100);
+
+        assertFalse(progress.update(1000, 0, 0));
+        assertFalse(progress.update(1000, 100, 10 * MS));
+        assertTrue(progress.update(1000, 200, 100 * MS));
+        assertFalse(progress.update(1000, 300, 150 * MS));
+        assertTrue(progress.update(1000, 1000, 160 * MS));
+        assertFalse(progress.update(1000, 1000, 400 * MS));
+        assertEquals(100, progress.getPercent());
+    }
+
+    @Test
+    public void testUnknownLengthIsReportedOverTime() {
+        TransferProgress progress = new TransferProgress();
+        progress.reset(100);
+
+        assertFalse(progress.update(-1, 0, 0));
+        assertTrue(progress.update(-1, 4096, 120 * MS));
+        assertFalse(progress.update(-1, 4096, 300 * MS));
+        assertEquals(0, progress.getPercent());
+        assertEquals(-1, progress.getRemainingMillis());
+    }
+
+    @Test
+    public void testZeroIntervalReportsEveryChange() {
+        TransferProgress progress = new TransferProgress();
+        progress.reset(0);
+
+        assertTrue(progress.update(1000, 1, 0));
+        assertTrue(progress.update(1000, 2, 0));
+        assertFalse(progress.update(1000, 2, MS));
+    }
+
+    @Test
+    public void testRateAndRemainingTime() {
+        TransferProgress progress = new TransferProgress();
+        progress.reset(100);
+        long total = 100_000;
+
+        // 1000 bytes every 100 ms.
+        for (int i = 0; i <= 50; i++) {
+            progress.update(total, i * 1000, i * 100 * MS);
+        }
+
+        assertEquals(10_000, progress.getBytesPerSecond(), 1);
+        assertEquals(5000, progress.getElapsedMillis());
+        assertEquals(5000, progress.getRemainingMillis(), 1);
+    }
+
+    @Test
+    public void testRateIsAMovingAverage() {
+        TransferProgress progress = new TransferProgress();
+        progress.reset(100);
+        long bytes = 0;
+        long time = 0;
+        progress.update(-1, bytes, time);
+        for (int i = 0; i < 20; i++) {
+            bytes += 1000;
+            time += 100 * MS;
+            progress.update(-1, bytes, time);
+        }
+        assertEquals(10_000, progress.getBytesPerSecond(), 1);
+
+        // The throughput doubles, which the average approaches over a few seconds.
+        bytes += 2000;
+        time += 100 * MS;
+        progress.update(-1, bytes, time);
+        long rate = progress.getBytesPerSecond();
+        assertTrue(rate > 10_000 && rate < 11_000);
+
+        for (int i = 0; i < 100; i++) {
+            bytes += 2000;
+            time += 100 * MS;
+            progress.update(-1, bytes, time);
+        }
+        assertEquals(20_000, progress.getBytesPerSecond(), 100);
+    }
+
+    @Test
+    public void testRestartedTransferKeepsThroughput() {
+        TransferProgress progress = new TransferProgress();
+        progress.reset(100);
+        progress.update(1000, 0, 0);
+        progress.update(1000, 500, 100 * MS);
+        assertEquals(5000, progress.getBytesPerSecond(), 1);
+
+        progress.update(1000, 0, 200 * MS);
+        progress.update(1000, 500, 300 * MS);
+
+        assertEquals(5000, progress.getBytesPerSecond(), 1);
+        assertEquals(100, progress.getRemainingMillis(), 1);
+    }
+
+    @Test
+    public void testPendingCallbacksAreCoalesced() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", exchange -> {
+            Utils.write(exchange.getRequestBody(), new ByteArrayOutputStream());
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write("ok".getBytes("UTF-8"));
+            }
+        });
+        server.start();
+        Queue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+        Dispatcher dispatcher = new Dispatcher(callbacks::add);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger reports = new AtomicInteger();
+        long[] last = new long[1];
+
+        try {
+            RequestBuilder<String> builder = new RequestBuilder<>(
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/upload",
+                    Method.POST, Parsers.newStringParser());
+            builder.setBody(new byte[1024 * 1024], "application/octet-stream", false, true)
+                    .setProgressInterval(0, TimeUnit.MILLISECONDS)
+                    .setDispatcher(dispatcher);
+            // Tasks hold their listeners weakly.
+            RequestListener<String> listener = new RequestListener<String>() {
+                @Override
+                public void onPreExecution(Request<String> request) {
+                }
+
+                @Override
+                public void onExecutionDone(Request<String> request, String output) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onExecutionProgress(Request<String> request,
+                                                TransferProgress progress) {
+                    reports.incrementAndGet();
+                    last[0] = progress.getTransferredBytes();
+                }
+            };
+            builder.build().executeAsync(listener);
+
+            for (int i = 0; i < 500 && callbacks.size() < 2; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, callbacks.size());
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, reports.get());
+            assertEquals(1024 * 1024, last[0]);
+            assertNotNull(listener);
+        } finally {
+            dispatcher.shutdown();
+            server.stop(0);
+        }
+    }
+}
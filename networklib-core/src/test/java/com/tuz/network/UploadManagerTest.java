@@ -0,0 +1,223 @@
+package com.tuz.network;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for uploading files in parallel against a loopback server.
+ */
+public class UploadManagerTest {
+
+    private final AtomicInteger mActive = new AtomicInteger();
+
+    private final AtomicInteger mMaxActive = new AtomicInteger();
+
+    private final Set<String> mFailing = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Integer> mReceived = new ConcurrentHashMap<>();
+
+    private volatile CountDownLatch mRelease;
+
+    private HttpServer mServer;
+
+    private String mUrl;
+
+    private Dispatcher mDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/photos", exchange -> {
+            int active = mActive.incrementAndGet();
+            mMaxActive.accumulateAndGet(active, Math::max);
+            try {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                Utils.write(exchange.getRequestBody(), body);
+                String text = body.toString("ISO-8859-1");
+                int start = text.indexOf("filename=\"") + 10;
+                String name = text.substring(start, text.indexOf('"', start));
+                mReceived.merge(name, 1, Integer::sum);
+
+                CountDownLatch release = mRelease;
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                } else {
+                    Thread.sleep(20);
+                }
+
+                byte[] response = ("ok " + name).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(mFailing.contains(name) ? 500 : 200,
+                        response.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                mActive.decrementAndGet();
+                exchange.close();
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/photos";
+        mDispatcher = new Dispatcher(Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        mDispatcher.shutdown();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testFilesAreUploadedInParallel() throws Exception {
+        List<File> files = createFiles(6, 64 * 1024);
+        RecordingListener listener = new RecordingListener(1);
+
+        UploadManager.Upload upload = new UploadManager(mUrl)
+                .setMaxConcurrentUploads(2)
+                .setDispatcher(mDispatcher)
+                .upload(files, listener);
+
+        assertTrue(listener.mDone.await(10, TimeUnit.SECONDS));
+        assertEquals(2, mMaxActive.get());
+        assertEquals(6, listener.mResults.size());
+        for (File file : files) {
+            assertEquals("ok " + file.getName(), listener.mResults.get(file));
+            assertEquals(1, (int) mReceived.get(file.getName()));
+        }
+        assertTrue(upload.isDone());
+        assertTrue(upload.getFailedFiles().isEmpty());
+        TransferProgress progress = upload.getProgress();
+        assertTrue(progress.getTotalBytes() > 6 * 64 * 1024);
+        assertEquals(100, progress.getPercent());
+        assertTrue(listener.mProgressCount.get() > 0);
+    }
+
+    @Test
+    public void testOnlyFailedFilesAreRetried() throws Exception {
+        List<File> files = createFiles(4, 1024);
+        File failing = files.get(2);
+        mFailing.add(failing.getName());
+        RecordingListener listener = new RecordingListener(1);
+
+        UploadManager.Upload upload = new UploadManager(mUrl)
+                .setDispatcher(mDispatcher)
+                .upload(files, listener);
+
+        assertTrue(listener.mDone.await(10, TimeUnit.SECONDS));
+        assertEquals(3, listener.mResults.size());
+        assertTrue(listener.mErrors.containsKey(failing));
+        assertEquals(1, upload.getFailedFiles().size());
+        assertSame(failing, upload.getFailedFiles().get(0));
+
+        mFailing.clear();
+        listener.mDone = new CountDownLatch(1);
+        assertEquals(1, upload.retryFailed());
+
+        assertTrue(listener.mDone.await(10, TimeUnit.SECONDS));
+        assertEquals(4, listener.mResults.size());
+        assertTrue(upload.getFailedFiles().isEmpty());
+        assertEquals(2, (int) mReceived.get(failing.getName()));
+        assertEquals(1, (int) mReceived.get(files.get(0).getName()));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        mRelease = new CountDownLatch(1);
+        List<File> files = createFiles(5, 1024);
+        RecordingListener listener = new RecordingListener(1);
+
+        UploadManager.Upload upload = new UploadManager(mUrl)
+                .setMaxConcurrentUploads(2)
+                .setDispatcher(mDispatcher)
+                .upload(files, listener);
+        for (int i = 0; i < 100 && mReceived.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        upload.cancel();
+        mRelease.countDown();
+        Thread.sleep(200);
+
+        assertTrue(upload.isDone());
+        assertEquals(2, mReceived.size());
+        assertTrue(listener.mResults.isEmpty());
+        assertTrue(listener.mErrors.isEmpty());
+        assertEquals(1, listener.mDone.getCount());
+        assertEquals(0, upload.retryFailed());
+    }
+
+    private List<File> createFiles(int count, int size) throws Exception {
+        List<File> files = new ArrayList<>();
+        byte[] data = new byte[size];
+        for (int i = 0; i < count; i++) {
+            File file = File.createTempFile("photo" + i + "-", ".jpg");
+            file.deleteOnExit();
+            try (OutputStream os = new FileOutputStream(file)) {
+                os.write(data);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static final class RecordingListener implements UploadManager.UploadListener {
+
+        private final Map<File, String> mResults = new ConcurrentHashMap<>();
+
+        private final Map<File, NetworkException> mErrors = new ConcurrentHashMap<>();
+
+        private final AtomicInteger mProgressCount = new AtomicInteger();
+
+        private volatile CountDownLatch mDone;
+
+        RecordingListener(int count) {
+            mDone = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onProgress(File file, TransferProgress fileProgress,
+                               TransferProgress totalProgress) {
+            assertTrue(fileProgress.getTransferredBytes() <= fileProgress.getTotalBytes());
+            assertTrue(totalProgress.getTransferredBytes() <= totalProgress.getTotalBytes());
+            mProgressCount.incrementAndGet();
+        }
+
+        @Override
+        public void onFileDone(File file, String response) {
+            mResults.put(file, response);
+        }
+
+        @Override
+        public void onFileFailed(File file, NetworkException error) {
+            mErrors.put(file, error);
+        }
+
+        @Override
+        public void onUploadDone(UploadManager.Upload upload) {
+            mDone.countDown();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+# The android platform is created by reflection when it is found on the class path.
+-keep class com.tuz.network.AndroidPlatform {
+    <init>();
+}
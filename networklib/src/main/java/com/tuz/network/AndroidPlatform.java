@@ -0,0 +1,61 @@
+package com.tuz.network;
+
+import android.net.http.HttpResponseCache;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * The android platform, which is found by {@link Platform#detect()} when this module is on the
+ * class path.
+ * <p>
+ * Callbacks are delivered on the main thread, mime types come from the {@link MimeTypeMap},
+ * messages are logged to logcat and the disk cache is the {@link HttpResponseCache}.
+ */
+final class AndroidPlatform extends Platform {
+
+    /**
+     * The executor posting callbacks to the main thread.
+     */
+    private final Executor mCallbackExecutor = new MainThreadExecutor();
+
+    @Override
+    public Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    @Override
+    public String getMimeType(String fileName) {
+        String extension = MimeTypeMap.getFileExtensionFromUrl(fileName);
+        if (extension == null || extension.isEmpty()) {
+            return null;
+        }
+        return MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+    }
+
+    @Override
+    public void log(String tag, String message) {
+        Log.d(tag, message);
+    }
+
+    @Override
+    public void installCache(File dir, long size) throws IOException {
+        HttpResponseCache.install(dir, size);
+    }
+
+    @Override
+    public boolean isCacheInstalled() {
+        return HttpResponseCache.getInstalled() != null;
+    }
+
+    @Override
+    public void flushCache() {
+        HttpResponseCache cache = HttpResponseCache.getInstalled();
+        if (cache != null) {
+            cache.flush();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.tuz.network;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor posting commands to the main thread.
+ */
+final class MainThreadExecutor implements Executor {
+
+    /**
+     * The main thread handler.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void execute(Runnable command) {
+        mHandler.post(command);
+    }
+}
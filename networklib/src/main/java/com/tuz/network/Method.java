@@ -1,32 +0,0 @@
-package com.tuz.network;
-
-/**
- * Http methods.
- */
-public enum Method {
-
-    /**
-     * Method post.
-     */
-    POST,
-
-    /**
-     * Method put.
-     */
-    PUT,
-
-    /**
-     * Method patch.
-     */
-    PATCH,
-
-    /**
-     * Method get.
-     */
-    GET,
-
-    /**
-     * Method delete.
-     */
-    DELETE
-}